@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("com.google.protobuf") version "0.9.5"
     id("com.diffplug.spotless") version "6.25.0"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "dev.irako"
@@ -12,12 +13,13 @@ repositories {
 }
 
 dependencies {
-    implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
-
     // Logging
     implementation("org.slf4j:slf4j-api:2.0.9")
     implementation("org.slf4j:slf4j-simple:2.0.9")
 
+    // Latency histograms for the load generator
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+
     // gRPC dependencies
     implementation("io.grpc:grpc-netty-shaded:1.60.1")
     implementation("io.grpc:grpc-protobuf:1.60.1")
@@ -31,7 +33,32 @@ dependencies {
 }
 
 tasks.test {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        excludeTags("soak")
+    }
+}
+
+// Soak: thousands of concurrent streams against an in-process server for
+// minutes. Tune with -Psoak.seconds, -Psoak.streams and -Psoak.maxHeapMb.
+tasks.register<Test>("soakTest") {
+    group = "verification"
+    description = "Runs the in-process soak test and logs throughput and latency per scenario."
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("soak")
+    }
+    maxHeapSize = "1g"
+    listOf("soak.seconds", "soak.streams", "soak.maxHeapMb").forEach { key ->
+        providers.gradleProperty(key).orNull?.let { systemProperty(key, it) }
+    }
+    // Per-stream server logging would drown the summary; the test counts failures itself
+    systemProperty("org.slf4j.simpleLogger.defaultLogLevel", "off")
+    systemProperty("org.slf4j.simpleLogger.log.dev.irako.topics.grpc.data.SoakTest", "info")
+    testLogging {
+        showStandardStreams = true
+    }
+    outputs.upToDateWhen { false }
 }
 
 java {
@@ -59,6 +86,83 @@ protobuf {
     }
 }
 
+// Microbenchmarks live in src/jmh/java; run with ./gradlew jmh
+jmh {
+    warmupIterations.set(2)
+    iterations.set(5)
+    fork.set(1)
+}
+
+// The benchmark jar bundles every dependency, but several gRPC jars register
+// providers in the same META-INF/services files. Concatenate them, or only one
+// jar's providers survive and benchmarks cannot open channels.
+val jmhServiceFiles = layout.buildDirectory.dir("jmh-service-files")
+val mergeJmhServiceFiles = tasks.register("mergeJmhServiceFiles") {
+    val runtimeJars = configurations.named("jmhRuntimeClasspath")
+    inputs.files(runtimeJars)
+    outputs.dir(jmhServiceFiles)
+    doLast {
+        val servicesDir = jmhServiceFiles.get().dir("META-INF/services").asFile
+        servicesDir.deleteRecursively()
+        servicesDir.mkdirs()
+        runtimeJars.get().filter { it.name.endsWith(".jar") }.forEach { jar ->
+            zipTree(jar).matching { include("META-INF/services/*") }.forEach { service ->
+                servicesDir.resolve(service.name).appendText(service.readText().trimEnd() + "\n")
+            }
+        }
+    }
+}
+tasks.named<Jar>("jmhJar") {
+    dependsOn(mergeJmhServiceFiles)
+    from(jmhServiceFiles)
+    val mergedDir = jmhServiceFiles.get().asFile
+    filesMatching("META-INF/services/**") {
+        if (!file.startsWith(mergedDir)) {
+            exclude()
+        }
+    }
+}
+
+// Startup: StartupProbe starts a server and reports the time from JVM start to
+// the first answered RPC. serverAotCache records an AOT cache (JDK 25, JEP 483
+// and 514) from a probe run; startupBenchmark runs the probe without and with
+// it. AOT caches only cover classes loaded from jars, so the probe runs from
+// the project jar rather than the classes directory.
+val serverAotCache = layout.buildDirectory.file("aot/server.aot")
+val probeClasspath = files(tasks.jar) + configurations.runtimeClasspath.get()
+val probeMainClass = "dev.irako.topics.grpc.api.StartupProbe"
+tasks.register<JavaExec>("serverAotCache") {
+    group = "build"
+    description = "Records an AOT cache for the server from a StartupProbe training run."
+    classpath = probeClasspath
+    mainClass.set(probeMainClass)
+    outputs.file(serverAotCache)
+    doFirst {
+        serverAotCache.get().asFile.parentFile.mkdirs()
+        jvmArgs("-XX:AOTCacheOutput=${serverAotCache.get().asFile}")
+    }
+}
+val startupCold = tasks.register<JavaExec>("startupCold") {
+    description = "Reports time-to-first-RPC without an AOT cache."
+    classpath = probeClasspath
+    mainClass.set(probeMainClass)
+}
+val startupWithAotCache = tasks.register<JavaExec>("startupWithAotCache") {
+    description = "Reports time-to-first-RPC with the AOT cache."
+    dependsOn("serverAotCache")
+    mustRunAfter(startupCold)
+    classpath = probeClasspath
+    mainClass.set(probeMainClass)
+    doFirst {
+        jvmArgs("-XX:AOTCache=${serverAotCache.get().asFile}")
+    }
+}
+tasks.register("startupBenchmark") {
+    group = "verification"
+    description = "Reports time-to-first-RPC of the server without and with its AOT cache."
+    dependsOn(startupCold, startupWithAotCache)
+}
+
 // Ensure proto generation happens before compilation
 tasks.named("compileJava") {
     dependsOn("generateProto")
@@ -0,0 +1,98 @@
+package dev.irako.topics.grpc.data;
+
+import com.google.protobuf.MessageLite;
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.MessageRequest;
+import dev.irako.topics.grpc.model.MessageType;
+import dev.irako.topics.grpc.model.NotificationMessage;
+import dev.irako.topics.grpc.model.NotificationPriority;
+import dev.irako.topics.grpc.model.SensorReading;
+import io.grpc.Codec;
+import io.grpc.Compressor;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost versus bytes saved for each RPC type and codec. The time per
+ * operation is the compression cost of one representative message; the raw,
+ * compressed and saved bytes of that message are reported as secondary
+ * results next to it, so both can be read from the same run:
+ *
+ * <pre>
+ * ./gradlew jmh
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CompressionBenchmark {
+
+	@Param({"SendMessage", "SubscribeToNotifications", "UploadSensorData", "Chat"})
+	public String rpc;
+
+	@Param({"gzip", "deflate"})
+	public String encoding;
+
+	private byte[] payload;
+	private Compressor compressor;
+
+	@Setup
+	public void setUp() throws IOException {
+		payload = sampleMessage(rpc).toByteArray();
+		compressor = CompressionPolicy.GZIP.equals(encoding) ? new Codec.Gzip() : new DeflateCodec();
+	}
+
+	@Benchmark
+	public int compress(MessageBytes bytes) throws IOException {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream(payload.length);
+		try (OutputStream out = compressor.compress(sink)) {
+			out.write(payload);
+		}
+		// Set rather than added, so they read as the bytes of one message
+		bytes.rawBytes = payload.length;
+		bytes.compressedBytes = sink.size();
+		bytes.savedBytes = payload.length - sink.size();
+		return sink.size();
+	}
+
+	/** Sizes of the compressed message, reported alongside the time. */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class MessageBytes {
+		public long rawBytes;
+		public long compressedBytes;
+		public long savedBytes;
+	}
+
+	private static MessageLite sampleMessage(String rpc) {
+		long now = System.currentTimeMillis();
+		return switch (rpc) {
+			case "SendMessage" -> MessageRequest.newBuilder().setUserId("user-000123")
+					.setContent("Status update: all systems nominal. ".repeat(30)).setTimestamp(now).build();
+			case "SubscribeToNotifications" -> NotificationMessage.newBuilder()
+					.setNotificationId("5f1c2a9e-8d3b-4c1e-9a0f-2b7d6e4c3a10").setTopic("updates")
+					.setTitle("Notification for updates")
+					.setContent("This is notification #42 for topic: updates. Building 1, floor 3 maintenance.")
+					.setTimestamp(now).setPriority(NotificationPriority.LOW).build();
+			case "UploadSensorData" -> SensorReading.newBuilder().setSensorId("sensor-0042").setValue(21.375)
+					.setUnit("celsius").setTimestamp(now).setLocation("building1/floor3/room12").build();
+			case "Chat" -> ChatMessage.newBuilder().setUserId("user-000123").setUsername("Alice")
+					.setContent("Has anyone seen the deploy notes for the chat service? The deploy notes mention "
+							+ "the chat service rollout and the notification service rollout for today.")
+					.setTimestamp(now).setType(MessageType.TEXT).build();
+			default -> throw new IllegalArgumentException("Unknown rpc: " + rpc);
+		};
+	}
+}
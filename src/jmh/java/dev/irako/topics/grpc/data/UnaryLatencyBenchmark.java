@@ -0,0 +1,63 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.model.MessageDto;
+import dev.irako.topics.grpc.model.MessageResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency of a small {@code SendMessage} over loopback, with the
+ * handler on the application executor and on the transport thread
+ * ({@link ServerTuning#directSendMessage()}). Sample-time mode reports the
+ * p50/p90/p99 percentiles:
+ *
+ * <pre>
+ * ./gradlew jmh
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnaryLatencyBenchmark {
+
+	private static final int PORT = 50099;
+
+	@Param({"false", "true"})
+	public boolean directSendMessage;
+
+	private ManagedServer server;
+	private GrpcClient client;
+	private MessageDto message;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(PORT), CompressionPolicy.defaults(),
+				null, new ServerTuning(directSendMessage));
+		client = new GrpcClient("localhost", PORT);
+		message = new MessageDto("user-000123", "Status update: all systems nominal.", Instant.now());
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		client.close();
+		server.shutdown();
+		server.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	public MessageResponseDto sendMessage() {
+		return client.sendMessage(message);
+	}
+}
@@ -0,0 +1,79 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.MessageRequest;
+import dev.irako.topics.grpc.model.ReadingColumns;
+import dev.irako.topics.grpc.model.SensorReading;
+import dev.irako.topics.grpc.service.MessageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of validating inbound data: appending one upload of 4096 readings to
+ * {@link ReadingColumns}, which validates each distinct string once, and
+ * checking a {@code SendMessage} request through a {@code MessageDto} versus
+ * {@link MessageService#checkMessage(String, String)}:
+ *
+ * <pre>
+ * ./gradlew jmh --args="ValidationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidationBenchmark {
+
+	private List<SensorReading> upload;
+	private MessageRequest request;
+	private ReadingColumns columns;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		long now = System.currentTimeMillis();
+		upload = IntStream.range(0, 4096).mapToObj(i -> SensorReading.newBuilder().setSensorId("sensor-" + (i % 64))
+				.setValue(20.0 + i % 10).setUnit("celsius").setTimestamp(now + i).setLocation("room-" + (i % 16))
+				.build()).toList();
+		request = MessageRequest.newBuilder().setUserId("user-42").setContent("Deploy finished on all nodes.")
+				.setTimestamp(now).build();
+	}
+
+	// Fresh columns per call keep the shared arena's allocation and release out
+	// of the measurement
+	@Setup(Level.Invocation)
+	public void openColumns() {
+		columns = new ReadingColumns(upload.size());
+	}
+
+	@TearDown(Level.Invocation)
+	public void closeColumns() {
+		columns.close();
+	}
+
+	@Benchmark
+	public int appendUpload() {
+		for (SensorReading reading : upload) {
+			ProtoConverter.appendSensorReading(columns, reading);
+		}
+		return columns.size();
+	}
+
+	@Benchmark
+	public boolean checkMessageViaDto() {
+		return MessageService.isAccepted(ProtoConverter.toMessageDto(request).content());
+	}
+
+	@Benchmark
+	public boolean checkMessageFields() {
+		return MessageService.checkMessage(request.getUserId(), request.getContent());
+	}
+}
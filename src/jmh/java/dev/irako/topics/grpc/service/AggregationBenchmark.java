@@ -0,0 +1,67 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorReadingDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Scaling of reading aggregation across fork-join pool sizes. {@code threads=0}
+ * runs the sequential path on the benchmark thread:
+ *
+ * <pre>
+ * ./gradlew jmh --args="AggregationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AggregationBenchmark {
+
+	@Param({"1000000", "5000000"})
+	public int readingCount;
+
+	@Param({"0", "1", "2", "4", "8"})
+	public int threads;
+
+	private List<SensorReadingDto> readings;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		Instant now = Instant.now();
+		readings = IntStream.range(0, readingCount).mapToObj(i -> new SensorReadingDto("sensor-" + (i % 64),
+				20.0 + random.nextGaussian(), "celsius", now, "room-" + (i % 16))).toList();
+		pool = threads == 0 ? null : new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public SensorAggregateDto aggregate() {
+		return pool == null
+				? SensorAggregationService.aggregateReadings(readings, 0, 0)
+				: SensorAggregationService.aggregateReadingsParallel(readings, 0, 0, pool);
+	}
+}
@@ -0,0 +1,69 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ReadingColumns;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-reading cost of unit normalization: statistics over one upload chunk of
+ * raw values versus {@link SensorAggregationService#valueStatistics}, which
+ * converts each value through the chunk's {@link UnitNormalizer.Table}. With
+ * {@code units=mixed} the chunk alternates celsius, fahrenheit and kelvin:
+ *
+ * <pre>
+ * ./gradlew jmh --args="UnitNormalizationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UnitNormalizationBenchmark {
+
+	private static final String[] MIXED_UNITS = { "celsius", "fahrenheit", "kelvin" };
+
+	@Param({"celsius", "mixed"})
+	public String units;
+
+	private ReadingColumns columns;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(42);
+		columns = new ReadingColumns(4096);
+		for (int index = 0; index < 4096; index++) {
+			String unit = units.equals("mixed") ? MIXED_UNITS[random.nextInt(MIXED_UNITS.length)] : units;
+			columns.append("sensor-" + (index % 64), 20.0 + random.nextGaussian(), unit, index,
+					"room-" + (index % 16));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		columns.close();
+	}
+
+	@Benchmark
+	public ValueStatistics rawValues() {
+		ValueStatistics statistics = new ValueStatistics();
+		for (int index = 0; index < columns.size(); index++) {
+			statistics.accept(columns.value(index));
+		}
+		return statistics;
+	}
+
+	@Benchmark
+	public ValueStatistics normalizedValues() {
+		return SensorAggregationService.valueStatistics(columns);
+	}
+}
@@ -1,9 +1,12 @@
 package dev.irako.topics.grpc.api;
 
 import dev.irako.topics.grpc.data.GrpcClient;
+import dev.irako.topics.grpc.data.LoadGenerator;
+import dev.irako.topics.grpc.data.ResponseStream;
 import dev.irako.topics.grpc.model.*;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -13,9 +16,11 @@ import java.util.List;
  *
  * <pre>
  * java GrpcClientApp [host] [port]
+ * java GrpcClientApp [host] [port] load [key=value ...]
  * </pre>
  *
- * Default: localhost:50051
+ * Default: localhost:50051. The {@code load} mode runs a benchmark instead of
+ * the demonstrations; see {@link LoadProfileArguments} for its options.
  */
 public final class GrpcClientApp {
 
@@ -39,6 +44,11 @@ public final class GrpcClientApp {
 			}
 		}
 
+		if (args.length > 2 && "load".equals(args[2])) {
+			runLoad(host, port, Arrays.asList(args).subList(3, args.length));
+			return;
+		}
+
 		try (GrpcClient client = new GrpcClient(host, port)) {
 			logger.info("Connected to gRPC server at {}:{}", host, port);
 
@@ -61,6 +71,37 @@ public final class GrpcClientApp {
 		}
 	}
 
+	private static void runLoad(String host, int port, List<String> options) {
+		LoadProfile profile;
+		try {
+			profile = LoadProfileArguments.parse(options);
+		} catch (IllegalArgumentException e) {
+			logger.error("Invalid load options: {}", e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		try (GrpcClient client = new GrpcClient(host, port)) {
+			logger.info("Running load against {}:{}", host, port);
+			LoadReport report = new LoadGenerator(client, profile).run();
+			logReport(report);
+		} catch (Exception e) {
+			logger.error("Error running load", e);
+			System.exit(1);
+		}
+	}
+
+	private static void logReport(LoadReport report) {
+		logger.info("\n=== Load report ({}, {} measured) ===", report.profile().mode(),
+				report.profile().measurement());
+		logger.info("Throughput: {} calls/s", String.format("%.1f", report.throughputPerSecond()));
+		report.summaries()
+				.forEach(s -> logger.info(
+						"  {}: count={}, errors={}, p50={}us, p90={}us, p99={}us, p99.9={}us, max={}us",
+						s.rpcType(), s.count(), s.errors(), s.p50Micros(), s.p90Micros(), s.p99Micros(),
+						s.p999Micros(), s.maxMicros()));
+	}
+
 	private static void demonstrateUnaryRpc(GrpcClient client) {
 		logger.info("\n=== Unary RPC: Send Message ===");
 		try {
@@ -76,12 +117,16 @@ public final class GrpcClientApp {
 		logger.info("\n=== Server Streaming: Subscribe to Notifications ===");
 		try {
 			List<String> topics = List.of("news", "updates", "alerts");
-			List<NotificationDto> notifications = client.subscribeToNotifications("user123", topics);
-			logger.info("Received {} notifications", notifications.size());
-			notifications.forEach(n -> logger.info("  - [{}] {}: {}", n.priority(), n.topic(), n.title()));
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			logger.error("Interrupted while receiving notifications", e);
+			// Each notification is logged as it arrives rather than after the stream ends
+			int received = 0;
+			try (ResponseStream<NotificationDto> notifications = client.streamNotifications("user123", topics)) {
+				while (notifications.hasNext()) {
+					NotificationDto n = notifications.next();
+					logger.info("  - [{}] {}: {}", n.priority(), n.topic(), n.title());
+					received++;
+				}
+			}
+			logger.info("Received {} notifications", received);
 		} catch (Exception e) {
 			logger.error("Error in server streaming", e);
 		}
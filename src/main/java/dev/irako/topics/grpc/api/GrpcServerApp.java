@@ -1,9 +1,17 @@
 package dev.irako.topics.grpc.api;
 
+import dev.irako.topics.grpc.data.CompressionPolicy;
+import dev.irako.topics.grpc.data.DrainPolicy;
 import dev.irako.topics.grpc.data.GrpcServerFactory;
-import io.grpc.Server;
+import dev.irako.topics.grpc.data.ManagedServer;
+import dev.irako.topics.grpc.data.SensorExportPolicy;
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.model.ClusterNode;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Entry point for starting the gRPC server.
@@ -11,15 +19,24 @@ import java.io.IOException;
  * Usage:
  *
  * <pre>
- * java GrpcServerApp [port]
+ * java GrpcServerApp [port] [nodeId members]
  * </pre>
  *
- * Default port is 50051 if not specified.
+ * Default port is 50051 if not specified. To run as a cluster node, pass this
+ * node's ID and all members as {@code id=host:port} pairs, e.g.
+ * {@code 50051 a a=localhost:50051,b=localhost:50052}.
+ *
+ * Set {@code -Dsensor.export.dir=<directory>} to also export every sensor
+ * upload to compressed segment files in that directory.
+ *
+ * On shutdown the server drains: it refuses new calls and closes open streams
+ * in batches so their clients reconnect to other nodes gradually.
  */
 public final class GrpcServerApp {
 
 	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(GrpcServerApp.class);
 	private static final int DEFAULT_PORT = 50051;
+	private static final String EXPORT_DIR_PROPERTY = "sensor.export.dir";
 
 	public static void main(String[] args) throws IOException, InterruptedException {
 		int port = DEFAULT_PORT;
@@ -32,19 +49,34 @@ public final class GrpcServerApp {
 			}
 		}
 
-		Server server = GrpcServerFactory.createAndStartServer(port);
-		logger.info("gRPC server started on port {}", port);
+		ClusterConfig clusterConfig = ClusterConfig.standalone(port);
+		if (args.length > 2) {
+			try {
+				clusterConfig = parseClusterConfig(port, args[1], args[2]);
+			} catch (IllegalArgumentException e) {
+				logger.error("Invalid cluster configuration: {}", e.getMessage());
+				System.exit(1);
+			}
+		}
+
+		String exportDirectory = System.getProperty(EXPORT_DIR_PROPERTY);
+		SensorExportPolicy exportPolicy = exportDirectory == null || exportDirectory.isBlank() ? null
+				: SensorExportPolicy.defaults(Path.of(exportDirectory));
+		if (exportPolicy != null) {
+			logger.info("Exporting sensor uploads to {}", exportPolicy.directory());
+		}
+
+		ManagedServer server = GrpcServerFactory.createAndStartServer(clusterConfig, CompressionPolicy.defaults(),
+				exportPolicy);
+		logger.info("gRPC server started on port {} as node {} of {}", clusterConfig.self().port(),
+				clusterConfig.self().nodeId(), clusterConfig.members().size());
 
 		// Add shutdown hook
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			logger.info("Shutting down gRPC server");
-			server.shutdown();
+			logger.info("Draining gRPC server");
 			try {
-				if (!server.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
-					server.shutdownNow();
-				}
+				server.drain(DrainPolicy.defaults());
 			} catch (InterruptedException e) {
-				server.shutdownNow();
 				Thread.currentThread().interrupt();
 			}
 			logger.info("gRPC server stopped");
@@ -52,4 +84,25 @@ public final class GrpcServerApp {
 
 		server.awaitTermination();
 	}
+
+	private static ClusterConfig parseClusterConfig(int port, String selfNodeId, String membersArgument) {
+		List<ClusterNode> members = new ArrayList<>();
+		for (String member : membersArgument.split(",")) {
+			int idSeparator = member.indexOf('=');
+			int portSeparator = member.lastIndexOf(':');
+			if (idSeparator <= 0 || portSeparator <= idSeparator) {
+				throw new IllegalArgumentException("members must look like id=host:port but got: " + member);
+			}
+			members.add(new ClusterNode(member.substring(0, idSeparator),
+					member.substring(idSeparator + 1, portSeparator),
+					Integer.parseInt(member.substring(portSeparator + 1))));
+		}
+		ClusterNode self = members.stream().filter(member -> member.nodeId().equals(selfNodeId)).findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("node " + selfNodeId + " is not in " + members));
+		if (self.port() != port) {
+			throw new IllegalArgumentException(
+					"port " + port + " does not match the port of node " + selfNodeId + ": " + self.port());
+		}
+		return new ClusterConfig(self, members);
+	}
 }
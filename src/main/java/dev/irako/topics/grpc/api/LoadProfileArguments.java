@@ -0,0 +1,99 @@
+package dev.irako.topics.grpc.api;
+
+import dev.irako.topics.grpc.model.LoadMode;
+import dev.irako.topics.grpc.model.LoadProfile;
+import dev.irako.topics.grpc.model.RpcType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses {@code key=value} command-line options into a {@link LoadProfile}.
+ * Options not given keep the values of {@link LoadProfile#defaults()}.
+ *
+ * <pre>
+ * mode=open rate=500 mix=send:80,upload:15,chat:5 payload=512 warmup=10s duration=60s
+ * </pre>
+ *
+ * Supported keys: {@code mode} (closed|open), {@code concurrency},
+ * {@code rate}, {@code mix} (send, subscribe, upload, chat), {@code payload},
+ * {@code batch}, {@code warmup} and {@code duration} (in seconds, optional
+ * {@code s} suffix).
+ */
+final class LoadProfileArguments {
+
+	private LoadProfileArguments() {
+		// Utility class
+	}
+
+	static LoadProfile parse(List<String> options) {
+		LoadProfile defaults = LoadProfile.defaults();
+		LoadMode mode = defaults.mode();
+		Map<RpcType, Integer> mix = defaults.mix();
+		int concurrency = defaults.concurrency();
+		double rate = defaults.ratePerSecond();
+		int payloadBytes = defaults.payloadBytes();
+		int batchSize = defaults.uploadBatchSize();
+		Duration warmup = defaults.warmup();
+		Duration measurement = defaults.measurement();
+
+		for (String option : options) {
+			int separator = option.indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException("Expected key=value but got: " + option);
+			}
+			String key = option.substring(0, separator);
+			String value = option.substring(separator + 1);
+			switch (key) {
+				case "mode" -> mode = parseMode(value);
+				case "mix" -> mix = parseMix(value);
+				case "concurrency" -> concurrency = Integer.parseInt(value);
+				case "rate" -> rate = Double.parseDouble(value);
+				case "payload" -> payloadBytes = Integer.parseInt(value);
+				case "batch" -> batchSize = Integer.parseInt(value);
+				case "warmup" -> warmup = parseSeconds(value);
+				case "duration" -> measurement = parseSeconds(value);
+				default -> throw new IllegalArgumentException("Unknown load option: " + key);
+			}
+		}
+		return new LoadProfile(mode, mix, concurrency, rate, payloadBytes, batchSize, warmup, measurement);
+	}
+
+	private static LoadMode parseMode(String value) {
+		return switch (value) {
+			case "closed" -> LoadMode.CLOSED_LOOP;
+			case "open" -> LoadMode.OPEN_LOOP;
+			default -> throw new IllegalArgumentException("mode must be 'closed' or 'open' but got: " + value);
+		};
+	}
+
+	private static Map<RpcType, Integer> parseMix(String value) {
+		Map<RpcType, Integer> mix = new EnumMap<>(RpcType.class);
+		for (String entry : value.split(",")) {
+			String[] parts = entry.split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("mix entries must look like send:70 but got: " + entry);
+			}
+			mix.put(parseRpc(parts[0]), Integer.parseInt(parts[1]));
+		}
+		return mix;
+	}
+
+	private static RpcType parseRpc(String name) {
+		return switch (name) {
+			case "send" -> RpcType.SEND_MESSAGE;
+			case "subscribe" -> RpcType.SUBSCRIBE_TO_NOTIFICATIONS;
+			case "upload" -> RpcType.UPLOAD_SENSOR_DATA;
+			case "chat" -> RpcType.CHAT;
+			default -> throw new IllegalArgumentException(
+					"Unknown rpc in mix: " + name + " (expected send, subscribe, upload or chat)");
+		};
+	}
+
+	private static Duration parseSeconds(String value) {
+		String seconds = value.endsWith("s") ? value.substring(0, value.length() - 1) : value;
+		return Duration.ofSeconds(Long.parseLong(seconds));
+	}
+}
@@ -0,0 +1,69 @@
+package dev.irako.topics.grpc.api;
+
+import dev.irako.topics.grpc.data.CompressionPolicy;
+import dev.irako.topics.grpc.data.GrpcClient;
+import dev.irako.topics.grpc.data.GrpcServerFactory;
+import dev.irako.topics.grpc.data.ManagedServer;
+import dev.irako.topics.grpc.model.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures server cold start: starts a server in this JVM, calls
+ * {@code SendMessage} from a client in the same JVM and reports the time from
+ * JVM start to the first response. It then calls every other method once and
+ * stops.
+ *
+ * Usage:
+ *
+ * <pre>
+ * java StartupProbe [port]
+ * </pre>
+ *
+ * The same run is the training workload of the server's AOT cache, so the cache
+ * covers the classes of every method; see the {@code serverAotCache} and
+ * {@code startupBenchmark} Gradle tasks.
+ */
+public final class StartupProbe {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StartupProbe.class);
+	private static final int DEFAULT_PORT = 50091;
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+		ManagedServer server = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(port),
+				CompressionPolicy.defaults(), null);
+		long serverStartedMs = System.currentTimeMillis();
+		long firstResponseMs;
+		try (GrpcClient client = new GrpcClient("localhost", port)) {
+			client.sendMessage(new MessageDto("probe", "First call after start", Instant.now()));
+			firstResponseMs = System.currentTimeMillis();
+
+			exerciseEveryMethod(client);
+		} finally {
+			server.shutdown();
+			server.awaitTermination(5, TimeUnit.SECONDS);
+		}
+
+		// Read only now, so the management classes stay out of the measurement
+		long jvmStartMs = ManagementFactory.getRuntimeMXBean().getStartTime();
+		logger.info("Server ready {} ms after JVM start; first RPC answered after {} ms",
+				serverStartedMs - jvmStartMs, firstResponseMs - jvmStartMs);
+	}
+
+	private static void exerciseEveryMethod(GrpcClient client) throws InterruptedException {
+		Instant now = Instant.now();
+		client.uploadSensorData(List.of(new SensorReadingDto("probe-sensor", 20.0, "celsius", now, "room1"),
+				new SensorReadingDto("probe-sensor", 68.0, "fahrenheit", now, "room1")));
+		client.querySensorAggregates("probe-sensor", now.minus(Duration.ofMinutes(1)), now);
+		client.subscribeToNotifications("probe", List.of("news"));
+		client.publishNotification("news", "Probe", "Startup probe", NotificationPriority.LOW);
+		client.chat(List.of(new ChatMessageDto("probe", "Probe", "Hello", now, ChatMessageType.TEXT)));
+		client.ingestionStats(0);
+	}
+}
@@ -0,0 +1,74 @@
+package dev.irako.topics.grpc.data;
+
+import java.time.Duration;
+
+/**
+ * Deadlines, retries and hedging for the calls of a {@link GrpcClient}.
+ *
+ * <p>
+ * Every call gets a deadline, so a stuck server cannot hold the caller
+ * forever. Idempotent unary calls ({@code SendMessage},
+ * {@code QuerySensorAggregates}) are retried by gRPC with exponential backoff
+ * when the server is UNAVAILABLE.
+ *
+ * @param unaryDeadline
+ *            deadline of each unary call, retries and hedges included
+ * @param streamDeadline
+ *            deadline of the finite streaming calls; live subscriptions have
+ *            none
+ * @param maxAttempts
+ *            attempts per unary call including the first, 1 to 5; 1 disables
+ *            retries
+ * @param initialBackoff
+ *            wait before the first retry, doubled per retry
+ * @param maxBackoff
+ *            longest wait between retries
+ * @param hedging
+ *            hedging for {@code SendMessage}, or null to disable it
+ */
+public record CallPolicy(Duration unaryDeadline, Duration streamDeadline, int maxAttempts, Duration initialBackoff,
+		Duration maxBackoff, HedgingPolicy hedging) {
+
+	/** gRPC refuses more attempts unless the channel raises its own limit. */
+	public static final int MAX_ATTEMPTS_LIMIT = 5;
+
+	public CallPolicy {
+		if (unaryDeadline == null || unaryDeadline.isNegative() || unaryDeadline.isZero()) {
+			throw new IllegalArgumentException("unaryDeadline must be positive");
+		}
+		if (streamDeadline == null || streamDeadline.isNegative() || streamDeadline.isZero()) {
+			throw new IllegalArgumentException("streamDeadline must be positive");
+		}
+		if (maxAttempts < 1 || maxAttempts > MAX_ATTEMPTS_LIMIT) {
+			throw new IllegalArgumentException("maxAttempts must be in [1, " + MAX_ATTEMPTS_LIMIT + "]");
+		}
+		if (initialBackoff == null || initialBackoff.isNegative() || initialBackoff.isZero()) {
+			throw new IllegalArgumentException("initialBackoff must be positive");
+		}
+		if (maxBackoff == null || maxBackoff.compareTo(initialBackoff) < 0) {
+			throw new IllegalArgumentException("maxBackoff cannot be null or below initialBackoff");
+		}
+	}
+
+	/**
+	 * Default calls: 5 s unary and 30 s streaming deadlines, up to 3 attempts
+	 * with 100 ms to 1 s backoff, no hedging.
+	 *
+	 * @return the default policy
+	 */
+	public static CallPolicy defaults() {
+		return new CallPolicy(Duration.ofSeconds(5), Duration.ofSeconds(30), 3, Duration.ofMillis(100),
+				Duration.ofSeconds(1), null);
+	}
+
+	/**
+	 * Copy of this policy with hedging for {@code SendMessage}.
+	 *
+	 * @param hedgingPolicy
+	 *            the hedging policy, or null to disable hedging
+	 * @return the new policy
+	 */
+	public CallPolicy withHedging(HedgingPolicy hedgingPolicy) {
+		return new CallPolicy(unaryDeadline, streamDeadline, maxAttempts, initialBackoff, maxBackoff, hedgingPolicy);
+	}
+}
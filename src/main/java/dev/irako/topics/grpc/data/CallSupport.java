@@ -0,0 +1,54 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.StreamingServiceGrpc;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a {@link CallPolicy} into the gRPC service config that drives the
+ * channel's built-in retries.
+ */
+final class CallSupport {
+
+	/**
+	 * Unary methods that are safe to send twice: a repeated message only gets a
+	 * second ID, and a query has no side effects.
+	 */
+	static final List<String> RETRYABLE_METHODS = List.of(
+			StreamingServiceGrpc.getSendMessageMethod().getBareMethodName(),
+			StreamingServiceGrpc.getQuerySensorAggregatesMethod().getBareMethodName());
+
+	private CallSupport() {
+		// Utility class
+	}
+
+	/**
+	 * Builds the service config for a channel, in the JSON-like shape expected
+	 * by {@code ManagedChannelBuilder.defaultServiceConfig}.
+	 *
+	 * @param policy
+	 *            the call policy
+	 * @return the service config; empty when retries are disabled
+	 */
+	static Map<String, ?> serviceConfig(CallPolicy policy) {
+		if (policy.maxAttempts() == 1) {
+			return Map.of();
+		}
+		List<Map<String, String>> names = RETRYABLE_METHODS.stream()
+				.map(method -> Map.of("service", StreamingServiceGrpc.SERVICE_NAME, "method", method)).toList();
+		Map<String, Object> retryPolicy = Map.of("maxAttempts", (double) policy.maxAttempts(), "initialBackoff",
+				durationString(policy.initialBackoff()), "maxBackoff", durationString(policy.maxBackoff()),
+				"backoffMultiplier", 2.0, "retryableStatusCodes", List.of("UNAVAILABLE"));
+		return Map.of("methodConfig", List.of(Map.of("name", names, "retryPolicy", retryPolicy)));
+	}
+
+	/**
+	 * Formats a duration the way service configs expect, e.g. {@code "0.1s"}.
+	 */
+	static String durationString(Duration duration) {
+		return BigDecimal.valueOf(duration.toNanos(), 9).stripTrailingZeros().toPlainString() + "s";
+	}
+}
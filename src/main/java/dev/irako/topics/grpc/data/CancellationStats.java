@@ -0,0 +1,40 @@
+package dev.irako.topics.grpc.data;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cancelled streams of one server and how long each took to stop working: the
+ * time from the first cancellation signal until the stream's last piece of
+ * work (a notification loop, a chunk of readings, a chat message in the
+ * pipeline) finished or was dropped.
+ */
+final class CancellationStats {
+
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final LongAdder cancelled = new LongAdder();
+	private final Recorder stopLatencies = new Recorder(SIGNIFICANT_DIGITS);
+
+	void recordCancelled() {
+		cancelled.increment();
+	}
+
+	void recordStopped(long latencyNanos) {
+		stopLatencies.recordValue(Math.max(0, latencyNanos));
+	}
+
+	long cancelledCount() {
+		return cancelled.sum();
+	}
+
+	/**
+	 * Stop latencies in nanoseconds of the streams that stopped since the
+	 * previous call.
+	 */
+	Histogram stopLatencyHistogram() {
+		return stopLatencies.getIntervalHistogram();
+	}
+}
@@ -0,0 +1,117 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import io.grpc.Status;
+
+import java.util.ArrayDeque;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Delivers a chat room's messages to one member without letting a slow member
+ * buffer without limit on the server.
+ *
+ * <p>
+ * Messages go to the transport only while it is ready; the rest wait in a
+ * bounded backlog that the stream's on-ready handler drains. Chat has no
+ * conflation, so a member whose backlog overflows is failed with
+ * RESOURCE_EXHAUSTED and can rejoin, with a history replay if it wants one.
+ *
+ * <p>
+ * Lock order is the room, then this sink, then the {@link StreamSink}.
+ */
+final class ChatMemberSink {
+
+	/**
+	 * Messages a member may fall behind by: room for a whole history replay and
+	 * the live messages published behind it.
+	 */
+	static final int DEFAULT_MAX_PENDING = 2 * ChatRoomHub.HISTORY_LIMIT;
+
+	private final StreamSink<ChatMessage> sink;
+	private final BooleanSupplier ready;
+	private final int maxPending;
+	private final Runnable onOverflow;
+
+	private final ArrayDeque<ChatMessage> backlog = new ArrayDeque<>();
+	private boolean completeRequested;
+
+	/**
+	 * @param ready
+	 *            whether the transport accepts another message without
+	 *            buffering it
+	 * @param maxPending
+	 *            the most messages waiting for the transport
+	 * @param onOverflow
+	 *            runs once the member was failed for falling behind; must not
+	 *            take the room lock
+	 */
+	ChatMemberSink(StreamSink<ChatMessage> sink, BooleanSupplier ready, int maxPending, Runnable onOverflow) {
+		if (maxPending <= 0) {
+			throw new IllegalArgumentException("maxPending must be positive");
+		}
+		this.sink = sink;
+		this.ready = ready;
+		this.maxPending = maxPending;
+		this.onOverflow = onOverflow;
+	}
+
+	/**
+	 * Sends a message, or keeps it in the backlog if the stream is not ready or
+	 * older messages are still waiting.
+	 *
+	 * @return false if the stream is closed, or was failed because the backlog
+	 *         overflowed
+	 */
+	boolean send(ChatMessage message) {
+		synchronized (this) {
+			if (sink.isClosed() || completeRequested) {
+				return false;
+			}
+			if (backlog.isEmpty() && ready.getAsBoolean()) {
+				return sink.send(message);
+			}
+			if (backlog.size() < maxPending) {
+				backlog.add(message);
+				return true;
+			}
+			backlog.clear();
+			sink.fail(Status.RESOURCE_EXHAUSTED
+					.withDescription("Fell more than " + maxPending + " chat messages behind; rejoin the room")
+					.asRuntimeException());
+		}
+		onOverflow.run();
+		return false;
+	}
+
+	/**
+	 * Sends waiting messages for as long as the stream stays ready, and
+	 * completes the stream once they are sent if completion was requested.
+	 * Called from the stream's on-ready handler.
+	 */
+	synchronized void drain() {
+		ChatMessage message;
+		while (ready.getAsBoolean() && (message = backlog.poll()) != null) {
+			if (!sink.send(message)) {
+				backlog.clear();
+				return;
+			}
+		}
+		if (completeRequested && backlog.isEmpty()) {
+			sink.complete();
+		}
+	}
+
+	/**
+	 * Completes the stream once the waiting messages are sent.
+	 */
+	synchronized void complete() {
+		completeRequested = true;
+		if (backlog.isEmpty()) {
+			sink.complete();
+		}
+	}
+
+	synchronized int pending() {
+		return backlog.size();
+	}
+}
@@ -0,0 +1,294 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.service.ChatStage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs chat messages through the {@link ChatStage}s and then publishes them to
+ * their room, with the stages working in parallel like an assembly line.
+ *
+ * <p>
+ * Every stage has one worker thread per lane, and bounded queues connect the
+ * lanes of consecutive stages. A room always uses the same lane, so its
+ * messages keep their order, while different rooms are processed in parallel.
+ * When a stage falls behind its input queue fills up and the stage before it
+ * waits. Callers on transport or application threads use {@link #offer}, which
+ * never waits: when the lane is full they hold the message and register with
+ * {@link #whenLaneHasRoom}, so a full lane slows its senders down instead of
+ * blocking the threads every other call needs. {@link #submit} waits instead.
+ *
+ * <p>
+ * The workers of a lane start with the lane's first message, so a server that
+ * never sees chat traffic, or only a few rooms, does not start every thread.
+ */
+final class ChatPipeline implements AutoCloseable {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ChatPipeline.class);
+
+	static final int DEFAULT_QUEUE_CAPACITY = 256;
+	private static final int MAX_DEFAULT_LANES = 8;
+
+	private final ChatRoomHub chatRooms;
+	private final List<ChatStage> stages;
+	private final int lanes;
+	// queues[stage][lane]; the last stage index is the publish step
+	private final List<List<BlockingQueue<Item>>> queues = new ArrayList<>();
+	// Per lane, its workers once started
+	private final AtomicReferenceArray<List<Thread>> workers;
+	// Per lane, callers waiting for room in the lane's first queue
+	private final List<Queue<Runnable>> waiters = new ArrayList<>();
+	private final AtomicLong droppedMessages = new AtomicLong();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a pipeline; its workers start lane by lane as messages arrive.
+	 *
+	 * @param chatRooms
+	 *            the rooms processed messages are published to
+	 * @param stages
+	 *            the processing stages, in order
+	 * @param lanes
+	 *            worker threads per stage
+	 * @param queueCapacity
+	 *            capacity of the queue in front of each stage lane
+	 */
+	ChatPipeline(ChatRoomHub chatRooms, List<ChatStage> stages, int lanes, int queueCapacity) {
+		if (lanes <= 0) {
+			throw new IllegalArgumentException("lanes must be positive");
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive");
+		}
+		this.chatRooms = chatRooms;
+		this.stages = List.copyOf(stages);
+		this.lanes = lanes;
+		for (int step = 0; step <= this.stages.size(); step++) {
+			List<BlockingQueue<Item>> stepQueues = new ArrayList<>(lanes);
+			for (int lane = 0; lane < lanes; lane++) {
+				stepQueues.add(new ArrayBlockingQueue<>(queueCapacity));
+			}
+			queues.add(stepQueues);
+		}
+		for (int lane = 0; lane < lanes; lane++) {
+			waiters.add(new ConcurrentLinkedQueue<>());
+		}
+		this.workers = new AtomicReferenceArray<>(lanes);
+	}
+
+	/**
+	 * Lanes used by default: one per core, at least 2 and at most 8, since every
+	 * lane costs one thread per stage.
+	 */
+	static int defaultLanes() {
+		return Math.clamp(Runtime.getRuntime().availableProcessors(), 2, MAX_DEFAULT_LANES);
+	}
+
+	/**
+	 * Queues a message for processing, waiting while its lane is full.
+	 *
+	 * @param roomId
+	 *            the room to publish to
+	 * @param message
+	 *            the message
+	 * @param onDone
+	 *            runs once the message was published or dropped by a stage; not
+	 *            run if the pipeline closes first
+	 */
+	void submit(String roomId, ChatMessageDto message, Runnable onDone) {
+		submit(roomId, message, onDone, () -> false);
+	}
+
+	/**
+	 * Queues a message for processing, waiting while its lane is full. Once
+	 * its stream is cancelled the message skips the remaining stages and is
+	 * dropped.
+	 *
+	 * @param roomId
+	 *            the room to publish to
+	 * @param message
+	 *            the message
+	 * @param onDone
+	 *            runs once the message was published or dropped; not run if
+	 *            the pipeline closes first
+	 * @param cancelled
+	 *            whether the sender's stream was cancelled
+	 */
+	void submit(String roomId, ChatMessageDto message, Runnable onDone, BooleanSupplier cancelled) {
+		if (closed) {
+			throw new IllegalStateException("ChatPipeline is closed");
+		}
+		int lane = laneOf(roomId);
+		if (workers.get(lane) == null) {
+			startLane(lane);
+		}
+		try {
+			queues.get(0).get(lane).put(new Item(roomId, message, onDone, cancelled));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			droppedMessages.incrementAndGet();
+			onDone.run();
+		}
+	}
+
+	/**
+	 * Queues a message for processing unless its lane is full. Once its stream
+	 * is cancelled the message skips the remaining stages and is dropped.
+	 *
+	 * @param roomId
+	 *            the room to publish to
+	 * @param message
+	 *            the message
+	 * @param onDone
+	 *            runs once the message was published or dropped; not run if
+	 *            the message was not queued or the pipeline closes first
+	 * @param cancelled
+	 *            whether the sender's stream was cancelled
+	 * @return false if the lane is full and the message was not queued
+	 */
+	boolean offer(String roomId, ChatMessageDto message, Runnable onDone, BooleanSupplier cancelled) {
+		if (closed) {
+			throw new IllegalStateException("ChatPipeline is closed");
+		}
+		int lane = laneOf(roomId);
+		if (workers.get(lane) == null) {
+			startLane(lane);
+		}
+		return queues.get(0).get(lane).offer(new Item(roomId, message, onDone, cancelled));
+	}
+
+	/**
+	 * Runs a callback once the lane of a room has room for another message,
+	 * on the lane's first worker thread. Registered after {@link #offer}
+	 * failed; the callback must not block.
+	 *
+	 * @param roomId
+	 *            the room whose lane is full
+	 * @param waiter
+	 *            retries the offer
+	 * @return false if the lane had room again by the time the callback was
+	 *         registered, so the caller should retry at once
+	 */
+	boolean whenLaneHasRoom(String roomId, Runnable waiter) {
+		int lane = laneOf(roomId);
+		waiters.get(lane).add(waiter);
+		// Rechecked after registering, so a slot freed meanwhile is not missed
+		return queues.get(0).get(lane).remainingCapacity() == 0;
+	}
+
+	/**
+	 * Number of messages dropped by a stage, because processing failed or
+	 * because their stream was cancelled.
+	 */
+	long droppedMessages() {
+		return droppedMessages.get();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		for (int lane = 0; lane < lanes; lane++) {
+			// Claims lanes not started yet, so a racing submit cannot start them
+			List<Thread> laneWorkers = workers.getAndSet(lane, List.of());
+			if (laneWorkers != null) {
+				laneWorkers.forEach(Thread::interrupt);
+			}
+			waiters.get(lane).clear();
+		}
+	}
+
+	private void startLane(int lane) {
+		List<Thread> laneWorkers = new ArrayList<>(stages.size() + 1);
+		for (int step = 0; step <= stages.size(); step++) {
+			int workerStep = step;
+			Thread worker = new Thread(() -> work(workerStep, lane), "chat-pipeline-" + step + "-" + lane);
+			worker.setDaemon(true);
+			laneWorkers.add(worker);
+		}
+		// Only the submit that installs the workers starts them
+		if (workers.compareAndSet(lane, null, laneWorkers)) {
+			laneWorkers.forEach(Thread::start);
+		}
+	}
+
+	private int laneOf(String roomId) {
+		return Math.floorMod(roomId.hashCode(), lanes);
+	}
+
+	private void work(int step, int lane) {
+		BlockingQueue<Item> input = queues.get(step).get(lane);
+		BlockingQueue<Item> output = step < stages.size() ? queues.get(step + 1).get(lane) : null;
+		try {
+			while (!closed) {
+				Item item = input.take();
+				if (step == 0) {
+					wakeWaiters(lane, input);
+				}
+				if (item.cancelled().getAsBoolean()) {
+					droppedMessages.incrementAndGet();
+					item.onDone().run();
+					continue;
+				}
+				if (output == null) {
+					publish(item);
+					continue;
+				}
+				Optional<ChatMessageDto> processed = process(stages.get(step), item);
+				if (processed.isPresent()) {
+					output.put(new Item(item.roomId(), processed.get(), item.onDone(), item.cancelled()));
+				} else {
+					droppedMessages.incrementAndGet();
+					item.onDone().run();
+				}
+			}
+		} catch (InterruptedException e) {
+			// Closed
+		}
+	}
+
+	private void wakeWaiters(int lane, BlockingQueue<Item> input) {
+		Queue<Runnable> laneWaiters = waiters.get(lane);
+		Runnable waiter;
+		while (input.remainingCapacity() > 0 && (waiter = laneWaiters.poll()) != null) {
+			try {
+				waiter.run();
+			} catch (RuntimeException e) {
+				logger.warn("Chat pipeline waiter failed in lane {}", lane, e);
+			}
+		}
+	}
+
+	private static Optional<ChatMessageDto> process(ChatStage stage, Item item) {
+		try {
+			return stage.apply(item.message());
+		} catch (RuntimeException e) {
+			logger.warn("Chat stage failed; dropping message for room {}", item.roomId(), e);
+			return Optional.empty();
+		}
+	}
+
+	private void publish(Item item) {
+		try {
+			chatRooms.publish(item.roomId(), item.message());
+		} catch (RuntimeException e) {
+			// Typically the sender left and the room is gone
+			droppedMessages.incrementAndGet();
+			logger.debug("Dropping chat message for room {}", item.roomId(), e);
+		} finally {
+			item.onDone().run();
+		}
+	}
+
+	private record Item(String roomId, ChatMessageDto message, Runnable onDone, BooleanSupplier cancelled) {
+	}
+}
@@ -0,0 +1,180 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.service.ChatHistory;
+import dev.irako.topics.grpc.service.ChatService;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat rooms owned by this node: their members and recent history. Messages
+ * published to a room are processed, appended to its history and broadcast to
+ * every member, in one order per room.
+ *
+ * <p>
+ * A room's history is a {@link ChatHistory} of the messages as sent, so members
+ * joining with a replay stream the same immutable snapshot without locking the
+ * room or copying the history.
+ *
+ * <p>
+ * A room keeps its history after its last member leaves, so a member that
+ * reconnects, or the next one to join, can still ask for a replay. Rooms that
+ * stayed empty for {@link #EMPTY_ROOM_RETENTION} are dropped by
+ * {@link #evictEmpty(long, long)}, so abandoned room IDs do not accumulate.
+ * Beyond {@link #MAX_EMPTY_ROOMS} empty rooms, the one emptied first is
+ * dropped at once, so short-lived rooms cannot fill the heap in between.
+ */
+final class ChatRoomHub {
+
+	static final int HISTORY_LIMIT = 1000;
+
+	/** How long a room without members keeps its history. */
+	static final Duration EMPTY_ROOM_RETENTION = Duration.ofMinutes(15);
+
+	/** Empty rooms whose history is kept at most. */
+	static final int MAX_EMPTY_ROOMS = 1024;
+
+	private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+	// Rooms in the order they were emptied; entries of rooms joined since are skipped
+	private final ArrayDeque<Emptied> emptied = new ArrayDeque<>();
+
+	/**
+	 * Adds a member to a room, creating the room if needed.
+	 */
+	void join(String roomId, ChatMemberSink member) {
+		join(roomId, member, 0);
+	}
+
+	/**
+	 * Adds a member to a room, creating the room if needed, after sending it up
+	 * to {@code replay} of the room's most recent messages. The member receives
+	 * every message of the room from the first replayed one on exactly once and
+	 * in order, unless more than {@link #HISTORY_LIMIT} messages are published
+	 * while the replay is sent.
+	 *
+	 * @param replay
+	 *            the most recent messages to send first, at most
+	 *            {@link #HISTORY_LIMIT}
+	 */
+	void join(String roomId, ChatMemberSink member, int replay) {
+		if (replay < 0) {
+			throw new IllegalArgumentException("replay cannot be negative");
+		}
+		// The bulk of the replay is streamed from a snapshot without the room lock
+		Room replayed = replay > 0 ? rooms.get(roomId) : null;
+		ChatHistory.Snapshot<ChatMessage> snapshot = replayed == null ? null : replayed.history.snapshot();
+		if (snapshot != null) {
+			snapshot.last(replay).forEach(member::send);
+		}
+		rooms.compute(roomId, (id, room) -> {
+			Room joined = room == null ? new Room() : room;
+			// Publishing holds the room lock, so no message falls between catch-up and membership
+			synchronized (joined) {
+				if (joined == replayed) {
+					joined.history.snapshot().since(snapshot.endSequence()).forEach(member::send);
+				} else if (replay > 0) {
+					joined.history.snapshot().last(replay).forEach(member::send);
+				}
+				joined.members.add(member);
+			}
+			return joined;
+		});
+	}
+
+	/**
+	 * Removes a member. The room and its history stay until
+	 * {@link #evictEmpty(long, long)} finds it empty for long enough.
+	 */
+	void leave(String roomId, ChatMemberSink member) {
+		Room room = rooms.get(roomId);
+		if (room == null || !room.members.remove(member)) {
+			return;
+		}
+		room.lastActiveNanos = System.nanoTime();
+		if (room.members.isEmpty()) {
+			evictBeyondLimit(new Emptied(roomId, room));
+		}
+	}
+
+	private void evictBeyondLimit(Emptied room) {
+		Emptied oldest;
+		synchronized (emptied) {
+			emptied.add(room);
+			if (emptied.size() <= MAX_EMPTY_ROOMS) {
+				return;
+			}
+			oldest = emptied.poll();
+		}
+		// Atomic with join, which adds members inside compute
+		rooms.computeIfPresent(oldest.roomId(),
+				(id, current) -> current == oldest.room() && current.members.isEmpty() ? null : current);
+	}
+
+	/**
+	 * Drops the rooms, with their history, that had no member and no message
+	 * for a while. Called periodically by the server's reaper.
+	 *
+	 * @param nowNanos
+	 *            the current {@link System#nanoTime()}
+	 * @param idleNanos
+	 *            how long a room must have been empty
+	 * @return the number of rooms dropped
+	 */
+	int evictEmpty(long nowNanos, long idleNanos) {
+		int[] evicted = { 0 };
+		for (String roomId : rooms.keySet()) {
+			// Atomic with join, which adds members inside compute
+			rooms.computeIfPresent(roomId, (id, room) -> {
+				if (room.members.isEmpty() && nowNanos - room.lastActiveNanos >= idleNanos) {
+					evicted[0]++;
+					return null;
+				}
+				return room;
+			});
+		}
+		return evicted[0];
+	}
+
+	/**
+	 * Processes a message in the context of its room and broadcasts the result
+	 * to all members, including the sender. Members that are closed, or that
+	 * fell too far behind, are removed from the room.
+	 *
+	 * @return the processed message
+	 */
+	ChatMessageDto publish(String roomId, ChatMessageDto message) {
+		Room room = rooms.get(roomId);
+		if (room == null) {
+			throw new IllegalStateException("Room " + roomId + " does not exist; join before publishing");
+		}
+		// Holding the room lock keeps processing, history and delivery in one order
+		synchronized (room) {
+			ChatMessageDto processed = ChatService.processChatMessage(message,
+					room.history.snapshot().map(ProtoConverter::toChatMessageDto));
+			ChatMessage response = ProtoConverter.toProtoChatMessage(processed);
+			room.history.append(response);
+			room.lastActiveNanos = System.nanoTime();
+			// Sending only queues for a member that is not ready, so the lock is held briefly
+			room.members.removeIf(member -> !member.send(response));
+			return processed;
+		}
+	}
+
+	int roomCount() {
+		return rooms.size();
+	}
+
+	private record Emptied(String roomId, Room room) {
+	}
+
+	private static final class Room {
+		private final Set<ChatMemberSink> members = ConcurrentHashMap.newKeySet();
+		// Appended to under the room lock
+		private final ChatHistory<ChatMessage> history = new ChatHistory<>(HISTORY_LIMIT);
+		private volatile long lastActiveNanos = System.nanoTime();
+	}
+}
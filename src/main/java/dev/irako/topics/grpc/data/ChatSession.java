@@ -0,0 +1,290 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An interactive Chat stream: messages can be sent from any thread at any
+ * time while the server's messages are handed to a consumer as they arrive.
+ *
+ * <p>
+ * Sent messages wait in a bounded queue and are written to the stream only
+ * while it is ready, so a slow connection never buffers more than
+ * {@code maxQueued} messages in the client. Received messages are passed to
+ * the consumer on the session's executor, one at a time and in order; the
+ * server is asked for the next message only after the consumer returned, so a
+ * slow consumer holds the server back through HTTP/2 flow control.
+ *
+ * <p>
+ * A message the server echoes back (same room, user and timestamp) is timed
+ * from {@link #send(ChatMessageDto)} to its arrival; see
+ * {@link #roundTripHistogram()}.
+ *
+ * <p>
+ * A session opened with a history on join asks the server, with its first
+ * message, to replay the room's most recent messages before anything else.
+ *
+ * <pre>
+ * try (ChatSession session = client.openChat(message -&gt; show(message), executor)) {
+ * 	session.send(message);
+ * 	session.complete();
+ * 	session.done().join();
+ * }
+ * </pre>
+ */
+public final class ChatSession implements AutoCloseable {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ChatSession.class);
+
+	/** Sent messages queued before {@link #send(ChatMessageDto)} refuses more. */
+	public static final int DEFAULT_MAX_QUEUED = 1024;
+
+	// Received messages buffered ahead of the consumer
+	static final int INBOUND_WINDOW = 32;
+	// Sent messages awaiting their echo; messages the server drops are never removed
+	static final int MAX_TIMED = 4096;
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final Consumer<ChatMessageDto> consumer;
+	private final Executor executor;
+	private final int maxQueued;
+	private final int historyOnJoin;
+
+	private final Queue<ChatMessage> outbound = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	// Guards the call's outbound side, which gRPC does not allow to be used concurrently
+	private final Object sendLock = new Object();
+	private ClientCallStreamObserver<ChatMessage> call;
+	private boolean completeRequested;
+	private boolean halfClosed;
+	// Set by close(); a cancelled call throws if written to
+	private boolean closed;
+	private boolean firstSent;
+
+	// Runs the inbound tasks one at a time, in arrival order
+	private final Queue<Runnable> inbound = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger inboundPending = new AtomicInteger();
+
+	private final Map<EchoKey, Long> sentNanos = new ConcurrentHashMap<>();
+	private final Recorder roundTrips = new Recorder(SIGNIFICANT_DIGITS);
+	private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+	/**
+	 * @param consumer
+	 *            receives each message from the server
+	 * @param executor
+	 *            runs the consumer
+	 * @param maxQueued
+	 *            the most sent messages waiting for the stream to be ready
+	 * @param historyOnJoin
+	 *            the recent room messages the server replays first, or 0
+	 */
+	ChatSession(Consumer<ChatMessageDto> consumer, Executor executor, int maxQueued, int historyOnJoin) {
+		if (consumer == null) {
+			throw new IllegalArgumentException("consumer cannot be null");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("executor cannot be null");
+		}
+		if (maxQueued <= 0) {
+			throw new IllegalArgumentException("maxQueued must be positive");
+		}
+		if (historyOnJoin < 0) {
+			throw new IllegalArgumentException("historyOnJoin cannot be negative");
+		}
+		this.consumer = consumer;
+		this.executor = executor;
+		this.maxQueued = maxQueued;
+		this.historyOnJoin = historyOnJoin;
+	}
+
+	/**
+	 * Creates the observer to start the call with; use it for one call only.
+	 */
+	ClientResponseObserver<ChatMessage, ChatMessage> observer() {
+		return new ClientResponseObserver<>() {
+			@Override
+			public void beforeStart(ClientCallStreamObserver<ChatMessage> requestStream) {
+				synchronized (sendLock) {
+					call = requestStream;
+				}
+				requestStream.disableAutoRequestWithInitial(INBOUND_WINDOW);
+				requestStream.setOnReadyHandler(ChatSession.this::flush);
+			}
+
+			@Override
+			public void onNext(ChatMessage message) {
+				long arrivalNanos = System.nanoTime();
+				ChatMessageDto dto = ProtoConverter.toChatMessageDto(message);
+				Long sent = sentNanos.remove(EchoKey.of(message));
+				if (sent != null) {
+					roundTrips.recordValue(Math.max(0, arrivalNanos - sent));
+				}
+				dispatch(() -> deliver(dto));
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				dispatch(() -> done.completeExceptionally(t));
+			}
+
+			@Override
+			public void onCompleted() {
+				dispatch(() -> done.complete(null));
+			}
+		};
+	}
+
+	/**
+	 * Queues a message and sends it as soon as the stream is ready. Safe to call
+	 * from any thread.
+	 *
+	 * @param message
+	 *            the message to send
+	 * @return false if the session is completing or closed, or
+	 *         {@code maxQueued} messages are already waiting
+	 */
+	public boolean send(ChatMessageDto message) {
+		ChatMessage protoMessage = ProtoConverter.toProtoChatMessage(message);
+		if (queued.incrementAndGet() > maxQueued) {
+			queued.decrementAndGet();
+			return false;
+		}
+		// Timed before it is queued, so the echo cannot arrive first
+		EchoKey key = EchoKey.of(protoMessage);
+		boolean timed = sentNanos.size() < MAX_TIMED && sentNanos.putIfAbsent(key, System.nanoTime()) == null;
+		synchronized (sendLock) {
+			if (completeRequested || closed || done.isDone()) {
+				queued.decrementAndGet();
+				if (timed) {
+					sentNanos.remove(key);
+				}
+				return false;
+			}
+			outbound.add(protoMessage);
+		}
+		flush();
+		return true;
+	}
+
+	/**
+	 * Half-closes the stream once the queued messages are sent; the server
+	 * completes the session after that.
+	 */
+	public void complete() {
+		synchronized (sendLock) {
+			completeRequested = true;
+		}
+		flush();
+	}
+
+	/**
+	 * Completes when the server ended the stream and the consumer received
+	 * every message; completes exceptionally if the stream failed.
+	 *
+	 * @return the completion of the session
+	 */
+	public CompletableFuture<Void> done() {
+		return done;
+	}
+
+	/**
+	 * Number of sent messages still waiting for the stream to be ready.
+	 *
+	 * @return the queued message count
+	 */
+	public int queuedMessages() {
+		return queued.get();
+	}
+
+	/**
+	 * Round-trip latencies in nanoseconds of the echoed messages received since
+	 * the previous call.
+	 *
+	 * @return the interval histogram
+	 */
+	public Histogram roundTripHistogram() {
+		return roundTrips.getIntervalHistogram();
+	}
+
+	/**
+	 * Cancels the stream unless it already ended. Messages still queued are
+	 * dropped, and later sends are refused.
+	 */
+	@Override
+	public void close() {
+		synchronized (sendLock) {
+			closed = true;
+			if (call != null && !done.isDone()) {
+				call.cancel("Chat session closed", null);
+			}
+			outbound.clear();
+			queued.set(0);
+		}
+		sentNanos.clear();
+	}
+
+	private void flush() {
+		synchronized (sendLock) {
+			if (call == null || halfClosed || closed) {
+				return;
+			}
+			ChatMessage message;
+			while (call.isReady() && (message = outbound.poll()) != null) {
+				if (!firstSent) {
+					firstSent = true;
+					if (historyOnJoin > 0) {
+						message = message.toBuilder().setHistoryOnJoin(historyOnJoin).build();
+					}
+				}
+				call.onNext(message);
+				queued.decrementAndGet();
+			}
+			if (completeRequested && outbound.isEmpty()) {
+				halfClosed = true;
+				call.onCompleted();
+			}
+		}
+	}
+
+	private void deliver(ChatMessageDto message) {
+		try {
+			consumer.accept(message);
+		} catch (RuntimeException e) {
+			logger.warn("Chat consumer failed", e);
+		}
+		call.request(1);
+	}
+
+	private void dispatch(Runnable task) {
+		inbound.add(task);
+		if (inboundPending.getAndIncrement() == 0) {
+			executor.execute(this::runInbound);
+		}
+	}
+
+	private void runInbound() {
+		do {
+			inbound.poll().run();
+		} while (inboundPending.decrementAndGet() > 0);
+	}
+
+	private record EchoKey(String roomId, String userId, long timestampMs) {
+		static EchoKey of(ChatMessage message) {
+			return new EchoKey(message.getRoomId(), message.getUserId(), message.getTimestamp());
+		}
+	}
+}
@@ -0,0 +1,366 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ClusterNode;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inbound side of one Chat stream. The first message decides the stream's room:
+ * if this node owns the room the stream joins it locally, otherwise the whole
+ * stream is relayed to the owning node. A first message with a history on join
+ * has the stream receive up to that many of the room's recent messages before
+ * any other, streamed from the room's shared history snapshot.
+ *
+ * <p>
+ * Local messages go through the {@link ChatPipeline}. Inbound flow control is
+ * manual: the stream may have {@value #MESSAGES_IN_FLIGHT} messages in the
+ * pipeline, and each processed message requests the next one, so a busy
+ * pipeline slows the sender down through HTTP/2 flow control. Messages are
+ * offered to the pipeline without waiting: while the room's lane is full they
+ * are held here, and the credit of messages processed meanwhile is granted
+ * only once the lane took every held message. So the inbound callback never
+ * blocks, however many streams share a lane. When the client half-closes, the
+ * stream completes once its last message was published.
+ *
+ * <p>
+ * Room messages reach the client through a {@link ChatMemberSink}, so a client
+ * that reads slowly has a bounded backlog on the server. A relayed stream
+ * requests the next message from its client only while the stream to the owner
+ * is ready, so the relay buffers nothing either.
+ *
+ * <p>
+ * A draining server closes the stream from another thread; chat has no replay,
+ * so the client simply rejoins the room elsewhere. A stream that neither sent
+ * nor received a message for the stream idle timeout is closed the same way.
+ *
+ * <p>
+ * When the client cancels, the stream leaves its room at once and its messages
+ * still in the pipeline are dropped before the next stage.
+ */
+final class ChatStreamObserver implements StreamObserver<ChatMessage>, StreamRegistry.DrainableStream {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ChatStreamObserver.class);
+
+	static final int MESSAGES_IN_FLIGHT = 16;
+
+	private final ServerCallStreamObserver<ChatMessage> call;
+	private final StreamSink<ChatMessage> sink;
+	private final ChatMemberSink member;
+	private final ClusterRouter router;
+	private final ChatRoomHub chatRooms;
+	private final ChatPipeline chatPipeline;
+	private final StreamRegistry streams;
+	private final IngestionStats ingestionStats;
+	private final StreamCancellation cancellation;
+
+	// Set by the first message; inbound callbacks are serialized, and a drain or
+	// cancellation on another thread only reads them
+	private volatile String roomId;
+	private StreamObserver<ChatMessage> upstream;
+	// Credit for messages forwarded while the stream to the owner was not ready
+	private final AtomicInteger relayCredit = new AtomicInteger();
+	private volatile ClientCallStreamObserver<ChatMessage> relayCall;
+	private volatile Context.CancellableContext relayContext;
+	private volatile Runnable unregister = () -> {
+	};
+	private volatile boolean failed;
+	private volatile boolean drained;
+	private volatile long lastReceivedNanos = System.nanoTime();
+
+	// Messages of this stream in the pipeline, shared with pipeline threads
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicBoolean finished = new AtomicBoolean();
+	private volatile boolean halfClosed;
+	// Messages the pipeline had no room for yet, and credit withheld meanwhile;
+	// guarded by held
+	private final ArrayDeque<ChatMessageDto> held = new ArrayDeque<>();
+	private int withheldCredit;
+
+	/**
+	 * Creates the observer and requests the first messages. The caller must
+	 * have disabled automatic inbound flow control.
+	 *
+	 * @param ingestionStats
+	 *            counts the senders of messages processed on this node
+	 * @param cancellation
+	 *            the call's cancellation
+	 */
+	ChatStreamObserver(ServerCallStreamObserver<ChatMessage> call, ClusterRouter router, ChatRoomHub chatRooms,
+			ChatPipeline chatPipeline, StreamRegistry streams, IngestionStats ingestionStats,
+			StreamCancellation cancellation) {
+		this.call = call;
+		this.sink = new StreamSink<>(call);
+		this.member = new ChatMemberSink(sink, call::isReady, ChatMemberSink.DEFAULT_MAX_PENDING, this::overflowed);
+		this.router = router;
+		this.chatRooms = chatRooms;
+		this.chatPipeline = chatPipeline;
+		this.streams = streams;
+		this.ingestionStats = ingestionStats;
+		this.cancellation = cancellation;
+		cancellation.onCancel(this::cancel);
+		call.setOnReadyHandler(member::drain);
+		call.request(MESSAGES_IN_FLIGHT);
+	}
+
+	@Override
+	public void onNext(ChatMessage message) {
+		if (failed || drained || cancellation.isCancelled()) {
+			return;
+		}
+		lastReceivedNanos = System.nanoTime();
+		try {
+			logger.debug("Received chat message from: {}", message.getUsername());
+			ChatMessageDto messageDto = ProtoConverter.toChatMessageDto(message);
+			if (roomId == null) {
+				if (message.getHistoryOnJoin() < 0) {
+					failStream(Status.INVALID_ARGUMENT.withDescription("history_on_join cannot be negative")
+							.asRuntimeException());
+					return;
+				}
+				roomId = messageDto.roomId();
+				route(Math.min(message.getHistoryOnJoin(), ChatRoomHub.HISTORY_LIMIT));
+			} else if (!roomId.equals(messageDto.roomId())) {
+				failStream(Status.INVALID_ARGUMENT.withDescription(
+						"A chat stream stays in room " + roomId + "; open a new stream for " + messageDto.roomId())
+						.asRuntimeException());
+				return;
+			}
+
+			if (upstream != null) {
+				upstream.onNext(message);
+				// Counted first, so an on-ready handler running meanwhile grants it
+				relayCredit.incrementAndGet();
+				if (relayCall.isReady()) {
+					grantRelayCredit();
+				}
+				return;
+			}
+			ingestionStats.recordChatSender(messageDto.userId());
+			inFlight.incrementAndGet();
+			cancellation.workStarted();
+			synchronized (held) {
+				held.add(messageDto);
+			}
+			offerHeld();
+		} catch (Exception e) {
+			logger.error("Error processing chat message", e);
+			failStream(e);
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		logger.error("Error in chat stream", t);
+		unregister.run();
+		if (upstream != null) {
+			upstream.onError(t);
+		} else if (roomId != null) {
+			chatRooms.leave(roomId, member);
+		}
+		sink.fail(t);
+	}
+
+	@Override
+	public void onCompleted() {
+		logger.info("Chat stream completed");
+		unregister.run();
+		if (drained) {
+			return;
+		}
+		if (upstream != null) {
+			// The owner completes its side, which completes ours through the relay
+			upstream.onCompleted();
+			return;
+		}
+		halfClosed = true;
+		if (inFlight.get() == 0) {
+			finishLocal();
+		}
+	}
+
+	/**
+	 * Runs on a pipeline thread once one of this stream's messages was published
+	 * or dropped.
+	 */
+	private void messageDone() {
+		if (inFlight.decrementAndGet() == 0 && halfClosed) {
+			finishLocal();
+		} else if (acceptsMore()) {
+			grantCredit(1);
+		}
+		cancellation.workFinished();
+	}
+
+	/**
+	 * Offers the held messages to the pipeline in order, until the lane is full;
+	 * then runs again once the lane has room. Grants the withheld credit once
+	 * nothing is held.
+	 */
+	private void offerHeld() {
+		int dropped = 0;
+		int credit;
+		synchronized (held) {
+			if (cancellation.isCancelled()) {
+				dropped = held.size();
+				held.clear();
+			}
+			ChatMessageDto next;
+			while ((next = held.peek()) != null) {
+				if (chatPipeline.offer(roomId, next, this::messageDone, cancellation::isCancelled)) {
+					held.poll();
+				} else if (chatPipeline.whenLaneHasRoom(roomId, this::offerHeld)) {
+					return;
+				}
+			}
+			credit = withheldCredit;
+			withheldCredit = 0;
+		}
+		for (int index = 0; index < dropped; index++) {
+			messageDone();
+		}
+		if (credit > 0 && acceptsMore()) {
+			call.request(credit);
+		}
+	}
+
+	private void grantCredit(int credit) {
+		synchronized (held) {
+			if (!held.isEmpty()) {
+				withheldCredit += credit;
+				return;
+			}
+		}
+		call.request(credit);
+	}
+
+	private boolean acceptsMore() {
+		return !halfClosed && !failed && !drained && !cancellation.isCancelled();
+	}
+
+	private void finishLocal() {
+		if (!finished.compareAndSet(false, true) || failed || drained || cancellation.isCancelled()) {
+			return;
+		}
+		if (roomId != null) {
+			chatRooms.leave(roomId, member);
+		}
+		member.complete();
+	}
+
+	private void route(int historyOnJoin) {
+		ClusterNode owner = router.ownerOfRoom(roomId);
+		if (router.servesLocally(owner)) {
+			chatRooms.join(roomId, member, historyOnJoin);
+			unregister = streams.register(this);
+			return;
+		}
+		logger.debug("Relaying chat room {} to owner {}", roomId, owner.nodeId());
+		// Lets a drain cancel the relay from another thread
+		relayContext = Context.current().withCancellation();
+		Context previous = relayContext.attach();
+		try {
+			upstream = openRelay(owner);
+		} finally {
+			relayContext.detach(previous);
+		}
+		unregister = streams.register(this);
+	}
+
+	private StreamObserver<ChatMessage> openRelay(ClusterNode owner) {
+		return router.asyncStub(owner).chat(new ClientResponseObserver<ChatMessage, ChatMessage>() {
+			@Override
+			public void beforeStart(ClientCallStreamObserver<ChatMessage> requestStream) {
+				relayCall = requestStream;
+				requestStream.setOnReadyHandler(ChatStreamObserver.this::grantRelayCredit);
+			}
+
+			@Override
+			public void onNext(ChatMessage response) {
+				if (!member.send(response)) {
+					relayContext.cancel(null);
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				sink.fail(t);
+			}
+
+			@Override
+			public void onCompleted() {
+				member.complete();
+			}
+		});
+	}
+
+	private void grantRelayCredit() {
+		int credit = relayCredit.getAndSet(0);
+		if (credit > 0 && acceptsMore()) {
+			call.request(credit);
+		}
+	}
+
+	/**
+	 * Runs once the member was failed for falling behind; the room already
+	 * dropped it, or drops it with its next message.
+	 */
+	private void overflowed() {
+		failed = true;
+		unregister.run();
+		logger.warn("Chat member of room {} fell behind and was disconnected", roomId);
+	}
+
+	@Override
+	public long lastActiveNanos() {
+		return Math.max(lastReceivedNanos, sink.lastSentNanos());
+	}
+
+	@Override
+	public void drain(String reason) {
+		drained = true;
+		if (relayContext == null) {
+			chatRooms.leave(roomId, member);
+		}
+		sink.fail(DrainSupport.drainingError(-1, reason));
+		if (relayContext != null) {
+			relayContext.cancel(null);
+		}
+	}
+
+	/**
+	 * Runs on the thread that saw the cancellation first. A relay is cancelled
+	 * with the call's context, of which its context is a child.
+	 */
+	private void cancel() {
+		unregister.run();
+		sink.markClosed();
+		String joinedRoom = roomId;
+		if (relayContext == null && joinedRoom != null) {
+			chatRooms.leave(joinedRoom, member);
+			offerHeld();
+		}
+		logger.info("Chat stream cancelled in room {}", joinedRoom);
+	}
+
+	private void failStream(Throwable error) {
+		failed = true;
+		unregister.run();
+		if (upstream != null) {
+			upstream.onError(error);
+			upstream = null;
+		} else if (roomId != null) {
+			chatRooms.leave(roomId, member);
+		}
+		sink.fail(error);
+	}
+}
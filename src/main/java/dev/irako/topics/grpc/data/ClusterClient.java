@@ -0,0 +1,116 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ClusterNode;
+import dev.irako.topics.grpc.model.MessageDto;
+import dev.irako.topics.grpc.model.MessageResponseDto;
+import dev.irako.topics.grpc.model.NotificationPriority;
+import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorReadingDto;
+import dev.irako.topics.grpc.service.ClusterRoutingService;
+import dev.irako.topics.grpc.service.ConsistentHashRing;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster-aware client: sends room and topic traffic straight to the owning
+ * node, so servers rarely have to relay, and spreads stateless calls round
+ * robin. It uses the same ring as the servers, so both sides agree on owners.
+ *
+ * <pre>
+ * try (ClusterClient client = new ClusterClient(List.of(nodeA, nodeB, nodeC))) {
+ * 	client.chat(messages);
+ * }
+ * </pre>
+ */
+public final class ClusterClient implements AutoCloseable {
+
+	private final ConsistentHashRing ring;
+	private final Map<String, GrpcClient> clientsByNodeId = new LinkedHashMap<>();
+	private final List<GrpcClient> clients;
+	private final AtomicInteger nextClient = new AtomicInteger();
+
+	/**
+	 * Creates a client connected to every cluster member.
+	 *
+	 * @param members
+	 *            the cluster members
+	 */
+	public ClusterClient(List<ClusterNode> members) {
+		this.ring = new ConsistentHashRing(members, ClusterRouter.VIRTUAL_NODES_PER_NODE);
+		for (ClusterNode member : members) {
+			clientsByNodeId.put(member.nodeId(), new GrpcClient(member.host(), member.port()));
+		}
+		this.clients = List.copyOf(clientsByNodeId.values());
+	}
+
+	/**
+	 * Sends a message to any node.
+	 *
+	 * @see GrpcClient#sendMessage(MessageDto)
+	 */
+	public MessageResponseDto sendMessage(MessageDto message) {
+		return anyClient().sendMessage(message);
+	}
+
+	/**
+	 * Uploads readings to any node.
+	 *
+	 * @see GrpcClient#uploadSensorData(List)
+	 */
+	public SensorAggregateDto uploadSensorData(List<SensorReadingDto> readings) throws InterruptedException {
+		return anyClient().uploadSensorData(readings);
+	}
+
+	/**
+	 * Chats in the room of the first message, on the node that owns the room.
+	 *
+	 * @see GrpcClient#chat(List)
+	 */
+	public List<ChatMessageDto> chat(List<ChatMessageDto> messages) throws InterruptedException {
+		if (messages == null || messages.isEmpty()) {
+			throw new IllegalArgumentException("messages cannot be null or empty");
+		}
+		String roomKey = ClusterRoutingService.roomKey(messages.get(0).roomId());
+		return clientFor(ring.ownerOf(roomKey)).chat(messages);
+	}
+
+	/**
+	 * Publishes on the node that owns the topic.
+	 *
+	 * @see GrpcClient#publishNotification(String, String, String,
+	 *      NotificationPriority)
+	 */
+	public int publishNotification(String topic, String title, String content, NotificationPriority priority) {
+		String topicKey = ClusterRoutingService.topicKey(topic);
+		return clientFor(ring.ownerOf(topicKey)).publishNotification(topic, title, content, priority);
+	}
+
+	/**
+	 * Queries sensor statistics through any node, which merges the buckets of
+	 * all nodes.
+	 *
+	 * @see GrpcClient#querySensorAggregates(String, Instant, Instant)
+	 */
+	public Optional<SensorAggregateDto> querySensorAggregates(String sensorId, Instant from, Instant to) {
+		return anyClient().querySensorAggregates(sensorId, from, to);
+	}
+
+	private GrpcClient anyClient() {
+		return clients.get(Math.floorMod(nextClient.getAndIncrement(), clients.size()));
+	}
+
+	private GrpcClient clientFor(ClusterNode node) {
+		return clientsByNodeId.get(node.nodeId());
+	}
+
+	@Override
+	public void close() {
+		clients.forEach(GrpcClient::close);
+	}
+}
@@ -0,0 +1,194 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.model.ClusterNode;
+import dev.irako.topics.grpc.model.StreamingServiceGrpc;
+import dev.irako.topics.grpc.service.ClusterRoutingService;
+import dev.irako.topics.grpc.service.ConsistentHashRing;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Grpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.MetadataUtils;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which node owns a room or topic and provides stubs to reach the
+ * other nodes.
+ *
+ * <p>
+ * Calls one node makes to another carry an {@code x-forwarded-by} header. A
+ * node always serves a forwarded call itself, so a message never bounces
+ * between nodes even while their membership views disagree. The header is
+ * honoured only if it names another member and the call comes from that
+ * member's address, so a client cannot make a node serve a room or topic it
+ * does not own.
+ */
+final class ClusterRouter {
+
+	static final int VIRTUAL_NODES_PER_NODE = 128;
+
+	private static final Metadata.Key<String> FORWARDED_BY_HEADER = Metadata.Key.of("x-forwarded-by",
+			Metadata.ASCII_STRING_MARSHALLER);
+	private static final Context.Key<String> FORWARDED_BY = Context.key("forwarded-by");
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ClusterRouter.class);
+
+	private final ClusterConfig config;
+	private final ConsistentHashRing ring;
+	private final ConcurrentHashMap<String, ManagedChannel> peerChannels = new ConcurrentHashMap<>();
+	// Resolved once per peer, not per forwarded call
+	private final ConcurrentHashMap<String, Set<InetAddress>> peerAddresses = new ConcurrentHashMap<>();
+
+	ClusterRouter(ClusterConfig config) {
+		this.config = config;
+		this.ring = new ConsistentHashRing(config.members(), VIRTUAL_NODES_PER_NODE);
+	}
+
+	ClusterNode self() {
+		return config.self();
+	}
+
+	/**
+	 * All members except this node.
+	 */
+	List<ClusterNode> peers() {
+		return config.members().stream().filter(member -> !member.equals(config.self())).toList();
+	}
+
+	ConsistentHashRing ring() {
+		return ring;
+	}
+
+	ClusterNode ownerOfRoom(String roomId) {
+		return ring.ownerOf(ClusterRoutingService.roomKey(roomId));
+	}
+
+	ClusterNode ownerOfTopic(String topic) {
+		return ring.ownerOf(ClusterRoutingService.topicKey(topic));
+	}
+
+	/**
+	 * Checks whether the current call must be served by this node: either this
+	 * node owns the key, or another node already forwarded the call here.
+	 */
+	boolean servesLocally(ClusterNode owner) {
+		return owner.equals(config.self()) || isForwardedCall();
+	}
+
+	static boolean isForwardedCall() {
+		return FORWARDED_BY.get() != null;
+	}
+
+	StreamingServiceGrpc.StreamingServiceStub asyncStub(ClusterNode peer) {
+		return StreamingServiceGrpc.newStub(channelTo(peer));
+	}
+
+	StreamingServiceGrpc.StreamingServiceBlockingStub blockingStub(ClusterNode peer) {
+		return StreamingServiceGrpc.newBlockingStub(channelTo(peer));
+	}
+
+	StreamingServiceGrpc.StreamingServiceFutureStub futureStub(ClusterNode peer) {
+		return StreamingServiceGrpc.newFutureStub(channelTo(peer));
+	}
+
+	/**
+	 * Exposes the {@code x-forwarded-by} header of calls from other members to
+	 * handlers through the call {@link Context}; the header of any other caller
+	 * is ignored.
+	 */
+	ServerInterceptor forwardedCallInterceptor() {
+		return new ServerInterceptor() {
+			@Override
+			public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+					Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+				String forwardedBy = headers.get(FORWARDED_BY_HEADER);
+				if (forwardedBy == null) {
+					return next.startCall(call, headers);
+				}
+				if (!isPeerAddress(forwardedBy, call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR))) {
+					logger.debug("Ignoring x-forwarded-by={} from {}, which is not that member", forwardedBy,
+							call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+					return next.startCall(call, headers);
+				}
+				return Contexts.interceptCall(Context.current().withValue(FORWARDED_BY, forwardedBy), call, headers,
+						next);
+			}
+		};
+	}
+
+	/**
+	 * Checks that a call claiming to be forwarded by a member comes from that
+	 * member. Calls over an in-process transport come from this process and
+	 * are trusted.
+	 *
+	 * @param nodeId
+	 *            the node named by the {@code x-forwarded-by} header
+	 * @param remoteAddress
+	 *            the caller's address, or null if the transport does not know it
+	 * @return true if the header can be honoured
+	 */
+	boolean isPeerAddress(String nodeId, SocketAddress remoteAddress) {
+		ClusterNode peer = peers().stream().filter(member -> member.nodeId().equals(nodeId)).findFirst()
+				.orElse(null);
+		if (peer == null || remoteAddress == null) {
+			return false;
+		}
+		if (!(remoteAddress instanceof InetSocketAddress inetAddress)) {
+			return true;
+		}
+		Set<InetAddress> addresses = peerAddresses.computeIfAbsent(peer.nodeId(), ignored -> resolve(peer.host()));
+		return addresses != null && addresses.contains(inetAddress.getAddress());
+	}
+
+	/**
+	 * Resolves a member's host, or returns null so the next call tries again.
+	 */
+	private static Set<InetAddress> resolve(String host) {
+		try {
+			return Set.copyOf(Arrays.asList(InetAddress.getAllByName(host)));
+		} catch (UnknownHostException e) {
+			logger.warn("Cannot resolve cluster member {}", host, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stops accepting new peer calls; calls already relayed keep running.
+	 */
+	void shutdown() {
+		peerChannels.values().forEach(ManagedChannel::shutdown);
+	}
+
+	void shutdownNow() {
+		peerChannels.values().forEach(ManagedChannel::shutdownNow);
+	}
+
+	private ManagedChannel channelTo(ClusterNode peer) {
+		return peerChannels.computeIfAbsent(peer.nodeId(), nodeId -> createChannel(peer));
+	}
+
+	private ManagedChannel createChannel(ClusterNode peer) {
+		Metadata headers = new Metadata();
+		headers.put(FORWARDED_BY_HEADER, config.self().nodeId());
+		return ManagedChannelBuilder.forAddress(peer.host(), peer.port()).usePlaintext()
+				.compressorRegistry(CompressionSupport.compressorRegistry())
+				.decompressorRegistry(CompressionSupport.decompressorRegistry())
+				.intercept(CompressionSupport.clientInterceptor(CompressionPolicy.defaults()),
+						MetadataUtils.newAttachHeadersInterceptor(headers))
+				.build();
+	}
+}
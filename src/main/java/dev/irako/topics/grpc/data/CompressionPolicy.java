@@ -0,0 +1,106 @@
+package dev.irako.topics.grpc.data;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-method message compression policy shared by the server and the client.
+ *
+ * <p>
+ * Each rule names the encoding to negotiate for one RPC (keyed by its bare
+ * method name, e.g. {@code "Chat"}) and the minimum serialized size a message
+ * must reach before it is compressed. Tiny messages are sent uncompressed
+ * because the codec header and CPU cost outweigh the bytes saved.
+ *
+ * <pre>
+ * CompressionPolicy policy = new CompressionPolicy(
+ * 		Map.of("Chat", new CompressionPolicy.Rule(CompressionPolicy.DEFLATE, 256)));
+ * </pre>
+ */
+public record CompressionPolicy(Map<String, Rule> rulesByMethod) {
+
+	/** Standard gzip encoding, best ratio. */
+	public static final String GZIP = "gzip";
+
+	/** Zlib deflate at the fastest level, lower CPU cost per message. */
+	public static final String DEFLATE = DeflateCodec.ENCODING;
+
+	/**
+	 * Compression rule for a single RPC method.
+	 *
+	 * @param encoding
+	 *            the message encoding to negotiate ({@link #GZIP} or
+	 *            {@link #DEFLATE})
+	 * @param minMessageBytes
+	 *            messages smaller than this are sent uncompressed
+	 */
+	public record Rule(String encoding, int minMessageBytes) {
+		public Rule {
+			if (encoding == null || encoding.isBlank()) {
+				throw new IllegalArgumentException("encoding cannot be null or blank");
+			}
+			if (!GZIP.equals(encoding) && !DEFLATE.equals(encoding)) {
+				throw new IllegalArgumentException(
+						"Unsupported encoding: " + encoding + " (expected " + GZIP + " or " + DEFLATE + ")");
+			}
+			if (minMessageBytes < 0) {
+				throw new IllegalArgumentException("minMessageBytes cannot be negative");
+			}
+		}
+
+		/**
+		 * Checks whether a message of the given serialized size should be
+		 * compressed.
+		 *
+		 * @param serializedSize
+		 *            the serialized message size in bytes
+		 * @return true if the message reaches the size threshold
+		 */
+		public boolean shouldCompress(int serializedSize) {
+			return serializedSize >= minMessageBytes;
+		}
+	}
+
+	public CompressionPolicy {
+		if (rulesByMethod == null) {
+			throw new IllegalArgumentException("rulesByMethod cannot be null");
+		}
+		rulesByMethod = Map.copyOf(rulesByMethod);
+	}
+
+	/**
+	 * Policy that never compresses.
+	 *
+	 * @return an empty policy
+	 */
+	public static CompressionPolicy disabled() {
+		return new CompressionPolicy(Map.of());
+	}
+
+	/**
+	 * Default policy: gzip for large unary messages, fast deflate for the
+	 * streaming RPCs whose payloads repeat the same text and field names.
+	 * {@code UploadSensorData} has no rule: each message is one reading of
+	 * about 50 bytes, and messages are compressed one by one.
+	 *
+	 * @return the default policy
+	 */
+	public static CompressionPolicy defaults() {
+		return new CompressionPolicy(Map.of("SendMessage", new Rule(GZIP, 1024), "SubscribeToNotifications",
+				new Rule(DEFLATE, 128), "Chat", new Rule(DEFLATE, 128)));
+	}
+
+	/**
+	 * Looks up the rule for an RPC method.
+	 *
+	 * @param bareMethodName
+	 *            the method name without the service prefix, may be null
+	 * @return the rule, or empty if the method is sent uncompressed
+	 */
+	public Optional<Rule> ruleFor(String bareMethodName) {
+		if (bareMethodName == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(rulesByMethod.get(bareMethodName));
+	}
+}
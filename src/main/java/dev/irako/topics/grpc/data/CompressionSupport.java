@@ -0,0 +1,120 @@
+package dev.irako.topics.grpc.data;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import java.util.Optional;
+
+/**
+ * Wires {@link CompressionPolicy} into gRPC: codec registries that know about
+ * the fast {@link DeflateCodec}, and interceptors that pick the encoding per
+ * method and skip compression for messages below the size threshold.
+ *
+ * <p>
+ * The encoding is only a preference: the server falls back to identity when
+ * the client does not advertise the codec in {@code grpc-accept-encoding}.
+ */
+final class CompressionSupport {
+
+	private CompressionSupport() {
+		// Utility class
+	}
+
+	static CompressorRegistry compressorRegistry() {
+		CompressorRegistry registry = CompressorRegistry.newEmptyInstance();
+		registry.register(Codec.Identity.NONE);
+		registry.register(new Codec.Gzip());
+		registry.register(new DeflateCodec());
+		return registry;
+	}
+
+	static DecompressorRegistry decompressorRegistry() {
+		return DecompressorRegistry.getDefaultInstance().with(new DeflateCodec(), true);
+	}
+
+	static ServerInterceptor serverInterceptor(CompressionPolicy policy) {
+		return new ServerInterceptor() {
+			@Override
+			public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+					Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+				Optional<CompressionPolicy.Rule> rule = policy.ruleFor(call.getMethodDescriptor().getBareMethodName());
+				if (rule.isEmpty()) {
+					return next.startCall(call, headers);
+				}
+				call.setCompression(rule.get().encoding());
+				return next.startCall(new ThresholdServerCall<>(call, rule.get()), headers);
+			}
+		};
+	}
+
+	static ClientInterceptor clientInterceptor(CompressionPolicy policy) {
+		return new ClientInterceptor() {
+			@Override
+			public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+					CallOptions callOptions, Channel next) {
+				Optional<CompressionPolicy.Rule> rule = policy.ruleFor(method.getBareMethodName());
+				if (rule.isEmpty()) {
+					return next.newCall(method, callOptions);
+				}
+				ClientCall<ReqT, RespT> call = next.newCall(method,
+						callOptions.withCompression(rule.get().encoding()));
+				return new ThresholdClientCall<>(call, rule.get());
+			}
+		};
+	}
+
+	private static boolean shouldCompress(Object message, CompressionPolicy.Rule rule) {
+		// Generated messages memoize their size, so this costs nothing extra
+		if (message instanceof MessageLite protoMessage) {
+			return rule.shouldCompress(protoMessage.getSerializedSize());
+		}
+		return true;
+	}
+
+	private static final class ThresholdServerCall<ReqT, RespT>
+			extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+
+		private final CompressionPolicy.Rule rule;
+
+		ThresholdServerCall(ServerCall<ReqT, RespT> delegate, CompressionPolicy.Rule rule) {
+			super(delegate);
+			this.rule = rule;
+		}
+
+		@Override
+		public void sendMessage(RespT message) {
+			delegate().setMessageCompression(shouldCompress(message, rule));
+			super.sendMessage(message);
+		}
+	}
+
+	private static final class ThresholdClientCall<ReqT, RespT>
+			extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+		private final CompressionPolicy.Rule rule;
+
+		ThresholdClientCall(ClientCall<ReqT, RespT> delegate, CompressionPolicy.Rule rule) {
+			super(delegate);
+			this.rule = rule;
+		}
+
+		@Override
+		public void sendMessage(ReqT message) {
+			delegate().setMessageCompression(shouldCompress(message, rule));
+			super.sendMessage(message);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * gRPC "deflate" codec tuned for speed. Uses zlib at
+ * {@link Deflater#BEST_SPEED}, which costs a fraction of gzip's default level
+ * on short chat and notification payloads while keeping most of the savings.
+ */
+final class DeflateCodec implements Codec {
+
+	static final String ENCODING = "deflate";
+
+	@Override
+	public String getMessageEncoding() {
+		return ENCODING;
+	}
+
+	@Override
+	public OutputStream compress(OutputStream os) throws IOException {
+		return new DeflaterOutputStream(os, new Deflater(Deflater.BEST_SPEED)) {
+			@Override
+			public void close() throws IOException {
+				// A custom Deflater is not released by DeflaterOutputStream itself
+				try {
+					super.close();
+				} finally {
+					def.end();
+				}
+			}
+		};
+	}
+
+	@Override
+	public InputStream decompress(InputStream is) throws IOException {
+		return new InflaterInputStream(is);
+	}
+}
@@ -0,0 +1,41 @@
+package dev.irako.topics.grpc.data;
+
+import java.time.Duration;
+
+/**
+ * How a server drains before it stops. New calls are refused at once, then the
+ * open streams are closed in {@code batchCount} batches spread over
+ * {@code window}, so their clients reconnect gradually rather than all at once.
+ *
+ * @param window
+ *            time between closing the first and the last batch
+ * @param batchCount
+ *            number of batches the open streams are split into
+ * @param terminationGrace
+ *            how long in-flight calls may still run after the last batch
+ *            before the server is stopped forcefully
+ */
+public record DrainPolicy(Duration window, int batchCount, Duration terminationGrace) {
+
+	public DrainPolicy {
+		if (window == null || window.isNegative()) {
+			throw new IllegalArgumentException("window cannot be null or negative");
+		}
+		if (batchCount <= 0) {
+			throw new IllegalArgumentException("batchCount must be positive");
+		}
+		if (terminationGrace == null || terminationGrace.isNegative()) {
+			throw new IllegalArgumentException("terminationGrace cannot be null or negative");
+		}
+	}
+
+	/**
+	 * Default drain: ten batches over ten seconds, then five seconds for
+	 * in-flight calls.
+	 *
+	 * @return the default policy
+	 */
+	public static DrainPolicy defaults() {
+		return new DrainPolicy(Duration.ofSeconds(10), 10, Duration.ofSeconds(5));
+	}
+}
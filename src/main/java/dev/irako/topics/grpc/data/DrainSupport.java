@@ -0,0 +1,64 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.util.OptionalInt;
+
+/**
+ * Status and trailers a draining server closes streams with, and how the
+ * client reads them back.
+ */
+final class DrainSupport {
+
+	/**
+	 * Trailer with the {@code resume_offset} to send when resubscribing.
+	 */
+	static final Metadata.Key<String> RESUME_OFFSET_KEY = Metadata.Key.of("x-resume-offset",
+			Metadata.ASCII_STRING_MARSHALLER);
+
+	private DrainSupport() {
+		// Utility class
+	}
+
+	/**
+	 * Builds the error that closes a stream during a drain, or when it was reaped
+	 * for being idle. UNAVAILABLE tells the client it may retry against another
+	 * node.
+	 *
+	 * @param resumeOffset
+	 *            where a resumed stream should continue, or a negative value if
+	 *            the stream cannot be resumed
+	 * @param reason
+	 *            the status description
+	 * @return the error to close the stream with
+	 */
+	static StatusRuntimeException drainingError(int resumeOffset, String reason) {
+		Metadata trailers = new Metadata();
+		if (resumeOffset >= 0) {
+			trailers.put(RESUME_OFFSET_KEY, Integer.toString(resumeOffset));
+		}
+		return Status.UNAVAILABLE.withDescription(reason).asRuntimeException(trailers);
+	}
+
+	/**
+	 * Reads the resume offset a draining server attached to an error.
+	 *
+	 * @param error
+	 *            the error a stream ended with
+	 * @return the offset, or empty if the error carries none
+	 */
+	static OptionalInt resumeOffset(Throwable error) {
+		Metadata trailers = Status.trailersFromThrowable(error);
+		String value = trailers == null ? null : trailers.get(RESUME_OFFSET_KEY);
+		if (value == null) {
+			return OptionalInt.empty();
+		}
+		try {
+			return OptionalInt.of(Integer.parseInt(value));
+		} catch (NumberFormatException e) {
+			return OptionalInt.empty();
+		}
+	}
+}
@@ -2,29 +2,61 @@ package dev.irako.topics.grpc.data;
 
 import dev.irako.topics.grpc.model.*;
 import dev.irako.topics.grpc.model.StreamingServiceProto.*;
+import io.grpc.Deadline;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * gRPC client for interacting with the streaming service. Handles I/O and
  * converts between proto and domain DTOs.
+ *
+ * <p>
+ * Every finite call carries a deadline from the client's {@link CallPolicy};
+ * a deadline already set on the caller's gRPC context still applies when it is
+ * shorter. Interactive chats and live subscriptions have no deadline; keepalive
+ * pings and the server's stream idle timeout end them instead. With hedging
+ * enabled, {@link #sendMessage(MessageDto)} sends a duplicate over a second
+ * connection when the first is slower than usual.
  */
 public final class GrpcClient implements AutoCloseable {
 
 	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(GrpcClient.class);
 
+	/** How long past its deadline a call may take to report that it ended. */
+	private static final Duration DEADLINE_GRACE = Duration.ofSeconds(1);
+
+	private final CallPolicy callPolicy;
 	private final ManagedChannel channel;
 	private final StreamingServiceGrpc.StreamingServiceStub asyncStub;
 	private final StreamingServiceGrpc.StreamingServiceBlockingStub blockingStub;
 
+	// Only set when hedging is enabled
+	private final ManagedChannel hedgeChannel;
+	private final StreamingServiceGrpc.StreamingServiceStub hedgeStub;
+	private final LatencyTracker sendLatency;
+	private final AtomicLong hedgedCalls = new AtomicLong();
+
 	/**
-	 * Creates a new gRPC client connected to the specified host and port.
+	 * Creates a new gRPC client connected to the specified host and port, using
+	 * the default compression policy.
 	 *
 	 * @param host
 	 *            the server host
@@ -32,70 +64,282 @@ public final class GrpcClient implements AutoCloseable {
 	 *            the server port
 	 */
 	public GrpcClient(String host, int port) {
-		this.channel = ManagedChannelBuilder.forAddress(host, port).usePlaintext() // For simplicity; use TLS in
-																					// production
-				.build();
+		this(host, port, CompressionPolicy.defaults());
+	}
+
+	/**
+	 * Creates a new gRPC client connected to the specified host and port.
+	 *
+	 * @param host
+	 *            the server host
+	 * @param port
+	 *            the server port
+	 * @param compressionPolicy
+	 *            per-method compression for outgoing messages
+	 */
+	public GrpcClient(String host, int port, CompressionPolicy compressionPolicy) {
+		this(host, port, compressionPolicy, CallPolicy.defaults());
+	}
+
+	/**
+	 * Creates a new gRPC client connected to the specified host and port.
+	 *
+	 * <pre>
+	 * GrpcClient client = new GrpcClient("localhost", 50051, CompressionPolicy.defaults(),
+	 * 		CallPolicy.defaults().withHedging(HedgingPolicy.defaults()));
+	 * </pre>
+	 *
+	 * @param host
+	 *            the server host
+	 * @param port
+	 *            the server port
+	 * @param compressionPolicy
+	 *            per-method compression for outgoing messages
+	 * @param callPolicy
+	 *            deadlines, retries and hedging
+	 */
+	public GrpcClient(String host, int port, CompressionPolicy compressionPolicy, CallPolicy callPolicy) {
+		this(host, port, compressionPolicy, callPolicy, KeepalivePolicy.defaults());
+	}
+
+	/**
+	 * Creates a new gRPC client connected to the specified host and port.
+	 *
+	 * @param host
+	 *            the server host
+	 * @param port
+	 *            the server port
+	 * @param compressionPolicy
+	 *            per-method compression for outgoing messages
+	 * @param callPolicy
+	 *            deadlines, retries and hedging
+	 * @param keepalivePolicy
+	 *            keepalive pings that detect a dead connection while streams
+	 *            are open; only its time and timeout apply to the client
+	 */
+	public GrpcClient(String host, int port, CompressionPolicy compressionPolicy, CallPolicy callPolicy,
+			KeepalivePolicy keepalivePolicy) {
+		this(plaintext(host, port, keepalivePolicy), compressionPolicy, callPolicy);
+	}
+
+	/**
+	 * Creates a new gRPC client on a transport chosen by the caller, such as the
+	 * in-process transport of soak tests.
+	 *
+	 * @param transport
+	 *            creates a builder with only transport settings applied; called
+	 *            once per connection the client opens
+	 * @param compressionPolicy
+	 *            per-method compression for outgoing messages
+	 * @param callPolicy
+	 *            deadlines, retries and hedging
+	 */
+	GrpcClient(Supplier<ManagedChannelBuilder<?>> transport, CompressionPolicy compressionPolicy,
+			CallPolicy callPolicy) {
+		if (compressionPolicy == null) {
+			throw new IllegalArgumentException("compressionPolicy cannot be null");
+		}
+		if (callPolicy == null) {
+			throw new IllegalArgumentException("callPolicy cannot be null");
+		}
+		this.callPolicy = callPolicy;
+		this.channel = openChannel(transport.get(), compressionPolicy, callPolicy);
 		this.asyncStub = StreamingServiceGrpc.newStub(channel);
 		this.blockingStub = StreamingServiceGrpc.newBlockingStub(channel);
+		if (callPolicy.hedging() != null) {
+			// A second connection, so the hedge does not queue behind the slow call
+			this.hedgeChannel = openChannel(transport.get(), compressionPolicy, callPolicy);
+			this.hedgeStub = StreamingServiceGrpc.newStub(hedgeChannel);
+			this.sendLatency = new LatencyTracker(callPolicy.hedging().percentile());
+		} else {
+			this.hedgeChannel = null;
+			this.hedgeStub = null;
+			this.sendLatency = null;
+		}
+	}
+
+	private static Supplier<ManagedChannelBuilder<?>> plaintext(String host, int port,
+			KeepalivePolicy keepalivePolicy) {
+		if (keepalivePolicy == null) {
+			throw new IllegalArgumentException("keepalivePolicy cannot be null");
+		}
+		// Plaintext for simplicity; use TLS in production
+		return () -> ManagedChannelBuilder.forAddress(host, port).usePlaintext()
+				.keepAliveTime(keepalivePolicy.time().toNanos(), TimeUnit.NANOSECONDS)
+				.keepAliveTimeout(keepalivePolicy.timeout().toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	private static ManagedChannel openChannel(ManagedChannelBuilder<?> transport, CompressionPolicy compressionPolicy,
+			CallPolicy callPolicy) {
+		return transport.compressorRegistry(CompressionSupport.compressorRegistry())
+				.decompressorRegistry(CompressionSupport.decompressorRegistry())
+				.intercept(CompressionSupport.clientInterceptor(compressionPolicy))
+				.defaultServiceConfig(CallSupport.serviceConfig(callPolicy)).enableRetry().build();
 	}
 
 	/**
-	 * Sends a message using unary RPC.
+	 * Sends a message using unary RPC. Retried on UNAVAILABLE and, if enabled,
+	 * hedged.
 	 *
 	 * @param message
 	 *            the message to send
 	 * @return the response DTO
+	 * @throws StatusRuntimeException
+	 *             if the call fails or misses its deadline
 	 */
 	public MessageResponseDto sendMessage(MessageDto message) {
 		MessageRequest request = MessageRequest.newBuilder().setUserId(message.userId()).setContent(message.content())
 				.setTimestamp(message.timestamp().toEpochMilli()).build();
 
-		MessageResponse response = blockingStub.sendMessage(request);
+		MessageResponse response = hedgeStub == null ? unaryStub().sendMessage(request) : sendHedged(request);
 
 		return new MessageResponseDto(response.getSuccess(), response.getMessageId(), response.getStatus());
 	}
 
 	/**
-	 * Subscribes to notifications using server streaming.
+	 * Number of {@code SendMessage} calls that sent a hedge.
+	 *
+	 * @return the hedge count; always 0 without hedging
+	 */
+	public long hedgedCallCount() {
+		return hedgedCalls.get();
+	}
+
+	private MessageResponse sendHedged(MessageRequest request) {
+		Deadline deadline = Deadline.after(callPolicy.unaryDeadline().toNanos(), TimeUnit.NANOSECONDS);
+		long startNanos = System.nanoTime();
+		CompletableFuture<MessageResponse> response = HedgedCall.start(
+				observer -> asyncStub.withDeadline(deadline).sendMessage(request, observer), observer -> {
+					hedgedCalls.incrementAndGet();
+					hedgeStub.withDeadline(deadline).sendMessage(request, observer);
+				}, hedgeDelayNanos());
+		try {
+			MessageResponse result = response.get();
+			sendLatency.record(System.nanoTime() - startNanos);
+			return result;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StatusRuntimeException statusException) {
+				throw statusException;
+			}
+			throw Status.fromThrowable(e.getCause()).asRuntimeException();
+		} catch (InterruptedException e) {
+			response.cancel(false);
+			Thread.currentThread().interrupt();
+			throw Status.CANCELLED.withDescription("Interrupted while waiting for SendMessage").withCause(e)
+					.asRuntimeException();
+		}
+	}
+
+	private long hedgeDelayNanos() {
+		HedgingPolicy hedging = callPolicy.hedging();
+		long estimateNanos = sendLatency.estimateNanos();
+		if (estimateNanos < 0) {
+			return hedging.maxDelay().toNanos();
+		}
+		return Math.clamp(estimateNanos, hedging.minDelay().toNanos(), hedging.maxDelay().toNanos());
+	}
+
+	private StreamingServiceGrpc.StreamingServiceBlockingStub unaryStub() {
+		return blockingStub.withDeadlineAfter(callPolicy.unaryDeadline().toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	private StreamingServiceGrpc.StreamingServiceStub streamStub() {
+		return asyncStub.withDeadlineAfter(callPolicy.streamDeadline().toNanos(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Subscribes to notifications using server streaming and collects them all.
+	 * Prefer {@link #streamNotifications(String, List)} for long streams.
 	 *
 	 * @param userId
 	 *            the user ID
 	 * @param topics
 	 *            the topics to subscribe to
-	 * @return list of received notifications
+	 * @return list of received notifications, up to the error if the stream
+	 *         failed
 	 * @throws InterruptedException
 	 *             if interrupted while waiting
 	 */
 	public List<NotificationDto> subscribeToNotifications(String userId, List<String> topics)
 			throws InterruptedException {
-		SubscribeRequest request = SubscribeRequest.newBuilder().setUserId(userId).addAllTopics(topics).build();
-
-		final List<NotificationDto> notifications = new ArrayList<>();
-		final CountDownLatch latch = new CountDownLatch(1);
-
-		asyncStub.subscribeToNotifications(request, new StreamObserver<NotificationMessage>() {
-			@Override
-			public void onNext(NotificationMessage notification) {
-				NotificationDto dto = ProtoConverter.toNotificationDto(notification);
-				notifications.add(dto);
-				logger.debug("Received notification: {}", dto.notificationId());
+		List<NotificationDto> notifications = new ArrayList<>();
+		try (ResponseStream<NotificationDto> stream = streamNotifications(userId, topics)) {
+			stream.forEachRemaining(notifications::add);
+			logger.info("Notification stream completed. Received {} notifications", notifications.size());
+		} catch (StatusRuntimeException e) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException("Interrupted while receiving notifications");
 			}
+			logger.error("Error receiving notifications", e);
+		}
+		return notifications;
+	}
 
-			@Override
-			public void onError(Throwable t) {
-				logger.error("Error receiving notifications", t);
-				latch.countDown();
-			}
+	/**
+	 * Subscribes to notifications using server streaming, handing them to the
+	 * caller as they arrive. At most {@link ResponseStream#DEFAULT_PREFETCH}
+	 * notifications are buffered however long the stream runs.
+	 *
+	 * @param userId
+	 *            the user ID
+	 * @param topics
+	 *            the topics to subscribe to
+	 * @return the notifications; close it to cancel the subscription early
+	 */
+	public ResponseStream<NotificationDto> streamNotifications(String userId, List<String> topics) {
+		SubscribeRequest request = SubscribeRequest.newBuilder().setUserId(userId).addAllTopics(topics).build();
+		ResponseStream<NotificationDto> notifications = new ResponseStream<>(ResponseStream.DEFAULT_PREFETCH);
+		streamStub().subscribeToNotifications(request,
+				notifications.<SubscribeRequest, NotificationMessage>observer(ProtoConverter::toNotificationDto));
+		return notifications;
+	}
 
-			@Override
-			public void onCompleted() {
-				logger.info("Notification stream completed. Received {} notifications", notifications.size());
-				latch.countDown();
-			}
-		});
+	/**
+	 * Follows the live notifications of some topics until closed, reconnecting
+	 * with the default reconnect policy when the server drains.
+	 *
+	 * @param userId
+	 *            the user ID
+	 * @param topics
+	 *            the topics to follow
+	 * @param consumer
+	 *            receives each notification on a gRPC thread
+	 * @return the subscription; close it to stop following
+	 * @see #followNotifications(String, List, Consumer, ReconnectPolicy)
+	 */
+	public LiveSubscription followNotifications(String userId, List<String> topics,
+			Consumer<NotificationDto> consumer) {
+		return followNotifications(userId, topics, consumer, ReconnectPolicy.defaults());
+	}
 
-		latch.await(30, TimeUnit.SECONDS);
-		return notifications;
+	/**
+	 * Follows the live notifications of some topics until closed. The sample
+	 * notifications are streamed first; when a draining server closes the
+	 * stream, it is reopened after a jittered delay without repeating samples.
+	 *
+	 * @param userId
+	 *            the user ID
+	 * @param topics
+	 *            the topics to follow
+	 * @param consumer
+	 *            receives each notification on a gRPC thread
+	 * @param reconnectPolicy
+	 *            delay and jitter before reconnecting
+	 * @return the subscription; close it to stop following
+	 */
+	public LiveSubscription followNotifications(String userId, List<String> topics,
+			Consumer<NotificationDto> consumer, ReconnectPolicy reconnectPolicy) {
+		if (consumer == null) {
+			throw new IllegalArgumentException("consumer cannot be null");
+		}
+		if (reconnectPolicy == null) {
+			throw new IllegalArgumentException("reconnectPolicy cannot be null");
+		}
+		SubscribeRequest request = SubscribeRequest.newBuilder().setUserId(userId).addAllTopics(topics).setLive(true)
+				.build();
+		LiveSubscription subscription = new LiveSubscription(asyncStub, request, consumer, reconnectPolicy);
+		subscription.connect();
+		return subscription;
 	}
 
 	/**
@@ -106,13 +350,19 @@ public final class GrpcClient implements AutoCloseable {
 	 * @return the aggregate response DTO
 	 * @throws InterruptedException
 	 *             if interrupted while waiting
+	 * @throws StatusRuntimeException
+	 *             if the call fails; with DEADLINE_EXCEEDED when no response
+	 *             arrived by the stream deadline, and the call is then
+	 *             cancelled
 	 */
 	public SensorAggregateDto uploadSensorData(List<SensorReadingDto> readings) throws InterruptedException {
 		final SensorAggregateDto[] result = new SensorAggregateDto[1];
+		final Throwable[] error = new Throwable[1];
 		final CountDownLatch latch = new CountDownLatch(1);
 
-		StreamObserver<SensorReading> requestObserver = asyncStub
-				.uploadSensorData(new StreamObserver<AggregateResponse>() {
+		Deadline deadline = Deadline.after(callPolicy.streamDeadline().toNanos(), TimeUnit.NANOSECONDS);
+		ClientCallStreamObserver<SensorReading> requestObserver = (ClientCallStreamObserver<SensorReading>) asyncStub
+				.withDeadline(deadline).uploadSensorData(new StreamObserver<AggregateResponse>() {
 					@Override
 					public void onNext(AggregateResponse response) {
 						result[0] = ProtoConverter.toSensorAggregateDto(response);
@@ -123,6 +373,7 @@ public final class GrpcClient implements AutoCloseable {
 					@Override
 					public void onError(Throwable t) {
 						logger.error("Error uploading sensor data", t);
+						error[0] = t;
 						latch.countDown();
 					}
 
@@ -142,8 +393,17 @@ public final class GrpcClient implements AutoCloseable {
 		}
 
 		requestObserver.onCompleted();
-		latch.await(30, TimeUnit.SECONDS);
+		// gRPC ends the call at its deadline; the grace only covers a late callback
+		if (!latch.await(deadline.timeRemaining(TimeUnit.NANOSECONDS) + DEADLINE_GRACE.toNanos(),
+				TimeUnit.NANOSECONDS)) {
+			requestObserver.cancel("No aggregate response by the deadline", null);
+			throw Status.DEADLINE_EXCEEDED.withDescription("No aggregate response by the stream deadline")
+					.asRuntimeException();
+		}
 
+		if (result[0] == null && error[0] != null) {
+			throw Status.fromThrowable(error[0]).asRuntimeException();
+		}
 		if (result[0] == null) {
 			throw new IllegalStateException("No aggregate response received");
 		}
@@ -151,55 +411,174 @@ public final class GrpcClient implements AutoCloseable {
 	}
 
 	/**
-	 * Sends chat messages using bidirectional streaming.
+	 * Sends chat messages using bidirectional streaming and collects all
+	 * responses. Prefer {@link #chatStream(List)} for long conversations.
 	 *
 	 * @param messages
 	 *            the messages to send
-	 * @return list of received responses
+	 * @return list of received responses, up to the error if the stream failed
 	 * @throws InterruptedException
 	 *             if interrupted while waiting
 	 */
 	public List<ChatMessageDto> chat(List<ChatMessageDto> messages) throws InterruptedException {
-		final List<ChatMessageDto> responses = new ArrayList<>();
-		final CountDownLatch latch = new CountDownLatch(1);
-
-		StreamObserver<ChatMessage> requestObserver = asyncStub.chat(new StreamObserver<ChatMessage>() {
-			@Override
-			public void onNext(ChatMessage message) {
-				ChatMessageDto dto = ProtoConverter.toChatMessageDto(message);
-				responses.add(dto);
-				logger.debug("Received chat response: {}", dto.content());
+		List<ChatMessageDto> responses = new ArrayList<>();
+		try (ResponseStream<ChatMessageDto> stream = chatStream(messages)) {
+			stream.forEachRemaining(responses::add);
+			logger.info("Chat stream completed. Received {} responses", responses.size());
+		} catch (StatusRuntimeException e) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException("Interrupted during chat");
 			}
+			logger.error("Error in chat stream", e);
+		}
+		return responses;
+	}
 
-			@Override
-			public void onError(Throwable t) {
-				logger.error("Error in chat stream", t);
-				latch.countDown();
-			}
-
-			@Override
-			public void onCompleted() {
-				logger.info("Chat stream completed. Received {} responses", responses.size());
-				latch.countDown();
-			}
-		});
-
-		// Send all messages
+	/**
+	 * Sends chat messages using bidirectional streaming and hands the responses
+	 * to the caller as they arrive, buffering at most
+	 * {@link ResponseStream#DEFAULT_PREFETCH} of them.
+	 *
+	 * @param messages
+	 *            the messages to send; the client half-closes after the last
+	 * @return the responses; close it to cancel the chat early
+	 */
+	public ResponseStream<ChatMessageDto> chatStream(List<ChatMessageDto> messages) {
+		ResponseStream<ChatMessageDto> responses = new ResponseStream<>(ResponseStream.DEFAULT_PREFETCH);
+		StreamObserver<ChatMessage> requestObserver = streamStub()
+				.chat(responses.<ChatMessage, ChatMessage>observer(ProtoConverter::toChatMessageDto));
 		for (ChatMessageDto message : messages) {
-			ChatMessage protoMessage = ProtoConverter.toProtoChatMessage(message);
-			requestObserver.onNext(protoMessage);
+			requestObserver.onNext(ProtoConverter.toProtoChatMessage(message));
 		}
-
 		requestObserver.onCompleted();
-		latch.await(30, TimeUnit.SECONDS);
-
 		return responses;
 	}
 
+	/**
+	 * Opens an interactive chat whose messages are handed to the consumer on the
+	 * gRPC thread that received them.
+	 *
+	 * @param consumer
+	 *            receives each message from the server
+	 * @return the session; close it to leave the chat
+	 * @see #openChat(Consumer, Executor)
+	 */
+	public ChatSession openChat(Consumer<ChatMessageDto> consumer) {
+		return openChat(consumer, Runnable::run);
+	}
+
+	/**
+	 * Opens an interactive chat using bidirectional streaming. Messages can be
+	 * sent from any thread while the server's messages arrive; the stream runs
+	 * until the session completes or is closed.
+	 *
+	 * <p>
+	 * The chat has no deadline, since a conversation has no natural end.
+	 * Keepalive pings fail it when the connection dies, and the server closes it
+	 * with UNAVAILABLE once it sent and received nothing for the server's stream
+	 * idle timeout. A caller that needs the chat to end by a given time closes
+	 * the session itself.
+	 *
+	 * @param consumer
+	 *            receives each message from the server, one at a time and in
+	 *            order
+	 * @param executor
+	 *            runs the consumer
+	 * @return the session; close it to leave the chat
+	 */
+	public ChatSession openChat(Consumer<ChatMessageDto> consumer, Executor executor) {
+		return openChat(consumer, executor, 0);
+	}
+
+	/**
+	 * Opens an interactive chat like {@link #openChat(Consumer, Executor)} that
+	 * first receives the room's most recent messages. The room is the one of the
+	 * first message sent, so the history arrives after that message was sent and
+	 * before its echo.
+	 *
+	 * @param consumer
+	 *            receives each message from the server, one at a time and in
+	 *            order
+	 * @param executor
+	 *            runs the consumer
+	 * @param historyOnJoin
+	 *            the recent room messages to receive first, or 0 for none; the
+	 *            server replays at most the history it keeps
+	 * @return the session; close it to leave the chat
+	 */
+	public ChatSession openChat(Consumer<ChatMessageDto> consumer, Executor executor, int historyOnJoin) {
+		ChatSession session = new ChatSession(consumer, executor, ChatSession.DEFAULT_MAX_QUEUED, historyOnJoin);
+		asyncStub.chat(session.observer());
+		return session;
+	}
+
+	/**
+	 * Publishes a notification to the live subscribers of a topic using unary
+	 * RPC. Any cluster node accepts the call and forwards it to the topic owner.
+	 *
+	 * @param topic
+	 *            the topic to publish to
+	 * @param title
+	 *            the notification title
+	 * @param content
+	 *            the notification content
+	 * @param priority
+	 *            the notification priority
+	 * @return the number of live subscribers that received the notification
+	 */
+	public int publishNotification(String topic, String title, String content, NotificationPriority priority) {
+		PublishRequest request = ProtoConverter.toProtoPublishRequest(topic, title, content, priority);
+		return unaryStub().publishNotification(request).getDeliveredCount();
+	}
+
+	/**
+	 * Queries the statistics of one sensor over a time range using unary RPC.
+	 * The server answers from stored per-minute aggregates, so the range is
+	 * widened to whole buckets.
+	 *
+	 * @param sensorId
+	 *            the sensor ID
+	 * @param from
+	 *            range start, inclusive
+	 * @param to
+	 *            range end, inclusive
+	 * @return the aggregate, or empty if no readings of the sensor are stored in
+	 *         the range
+	 */
+	public Optional<SensorAggregateDto> querySensorAggregates(String sensorId, Instant from, Instant to) {
+		SensorQueryRequest request = ProtoConverter.toProtoSensorQueryRequest(sensorId, from, to);
+		try {
+			return Optional.of(ProtoConverter.toSensorAggregateDto(unaryStub().querySensorAggregates(request)));
+		} catch (StatusRuntimeException e) {
+			if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+				return Optional.empty();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the approximate ingestion statistics of the server this client is
+	 * connected to, using unary RPC. Each node counts only what it ingested.
+	 *
+	 * @param topChatSenders
+	 *            the maximum number of top chat senders to return, or 0 for the
+	 *            server default
+	 * @return distinct sensor counts and the top chat senders
+	 */
+	public IngestionStatsDto ingestionStats(int topChatSenders) {
+		IngestionStatsRequest request = IngestionStatsRequest.newBuilder().setTopChatSenders(topChatSenders).build();
+		return ProtoConverter.toIngestionStatsDto(unaryStub().getIngestionStats(request));
+	}
+
 	@Override
 	public void close() {
 		try {
-			channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+			channel.shutdown();
+			if (hedgeChannel != null) {
+				hedgeChannel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+			}
+			channel.awaitTermination(5, TimeUnit.SECONDS);
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 			logger.warn("Interrupted while closing channel");
@@ -1,9 +1,32 @@
 package dev.irako.topics.grpc.data;
 
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.model.StreamingServiceGrpc;
+import dev.irako.topics.grpc.service.ChatService;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Factory for creating and managing gRPC server instances.
@@ -14,15 +37,229 @@ public final class GrpcServerFactory {
 		// Utility class
 	}
 
+	/**
+	 * Creates a new gRPC server on the specified port with the default
+	 * compression policy.
+	 *
+	 * @param port
+	 *            the port to bind to
+	 * @return configured gRPC server (not started)
+	 */
+	public static ManagedServer createServer(int port) {
+		return createServer(port, CompressionPolicy.defaults());
+	}
+
 	/**
 	 * Creates a new gRPC server on the specified port.
 	 *
 	 * @param port
 	 *            the port to bind to
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @return configured gRPC server (not started)
+	 */
+	public static ManagedServer createServer(int port, CompressionPolicy compressionPolicy) {
+		return createServer(ClusterConfig.standalone(port), compressionPolicy);
+	}
+
+	/**
+	 * Creates a new gRPC server for one node of a cluster, listening on the port
+	 * of its own node entry.
+	 *
+	 * <pre>
+	 * ClusterNode a = new ClusterNode("a", "localhost", 50051);
+	 * ClusterNode b = new ClusterNode("b", "localhost", 50052);
+	 * ManagedServer server = GrpcServerFactory.createServer(new ClusterConfig(a, List.of(a, b)),
+	 * 		CompressionPolicy.defaults());
+	 * </pre>
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @return configured gRPC server (not started)
+	 */
+	public static ManagedServer createServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy) {
+		return createServer(clusterConfig, compressionPolicy, null);
+	}
+
+	/**
+	 * Creates a new gRPC server for one node of a cluster that also exports
+	 * every completed sensor upload to segment files.
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @param exportPolicy
+	 *            where and how to export uploads, or null to disable export
 	 * @return configured gRPC server (not started)
 	 */
-	public static Server createServer(int port) {
-		return ServerBuilder.forPort(port).addService(new StreamingServiceImpl()).build();
+	public static ManagedServer createServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy,
+			SensorExportPolicy exportPolicy) {
+		return createServer(clusterConfig, compressionPolicy, exportPolicy, ServerTuning.defaults());
+	}
+
+	/**
+	 * Creates a new gRPC server for one node of a cluster with explicit
+	 * threading choices.
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @param exportPolicy
+	 *            where and how to export uploads, or null to disable export
+	 * @param tuning
+	 *            which methods run on the transport thread, how live
+	 *            notifications are conflated and the connection lifecycle
+	 * @return configured gRPC server (not started)
+	 */
+	public static ManagedServer createServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy,
+			SensorExportPolicy exportPolicy, ServerTuning tuning) {
+		if (clusterConfig == null) {
+			throw new IllegalArgumentException("clusterConfig cannot be null");
+		}
+		if (compressionPolicy == null) {
+			throw new IllegalArgumentException("compressionPolicy cannot be null");
+		}
+		if (tuning == null) {
+			throw new IllegalArgumentException("tuning cannot be null");
+		}
+		KeepalivePolicy keepalive = tuning.keepalive();
+		ServerBuilder<?> transport = ServerBuilder.forPort(clusterConfig.self().port())
+				.keepAliveTime(keepalive.time().toNanos(), TimeUnit.NANOSECONDS)
+				.keepAliveTimeout(keepalive.timeout().toNanos(), TimeUnit.NANOSECONDS)
+				.permitKeepAliveTime(keepalive.time().toNanos() / 2, TimeUnit.NANOSECONDS)
+				.maxConnectionIdle(keepalive.maxConnectionIdle().toNanos(), TimeUnit.NANOSECONDS)
+				.maxConnectionAge(keepalive.maxConnectionAge().toNanos(), TimeUnit.NANOSECONDS)
+				.maxConnectionAgeGrace(keepalive.maxConnectionAgeGrace().toNanos(), TimeUnit.NANOSECONDS);
+		return createServer(transport, clusterConfig, compressionPolicy, exportPolicy, tuning);
+	}
+
+	/**
+	 * Creates a new gRPC server on a transport chosen by the caller, such as the
+	 * in-process transport of soak tests. Connection keepalive is left to the
+	 * transport; the stream idle timeout still applies.
+	 *
+	 * @param transport
+	 *            the server builder, with only transport settings applied
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @param exportPolicy
+	 *            where and how to export uploads, or null to disable export
+	 * @param tuning
+	 *            threading choices, conflation and the stream idle timeout
+	 * @return configured gRPC server (not started)
+	 */
+	static ManagedServer createServer(ServerBuilder<?> transport, ClusterConfig clusterConfig,
+			CompressionPolicy compressionPolicy, SensorExportPolicy exportPolicy, ServerTuning tuning) {
+		if (transport == null) {
+			throw new IllegalArgumentException("transport cannot be null");
+		}
+		if (clusterConfig == null) {
+			throw new IllegalArgumentException("clusterConfig cannot be null");
+		}
+		if (compressionPolicy == null) {
+			throw new IllegalArgumentException("compressionPolicy cannot be null");
+		}
+		if (tuning == null) {
+			throw new IllegalArgumentException("tuning cannot be null");
+		}
+		ClusterRouter router = new ClusterRouter(clusterConfig);
+		StreamRegistry streams = new StreamRegistry();
+		SensorSegmentWriter segmentWriter = exportPolicy == null ? null : new SensorSegmentWriter(exportPolicy);
+		CancellationStats cancellations = new CancellationStats();
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		ChatPipeline chatPipeline = new ChatPipeline(chatRooms, ChatService.defaultStages(),
+				ChatPipeline.defaultLanes(), ChatPipeline.DEFAULT_QUEUE_CAPACITY);
+		SensorAggregateStore sensorStore = new SensorAggregateStore();
+		// Upload streams only receive more readings as this pool works through them,
+		// and sample readings once its queue grows
+		int uploadThreads = Runtime.getRuntime().availableProcessors();
+		ThreadPoolExecutor uploadExecutor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 0L,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), daemonThreads("sensor-upload-"));
+		ServerServiceDefinition service = ServerInterceptors.intercept(
+				new StreamingServiceImpl(router, streams, chatRooms, chatPipeline, sensorStore, uploadExecutor,
+						segmentWriter, tuning, cancellations),
+				CompressionSupport.serverInterceptor(compressionPolicy), router.forwardedCallInterceptor());
+		prewarmMarshallers(service);
+		ServerBuilder<?> builder = transport.compressorRegistry(CompressionSupport.compressorRegistry())
+				.decompressorRegistry(CompressionSupport.decompressorRegistry())
+				.addService(service);
+		List<ExecutorService> executors = new ArrayList<>();
+		if (tuning.directSendMessage()) {
+			// Calls start on the transport thread; all but SendMessage then move to
+			// the application executor
+			ExecutorService applicationExecutor = Executors.newCachedThreadPool(daemonThreads("grpc-app-"));
+			builder.directExecutor().callExecutor(sendMessageStaysDirect(applicationExecutor));
+			executors.add(applicationExecutor);
+		}
+		executors.add(uploadExecutor);
+		executors.add(startReaper(streams, tuning.keepalive().streamIdleTimeout(), chatRooms, sensorStore));
+		return new ManagedServer(builder.build(), router, streams, cancellations, chatPipeline, segmentWriter,
+				executors);
+	}
+
+	/**
+	 * Round-trips an empty request and response of every method through its
+	 * marshaller. That loads and initializes the message classes, their
+	 * descriptors and the parser code before the server accepts calls, instead
+	 * of on the first call of each method.
+	 */
+	private static void prewarmMarshallers(ServerServiceDefinition service) {
+		for (ServerMethodDefinition<?, ?> method : service.getMethods()) {
+			roundTrip(method.getMethodDescriptor().getRequestMarshaller());
+			roundTrip(method.getMethodDescriptor().getResponseMarshaller());
+		}
+	}
+
+	private static <T> void roundTrip(MethodDescriptor.Marshaller<T> marshaller) {
+		T message = marshaller.parse(new ByteArrayInputStream(new byte[0]));
+		marshaller.parse(marshaller.stream(message));
+	}
+
+	/**
+	 * Starts the thread that closes idle streams and drops chat rooms and
+	 * sensors that have been idle for long enough, so requests never pay for
+	 * the cleanup.
+	 */
+	private static ScheduledExecutorService startReaper(StreamRegistry streams, Duration idleTimeout,
+			ChatRoomHub chatRooms, SensorAggregateStore sensorStore) {
+		ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(daemonThreads("stream-reaper-"));
+		long idleNanos = idleTimeout.toNanos();
+		// Checking four times per timeout reaps a stream at most a quarter late
+		long periodNanos = Math.max(idleNanos / 4, TimeUnit.MILLISECONDS.toNanos(10));
+		reaper.scheduleAtFixedRate(() -> streams.reapIdle(System.nanoTime(), idleNanos), periodNanos, periodNanos,
+				TimeUnit.NANOSECONDS);
+		long retentionNanos = ChatRoomHub.EMPTY_ROOM_RETENTION.toNanos();
+		reaper.scheduleAtFixedRate(() -> chatRooms.evictEmpty(System.nanoTime(), retentionNanos),
+				retentionNanos / 4, retentionNanos / 4, TimeUnit.NANOSECONDS);
+		long sensorPeriodMillis = Math.max(sensorStore.idleTimeoutMillis() / 4, 1);
+		reaper.scheduleAtFixedRate(() -> sensorStore.evictIdle(System.currentTimeMillis()), sensorPeriodMillis,
+				sensorPeriodMillis, TimeUnit.MILLISECONDS);
+		return reaper;
+	}
+
+	private static ServerCallExecutorSupplier sendMessageStaysDirect(Executor applicationExecutor) {
+		String sendMessage = StreamingServiceGrpc.getSendMessageMethod().getFullMethodName();
+		return new ServerCallExecutorSupplier() {
+			@Override
+			public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+				return sendMessage.equals(call.getMethodDescriptor().getFullMethodName()) ? null : applicationExecutor;
+			}
+		};
+	}
+
+	private static ThreadFactory daemonThreads(String namePrefix) {
+		AtomicInteger threadCount = new AtomicInteger();
+		return task -> {
+			Thread thread = new Thread(task, namePrefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
 	}
 
 	/**
@@ -34,8 +271,80 @@ public final class GrpcServerFactory {
 	 * @throws IOException
 	 *             if server cannot be started
 	 */
-	public static Server createAndStartServer(int port) throws IOException {
-		Server server = createServer(port);
+	public static ManagedServer createAndStartServer(int port) throws IOException {
+		return createAndStartServer(port, CompressionPolicy.defaults());
+	}
+
+	/**
+	 * Creates and starts a gRPC server on the specified port.
+	 *
+	 * @param port
+	 *            the port to bind to
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @return started gRPC server
+	 * @throws IOException
+	 *             if server cannot be started
+	 */
+	public static ManagedServer createAndStartServer(int port, CompressionPolicy compressionPolicy) throws IOException {
+		return createAndStartServer(ClusterConfig.standalone(port), compressionPolicy);
+	}
+
+	/**
+	 * Creates and starts a gRPC server for one node of a cluster.
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @return started gRPC server
+	 * @throws IOException
+	 *             if server cannot be started
+	 */
+	public static ManagedServer createAndStartServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy)
+			throws IOException {
+		return createAndStartServer(clusterConfig, compressionPolicy, null);
+	}
+
+	/**
+	 * Creates and starts a gRPC server for one node of a cluster that also
+	 * exports every completed sensor upload to segment files.
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @param exportPolicy
+	 *            where and how to export uploads, or null to disable export
+	 * @return started gRPC server
+	 * @throws IOException
+	 *             if server cannot be started
+	 */
+	public static ManagedServer createAndStartServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy,
+			SensorExportPolicy exportPolicy) throws IOException {
+		return createAndStartServer(clusterConfig, compressionPolicy, exportPolicy, ServerTuning.defaults());
+	}
+
+	/**
+	 * Creates and starts a gRPC server for one node of a cluster with explicit
+	 * threading choices.
+	 *
+	 * @param clusterConfig
+	 *            this node and all cluster members
+	 * @param compressionPolicy
+	 *            per-method compression for responses
+	 * @param exportPolicy
+	 *            where and how to export uploads, or null to disable export
+	 * @param tuning
+	 *            which methods run on the transport thread, how live
+	 *            notifications are conflated and the connection lifecycle
+	 * @return started gRPC server
+	 * @throws IOException
+	 *             if server cannot be started
+	 */
+	public static ManagedServer createAndStartServer(ClusterConfig clusterConfig, CompressionPolicy compressionPolicy,
+			SensorExportPolicy exportPolicy, ServerTuning tuning) throws IOException {
+		ManagedServer server = createServer(clusterConfig, compressionPolicy, exportPolicy, tuning);
 		server.start();
 		return server;
 	}
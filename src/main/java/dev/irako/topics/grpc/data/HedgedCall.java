@@ -0,0 +1,121 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A unary call sent up to twice. The primary attempt starts at once; the
+ * hedge starts after a delay unless the primary has answered, or at once if
+ * the primary failed with UNAVAILABLE. The first response wins and the other
+ * attempt is cancelled.
+ *
+ * <p>
+ * Each attempt runs in its own cancellable fork of the caller's context, so
+ * the caller's deadline still applies to both.
+ *
+ * @param <T>
+ *            the response type
+ */
+final class HedgedCall<T> {
+
+	/**
+	 * Starts one attempt of the call.
+	 */
+	@FunctionalInterface
+	interface Attempt<T> {
+		void start(StreamObserver<T> responseObserver);
+	}
+
+	private final Attempt<T> hedge;
+	private final Context parent = Context.current();
+	private final CompletableFuture<T> result = new CompletableFuture<>();
+
+	private final Object lock = new Object();
+	private final List<Context.CancellableContext> attempts = new ArrayList<>(2);
+	private int running;
+	private boolean hedged;
+
+	private HedgedCall(Attempt<T> hedge) {
+		this.hedge = hedge;
+	}
+
+	/**
+	 * Starts a hedged call.
+	 *
+	 * @param primary
+	 *            starts the primary attempt
+	 * @param hedge
+	 *            starts the hedge, typically on another channel
+	 * @param hedgeDelayNanos
+	 *            how long the primary may take before the hedge is sent
+	 * @return the first response; cancelling it cancels both attempts
+	 */
+	static <T> CompletableFuture<T> start(Attempt<T> primary, Attempt<T> hedge, long hedgeDelayNanos) {
+		HedgedCall<T> call = new HedgedCall<>(hedge);
+		call.result.whenComplete((response, error) -> call.cancelAttempts());
+		call.launch(primary, false);
+		CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS)
+				.execute(() -> call.launch(hedge, true));
+		return call.result;
+	}
+
+	private void launch(Attempt<T> attempt, boolean isHedge) {
+		Context.CancellableContext context;
+		synchronized (lock) {
+			if (result.isDone() || (isHedge && hedged)) {
+				return;
+			}
+			hedged |= isHedge;
+			context = parent.withCancellation();
+			attempts.add(context);
+			running++;
+		}
+		context.run(() -> attempt.start(new StreamObserver<T>() {
+			@Override
+			public void onNext(T response) {
+				result.complete(response);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				failed(t);
+			}
+
+			@Override
+			public void onCompleted() {
+				// The response already completed the call
+			}
+		}));
+	}
+
+	private void failed(Throwable error) {
+		boolean hedgeNow;
+		synchronized (lock) {
+			running--;
+			if (running > 0 || result.isDone()) {
+				// The other attempt may still answer
+				return;
+			}
+			hedgeNow = !hedged && Status.fromThrowable(error).getCode() == Status.Code.UNAVAILABLE;
+		}
+		if (hedgeNow) {
+			launch(hedge, true);
+		} else {
+			result.completeExceptionally(error);
+		}
+	}
+
+	private void cancelAttempts() {
+		List<Context.CancellableContext> toCancel;
+		synchronized (lock) {
+			toCancel = List.copyOf(attempts);
+		}
+		toCancel.forEach(context -> context.cancel(null));
+	}
+}
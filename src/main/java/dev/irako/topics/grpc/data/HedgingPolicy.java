@@ -0,0 +1,42 @@
+package dev.irako.topics.grpc.data;
+
+import java.time.Duration;
+
+/**
+ * When a client sends a duplicate (hedged) request. The delay follows the
+ * observed call latency: a request still unanswered after the given latency
+ * percentile is probably stuck behind a slow server, so a second copy is sent
+ * on another connection and the first response wins.
+ *
+ * @param percentile
+ *            latency percentile that triggers the hedge, e.g. 95.0
+ * @param minDelay
+ *            the hedge is never sent earlier than this
+ * @param maxDelay
+ *            the hedge is never sent later than this; also used until enough
+ *            latencies were observed
+ */
+public record HedgingPolicy(double percentile, Duration minDelay, Duration maxDelay) {
+
+	public HedgingPolicy {
+		if (!(percentile > 0.0 && percentile < 100.0)) {
+			throw new IllegalArgumentException("percentile must be in (0, 100)");
+		}
+		if (minDelay == null || minDelay.isNegative()) {
+			throw new IllegalArgumentException("minDelay cannot be null or negative");
+		}
+		if (maxDelay == null || maxDelay.compareTo(minDelay) < 0) {
+			throw new IllegalArgumentException("maxDelay cannot be null or below minDelay");
+		}
+	}
+
+	/**
+	 * Default hedging: after the p95 latency, but no sooner than 10 ms and no
+	 * later than one second.
+	 *
+	 * @return the default policy
+	 */
+	public static HedgingPolicy defaults() {
+		return new HedgingPolicy(95.0, Duration.ofMillis(10), Duration.ofSeconds(1));
+	}
+}
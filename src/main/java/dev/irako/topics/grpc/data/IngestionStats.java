@@ -0,0 +1,109 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.IngestionStatsDto;
+import dev.irako.topics.grpc.service.HyperLogLog;
+import dev.irako.topics.grpc.service.SpaceSaving;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Approximate ingestion statistics of one server, fed by the upload and chat
+ * paths: distinct sensors since the start and per tumbling window, kept in
+ * {@link HyperLogLog} sketches, and the top chat senders, kept in a
+ * {@link SpaceSaving} summary. Memory stays at a few KB however many sensors
+ * and users there are.
+ */
+final class IngestionStats {
+
+	static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1);
+	static final int TOP_SENDER_CAPACITY = 64;
+
+	private final long windowMs;
+	private final LongSupplier clockMs;
+
+	// Guarded by this
+	private final HyperLogLog sensors = new HyperLogLog();
+	private HyperLogLog currentWindowSensors = new HyperLogLog();
+	private HyperLogLog previousWindowSensors = new HyperLogLog();
+	private long currentWindow;
+
+	// Guarded by itself, so chat messages do not wait for sensor merges
+	private final SpaceSaving chatSenders = new SpaceSaving(TOP_SENDER_CAPACITY);
+
+	/**
+	 * @param window
+	 *            the length of the tumbling windows for distinct sensors
+	 * @param clockMs
+	 *            the current time in epoch milliseconds
+	 */
+	IngestionStats(Duration window, LongSupplier clockMs) {
+		this.windowMs = window.toMillis();
+		this.clockMs = clockMs;
+		this.currentWindow = clockMs.getAsLong() / windowMs;
+	}
+
+	IngestionStats() {
+		this(DEFAULT_WINDOW, System::currentTimeMillis);
+	}
+
+	/**
+	 * Adds sensors seen by an upload since its last call.
+	 *
+	 * @param uploadSensors
+	 *            the sensors; left unchanged
+	 */
+	synchronized void recordSensors(HyperLogLog uploadSensors) {
+		rollWindow();
+		sensors.merge(uploadSensors);
+		currentWindowSensors.merge(uploadSensors);
+	}
+
+	void recordChatSender(String userId) {
+		synchronized (chatSenders) {
+			chatSenders.add(userId);
+		}
+	}
+
+	/**
+	 * @param topChatSenders
+	 *            the maximum number of chat senders to return
+	 */
+	IngestionStatsDto snapshot(int topChatSenders) {
+		long distinct;
+		long currentWindowDistinct;
+		long previousWindowDistinct;
+		long windowStartMs;
+		synchronized (this) {
+			rollWindow();
+			distinct = sensors.estimate();
+			currentWindowDistinct = currentWindowSensors.estimate();
+			previousWindowDistinct = previousWindowSensors.estimate();
+			windowStartMs = currentWindow * windowMs;
+		}
+		synchronized (chatSenders) {
+			return new IngestionStatsDto(distinct, currentWindowDistinct, previousWindowDistinct,
+					Instant.ofEpochMilli(windowStartMs), chatSenders.total(), chatSenders.top(topChatSenders));
+		}
+	}
+
+	private void rollWindow() {
+		long window = clockMs.getAsLong() / windowMs;
+		if (window == currentWindow) {
+			return;
+		}
+		HyperLogLog expired = previousWindowSensors;
+		expired.clear();
+		if (window == currentWindow + 1) {
+			previousWindowSensors = currentWindowSensors;
+			currentWindowSensors = expired;
+		} else {
+			// No upload in the window just before; reuse the current sketch as its empty one
+			currentWindowSensors.clear();
+			previousWindowSensors = currentWindowSensors;
+			currentWindowSensors = expired;
+		}
+		currentWindow = window;
+	}
+}
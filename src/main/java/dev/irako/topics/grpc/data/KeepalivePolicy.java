@@ -0,0 +1,75 @@
+package dev.irako.topics.grpc.data;
+
+import java.time.Duration;
+
+/**
+ * Keepalive and connection lifecycle settings shared by the server and the
+ * client. Without them a half-dead connection keeps its streams, and the
+ * server state behind them, open forever.
+ *
+ * <p>
+ * Both sides ping a connection that was quiet for {@code time} and close it if
+ * the ping is not answered within {@code timeout}; the server accepts client
+ * pings down to half of {@code time}. The other settings only apply to the
+ * server.
+ *
+ * @param time
+ *            quiet time before a keepalive ping
+ * @param timeout
+ *            how long a ping may stay unanswered
+ * @param maxConnectionIdle
+ *            a connection without calls for this long is closed gracefully
+ * @param maxConnectionAge
+ *            a connection this old receives GOAWAY, so clients spread over
+ *            new nodes
+ * @param maxConnectionAgeGrace
+ *            how long calls may still run on a connection after its GOAWAY
+ * @param streamIdleTimeout
+ *            a subscription or chat stream that sent and received nothing for
+ *            this long is closed with UNAVAILABLE and a resume offset, and
+ *            its subscriptions and buffers are released
+ */
+public record KeepalivePolicy(Duration time, Duration timeout, Duration maxConnectionIdle, Duration maxConnectionAge,
+		Duration maxConnectionAgeGrace, Duration streamIdleTimeout) {
+
+	public KeepalivePolicy {
+		requirePositive(time, "time");
+		requirePositive(timeout, "timeout");
+		requirePositive(maxConnectionIdle, "maxConnectionIdle");
+		requirePositive(maxConnectionAge, "maxConnectionAge");
+		if (maxConnectionAgeGrace == null || maxConnectionAgeGrace.isNegative()) {
+			throw new IllegalArgumentException("maxConnectionAgeGrace cannot be null or negative");
+		}
+		requirePositive(streamIdleTimeout, "streamIdleTimeout");
+	}
+
+	private static void requirePositive(Duration duration, String name) {
+		if (duration == null || duration.isNegative() || duration.isZero()) {
+			throw new IllegalArgumentException(name + " must be positive");
+		}
+	}
+
+	/**
+	 * Default lifecycle: ping after one quiet minute with a 20 s timeout, close
+	 * connections idle for 30 minutes, rotate connections after four hours with
+	 * one minute of grace, and reap streams idle for ten minutes.
+	 *
+	 * @return the default policy
+	 */
+	public static KeepalivePolicy defaults() {
+		return new KeepalivePolicy(Duration.ofMinutes(1), Duration.ofSeconds(20), Duration.ofMinutes(30),
+				Duration.ofHours(4), Duration.ofMinutes(1), Duration.ofMinutes(10));
+	}
+
+	/**
+	 * Copy of this policy with another stream idle timeout.
+	 *
+	 * @param timeout
+	 *            the new stream idle timeout
+	 * @return the new policy
+	 */
+	public KeepalivePolicy withStreamIdleTimeout(Duration timeout) {
+		return new KeepalivePolicy(time, this.timeout, maxConnectionIdle, maxConnectionAge, maxConnectionAgeGrace,
+				timeout);
+	}
+}
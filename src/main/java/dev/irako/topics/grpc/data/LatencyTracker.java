@@ -0,0 +1,50 @@
+package dev.irako.topics.grpc.data;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates a latency percentile from recent calls. The estimate is refreshed
+ * from a fresh interval histogram every {@value #SAMPLES_PER_ESTIMATE} calls,
+ * so it follows the server's current behaviour rather than its history.
+ */
+final class LatencyTracker {
+
+	static final int SAMPLES_PER_ESTIMATE = 256;
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private final double percentile;
+	private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+	private final AtomicLong samples = new AtomicLong();
+	private Histogram interval;
+	private volatile long estimateNanos = -1;
+
+	LatencyTracker(double percentile) {
+		this.percentile = percentile;
+	}
+
+	void record(long latencyNanos) {
+		recorder.recordValue(Math.max(0, latencyNanos));
+		if (samples.incrementAndGet() % SAMPLES_PER_ESTIMATE == 0) {
+			refresh();
+		}
+	}
+
+	/**
+	 * The latest estimate of the percentile.
+	 *
+	 * @return the latency in nanoseconds, or -1 until enough calls were recorded
+	 */
+	long estimateNanos() {
+		return estimateNanos;
+	}
+
+	private synchronized void refresh() {
+		interval = recorder.getIntervalHistogram(interval);
+		if (interval.getTotalCount() > 0) {
+			estimateNanos = interval.getValueAtPercentile(percentile);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.NotificationMessage;
+import dev.irako.topics.grpc.model.NotificationPriority;
+import dev.irako.topics.grpc.service.NotificationService;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Delivers live notifications to one subscriber, compacting them while the
+ * subscriber's stream is not ready (see {@link NotificationConflation}).
+ *
+ * <p>
+ * Without this, gRPC buffers every notification for a slow subscriber and a
+ * busy topic can grow that buffer without limit. Here notifications go to the
+ * transport only while it is ready; the rest wait in a bounded backlog, keyed
+ * so that a newer notification replaces or merges into an older one, and are
+ * sent in backlog order when the stream becomes ready again.
+ *
+ * <p>
+ * Lock order is this sink, then the {@link StreamSink}.
+ */
+final class LiveNotificationSink {
+
+	/** Titles quoted in a digest; older ones are only counted. */
+	static final int DIGEST_TITLES = 5;
+
+	private final StreamSink<NotificationMessage> sink;
+	private final BooleanSupplier ready;
+	private final NotificationConflation conflation;
+	private final LongSupplier clockMs;
+
+	// Keys are the topic (LATEST), a DigestKey (DIGEST) or a sequence number (QUEUE)
+	private final LinkedHashMap<Object, Pending> backlog = new LinkedHashMap<>();
+	// Most recently enqueued topics only, as many as the backlog can hold
+	private final Map<String, NotificationConflation.Mode> modesByTopic;
+	private long sequence;
+	private long conflated;
+	private long dropped;
+
+	/**
+	 * @param ready
+	 *            whether the transport accepts another message without
+	 *            buffering it
+	 * @param clockMs
+	 *            the current time in epoch milliseconds, for digest windows
+	 */
+	LiveNotificationSink(StreamSink<NotificationMessage> sink, BooleanSupplier ready,
+			NotificationConflation conflation, LongSupplier clockMs) {
+		this.sink = sink;
+		this.ready = ready;
+		this.conflation = conflation;
+		this.clockMs = clockMs;
+		int maxModes = conflation.maxPending();
+		this.modesByTopic = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, NotificationConflation.Mode> eldest) {
+				return size() > maxModes;
+			}
+		};
+	}
+
+	/**
+	 * Sends a notification, or keeps it in the backlog if the stream is not
+	 * ready or older notifications are still waiting.
+	 *
+	 * @return false if the stream is closed
+	 */
+	synchronized boolean send(NotificationMessage notification) {
+		if (sink.isClosed()) {
+			return false;
+		}
+		if (backlog.isEmpty() && ready.getAsBoolean()) {
+			return sink.send(notification);
+		}
+		enqueue(notification);
+		return true;
+	}
+
+	/**
+	 * Sends waiting notifications for as long as the stream stays ready. Called
+	 * from the stream's on-ready handler.
+	 */
+	synchronized void drain() {
+		Iterator<Pending> pending = backlog.values().iterator();
+		while (pending.hasNext() && ready.getAsBoolean()) {
+			NotificationMessage notification = pending.next().toMessage();
+			pending.remove();
+			if (!sink.send(notification)) {
+				backlog.clear();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Fails the stream; notifications still waiting are discarded.
+	 */
+	synchronized void fail(Throwable error) {
+		backlog.clear();
+		sink.fail(error);
+	}
+
+	/**
+	 * Fails the stream with an error built under the stream's lock; notifications
+	 * still waiting are discarded.
+	 */
+	synchronized void fail(Supplier<? extends Throwable> error) {
+		backlog.clear();
+		sink.fail(error);
+	}
+
+	/**
+	 * Stops sending after the client cancelled the stream; notifications still
+	 * waiting are discarded.
+	 */
+	synchronized void discard() {
+		backlog.clear();
+		sink.markClosed();
+	}
+
+	/** Notifications replaced by or merged into a newer one. */
+	synchronized long conflated() {
+		return conflated;
+	}
+
+	/** Notifications dropped because the backlog was full. */
+	synchronized long dropped() {
+		return dropped;
+	}
+
+	synchronized int pending() {
+		return backlog.size();
+	}
+
+	private void enqueue(NotificationMessage notification) {
+		String topic = notification.getTopic();
+		switch (modesByTopic.computeIfAbsent(topic, conflation::modeFor)) {
+			case LATEST -> {
+				// Re-inserted so the replacement keeps the arrival order of the latest one
+				if (backlog.remove(topic) != null) {
+					conflated++;
+				}
+				backlog.put(topic, new Pending(notification));
+			}
+			case DIGEST -> {
+				DigestKey key = new DigestKey(topic, clockMs.getAsLong() / conflation.digestWindow().toMillis());
+				Pending digest = backlog.get(key);
+				if (digest == null) {
+					backlog.put(key, new Pending(notification));
+				} else {
+					digest.merge(notification);
+					conflated++;
+				}
+			}
+			case QUEUE -> backlog.put(sequence++, new Pending(notification));
+		}
+		if (backlog.size() > conflation.maxPending()) {
+			Iterator<Pending> oldest = backlog.values().iterator();
+			oldest.next();
+			oldest.remove();
+			dropped++;
+		}
+	}
+
+	private record DigestKey(String topic, long window) {
+	}
+
+	/** A waiting notification, or several merged into a digest. */
+	private static final class Pending {
+		private final NotificationMessage first;
+		private int count = 1;
+		private int priority;
+		private long timestamp;
+		private ArrayDeque<String> titles;
+
+		Pending(NotificationMessage first) {
+			this.first = first;
+			this.priority = first.getPriorityValue();
+			this.timestamp = first.getTimestamp();
+		}
+
+		void merge(NotificationMessage notification) {
+			if (titles == null) {
+				titles = new ArrayDeque<>(DIGEST_TITLES);
+				titles.add(first.getTitle());
+			}
+			if (titles.size() == DIGEST_TITLES) {
+				titles.removeFirst();
+			}
+			titles.addLast(notification.getTitle());
+			count++;
+			priority = Math.max(priority, notification.getPriorityValue());
+			timestamp = Math.max(timestamp, notification.getTimestamp());
+		}
+
+		NotificationMessage toMessage() {
+			if (count == 1) {
+				return first;
+			}
+			return ProtoConverter.toProtoNotification(NotificationService.createDigest(first.getTopic(), count,
+					List.copyOf(titles), NotificationPriority.forNumber(priority), Instant.ofEpochMilli(timestamp)));
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.NotificationDto;
+import dev.irako.topics.grpc.model.NotificationMessage;
+import dev.irako.topics.grpc.model.StreamingServiceGrpc;
+import dev.irako.topics.grpc.model.SubscribeRequest;
+import dev.irako.topics.grpc.service.DrainPlanService;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A live notification subscription that survives server drains. When the
+ * stream ends with UNAVAILABLE it reconnects after a jittered delay and resumes
+ * from the offset the draining server reported; any other error ends the
+ * subscription.
+ *
+ * <p>
+ * If the connection drops without a drain hint, the subscription resumes from
+ * the last reported offset, so a few sample notifications may repeat.
+ */
+public final class LiveSubscription implements AutoCloseable {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LiveSubscription.class);
+
+	private final StreamingServiceGrpc.StreamingServiceStub asyncStub;
+	private final SubscribeRequest request;
+	private final Consumer<NotificationDto> consumer;
+	private final ReconnectPolicy reconnectPolicy;
+
+	private final Object lock = new Object();
+	private Context.CancellableContext currentCall;
+	private int resumeOffset;
+	private int reconnectCount;
+	private boolean closed;
+
+	LiveSubscription(StreamingServiceGrpc.StreamingServiceStub asyncStub, SubscribeRequest request,
+			Consumer<NotificationDto> consumer, ReconnectPolicy reconnectPolicy) {
+		this.asyncStub = asyncStub;
+		this.request = request;
+		this.consumer = consumer;
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	void connect() {
+		Context.CancellableContext call;
+		SubscribeRequest resumed;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			call = Context.current().fork().withCancellation();
+			currentCall = call;
+			resumed = request.toBuilder().setResumeOffset(resumeOffset).build();
+		}
+		call.run(() -> asyncStub.subscribeToNotifications(resumed, new StreamObserver<NotificationMessage>() {
+			@Override
+			public void onNext(NotificationMessage notification) {
+				consumer.accept(ProtoConverter.toNotificationDto(notification));
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				handleStreamEnd(t);
+			}
+
+			@Override
+			public void onCompleted() {
+				logger.info("Live subscription completed by server: userId={}", request.getUserId());
+			}
+		}));
+	}
+
+	private void handleStreamEnd(Throwable error) {
+		long delayMillis;
+		int offset;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			if (Status.fromThrowable(error).getCode() != Status.Code.UNAVAILABLE) {
+				logger.error("Live subscription failed: userId={}", request.getUserId(), error);
+				closed = true;
+				return;
+			}
+			resumeOffset = DrainSupport.resumeOffset(error).orElse(resumeOffset);
+			offset = resumeOffset;
+			reconnectCount++;
+			delayMillis = DrainPlanService.reconnectDelayMillis(reconnectPolicy.baseDelay().toMillis(),
+					reconnectPolicy.maxJitter().toMillis(), ThreadLocalRandom.current().nextDouble());
+		}
+		logger.info("Live subscription interrupted; reconnecting in {} ms from offset {}", delayMillis, offset);
+		CompletableFuture.runAsync(this::connect,
+				CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Number of times the stream was reconnected.
+	 *
+	 * @return the reconnect count
+	 */
+	public int reconnectCount() {
+		synchronized (lock) {
+			return reconnectCount;
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			if (currentCall != null) {
+				currentCall.cancel(null);
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.LoadProfile;
+import dev.irako.topics.grpc.model.LoadReport;
+import dev.irako.topics.grpc.model.RpcLatencySummary;
+import dev.irako.topics.grpc.model.RpcType;
+import dev.irako.topics.grpc.service.LoadGenerationService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a configurable mix of RPCs against a server through a
+ * {@link GrpcClient} and records per-RPC latency in HDR histograms.
+ *
+ * <p>
+ * Calls issued during the warmup phase are executed but not recorded. In
+ * open-loop mode each call is timed from its scheduled start, so a server
+ * stall shows up as latency instead of as fewer requests.
+ *
+ * <pre>
+ * try (GrpcClient client = new GrpcClient("localhost", 50051)) {
+ * 	LoadReport report = new LoadGenerator(client, LoadProfile.defaults()).run();
+ * }
+ * </pre>
+ */
+public final class LoadGenerator {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LoadGenerator.class);
+	private static final List<String> TOPICS = List.of("news", "updates", "alerts");
+	private static final int SIGNIFICANT_DIGITS = 3;
+
+	private final GrpcClient client;
+	private final LoadProfile profile;
+	private final Map<RpcType, Recorder> recorders = new EnumMap<>(RpcType.class);
+	private final Map<RpcType, LongAdder> errors = new EnumMap<>(RpcType.class);
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Creates a load generator.
+	 *
+	 * @param client
+	 *            the client to send requests through
+	 * @param profile
+	 *            the traffic to generate
+	 */
+	public LoadGenerator(GrpcClient client, LoadProfile profile) {
+		if (client == null) {
+			throw new IllegalArgumentException("client cannot be null");
+		}
+		if (profile == null) {
+			throw new IllegalArgumentException("profile cannot be null");
+		}
+		this.client = client;
+		this.profile = profile;
+		for (RpcType rpcType : profile.mix().keySet()) {
+			recorders.put(rpcType, new Recorder(SIGNIFICANT_DIGITS));
+			errors.put(rpcType, new LongAdder());
+		}
+	}
+
+	/**
+	 * Runs the warmup and measurement phases and waits for in-flight calls.
+	 *
+	 * @return latency summary per RPC for the measurement phase
+	 */
+	public LoadReport run() {
+		long startNanos = System.nanoTime();
+		long measureStartNanos = startNanos + profile.warmup().toNanos();
+		long endNanos = measureStartNanos + profile.measurement().toNanos();
+		logger.info("Starting {} load: mix={}, warmup={}, measurement={}", profile.mode(), profile.mix(),
+				profile.warmup(), profile.measurement());
+
+		// Virtual threads keep blocking client calls cheap, so open-loop arrivals
+		// are never held back by a worker pool
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			switch (profile.mode()) {
+				case CLOSED_LOOP -> runClosedLoop(executor, measureStartNanos, endNanos);
+				case OPEN_LOOP -> runOpenLoop(executor, startNanos, measureStartNanos, endNanos);
+			}
+		}
+		return buildReport();
+	}
+
+	private void runClosedLoop(ExecutorService executor, long measureStartNanos, long endNanos) {
+		for (int worker = 0; worker < profile.concurrency(); worker++) {
+			SplittableRandom random = new SplittableRandom(worker);
+			executor.execute(() -> {
+				while (System.nanoTime() < endNanos) {
+					execute(selectRpc(random), System.nanoTime(), measureStartNanos);
+				}
+			});
+		}
+	}
+
+	private void runOpenLoop(ExecutorService executor, long startNanos, long measureStartNanos, long endNanos) {
+		SplittableRandom random = new SplittableRandom(startNanos);
+		for (long index = 0;; index++) {
+			long intendedStartNanos = LoadGenerationService.scheduledStartNanos(startNanos, index,
+					profile.ratePerSecond());
+			if (intendedStartNanos >= endNanos) {
+				return;
+			}
+			waitUntil(intendedStartNanos);
+			RpcType rpcType = selectRpc(random);
+			executor.execute(() -> execute(rpcType, intendedStartNanos, measureStartNanos));
+		}
+	}
+
+	private RpcType selectRpc(SplittableRandom random) {
+		return LoadGenerationService.selectRpc(profile.mix(), random.nextDouble());
+	}
+
+	private void execute(RpcType rpcType, long startNanos, long measureStartNanos) {
+		boolean measured = startNanos >= measureStartNanos;
+		try {
+			invoke(rpcType, sequence.incrementAndGet());
+			if (measured) {
+				recorders.get(rpcType).recordValue(System.nanoTime() - startNanos);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			if (measured) {
+				errors.get(rpcType).increment();
+			}
+			logger.debug("{} call failed", rpcType, e);
+		}
+	}
+
+	private void invoke(RpcType rpcType, long sequenceNumber) throws InterruptedException {
+		Instant now = Instant.now();
+		switch (rpcType) {
+			case SEND_MESSAGE -> client
+					.sendMessage(LoadGenerationService.syntheticMessage(sequenceNumber, profile.payloadBytes(), now));
+			case SUBSCRIBE_TO_NOTIFICATIONS -> drain(client.streamNotifications("load-user-" + sequenceNumber, TOPICS));
+			case UPLOAD_SENSOR_DATA -> client.uploadSensorData(
+					LoadGenerationService.syntheticReadings(sequenceNumber, profile.uploadBatchSize(), now));
+			case CHAT -> drain(client
+					.chatStream(LoadGenerationService.syntheticChat(sequenceNumber, profile.payloadBytes(), now)));
+		}
+	}
+
+	// Reads the responses without keeping them; a failed stream counts as an error
+	private static void drain(ResponseStream<?> responses) {
+		try (responses) {
+			responses.forEachRemaining(response -> {
+			});
+		}
+	}
+
+	private static void waitUntil(long deadlineNanos) {
+		long remainingNanos;
+		while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remainingNanos);
+		}
+	}
+
+	private LoadReport buildReport() {
+		List<RpcLatencySummary> summaries = recorders.entrySet().stream()
+				.map(entry -> summarize(entry.getKey(), entry.getValue().getIntervalHistogram())).toList();
+		return new LoadReport(profile, summaries);
+	}
+
+	private RpcLatencySummary summarize(RpcType rpcType, Histogram histogram) {
+		return new RpcLatencySummary(rpcType, histogram.getTotalCount(), errors.get(rpcType).sum(),
+				toMicros(histogram.getValueAtPercentile(50.0)), toMicros(histogram.getValueAtPercentile(90.0)),
+				toMicros(histogram.getValueAtPercentile(99.0)), toMicros(histogram.getValueAtPercentile(99.9)),
+				toMicros(histogram.getMaxValue()));
+	}
+
+	private static double toMicros(long nanos) {
+		return nanos / 1_000.0;
+	}
+}
@@ -0,0 +1,262 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.service.DrainPlanService;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link Server} that also shuts down the peer channels the service opened to
+ * other cluster nodes, the executors its calls use and the sensor export
+ * writer, so callers keep the plain {@code Server} lifecycle. After
+ * {@code shutdown()} a background thread releases them in order once the last
+ * call has ended, so {@link #isTerminated()} becomes true without anyone
+ * calling {@link #awaitTermination(long, TimeUnit)}.
+ *
+ * <p>
+ * {@link #drain(DrainPolicy)} is the graceful alternative to
+ * {@code shutdown()} followed by {@code shutdownNow()} for rolling restarts.
+ */
+public final class ManagedServer extends Server {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ManagedServer.class);
+
+	private final Server delegate;
+	private final ClusterRouter router;
+	private final StreamRegistry streams;
+	private final CancellationStats cancellations;
+	private final ChatPipeline chatPipeline;
+	private final SensorSegmentWriter segmentWriter;
+	private final List<ExecutorService> executors;
+	private final AtomicBoolean releaseStarted = new AtomicBoolean();
+
+	/**
+	 * @param executors
+	 *            executors the service's calls run on, shut down in order once
+	 *            the calls have ended
+	 */
+	ManagedServer(Server delegate, ClusterRouter router, StreamRegistry streams, CancellationStats cancellations,
+			ChatPipeline chatPipeline, SensorSegmentWriter segmentWriter, List<ExecutorService> executors) {
+		this.delegate = delegate;
+		this.router = router;
+		this.streams = streams;
+		this.cancellations = cancellations;
+		this.chatPipeline = chatPipeline;
+		this.segmentWriter = segmentWriter;
+		this.executors = List.copyOf(executors);
+	}
+
+	/**
+	 * Drains the server and waits until it has stopped.
+	 *
+	 * <p>
+	 * New calls are refused at once and connected clients receive GOAWAY. Open
+	 * subscriptions and chat streams are then closed batch by batch with
+	 * UNAVAILABLE and a resume offset, so their clients reconnect to other nodes
+	 * spread over the drain window. Calls still running after the termination
+	 * grace are cancelled.
+	 *
+	 * @param policy
+	 *            the drain window, batch count and grace period
+	 * @throws InterruptedException
+	 *             if interrupted while draining; the server is then stopped
+	 *             forcefully
+	 */
+	public void drain(DrainPolicy policy) throws InterruptedException {
+		if (policy == null) {
+			throw new IllegalArgumentException("policy cannot be null");
+		}
+		shutdownDelegate();
+		try {
+			List<List<StreamRegistry.DrainableStream>> batches = DrainPlanService.batches(streams.snapshot(),
+					policy.batchCount());
+			long pauseNanos = DrainPlanService.pauseBetweenBatchesNanos(policy.window(), batches.size());
+			logger.info("Draining {} batches of open streams over {}", batches.size(), policy.window());
+			for (int batch = 0; batch < batches.size(); batch++) {
+				if (batch > 0) {
+					TimeUnit.NANOSECONDS.sleep(pauseNanos);
+				}
+				batches.get(batch).forEach(stream -> stream.drain(StreamRegistry.DRAINING));
+			}
+			router.shutdown();
+			if (!awaitTermination(policy.terminationGrace().toNanos(), TimeUnit.NANOSECONDS)) {
+				logger.warn("Calls still running after {}; stopping forcefully", policy.terminationGrace());
+				shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			shutdownNow();
+			throw e;
+		}
+	}
+
+	/**
+	 * Number of subscription and chat streams currently open.
+	 *
+	 * @return the open stream count
+	 */
+	public int openStreams() {
+		return streams.openCount();
+	}
+
+	/**
+	 * Number of streams closed because they were idle for longer than the
+	 * stream idle timeout of the server's {@link KeepalivePolicy}.
+	 *
+	 * @return the reaped stream count
+	 */
+	public long reapedStreams() {
+		return streams.reapedCount();
+	}
+
+	/**
+	 * Number of streams cancelled by their client or by a deadline.
+	 *
+	 * @return the cancelled stream count
+	 */
+	public long cancelledStreams() {
+		return cancellations.cancelledCount();
+	}
+
+	/**
+	 * How long cancelled streams took to stop working, from the cancellation
+	 * until their last notification, chunk of readings or chat message in
+	 * progress finished or was dropped, for the streams that stopped since the
+	 * previous call.
+	 *
+	 * @return the interval histogram, in nanoseconds
+	 */
+	public Histogram cancellationLatency() {
+		return cancellations.stopLatencyHistogram();
+	}
+
+	@Override
+	public Server start() throws IOException {
+		delegate.start();
+		return this;
+	}
+
+	@Override
+	public int getPort() {
+		return delegate.getPort();
+	}
+
+	@Override
+	public List<? extends SocketAddress> getListenSockets() {
+		return delegate.getListenSockets();
+	}
+
+	@Override
+	public List<ServerServiceDefinition> getServices() {
+		return delegate.getServices();
+	}
+
+	@Override
+	public List<ServerServiceDefinition> getImmutableServices() {
+		return delegate.getImmutableServices();
+	}
+
+	@Override
+	public List<ServerServiceDefinition> getMutableServices() {
+		return delegate.getMutableServices();
+	}
+
+	@Override
+	public Server shutdown() {
+		shutdownDelegate();
+		router.shutdown();
+		return this;
+	}
+
+	private void shutdownDelegate() {
+		delegate.shutdown();
+		if (!releaseStarted.compareAndSet(false, true)) {
+			return;
+		}
+		Thread release = new Thread(() -> {
+			try {
+				delegate.awaitTermination();
+				releaseAfterCalls(Long.MAX_VALUE);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "server-release");
+		release.setDaemon(true);
+		release.start();
+	}
+
+	/**
+	 * Closes the chat pipeline, then shuts the executors down one after the
+	 * other and finally the sensor export, each once the previous has ended,
+	 * so uploads still running export their last chunks. Safe to call
+	 * concurrently and repeatedly.
+	 *
+	 * @param timeoutNanos
+	 *            how long to wait in total
+	 * @return whether everything ended in time
+	 */
+	private boolean releaseAfterCalls(long timeoutNanos) throws InterruptedException {
+		// Capped so the deadline cannot overflow
+		long deadline = System.nanoTime() + Math.min(timeoutNanos, Long.MAX_VALUE / 2);
+		// No stream is left to feed the chat pipeline
+		chatPipeline.close();
+		for (ExecutorService executor : executors) {
+			executor.shutdown();
+			if (!executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		if (segmentWriter == null) {
+			return true;
+		}
+		segmentWriter.close();
+		return segmentWriter.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Server shutdownNow() {
+		delegate.shutdownNow();
+		router.shutdownNow();
+		chatPipeline.close();
+		if (segmentWriter != null) {
+			segmentWriter.close();
+		}
+		executors.forEach(ExecutorService::shutdownNow);
+		return this;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated() && (segmentWriter == null || segmentWriter.isTerminated())
+				&& executors.stream().allMatch(ExecutorService::isTerminated);
+	}
+
+	/**
+	 * Waits for running calls to finish, then for the sensor export to write
+	 * the uploads they queued.
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long start = System.nanoTime();
+		if (!delegate.awaitTermination(timeout, unit)) {
+			return false;
+		}
+		return releaseAfterCalls(unit.toNanos(timeout) - (System.nanoTime() - start));
+	}
+
+	@Override
+	public void awaitTermination() throws InterruptedException {
+		awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+}
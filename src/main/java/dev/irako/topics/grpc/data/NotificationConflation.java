@@ -0,0 +1,105 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.service.TopicPatterns;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * How live notifications are compacted for a subscriber that reads slower than
+ * they are published.
+ *
+ * <p>
+ * Notifications go straight to the transport while the subscriber keeps up.
+ * Once its stream is not ready, they wait in a per-subscriber backlog where
+ * the first rule whose topic pattern (see {@link TopicPatterns}) matches
+ * decides how they are kept; topics without a rule use {@link Mode#QUEUE}. The
+ * backlog never holds more than {@code maxPending} entries: when it is full,
+ * the oldest entry is dropped.
+ *
+ * <pre>
+ * NotificationConflation conflation = new NotificationConflation(
+ * 		List.of(new NotificationConflation.Rule("prices.#", NotificationConflation.Mode.LATEST),
+ * 				new NotificationConflation.Rule("alerts.#", NotificationConflation.Mode.DIGEST)),
+ * 		Duration.ofSeconds(1), 1024);
+ * </pre>
+ *
+ * @param rules
+ *            conflation rules, the first matching rule wins
+ * @param digestWindow
+ *            {@link Mode#DIGEST} merges the notifications of a topic published
+ *            within the same window of this length
+ * @param maxPending
+ *            the largest backlog per subscriber
+ */
+public record NotificationConflation(List<Rule> rules, Duration digestWindow, int maxPending) {
+
+	/** Backlog size used by {@link #none()}. */
+	public static final int DEFAULT_MAX_PENDING = 1024;
+
+	/** How the backlog keeps the notifications of a topic. */
+	public enum Mode {
+		/** Keep every notification in order, until the backlog is full. */
+		QUEUE,
+		/** Keep only the latest notification of each topic. */
+		LATEST,
+		/** Merge the notifications of each topic and window into one digest. */
+		DIGEST
+	}
+
+	/**
+	 * Conflation rule for the topics matching a pattern.
+	 *
+	 * @param pattern
+	 *            the topic pattern
+	 * @param mode
+	 *            how the backlog keeps the matching notifications
+	 */
+	public record Rule(String pattern, Mode mode) {
+		public Rule {
+			TopicPatterns.patternSegments(pattern);
+			if (mode == null) {
+				throw new IllegalArgumentException("mode cannot be null");
+			}
+		}
+	}
+
+	public NotificationConflation {
+		if (rules == null) {
+			throw new IllegalArgumentException("rules cannot be null");
+		}
+		rules = List.copyOf(rules);
+		if (digestWindow == null || digestWindow.toMillis() <= 0) {
+			throw new IllegalArgumentException("digestWindow must be at least one millisecond");
+		}
+		if (maxPending <= 0) {
+			throw new IllegalArgumentException("maxPending must be positive");
+		}
+	}
+
+	/**
+	 * No conflation: a slow subscriber gets every notification in order, as long
+	 * as its backlog does not overflow.
+	 *
+	 * @return the conflation without rules
+	 */
+	public static NotificationConflation none() {
+		return new NotificationConflation(List.of(), Duration.ofSeconds(1), DEFAULT_MAX_PENDING);
+	}
+
+	/**
+	 * Looks up how a topic is conflated.
+	 *
+	 * @param topic
+	 *            the published topic
+	 * @return the mode of the first matching rule, or {@link Mode#QUEUE}
+	 */
+	public Mode modeFor(String topic) {
+		for (Rule rule : rules) {
+			if (TopicPatterns.matches(rule.pattern(), topic)) {
+				return rule.mode();
+			}
+		}
+		return Mode.QUEUE;
+	}
+}
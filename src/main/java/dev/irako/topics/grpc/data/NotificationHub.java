@@ -0,0 +1,55 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.NotificationDto;
+import dev.irako.topics.grpc.model.NotificationMessage;
+import dev.irako.topics.grpc.service.TopicPatterns;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Live notification subscribers of the topics owned by this node. Published
+ * notifications are delivered once to every subscriber with a matching topic
+ * pattern (see {@link TopicSubscriptionIndex}).
+ */
+final class NotificationHub {
+
+	private final TopicSubscriptionIndex<LiveNotificationSink> subscriptions =
+			new TopicSubscriptionIndex<>();
+
+	/**
+	 * Registers a subscriber for the given topic patterns.
+	 *
+	 * @return an action that removes the subscription again
+	 * @throws IllegalArgumentException
+	 *             if a pattern is invalid; nothing is registered then
+	 */
+	Runnable subscribe(List<String> patterns, LiveNotificationSink subscriber) {
+		List<String> distinctPatterns = patterns.stream().distinct().toList();
+		distinctPatterns.forEach(TopicPatterns::patternSegments);
+		List<Runnable> unsubscribes = distinctPatterns.stream()
+				.map(pattern -> subscriptions.subscribe(pattern, subscriber)).toList();
+		return () -> unsubscribes.forEach(Runnable::run);
+	}
+
+	/**
+	 * Delivers a notification to the subscribers matching its topic. A slow
+	 * subscriber may get it later, or only merged into a newer one.
+	 *
+	 * @return the number of subscribers that accepted it
+	 */
+	int publish(NotificationDto notification) {
+		Set<LiveNotificationSink> subscribers = subscriptions.match(notification.topic());
+		if (subscribers.isEmpty()) {
+			return 0;
+		}
+		NotificationMessage message = ProtoConverter.toProtoNotification(notification);
+		int delivered = 0;
+		for (LiveNotificationSink subscriber : subscribers) {
+			if (subscriber.send(message)) {
+				delivered++;
+			}
+		}
+		return delivered;
+	}
+}
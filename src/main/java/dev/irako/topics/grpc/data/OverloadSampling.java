@@ -0,0 +1,48 @@
+package dev.irako.topics.grpc.data;
+
+/**
+ * When uploads switch from aggregating every reading to a sample of them.
+ *
+ * <p>
+ * Each upload checks the upload executor's backlog of waiting chunks once per
+ * chunk of received readings. While the backlog is within
+ * {@code backlogCapacity} every reading is kept; beyond it the upload keeps a
+ * share of {@code backlogCapacity / backlog}, but not less than
+ * {@code minRate}, stratified by sensor. Count, minimum and maximum still cover
+ * every reading, and the response reports the share sampled.
+ *
+ * @param backlogCapacity
+ *            waiting chunks the upload executor can have and still keep up
+ * @param minRate
+ *            the lowest share of readings kept, in (0, 1]
+ */
+public record OverloadSampling(int backlogCapacity, double minRate) {
+
+	public OverloadSampling {
+		if (backlogCapacity <= 0) {
+			throw new IllegalArgumentException("backlogCapacity must be positive");
+		}
+		if (!(minRate > 0.0 && minRate <= 1.0)) {
+			throw new IllegalArgumentException("minRate must be in (0, 1]");
+		}
+	}
+
+	/**
+	 * Default sampling: starts once more than four chunks per core wait, and
+	 * keeps at least one reading in twenty.
+	 *
+	 * @return the default policy
+	 */
+	public static OverloadSampling defaults() {
+		return new OverloadSampling(4 * Runtime.getRuntime().availableProcessors(), 0.05);
+	}
+
+	/**
+	 * Never samples: uploads aggregate every reading however long the backlog.
+	 *
+	 * @return the policy
+	 */
+	public static OverloadSampling disabled() {
+		return new OverloadSampling(Integer.MAX_VALUE, 1.0);
+	}
+}
@@ -4,6 +4,7 @@ import dev.irako.topics.grpc.model.*;
 import dev.irako.topics.grpc.model.StreamingServiceProto.*;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * Converter between proto messages and domain DTOs. Isolates gRPC types to the
@@ -55,26 +56,72 @@ public final class ProtoConverter {
 				Instant.ofEpochMilli(reading.getTimestamp()), reading.getLocation());
 	}
 
+	public static void appendSensorReading(ReadingColumns columns, SensorReading reading) {
+		columns.append(reading.getSensorId(), reading.getValue(), reading.getUnit(), reading.getTimestamp(),
+				reading.getLocation());
+	}
+
 	public static AggregateResponse toProtoAggregateResponse(SensorAggregateDto dto) {
 		return AggregateResponse.newBuilder().setTotalReadings(dto.totalReadings()).setAverageValue(dto.averageValue())
 				.setMinValue(dto.minValue()).setMaxValue(dto.maxValue()).setUnit(dto.unit())
-				.setProcessingTimeMs(dto.processingTimeMs()).build();
+				.setProcessingTimeMs(dto.processingTimeMs()).setSamplingRate(dto.samplingRate()).build();
 	}
 
 	public static SensorAggregateDto toSensorAggregateDto(AggregateResponse response) {
+		// Servers that never sample leave the rate unset
+		double samplingRate = response.getSamplingRate() == 0.0 ? 1.0 : response.getSamplingRate();
 		return new SensorAggregateDto(response.getTotalReadings(), response.getAverageValue(), response.getMinValue(),
-				response.getMaxValue(), response.getUnit(), response.getProcessingTimeMs());
+				response.getMaxValue(), response.getUnit(), response.getProcessingTimeMs(), samplingRate);
+	}
+
+	public static SensorQueryRequest toProtoSensorQueryRequest(String sensorId, Instant from, Instant to) {
+		return SensorQueryRequest.newBuilder().setSensorId(sensorId).setFromTimestamp(from.toEpochMilli())
+				.setToTimestamp(to.toEpochMilli()).build();
+	}
+
+	// Ingestion statistics conversions
+	public static IngestionStatsResponse toProtoIngestionStatsResponse(IngestionStatsDto dto) {
+		IngestionStatsResponse.Builder builder = IngestionStatsResponse.newBuilder()
+				.setDistinctSensors(dto.distinctSensors())
+				.setDistinctSensorsCurrentWindow(dto.distinctSensorsCurrentWindow())
+				.setDistinctSensorsPreviousWindow(dto.distinctSensorsPreviousWindow())
+				.setWindowStartMs(dto.windowStart().toEpochMilli()).setChatMessages(dto.chatMessages());
+		for (HeavyHitterDto sender : dto.topChatSenders()) {
+			builder.addTopChatSenders(ChatSenderCount.newBuilder().setUserId(sender.key())
+					.setMessageCount(sender.count()).setMaxOvercount(sender.maxOvercount()));
+		}
+		return builder.build();
+	}
+
+	public static IngestionStatsDto toIngestionStatsDto(IngestionStatsResponse response) {
+		List<HeavyHitterDto> senders = response.getTopChatSendersList().stream()
+				.map(sender -> new HeavyHitterDto(sender.getUserId(), sender.getMessageCount(),
+						sender.getMaxOvercount()))
+				.toList();
+		return new IngestionStatsDto(response.getDistinctSensors(), response.getDistinctSensorsCurrentWindow(),
+				response.getDistinctSensorsPreviousWindow(), Instant.ofEpochMilli(response.getWindowStartMs()),
+				response.getChatMessages(), senders);
 	}
 
 	// Chat message conversions
 	public static ChatMessageDto toChatMessageDto(ChatMessage message) {
+		String roomId = message.getRoomId().isEmpty() ? ChatMessageDto.DEFAULT_ROOM : message.getRoomId();
 		return new ChatMessageDto(message.getUserId(), message.getUsername(), message.getContent(),
-				Instant.ofEpochMilli(message.getTimestamp()), toChatMessageType(message.getType()));
+				Instant.ofEpochMilli(message.getTimestamp()), toChatMessageType(message.getType()), roomId,
+				message.getMentionsList());
 	}
 
 	public static ChatMessage toProtoChatMessage(ChatMessageDto dto) {
 		return ChatMessage.newBuilder().setUserId(dto.userId()).setUsername(dto.username()).setContent(dto.content())
-				.setTimestamp(dto.timestamp().toEpochMilli()).setType(toProtoMessageType(dto.type())).build();
+				.setTimestamp(dto.timestamp().toEpochMilli()).setType(toProtoMessageType(dto.type()))
+				.setRoomId(dto.roomId()).addAllMentions(dto.mentions()).build();
+	}
+
+	// Publish conversions
+	public static PublishRequest toProtoPublishRequest(String topic, String title, String content,
+			NotificationPriority priority) {
+		return PublishRequest.newBuilder().setTopic(topic).setTitle(title).setContent(content).setPriority(priority)
+				.build();
 	}
 
 	private static ChatMessageType toChatMessageType(MessageType type) {
@@ -0,0 +1,34 @@
+package dev.irako.topics.grpc.data;
+
+import java.time.Duration;
+
+/**
+ * How a client reconnects a long-lived stream that the server closed, e.g.
+ * while draining. Each attempt waits {@code baseDelay} plus a random share of
+ * {@code maxJitter}.
+ *
+ * @param baseDelay
+ *            minimum wait before reconnecting
+ * @param maxJitter
+ *            largest random wait added on top
+ */
+public record ReconnectPolicy(Duration baseDelay, Duration maxJitter) {
+
+	public ReconnectPolicy {
+		if (baseDelay == null || baseDelay.isNegative()) {
+			throw new IllegalArgumentException("baseDelay cannot be null or negative");
+		}
+		if (maxJitter == null || maxJitter.isNegative()) {
+			throw new IllegalArgumentException("maxJitter cannot be null or negative");
+		}
+	}
+
+	/**
+	 * Default reconnect: 100 ms plus up to two seconds of jitter.
+	 *
+	 * @return the default policy
+	 */
+	public static ReconnectPolicy defaults() {
+		return new ReconnectPolicy(Duration.ofMillis(100), Duration.ofSeconds(2));
+	}
+}
@@ -0,0 +1,171 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The responses of a streaming call, read one at a time as they arrive.
+ *
+ * <p>
+ * The stream asks the server for {@code prefetch} responses up front and for
+ * one more each time the caller takes one, so at most {@code prefetch}
+ * responses are ever buffered; a caller that reads slowly holds the server
+ * back through HTTP/2 flow control instead of growing the client's memory.
+ * {@link #hasNext()} blocks until the next response arrives or the call ends,
+ * and throws the call's {@link StatusRuntimeException} if it failed.
+ *
+ * <pre>
+ * try (ResponseStream&lt;NotificationDto&gt; notifications = client.streamNotifications("user123", topics)) {
+ * 	notifications.forEachRemaining(notification -&gt; handle(notification));
+ * }
+ * </pre>
+ *
+ * <p>
+ * Closing the stream before it ends cancels the call. The stream is meant to
+ * be read by one thread.
+ */
+public final class ResponseStream<T> implements Iterator<T>, AutoCloseable {
+
+	/** Responses buffered ahead of the caller by default. */
+	public static final int DEFAULT_PREFETCH = 32;
+
+	private final int prefetch;
+	// Responses and, last, the End of the call; credit bounds it to prefetch + 1
+	private final BlockingQueue<Object> queue;
+	private volatile ClientCallStreamObserver<?> call;
+	private Object next;
+	private End end;
+
+	/**
+	 * @param prefetch
+	 *            the most responses buffered ahead of the caller
+	 */
+	ResponseStream(int prefetch) {
+		if (prefetch <= 0) {
+			throw new IllegalArgumentException("prefetch must be positive");
+		}
+		this.prefetch = prefetch;
+		this.queue = new ArrayBlockingQueue<>(prefetch + 1);
+	}
+
+	/**
+	 * Creates the observer to start the call with; use it for one call only.
+	 *
+	 * @param converter
+	 *            converts each response message, on the gRPC thread
+	 */
+	<ReqT, RespT> ClientResponseObserver<ReqT, RespT> observer(Function<RespT, T> converter) {
+		return new ClientResponseObserver<>() {
+			@Override
+			public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+				call = requestStream;
+				requestStream.disableAutoRequestWithInitial(prefetch);
+			}
+
+			@Override
+			public void onNext(RespT response) {
+				enqueue(converter.apply(response));
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				enqueue(new End(t));
+			}
+
+			@Override
+			public void onCompleted() {
+				enqueue(new End(null));
+			}
+		};
+	}
+
+	private void enqueue(Object item) {
+		if (!queue.offer(item)) {
+			// Only a server ignoring flow control gets here
+			throw new IllegalStateException("More responses than requested");
+		}
+	}
+
+	/**
+	 * Waits for the next response or the end of the call.
+	 *
+	 * @return true if a response is available
+	 * @throws StatusRuntimeException
+	 *             if the call failed, or CANCELLED if the thread was
+	 *             interrupted while waiting
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (end == null) {
+			Object item;
+			try {
+				item = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw Status.CANCELLED.withDescription("Interrupted while waiting for a response").withCause(e)
+						.asRuntimeException();
+			}
+			if (!(item instanceof End ended)) {
+				next = item;
+				call.request(1);
+				return true;
+			}
+			end = ended;
+		}
+		if (end.error() != null) {
+			throw Status.fromThrowable(end.error()).asRuntimeException(Status.trailersFromThrowable(end.error()));
+		}
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		T response = (T) next;
+		next = null;
+		return response;
+	}
+
+	/**
+	 * The remaining responses as a sequential stream; closing it closes this
+	 * response stream.
+	 *
+	 * @return the stream of responses
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * Cancels the call unless it already ended.
+	 */
+	@Override
+	public void close() {
+		if (end == null && call != null) {
+			call.cancel("Response stream closed", null);
+		}
+	}
+
+	private record End(Throwable error) {
+	}
+}
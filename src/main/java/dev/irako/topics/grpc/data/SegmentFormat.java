@@ -0,0 +1,54 @@
+package dev.irako.topics.grpc.data;
+
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+/**
+ * Layout of sensor segment files, shared by {@link SensorSegmentWriter} and
+ * {@link SensorSegmentReader}.
+ *
+ * <p>
+ * A segment file {@code readings-<partitionStartMs>.seg} holds the readings
+ * whose timestamps fall into one partition, as a sequence of blocks. Each block
+ * covers one sensor, unit and location:
+ *
+ * <pre>
+ * int    magic
+ * int    sensor ID length, then UTF-8 bytes (likewise unit, location)
+ * int    point count
+ * int    payload length
+ * byte[] payload: Gorilla-encoded (timestamp, value) points
+ * </pre>
+ */
+final class SegmentFormat {
+
+	static final int BLOCK_MAGIC = 0x53454731; // "SEG1"
+	static final String FILE_PREFIX = "readings-";
+	static final String FILE_SUFFIX = ".seg";
+
+	private SegmentFormat() {
+		// Utility class
+	}
+
+	static String fileName(long partitionStartMs) {
+		return FILE_PREFIX + partitionStartMs + FILE_SUFFIX;
+	}
+
+	/**
+	 * Parses the partition start from a segment file name.
+	 *
+	 * @return the partition start, or empty if the file is not a segment
+	 */
+	static OptionalLong partitionStartMs(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+			return OptionalLong.empty();
+		}
+		try {
+			return OptionalLong
+					.of(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+		} catch (NumberFormatException e) {
+			return OptionalLong.empty();
+		}
+	}
+}
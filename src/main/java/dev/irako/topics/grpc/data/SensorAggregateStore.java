@@ -0,0 +1,243 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorBucketAggregate;
+import dev.irako.topics.grpc.service.SensorAggregationService;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory store of recent per-sensor aggregates, so range queries merge a few
+ * pre-aggregated buckets instead of re-reading raw readings.
+ *
+ * <p>
+ * Each sensor keeps a fixed ring of time buckets in primitive arrays: a reading
+ * in a newer bucket overwrites the slot of the oldest one, and readings older
+ * than the ring are dropped. Memory is bounded by the number of sensors, which
+ * is capped; sensors that stop reporting are evicted after an idle timeout, and
+ * the least recently updated sensors make room when the cap is reached. They
+ * are evicted in batches of a sixteenth of the cap, so a store at its cap scans
+ * its sensors once per batch rather than once per new sensor.
+ */
+final class SensorAggregateStore {
+
+	static final Duration DEFAULT_BUCKET_WIDTH = Duration.ofMinutes(1);
+	static final int DEFAULT_BUCKET_COUNT = 60;
+	static final int DEFAULT_MAX_SENSORS = 10_000;
+	static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(2);
+
+	/** Share of the cap, as a divisor, freed beyond what a full store needs. */
+	private static final int SPARE_ROOM_DIVISOR = 16;
+
+	private final long bucketMillis;
+	private final int bucketCount;
+	private final int maxSensors;
+	private final long idleTimeoutMillis;
+	private final ConcurrentHashMap<String, Series> seriesBySensor = new ConcurrentHashMap<>();
+
+	SensorAggregateStore() {
+		this(DEFAULT_BUCKET_WIDTH, DEFAULT_BUCKET_COUNT, DEFAULT_MAX_SENSORS, DEFAULT_IDLE_TIMEOUT);
+	}
+
+	SensorAggregateStore(Duration bucketWidth, int bucketCount, int maxSensors, Duration idleTimeout) {
+		if (bucketWidth == null || bucketWidth.toMillis() <= 0) {
+			throw new IllegalArgumentException("bucketWidth must be at least one millisecond");
+		}
+		if (bucketCount <= 0 || maxSensors <= 0) {
+			throw new IllegalArgumentException("bucketCount and maxSensors must be positive");
+		}
+		if (idleTimeout == null || idleTimeout.isNegative()) {
+			throw new IllegalArgumentException("idleTimeout cannot be null or negative");
+		}
+		this.bucketMillis = bucketWidth.toMillis();
+		this.bucketCount = bucketCount;
+		this.maxSensors = maxSensors;
+		this.idleTimeoutMillis = idleTimeout.toMillis();
+	}
+
+	long idleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	long bucketMillis() {
+		return bucketMillis;
+	}
+
+	int sensorCount() {
+		return seriesBySensor.size();
+	}
+
+	/**
+	 * Merges bucket aggregates into the store.
+	 *
+	 * @param aggregates
+	 *            aggregates from
+	 *            {@link SensorAggregationService#aggregateBySensorAndBucket}
+	 *            with this store's bucket width
+	 * @param nowMs
+	 *            current time, recorded as the sensors' last update
+	 */
+	void record(List<SensorBucketAggregate> aggregates, long nowMs) {
+		long newSensors = aggregates.stream().map(SensorBucketAggregate::sensorId).distinct()
+				.filter(sensorId -> !seriesBySensor.containsKey(sensorId)).count();
+		long excess = seriesBySensor.size() + newSensors - maxSensors;
+		if (excess > 0) {
+			// Once per call, however many of its sensors are new
+			makeRoom(nowMs, (int) excess);
+		}
+		for (SensorBucketAggregate aggregate : aggregates) {
+			// compute() keeps the merge atomic with eviction of the same sensor
+			seriesBySensor.compute(aggregate.sensorId(), (sensorId, series) -> {
+				Series target = series == null ? new Series(bucketCount) : series;
+				target.merge(Math.floorDiv(aggregate.bucketStartMs(), bucketMillis), aggregate.aggregate(), nowMs);
+				return target;
+			});
+		}
+	}
+
+	/**
+	 * Merges the buckets of one sensor that overlap a time range.
+	 *
+	 * @param sensorId
+	 *            the sensor
+	 * @param fromMs
+	 *            range start in epoch milliseconds, inclusive
+	 * @param toMs
+	 *            range end in epoch milliseconds, inclusive
+	 * @return the merged aggregate with zero processing time, or empty if no
+	 *         stored bucket overlaps the range
+	 */
+	Optional<SensorAggregateDto> query(String sensorId, long fromMs, long toMs) {
+		Series series = seriesBySensor.get(sensorId);
+		if (series == null) {
+			return Optional.empty();
+		}
+		return series.query(Math.floorDiv(fromMs, bucketMillis), Math.floorDiv(toMs, bucketMillis));
+	}
+
+	/**
+	 * Removes sensors that have not been updated within the idle timeout.
+	 *
+	 * @param nowMs
+	 *            current time in epoch milliseconds
+	 * @return the number of evicted sensors
+	 */
+	int evictIdle(long nowMs) {
+		int sizeBefore = seriesBySensor.size();
+		for (String sensorId : seriesBySensor.keySet()) {
+			seriesBySensor.computeIfPresent(sensorId,
+					(id, series) -> nowMs - series.lastUpdatedMs() > idleTimeoutMillis ? null : series);
+		}
+		return Math.max(0, sizeBefore - seriesBySensor.size());
+	}
+
+	/**
+	 * Evicts idle sensors and, if that frees too little, the least recently
+	 * updated ones, with spare room for the next new sensors.
+	 */
+	private void makeRoom(long nowMs, int needed) {
+		int missing = needed - evictIdle(nowMs);
+		if (missing <= 0) {
+			return;
+		}
+		int toEvict = missing + maxSensors / SPARE_ROOM_DIVISOR;
+		// Keeps the oldest candidates seen so far, newest on top, in one pass
+		PriorityQueue<Candidate> oldest = new PriorityQueue<>(toEvict + 1,
+				Comparator.comparingLong(Candidate::lastUpdatedMs).reversed());
+		seriesBySensor.forEach((sensorId, series) -> {
+			oldest.add(new Candidate(sensorId, series, series.lastUpdatedMs()));
+			if (oldest.size() > toEvict) {
+				oldest.poll();
+			}
+		});
+		for (Candidate candidate : oldest) {
+			seriesBySensor.remove(candidate.sensorId(), candidate.series());
+		}
+	}
+
+	/** A sensor with its last update as of the eviction scan. */
+	private record Candidate(String sensorId, Series series, long lastUpdatedMs) {
+	}
+
+	/**
+	 * Ring of buckets for one sensor, indexed by bucket number modulo the ring
+	 * size.
+	 */
+	private static final class Series {
+		private final long[] bucketNumbers;
+		private final int[] counts;
+		private final double[] sums;
+		// Readings actually seen, which is less than the count for sampled uploads
+		private final double[] sampled;
+		private final double[] mins;
+		private final double[] maxs;
+		private String unit;
+		private long lastUpdatedMs;
+
+		Series(int bucketCount) {
+			this.bucketNumbers = new long[bucketCount];
+			this.counts = new int[bucketCount];
+			this.sums = new double[bucketCount];
+			this.sampled = new double[bucketCount];
+			this.mins = new double[bucketCount];
+			this.maxs = new double[bucketCount];
+			Arrays.fill(bucketNumbers, Long.MIN_VALUE);
+		}
+
+		synchronized void merge(long bucketNumber, SensorAggregateDto aggregate, long nowMs) {
+			int slot = (int) Math.floorMod(bucketNumber, (long) bucketNumbers.length);
+			if (bucketNumbers[slot] > bucketNumber) {
+				// Older than the ring covers
+				return;
+			}
+			if (bucketNumbers[slot] < bucketNumber) {
+				bucketNumbers[slot] = bucketNumber;
+				counts[slot] = 0;
+				sums[slot] = 0.0;
+				sampled[slot] = 0.0;
+				mins[slot] = Double.POSITIVE_INFINITY;
+				maxs[slot] = Double.NEGATIVE_INFINITY;
+			}
+			counts[slot] += aggregate.totalReadings();
+			sums[slot] += aggregate.averageValue() * aggregate.totalReadings();
+			sampled[slot] += aggregate.samplingRate() * aggregate.totalReadings();
+			mins[slot] = Math.min(mins[slot], aggregate.minValue());
+			maxs[slot] = Math.max(maxs[slot], aggregate.maxValue());
+			unit = aggregate.unit();
+			lastUpdatedMs = Math.max(lastUpdatedMs, nowMs);
+		}
+
+		synchronized Optional<SensorAggregateDto> query(long fromBucket, long toBucket) {
+			int count = 0;
+			double sum = 0.0;
+			double sampledReadings = 0.0;
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int slot = 0; slot < bucketNumbers.length; slot++) {
+				long bucketNumber = bucketNumbers[slot];
+				if (bucketNumber >= fromBucket && bucketNumber <= toBucket) {
+					count += counts[slot];
+					sum += sums[slot];
+					sampledReadings += sampled[slot];
+					min = Math.min(min, mins[slot]);
+					max = Math.max(max, maxs[slot]);
+				}
+			}
+			if (count == 0) {
+				return Optional.empty();
+			}
+			return Optional.of(new SensorAggregateDto(count, sum / count, min, max, unit, 0,
+					Math.min(1.0, sampledReadings / count)));
+		}
+
+		synchronized long lastUpdatedMs() {
+			return lastUpdatedMs;
+		}
+	}
+}
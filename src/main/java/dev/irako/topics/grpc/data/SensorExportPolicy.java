@@ -0,0 +1,53 @@
+package dev.irako.topics.grpc.data;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Where and how uploaded readings are exported to on-disk segments.
+ *
+ * @param directory
+ *            directory for the segment files, created if missing
+ * @param partitionWidth
+ *            time span of reading timestamps covered by one segment file
+ * @param fsyncInterval
+ *            how often written data is forced to disk
+ * @param writeBufferBytes
+ *            size of the buffer blocks are collected in before each write
+ * @param queueCapacity
+ *            upload chunks waiting to be written; further chunks are not
+ *            exported while the queue is full
+ */
+public record SensorExportPolicy(Path directory, Duration partitionWidth, Duration fsyncInterval,
+		int writeBufferBytes, int queueCapacity) {
+
+	public SensorExportPolicy {
+		if (directory == null) {
+			throw new IllegalArgumentException("directory cannot be null");
+		}
+		if (partitionWidth == null || partitionWidth.toMillis() <= 0) {
+			throw new IllegalArgumentException("partitionWidth must be at least one millisecond");
+		}
+		if (fsyncInterval == null || fsyncInterval.isNegative()) {
+			throw new IllegalArgumentException("fsyncInterval cannot be null or negative");
+		}
+		if (writeBufferBytes < 4096) {
+			throw new IllegalArgumentException("writeBufferBytes must be at least 4096");
+		}
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException("queueCapacity must be positive");
+		}
+	}
+
+	/**
+	 * Default export: hourly segments, fsync every second, 1 MiB write buffer and
+	 * up to 256 queued upload chunks.
+	 *
+	 * @param directory
+	 *            directory for the segment files
+	 * @return the default policy for that directory
+	 */
+	public static SensorExportPolicy defaults(Path directory) {
+		return new SensorExportPolicy(directory, Duration.ofHours(1), Duration.ofSeconds(1), 1 << 20, 256);
+	}
+}
@@ -0,0 +1,210 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ReadingColumns;
+import dev.irako.topics.grpc.service.GorillaDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segments written by the sensor export (see {@link SegmentFormat})
+ * back into {@link ReadingColumns} for analysis. Segment files are
+ * memory-mapped and decoded in place.
+ *
+ * <pre>
+ * try (ReadingColumns readings = new ReadingColumns()) {
+ * 	SensorSegmentReader.scan(exportDirectory, Duration.ofHours(1), fromMs, toMs, readings);
+ * 	SensorAggregationService.aggregateColumns(readings, 0, 0);
+ * }
+ * </pre>
+ */
+public final class SensorSegmentReader {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SensorSegmentReader.class);
+
+	private SensorSegmentReader() {
+		// Utility class
+	}
+
+	/**
+	 * Appends the readings of a time range to a buffer, opening only the
+	 * segments whose partition overlaps the range.
+	 *
+	 * @param directory
+	 *            the export directory
+	 * @param partitionWidth
+	 *            the partition width the segments were written with
+	 * @param fromMs
+	 *            range start in epoch milliseconds, inclusive
+	 * @param toMs
+	 *            range end in epoch milliseconds, inclusive
+	 * @param target
+	 *            the buffer to append to
+	 * @return the number of readings appended
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public static int scan(Path directory, Duration partitionWidth, long fromMs, long toMs, ReadingColumns target)
+			throws IOException {
+		if (partitionWidth == null || partitionWidth.toMillis() <= 0) {
+			throw new IllegalArgumentException("partitionWidth must be at least one millisecond");
+		}
+		long partitionMillis = partitionWidth.toMillis();
+		int appended = 0;
+		for (Path segment : segments(directory)) {
+			long partitionStartMs = SegmentFormat.partitionStartMs(segment).orElseThrow();
+			if (partitionStartMs <= toMs && partitionStartMs + partitionMillis > fromMs) {
+				appended += read(segment, fromMs, toMs, target);
+			}
+		}
+		return appended;
+	}
+
+	/**
+	 * Appends all readings of one segment file to a buffer.
+	 *
+	 * @param segment
+	 *            the segment file
+	 * @param target
+	 *            the buffer to append to
+	 * @return the number of readings appended
+	 * @throws IOException
+	 *             if the segment cannot be read
+	 */
+	public static int read(Path segment, ReadingColumns target) throws IOException {
+		return read(segment, Long.MIN_VALUE, Long.MAX_VALUE, target);
+	}
+
+	/**
+	 * Lists the segment files of an export directory, oldest partition first.
+	 *
+	 * @param directory
+	 *            the export directory
+	 * @return the segment files
+	 * @throws IOException
+	 *             if the directory cannot be listed
+	 */
+	public static List<Path> segments(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> SegmentFormat.partitionStartMs(file).isPresent())
+					.sorted(Comparator.comparingLong(file -> SegmentFormat.partitionStartMs(file).orElseThrow()))
+					.toList();
+		}
+	}
+
+	/**
+	 * Length of the complete blocks at the start of a segment, the offset past
+	 * which a crash left a partly written block, if any.
+	 *
+	 * @param channel
+	 *            the open segment file
+	 * @return the length in bytes
+	 * @throws IOException
+	 *             if the segment cannot be read
+	 */
+	static long completeLength(FileChannel channel) throws IOException {
+		MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		while (mapped.hasRemaining()) {
+			int blockStart = mapped.position();
+			if (!skipBlock(mapped)) {
+				return blockStart;
+			}
+		}
+		return mapped.position();
+	}
+
+	private static int read(Path segment, long fromMs, long toMs, ReadingColumns target) throws IOException {
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		int appended = 0;
+		while (mapped.remaining() >= 4) {
+			int blockStart = mapped.position();
+			OptionalLong blockReadings = readBlock(mapped, fromMs, toMs, target);
+			if (blockReadings.isEmpty()) {
+				// A crash can leave a partly written block at the end of a segment
+				logger.warn("Ignoring truncated or corrupt block at offset {} of {}", blockStart, segment);
+				break;
+			}
+			appended += (int) blockReadings.getAsLong();
+		}
+		return appended;
+	}
+
+	private static OptionalLong readBlock(ByteBuffer block, long fromMs, long toMs, ReadingColumns target) {
+		if (block.getInt() != SegmentFormat.BLOCK_MAGIC) {
+			return OptionalLong.empty();
+		}
+		String sensorId = readString(block);
+		String unit = readString(block);
+		String location = readString(block);
+		if (location == null || block.remaining() < 8) {
+			return OptionalLong.empty();
+		}
+		int count = block.getInt();
+		int payloadBytes = block.getInt();
+		if (payloadBytes < 0 || block.remaining() < payloadBytes) {
+			return OptionalLong.empty();
+		}
+
+		ByteBuffer payload = block.slice(block.position(), payloadBytes);
+		block.position(block.position() + payloadBytes);
+		GorillaDecoder decoder = new GorillaDecoder(payload, count);
+		long appended = 0;
+		while (decoder.next()) {
+			long timestampMs = decoder.timestampMs();
+			if (timestampMs >= fromMs && timestampMs <= toMs) {
+				target.append(sensorId, decoder.value(), unit, timestampMs, location);
+				appended++;
+			}
+		}
+		return OptionalLong.of(appended);
+	}
+
+	private static boolean skipBlock(ByteBuffer block) {
+		if (block.remaining() < 4 || block.getInt() != SegmentFormat.BLOCK_MAGIC) {
+			return false;
+		}
+		for (int field = 0; field < 3; field++) {
+			if (readString(block) == null) {
+				return false;
+			}
+		}
+		if (block.remaining() < 8) {
+			return false;
+		}
+		block.getInt();
+		int payloadBytes = block.getInt();
+		if (payloadBytes < 0 || block.remaining() < payloadBytes) {
+			return false;
+		}
+		block.position(block.position() + payloadBytes);
+		return true;
+	}
+
+	private static String readString(ByteBuffer block) {
+		if (block.remaining() < 4) {
+			return null;
+		}
+		int length = block.getInt();
+		if (length < 0 || block.remaining() < length) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		block.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,294 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ReadingColumns;
+import dev.irako.topics.grpc.service.GorillaEncoder;
+import dev.irako.topics.grpc.service.SensorAggregationService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exports uploaded readings to on-disk segments (see {@link SegmentFormat}) on
+ * a background thread, so uploads never wait for the disk.
+ *
+ * <p>
+ * {@link #submit(ReadingColumns)} hands a processed chunk of an upload over;
+ * the writer thread encodes it into blocks, collects blocks in a large direct
+ * buffer and appends it to the partition's file through a {@link FileChannel}.
+ * Files are forced to disk every fsync interval. When the queue is full the
+ * chunk is not exported and counted as dropped rather than slowing ingest
+ * down.
+ *
+ * <p>
+ * The first time a run opens a partition's file it truncates the file to its
+ * complete blocks, so a block torn by a crash in an earlier run does not hide
+ * the blocks appended after it from {@link SensorSegmentReader}.
+ */
+final class SensorSegmentWriter implements AutoCloseable {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SensorSegmentWriter.class);
+	private static final int MAX_OPEN_PARTITIONS = 4;
+	private static final long MAX_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	private final SensorExportPolicy policy;
+	private final BlockingQueue<ReadingColumns> queue;
+	private final ByteBuffer writeBuffer;
+	private final Map<Long, FileChannel> openPartitions = new LinkedHashMap<>(16, 0.75f, true);
+	// Partitions whose file this run already truncated to its complete blocks
+	private final Set<Long> repairedPartitions = new HashSet<>();
+	private final Thread writerThread;
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private final AtomicLong droppedUploads = new AtomicLong();
+
+	// Owned by the writer thread
+	private long bufferedPartition = Long.MIN_VALUE;
+	private boolean dirty;
+	private long lastFsyncNanos = System.nanoTime();
+
+	private volatile boolean closed;
+
+	SensorSegmentWriter(SensorExportPolicy policy) {
+		this.policy = policy;
+		this.queue = new ArrayBlockingQueue<>(policy.queueCapacity());
+		this.writeBuffer = ByteBuffer.allocateDirect(policy.writeBufferBytes());
+		try {
+			Files.createDirectories(policy.directory());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot create export directory " + policy.directory(), e);
+		}
+		this.writerThread = new Thread(this::run, "sensor-segment-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Queues readings for export and takes ownership of their columns, which the
+	 * writer closes once written.
+	 *
+	 * @return false if the writer is closed or full; the caller keeps ownership
+	 */
+	boolean submit(ReadingColumns readings) {
+		if (closed || !queue.offer(readings)) {
+			droppedUploads.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Number of upload chunks not exported because the writer was full or
+	 * closed.
+	 */
+	long droppedUploads() {
+		return droppedUploads.get();
+	}
+
+	/**
+	 * Stops accepting uploads. Queued uploads are still written and forced to
+	 * disk before the writer thread ends.
+	 */
+	@Override
+	public void close() {
+		// No interrupt: it would close the FileChannel under a write in progress
+		closed = true;
+	}
+
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return terminated.await(timeout, unit);
+	}
+
+	boolean isTerminated() {
+		return terminated.getCount() == 0;
+	}
+
+	private void run() {
+		long fsyncIntervalNanos = policy.fsyncInterval().toNanos();
+		long pollNanos = Math.max(1, Math.min(fsyncIntervalNanos, MAX_POLL_NANOS));
+		try {
+			while (!closed) {
+				ReadingColumns readings = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+				if (readings != null) {
+					writeAndClose(readings);
+				}
+				if (System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos) {
+					flushAndSync();
+				}
+			}
+			for (ReadingColumns readings = queue.poll(); readings != null; readings = queue.poll()) {
+				writeAndClose(readings);
+			}
+			flushAndSync();
+		} catch (InterruptedException e) {
+			logger.warn("Sensor export interrupted");
+			closed = true;
+			queue.forEach(ReadingColumns::close);
+		} catch (IOException | RuntimeException e) {
+			logger.error("Sensor export stopped", e);
+			closed = true;
+			queue.forEach(ReadingColumns::close);
+		} finally {
+			closeChannels();
+			terminated.countDown();
+		}
+	}
+
+	private void writeAndClose(ReadingColumns readings) throws IOException {
+		try {
+			Map<BlockKey, GorillaEncoder> blocks = encode(readings);
+			List<Map.Entry<BlockKey, GorillaEncoder>> ordered = blocks.entrySet().stream()
+					.sorted(Comparator.comparingLong(entry -> entry.getKey().partitionStartMs())).toList();
+			for (Map.Entry<BlockKey, GorillaEncoder> block : ordered) {
+				BlockKey key = block.getKey();
+				writeBlock(key.partitionStartMs(), readings.sensorIdForCode(key.sensorCode()),
+						readings.unitForCode(key.unitCode()), readings.locationForCode(key.locationCode()),
+						block.getValue());
+			}
+		} finally {
+			readings.close();
+		}
+	}
+
+	private Map<BlockKey, GorillaEncoder> encode(ReadingColumns readings) {
+		long partitionMillis = policy.partitionWidth().toMillis();
+		Map<BlockKey, GorillaEncoder> blocks = new HashMap<>();
+		for (int index = 0; index < readings.size(); index++) {
+			long timestampMs = readings.timestampMs(index);
+			BlockKey key = new BlockKey(SensorAggregationService.bucketStart(timestampMs, partitionMillis),
+					readings.sensorCode(index), readings.unitCode(index), readings.locationCode(index));
+			blocks.computeIfAbsent(key, ignored -> new GorillaEncoder()).add(timestampMs, readings.value(index));
+		}
+		return blocks;
+	}
+
+	private void writeBlock(long partitionStartMs, String sensorId, String unit, String location,
+			GorillaEncoder encoder) throws IOException {
+		byte[] sensorIdBytes = sensorId.getBytes(StandardCharsets.UTF_8);
+		byte[] unitBytes = unit.getBytes(StandardCharsets.UTF_8);
+		byte[] locationBytes = location.getBytes(StandardCharsets.UTF_8);
+		byte[] payload = encoder.toByteArray();
+		int blockBytes = 4 + 4 + sensorIdBytes.length + 4 + unitBytes.length + 4 + locationBytes.length + 4 + 4
+				+ payload.length;
+
+		if (partitionStartMs != bufferedPartition || writeBuffer.remaining() < blockBytes) {
+			flushBuffer();
+			bufferedPartition = partitionStartMs;
+		}
+		if (blockBytes > writeBuffer.capacity()) {
+			// Larger than the buffer: write it on its own
+			ByteBuffer large = ByteBuffer.allocate(blockBytes);
+			putBlock(large, sensorIdBytes, unitBytes, locationBytes, encoder.count(), payload);
+			writeFully(channelFor(partitionStartMs), large.flip());
+			return;
+		}
+		putBlock(writeBuffer, sensorIdBytes, unitBytes, locationBytes, encoder.count(), payload);
+	}
+
+	private static void putBlock(ByteBuffer target, byte[] sensorId, byte[] unit, byte[] location, int count,
+			byte[] payload) {
+		target.putInt(SegmentFormat.BLOCK_MAGIC);
+		target.putInt(sensorId.length).put(sensorId);
+		target.putInt(unit.length).put(unit);
+		target.putInt(location.length).put(location);
+		target.putInt(count);
+		target.putInt(payload.length).put(payload);
+	}
+
+	private void flushBuffer() throws IOException {
+		if (writeBuffer.position() == 0) {
+			return;
+		}
+		writeFully(channelFor(bufferedPartition), writeBuffer.flip());
+		writeBuffer.clear();
+	}
+
+	private void writeFully(FileChannel channel, ByteBuffer source) throws IOException {
+		while (source.hasRemaining()) {
+			channel.write(source);
+		}
+		dirty = true;
+	}
+
+	private void flushAndSync() throws IOException {
+		flushBuffer();
+		if (dirty) {
+			for (FileChannel channel : openPartitions.values()) {
+				channel.force(false);
+			}
+			dirty = false;
+		}
+		lastFsyncNanos = System.nanoTime();
+	}
+
+	private FileChannel channelFor(long partitionStartMs) throws IOException {
+		FileChannel channel = openPartitions.get(partitionStartMs);
+		if (channel != null) {
+			return channel;
+		}
+		if (openPartitions.size() == MAX_OPEN_PARTITIONS) {
+			Iterator<FileChannel> eldest = openPartitions.values().iterator();
+			FileChannel evicted = eldest.next();
+			eldest.remove();
+			evicted.force(false);
+			evicted.close();
+		}
+		Path segment = policy.directory().resolve(SegmentFormat.fileName(partitionStartMs));
+		// Read to find the complete blocks; this thread is the only writer, so no APPEND is needed
+		channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			if (repairedPartitions.add(partitionStartMs)) {
+				truncateTornTail(channel, segment);
+			}
+			channel.position(channel.size());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			repairedPartitions.remove(partitionStartMs);
+			throw e;
+		}
+		openPartitions.put(partitionStartMs, channel);
+		return channel;
+	}
+
+	private static void truncateTornTail(FileChannel channel, Path segment) throws IOException {
+		long size = channel.size();
+		long complete = SensorSegmentReader.completeLength(channel);
+		if (complete < size) {
+			logger.warn("Truncating {} bytes of a partly written block at offset {} of {}", size - complete,
+					complete, segment);
+			channel.truncate(complete);
+		}
+	}
+
+	private void closeChannels() {
+		for (FileChannel channel : openPartitions.values()) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				logger.warn("Failed to close segment file", e);
+			}
+		}
+		openPartitions.clear();
+	}
+
+	private record BlockKey(long partitionStartMs, int sensorCode, int unitCode, int locationCode) {
+	}
+}
@@ -0,0 +1,89 @@
+package dev.irako.topics.grpc.data;
+
+/**
+ * Threading, delivery and connection lifecycle choices for a server built by
+ * {@link GrpcServerFactory}.
+ *
+ * @param directSendMessage
+ *            run {@code SendMessage} on the transport (Netty event loop)
+ *            thread that read the request, through an allocation-light
+ *            handler, instead of handing it to the application executor. Only
+ *            safe because the handler never blocks; all other methods keep
+ *            running on the application executor.
+ * @param conflation
+ *            how live notifications are compacted for slow subscribers
+ * @param keepalive
+ *            keepalive pings, connection ages and idle stream reaping
+ * @param sampling
+ *            when uploads sample readings instead of aggregating every one
+ */
+public record ServerTuning(boolean directSendMessage, NotificationConflation conflation, KeepalivePolicy keepalive,
+		OverloadSampling sampling) {
+
+	public ServerTuning {
+		if (conflation == null) {
+			throw new IllegalArgumentException("conflation cannot be null");
+		}
+		if (keepalive == null) {
+			throw new IllegalArgumentException("keepalive cannot be null");
+		}
+		if (sampling == null) {
+			throw new IllegalArgumentException("sampling cannot be null");
+		}
+	}
+
+	/**
+	 * Tuning without notification conflation and with the default keepalive and
+	 * overload sampling.
+	 *
+	 * @param directSendMessage
+	 *            run {@code SendMessage} on the transport thread
+	 */
+	public ServerTuning(boolean directSendMessage) {
+		this(directSendMessage, NotificationConflation.none(), KeepalivePolicy.defaults(), OverloadSampling.defaults());
+	}
+
+	/**
+	 * Default tuning: every method runs on the application executor, live
+	 * notifications are not conflated and the default keepalive and overload
+	 * sampling apply.
+	 *
+	 * @return the default tuning
+	 */
+	public static ServerTuning defaults() {
+		return new ServerTuning(false);
+	}
+
+	/**
+	 * Copy of this tuning with other notification conflation.
+	 *
+	 * @param notificationConflation
+	 *            the new conflation
+	 * @return the new tuning
+	 */
+	public ServerTuning withConflation(NotificationConflation notificationConflation) {
+		return new ServerTuning(directSendMessage, notificationConflation, keepalive, sampling);
+	}
+
+	/**
+	 * Copy of this tuning with another keepalive policy.
+	 *
+	 * @param keepalivePolicy
+	 *            the new keepalive policy
+	 * @return the new tuning
+	 */
+	public ServerTuning withKeepalive(KeepalivePolicy keepalivePolicy) {
+		return new ServerTuning(directSendMessage, conflation, keepalivePolicy, sampling);
+	}
+
+	/**
+	 * Copy of this tuning with other overload sampling.
+	 *
+	 * @param overloadSampling
+	 *            the new sampling policy
+	 * @return the new tuning
+	 */
+	public ServerTuning withSampling(OverloadSampling overloadSampling) {
+		return new ServerTuning(directSendMessage, conflation, keepalive, overloadSampling);
+	}
+}
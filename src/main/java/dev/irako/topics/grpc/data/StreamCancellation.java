@@ -0,0 +1,136 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Context;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cancellation of one server call, so the call's work stops as soon as the
+ * client goes away.
+ *
+ * <p>
+ * gRPC reports a cancelled call twice: to the call's cancel handler, which runs
+ * serialized with the call's other callbacks and so waits behind a handler
+ * that is still busy, and to the call's {@link Context}, whose listeners run as
+ * soon as the transport sees the cancellation or the deadline passes. Both are
+ * watched and the first one wins.
+ *
+ * <p>
+ * Handlers register what stops their work with {@link #onCancel(Runnable)}.
+ * The actions run once, on whichever thread reports the cancellation first, so
+ * they must be thread-safe. Work that runs outside the call's callbacks is
+ * bracketed by {@link #workStarted()} and {@link #workFinished()}; once the
+ * call is cancelled and no such work is left, the time since the cancellation
+ * is recorded in the server's {@link CancellationStats}.
+ */
+final class StreamCancellation {
+
+	private final CancellationStats stats;
+	private final CountDownLatch cancelled = new CountDownLatch(1);
+	private final AtomicInteger work = new AtomicInteger();
+	private final AtomicBoolean stopped = new AtomicBoolean();
+	private volatile long cancelledNanos;
+
+	// Guarded by this; null once the actions ran
+	private List<Runnable> actions = new ArrayList<>();
+
+	StreamCancellation(CancellationStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Watches a call for cancellation. Must be called from the service method,
+	 * while the call's context is current and before the method returns.
+	 *
+	 * @param stats
+	 *            receives the cancellation and its stop latency
+	 * @return the call's cancellation
+	 */
+	static StreamCancellation watch(ServerCallStreamObserver<?> call, CancellationStats stats) {
+		StreamCancellation cancellation = new StreamCancellation(stats);
+		call.setOnCancelHandler(cancellation::cancel);
+		// The context is also cancelled, without a cause, when the call completes
+		Context.current().addListener(context -> {
+			if (context.cancellationCause() != null) {
+				cancellation.cancel();
+			}
+		}, Runnable::run);
+		return cancellation;
+	}
+
+	/**
+	 * Registers an action that stops some of the call's work; it runs at once
+	 * if the call is already cancelled.
+	 */
+	void onCancel(Runnable action) {
+		synchronized (this) {
+			if (actions != null) {
+				actions.add(action);
+				return;
+			}
+		}
+		action.run();
+	}
+
+	boolean isCancelled() {
+		return cancelled.getCount() == 0;
+	}
+
+	/**
+	 * Waits instead of sleeping, so a cancellation ends the wait.
+	 *
+	 * @return true if the call is cancelled
+	 */
+	boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return cancelled.await(timeout, unit);
+	}
+
+	/**
+	 * Marks work of the call, running outside its callbacks, as started.
+	 */
+	void workStarted() {
+		work.incrementAndGet();
+	}
+
+	/**
+	 * Marks work started with {@link #workStarted()} as finished or dropped.
+	 */
+	void workFinished() {
+		if (work.decrementAndGet() == 0 && isCancelled()) {
+			recordStopped();
+		}
+	}
+
+	/**
+	 * Cancels the call's work. Only the first call has an effect.
+	 */
+	void cancel() {
+		List<Runnable> toRun;
+		synchronized (this) {
+			if (actions == null) {
+				return;
+			}
+			toRun = actions;
+			actions = null;
+			cancelledNanos = System.nanoTime();
+			cancelled.countDown();
+		}
+		stats.recordCancelled();
+		toRun.forEach(Runnable::run);
+		if (work.get() == 0) {
+			recordStopped();
+		}
+	}
+
+	private void recordStopped() {
+		if (stopped.compareAndSet(false, true)) {
+			stats.recordStopped(System.nanoTime() - cancelledNanos);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package dev.irako.topics.grpc.data;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open long-lived streams of one server, so a drain can close them in batches
+ * and streams that went idle can be reaped.
+ */
+final class StreamRegistry {
+
+	/**
+	 * A stream that can be closed early with a resume hint.
+	 */
+	interface DrainableStream {
+		/**
+		 * Closes the stream with UNAVAILABLE so the client reconnects, and
+		 * releases what the stream holds.
+		 *
+		 * @param reason
+		 *            the status description sent to the client
+		 */
+		void drain(String reason);
+
+		/**
+		 * The {@link System#nanoTime()} of the stream's last sent or received
+		 * message, or of its start.
+		 */
+		long lastActiveNanos();
+	}
+
+	static final String DRAINING = "Server is draining; reconnect";
+	static final String IDLE = "Stream was idle; reconnect";
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamRegistry.class);
+
+	private final Set<DrainableStream> streams = ConcurrentHashMap.newKeySet();
+	private final AtomicLong reaped = new AtomicLong();
+
+	/**
+	 * Registers an open stream.
+	 *
+	 * @return a callback that unregisters it; safe to call more than once
+	 */
+	Runnable register(DrainableStream stream) {
+		streams.add(stream);
+		return () -> streams.remove(stream);
+	}
+
+	List<DrainableStream> snapshot() {
+		return List.copyOf(streams);
+	}
+
+	/**
+	 * Drains and unregisters the streams idle for longer than a timeout.
+	 *
+	 * @param nowNanos
+	 *            the current {@link System#nanoTime()}
+	 * @param idleNanos
+	 *            the idle timeout
+	 * @return the number of streams reaped
+	 */
+	int reapIdle(long nowNanos, long idleNanos) {
+		int count = 0;
+		for (DrainableStream stream : streams) {
+			if (nowNanos - stream.lastActiveNanos() > idleNanos && streams.remove(stream)) {
+				// Counted before the client can see the stream end
+				reaped.incrementAndGet();
+				try {
+					stream.drain(IDLE);
+				} catch (RuntimeException e) {
+					logger.warn("Failed to close idle stream", e);
+				}
+				count++;
+			}
+		}
+		if (count > 0) {
+			logger.info("Reaped {} idle streams", count);
+		}
+		return count;
+	}
+
+	/** Streams reaped since the server started. */
+	long reapedCount() {
+		return reaped.get();
+	}
+
+	int openCount() {
+		return streams.size();
+	}
+}
@@ -0,0 +1,114 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.stub.StreamObserver;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe wrapper around an outbound {@link StreamObserver}.
+ *
+ * <p>
+ * gRPC observers must not be called concurrently, but a chat member or live
+ * subscriber receives messages published from many inbound streams at once.
+ * The sink serializes those calls and turns sends after completion or
+ * cancellation into no-ops instead of exceptions.
+ */
+final class StreamSink<T> {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamSink.class);
+
+	private final StreamObserver<T> observer;
+	private boolean closed;
+	private volatile long lastSentNanos = System.nanoTime();
+
+	StreamSink(StreamObserver<T> observer) {
+		this.observer = observer;
+	}
+
+	/**
+	 * The {@link System#nanoTime()} of the last message handed to the
+	 * transport, or of the sink's creation.
+	 */
+	long lastSentNanos() {
+		return lastSentNanos;
+	}
+
+	/**
+	 * Sends a message unless the stream is already closed.
+	 *
+	 * @return true if the message was handed to the transport
+	 */
+	synchronized boolean send(T message) {
+		return send(message, () -> {
+		});
+	}
+
+	/**
+	 * Sends a message and, if it was handed to the transport, runs a callback
+	 * before any other sink operation can interleave.
+	 *
+	 * @return true if the message was handed to the transport
+	 */
+	synchronized boolean send(T message, Runnable onSent) {
+		if (closed) {
+			return false;
+		}
+		try {
+			observer.onNext(message);
+		} catch (RuntimeException e) {
+			// The call was cancelled underneath us; stop sending to it
+			closed = true;
+			logger.debug("Dropping message for closed stream", e);
+			return false;
+		}
+		lastSentNanos = System.nanoTime();
+		onSent.run();
+		return true;
+	}
+
+	synchronized void complete() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			observer.onCompleted();
+		} catch (RuntimeException e) {
+			logger.debug("Stream already closed on completion", e);
+		}
+	}
+
+	synchronized void fail(Throwable error) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			observer.onError(error);
+		} catch (RuntimeException e) {
+			logger.debug("Stream already closed on error", e);
+		}
+	}
+
+	/**
+	 * Fails the stream with an error built under the sink lock, so it can
+	 * describe exactly what was sent before it.
+	 */
+	synchronized void fail(Supplier<? extends Throwable> error) {
+		if (!closed) {
+			fail(error.get());
+		}
+	}
+
+	/**
+	 * Marks the stream closed without signalling the peer, e.g. after the client
+	 * cancelled.
+	 */
+	synchronized void markClosed() {
+		closed = true;
+	}
+
+	synchronized boolean isClosed() {
+		return closed;
+	}
+}
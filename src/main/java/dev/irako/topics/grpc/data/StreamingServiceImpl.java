@@ -3,22 +3,109 @@ package dev.irako.topics.grpc.data;
 import dev.irako.topics.grpc.model.*;
 import dev.irako.topics.grpc.service.*;
 import dev.irako.topics.grpc.model.StreamingServiceProto.*;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * gRPC service implementation. Handles I/O and delegates business logic to
  * service layer.
+ *
+ * <p>
+ * Chat rooms and live notification topics are owned by one cluster node each
+ * (see {@link ClusterRouter}). Streams and publications that arrive at another
+ * node are relayed to the owner over gRPC.
+ *
+ * <p>
+ * Open subscriptions and chat streams are registered in a
+ * {@link StreamRegistry} so that a draining server can close them with a
+ * resume hint.
+ *
+ * <p>
+ * Every streaming handler watches its call for cancellation (see
+ * {@link StreamCancellation}): a cancelled stream stops generating, processing
+ * and buffering at once, and leaves its rooms and topics.
  */
 public final class StreamingServiceImpl extends StreamingServiceGrpc.StreamingServiceImplBase {
 
 	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamingServiceImpl.class);
+	private static final int SAMPLE_NOTIFICATION_COUNT = 10;
+	private static final long SAMPLE_NOTIFICATION_INTERVAL_MS = 500;
+	private static final long FORWARD_TIMEOUT_SECONDS = 5;
+	private static final int DEFAULT_TOP_CHAT_SENDERS = 10;
+
+	// Response builders reused by each transport thread on the direct path
+	private static final ThreadLocal<MessageResponse.Builder> RESPONSE_BUILDERS = ThreadLocal
+			.withInitial(MessageResponse::newBuilder);
+
+	private final ClusterRouter router;
+	private final ChatRoomHub chatRooms;
+	private final ChatPipeline chatPipeline;
+	private final NotificationHub notificationHub = new NotificationHub();
+	private final StreamRegistry streams;
+	private final SensorAggregateStore sensorStore;
+	private final IngestionStats ingestionStats = new IngestionStats();
+	private final ThreadPoolExecutor uploadExecutor;
+	private final SensorSegmentWriter segmentWriter;
+	private final boolean directSendMessage;
+	private final NotificationConflation conflation;
+	private final OverloadSampling sampling;
+	private final CancellationStats cancellations;
+
+	/**
+	 * @param chatPipeline
+	 *            processes chat messages before they are published to
+	 *            {@code chatRooms}
+	 * @param sensorStore
+	 *            the per-minute aggregates of uploads; the server's reaper
+	 *            evicts its idle sensors
+	 * @param uploadExecutor
+	 *            aggregates and exports the readings of upload streams; its
+	 *            queue is the backlog that triggers overload sampling
+	 * @param segmentWriter
+	 *            receives the readings of every upload for export, or null when
+	 *            export is disabled
+	 * @param tuning
+	 *            selects the direct {@code SendMessage} handler, the
+	 *            conflation of live notifications and overload sampling
+	 * @param cancellations
+	 *            counts cancelled streams and how long they took to stop
+	 */
+	StreamingServiceImpl(ClusterRouter router, StreamRegistry streams, ChatRoomHub chatRooms,
+			ChatPipeline chatPipeline, SensorAggregateStore sensorStore, ThreadPoolExecutor uploadExecutor,
+			SensorSegmentWriter segmentWriter, ServerTuning tuning, CancellationStats cancellations) {
+		this.router = router;
+		this.streams = streams;
+		this.chatRooms = chatRooms;
+		this.chatPipeline = chatPipeline;
+		this.sensorStore = sensorStore;
+		this.uploadExecutor = uploadExecutor;
+		this.segmentWriter = segmentWriter;
+		this.directSendMessage = tuning.directSendMessage();
+		this.conflation = tuning.conflation();
+		this.sampling = tuning.sampling();
+		this.cancellations = cancellations;
+	}
 
 	@Override
 	public void sendMessage(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+		if (directSendMessage) {
+			sendMessageDirect(request, responseObserver);
+			return;
+		}
 		try {
 			logger.debug("Received message request from user: {}", request.getUserId());
 
@@ -40,131 +127,300 @@ public final class StreamingServiceImpl extends StreamingServiceGrpc.StreamingSe
 		}
 	}
 
+	/**
+	 * Same result as the DTO path, but reads the request fields directly and
+	 * fills a reused builder, so the only allocations are the message ID and the
+	 * response. Runs on the transport thread and must never block.
+	 */
+	private void sendMessageDirect(MessageRequest request, StreamObserver<MessageResponse> responseObserver) {
+		try {
+			boolean accepted = MessageService.checkMessage(request.getUserId(), request.getContent());
+			MessageResponse.Builder builder = RESPONSE_BUILDERS.get().clear();
+			responseObserver.onNext(builder.setSuccess(accepted).setMessageId(MessageService.fastMessageId())
+					.setStatus(MessageService.statusFor(accepted)).build());
+			responseObserver.onCompleted();
+		} catch (Exception e) {
+			logger.error("Error processing message", e);
+			responseObserver.onError(e);
+		}
+	}
+
 	@Override
 	public void subscribeToNotifications(SubscribeRequest request,
 			StreamObserver<NotificationMessage> responseObserver) {
 		try {
-			logger.info("Client subscribed: userId={}, topics={}", request.getUserId(), request.getTopicsList());
-
-			// Generate notifications using service layer
-			List<String> topics = new ArrayList<>(request.getTopicsList());
-			var notificationStream = NotificationService.generateNotifications(request.getUserId(), topics, 10 // Generate
-																												// 10
-																												// notifications
-																												// as
-																												// example
-			);
-
-			// Stream notifications to client
-			notificationStream.forEach(notificationDto -> {
-				NotificationMessage protoNotification = ProtoConverter.toProtoNotification(notificationDto);
-				responseObserver.onNext(protoNotification);
-
-				// Simulate delay between notifications
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					Thread.currentThread().interrupt();
-					logger.warn("Interrupted while streaming notifications");
-					responseObserver.onError(e);
-					return;
+			request.getTopicsList().forEach(TopicPatterns::patternSegments);
+		} catch (IllegalArgumentException e) {
+			responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+			return;
+		}
+		try {
+			logger.info("Client subscribed: userId={}, topics={}, live={}, resumeOffset={}", request.getUserId(),
+					request.getTopicsList(), request.getLive(), request.getResumeOffset());
+			ServerCallStreamObserver<NotificationMessage> call =
+					(ServerCallStreamObserver<NotificationMessage>) responseObserver;
+			StreamCancellation cancellation = StreamCancellation.watch(call, cancellations);
+			StreamSink<NotificationMessage> sink = new StreamSink<>(call);
+			AtomicInteger samplesSent = new AtomicInteger();
+			// Live notifications wait, compacted, while the subscriber falls behind
+			LiveNotificationSink liveSink = new LiveNotificationSink(sink, call::isReady, conflation,
+					System::currentTimeMillis);
+			call.setOnReadyHandler(liveSink::drain);
+
+			// Register live interest before streaming the samples so nothing published
+			// meanwhile is missed
+			Runnable unsubscribe = request.getLive() ? subscribeLive(request, liveSink) : () -> {
+			};
+			Runnable unregister = streams.register(new StreamRegistry.DrainableStream() {
+				@Override
+				public void drain(String reason) {
+					unsubscribe.run();
+					liveSink.fail(() -> DrainSupport.drainingError(request.getResumeOffset() + samplesSent.get(),
+							reason));
 				}
+
+				@Override
+				public long lastActiveNanos() {
+					// A quiet topic is no reason to reap; a transport that stopped taking messages is
+					return call.isReady() ? System.nanoTime() : sink.lastSentNanos();
+				}
+			});
+			cancellation.onCancel(() -> {
+				liveSink.discard();
+				unsubscribe.run();
+				unregister.run();
+				logger.info("Subscription cancelled: userId={}, conflated={}, dropped={}", request.getUserId(),
+						liveSink.conflated(), liveSink.dropped());
 			});
 
-			responseObserver.onCompleted();
-			logger.info("Completed streaming notifications to user: {}", request.getUserId());
+			// A relayed subscription from another node only wants the live feed
+			if (!ClusterRouter.isForwardedCall()) {
+				cancellation.workStarted();
+				try {
+					streamSampleNotifications(request, sink, samplesSent, cancellation);
+				} finally {
+					cancellation.workFinished();
+				}
+			}
+
+			if (!request.getLive() && !cancellation.isCancelled()) {
+				unregister.run();
+				sink.complete();
+				logger.info("Completed streaming notifications to user: {}", request.getUserId());
+			}
 		} catch (Exception e) {
 			logger.error("Error streaming notifications", e);
 			responseObserver.onError(e);
 		}
 	}
 
-	@Override
-	public StreamObserver<SensorReading> uploadSensorData(StreamObserver<AggregateResponse> responseObserver) {
-		final List<SensorReadingDto> readings = new ArrayList<>();
-		final AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
-
-		return new StreamObserver<SensorReading>() {
-			@Override
-			public void onNext(SensorReading reading) {
-				logger.debug("Received sensor reading: sensorId={}, value={}", reading.getSensorId(),
-						reading.getValue());
-
-				// Convert and accumulate
-				SensorReadingDto dto = ProtoConverter.toSensorReadingDto(reading);
-				readings.add(dto);
-			}
+	private void streamSampleNotifications(SubscribeRequest request, StreamSink<NotificationMessage> sink,
+			AtomicInteger samplesSent, StreamCancellation cancellation) {
+		// Generate notifications using service layer, skipping those a resumed client
+		// already has
+		List<String> topics = new ArrayList<>(request.getTopicsList());
+		Iterator<NotificationDto> notifications = NotificationService
+				.generateNotifications(request.getUserId(), topics, SAMPLE_NOTIFICATION_COUNT)
+				.skip(request.getResumeOffset()).iterator();
 
-			@Override
-			public void onError(Throwable t) {
-				logger.error("Error receiving sensor data", t);
-				responseObserver.onError(t);
+		// Stream notifications to client until it goes away or the server drains
+		while (!cancellation.isCancelled() && notifications.hasNext()) {
+			NotificationMessage protoNotification = ProtoConverter.toProtoNotification(notifications.next());
+			if (!sink.send(protoNotification, samplesSent::incrementAndGet)) {
+				return;
 			}
 
-			@Override
-			public void onCompleted() {
-				try {
-					logger.info("Received {} sensor readings, computing aggregate", readings.size());
-
-					// Aggregate using service layer
-					long endTime = System.currentTimeMillis();
-					SensorAggregateDto aggregate = SensorAggregationService.aggregateReadings(readings, startTime.get(),
-							endTime);
-
-					// Convert and send response
-					AggregateResponse response = ProtoConverter.toProtoAggregateResponse(aggregate);
-					responseObserver.onNext(response);
-					responseObserver.onCompleted();
-
-					logger.info("Sent aggregate response: totalReadings={}, avg={}", aggregate.totalReadings(),
-							aggregate.averageValue());
-				} catch (Exception e) {
-					logger.error("Error aggregating sensor data", e);
-					responseObserver.onError(e);
+			// Simulate delay between notifications; a cancellation ends it
+			try {
+				if (cancellation.await(SAMPLE_NOTIFICATION_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+					return;
 				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				logger.warn("Interrupted while streaming notifications");
+				sink.fail(e);
+				return;
+			}
+		}
+	}
+
+	private Runnable subscribeLive(SubscribeRequest request, LiveNotificationSink sink) {
+		if (ClusterRouter.isForwardedCall()) {
+			return notificationHub.subscribe(request.getTopicsList(), sink);
+		}
+
+		List<Runnable> unsubscribes = new ArrayList<>();
+		Map<ClusterNode, List<String>> topicsByOwner = ClusterRoutingService.partitionTopicsByOwner(router.ring(),
+				request.getTopicsList());
+		topicsByOwner.forEach((owner, topics) -> {
+			if (router.servesLocally(owner)) {
+				unsubscribes.add(notificationHub.subscribe(topics, sink));
+			} else {
+				unsubscribes.add(relaySubscription(owner, request.getUserId(), topics, sink));
 			}
-		};
+		});
+		return () -> unsubscribes.forEach(Runnable::run);
+	}
+
+	private Runnable relaySubscription(ClusterNode owner, String userId, List<String> topics,
+			LiveNotificationSink sink) {
+		logger.debug("Relaying live topics {} to owner {}", topics, owner.nodeId());
+		SubscribeRequest upstreamRequest = SubscribeRequest.newBuilder().setUserId(userId).addAllTopics(topics)
+				.setLive(true).build();
+		// Child of the call context: cancelled with the client's call or on unsubscribe
+		Context.CancellableContext relayContext = Context.current().withCancellation();
+		relayContext.run(() -> router.asyncStub(owner).subscribeToNotifications(upstreamRequest,
+				new StreamObserver<NotificationMessage>() {
+					@Override
+					public void onNext(NotificationMessage notification) {
+						sink.send(notification);
+					}
+
+					@Override
+					public void onError(Throwable t) {
+						sink.fail(Status.UNAVAILABLE
+								.withDescription("Lost live subscription relay to node " + owner.nodeId()).withCause(t)
+								.asRuntimeException());
+					}
+
+					@Override
+					public void onCompleted() {
+						sink.fail(Status.UNAVAILABLE
+								.withDescription("Node " + owner.nodeId() + " ended the live subscription")
+								.asRuntimeException());
+					}
+				}));
+		return () -> relayContext.cancel(null);
 	}
 
 	@Override
-	public StreamObserver<ChatMessage> chat(StreamObserver<ChatMessage> responseObserver) {
-		final List<ChatMessageDto> allMessages = new ArrayList<>();
+	public StreamObserver<SensorReading> uploadSensorData(StreamObserver<AggregateResponse> responseObserver) {
+		ServerCallStreamObserver<AggregateResponse> call =
+				(ServerCallStreamObserver<AggregateResponse>) responseObserver;
+		// UploadStreamObserver requests readings as the upload executor works through them
+		call.disableAutoRequest();
+		StreamCancellation cancellation = StreamCancellation.watch(call, cancellations);
+		return new UploadStreamObserver(call, uploadExecutor, sensorStore, segmentWriter,
+				uploadExecutor.getQueue()::size, sampling, ingestionStats, cancellation);
+	}
 
-		return new StreamObserver<ChatMessage>() {
-			@Override
-			public void onNext(ChatMessage message) {
-				try {
-					logger.debug("Received chat message from: {}", message.getUsername());
+	@Override
+	public StreamObserver<ChatMessage> chat(StreamObserver<ChatMessage> responseObserver) {
+		ServerCallStreamObserver<ChatMessage> call = (ServerCallStreamObserver<ChatMessage>) responseObserver;
+		// ChatStreamObserver requests messages as the pipeline frees up
+		call.disableAutoRequest();
+		return new ChatStreamObserver(call, router, chatRooms, chatPipeline, streams, ingestionStats,
+				StreamCancellation.watch(call, cancellations));
+	}
 
-					// Convert to domain DTO
-					ChatMessageDto messageDto = ProtoConverter.toChatMessageDto(message);
-					allMessages.add(messageDto);
+	@Override
+	public void publishNotification(PublishRequest request, StreamObserver<PublishResponse> responseObserver) {
+		try {
+			TopicPatterns.topicSegments(request.getTopic());
+		} catch (IllegalArgumentException e) {
+			responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+			return;
+		}
+		try {
+			ClusterNode owner = router.ownerOfTopic(request.getTopic());
+			PublishResponse response = router.servesLocally(owner)
+					? publishLocally(request)
+					: router.blockingStub(owner).withDeadlineAfter(FORWARD_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+							.publishNotification(request);
+			responseObserver.onNext(response);
+			responseObserver.onCompleted();
+		} catch (Exception e) {
+			logger.error("Error publishing notification", e);
+			responseObserver.onError(e);
+		}
+	}
 
-					// Process using service layer
-					ChatMessageDto processedMessage = ChatService.processChatMessage(messageDto, allMessages);
+	private PublishResponse publishLocally(PublishRequest request) {
+		NotificationDto notification = NotificationService.createPublishedNotification(request.getTopic(),
+				request.getTitle(), request.getContent(), request.getPriority(), Instant.now());
+		int delivered = notificationHub.publish(notification);
+		logger.debug("Published {} to {} live subscribers", notification.notificationId(), delivered);
+		return PublishResponse.newBuilder().setDeliveredCount(delivered).setOwnerNodeId(router.self().nodeId())
+				.build();
+	}
 
-					// Echo back to client (in real system, might broadcast to all clients)
-					ChatMessage response = ProtoConverter.toProtoChatMessage(processedMessage);
-					responseObserver.onNext(response);
+	@Override
+	public void querySensorAggregates(SensorQueryRequest request, StreamObserver<AggregateResponse> responseObserver) {
+		try {
+			long startTime = System.currentTimeMillis();
+			long toMs = request.getToTimestamp() == 0 ? startTime : request.getToTimestamp();
 
-					logger.debug("Echoed chat message from: {}", message.getUsername());
-				} catch (Exception e) {
-					logger.error("Error processing chat message", e);
-					responseObserver.onError(e);
+			// Uploads are spread over the cluster, so every node holds part of a sensor's
+			// buckets; all peers are asked at once while the local store is read
+			List<ListenableFuture<AggregateResponse>> peerQueries = new ArrayList<>();
+			if (!ClusterRouter.isForwardedCall()) {
+				SensorQueryRequest peerRequest = request.toBuilder().setToTimestamp(toMs).build();
+				for (ClusterNode peer : router.peers()) {
+					// Peer queries inherit the call's context, so a cancelled query cancels them
+					peerQueries.add(router.futureStub(peer)
+							.withDeadlineAfter(FORWARD_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+							.querySensorAggregates(peerRequest));
 				}
 			}
+			List<SensorAggregateDto> parts = new ArrayList<>();
+			sensorStore.query(request.getSensorId(), request.getFromTimestamp(), toMs).ifPresent(parts::add);
+			for (ListenableFuture<AggregateResponse> peerQuery : peerQueries) {
+				Optional<SensorAggregateDto> part = peerAggregate(peerQuery);
+				if (Context.current().isCancelled()) {
+					return;
+				}
+				part.ifPresent(parts::add);
+			}
+
+			if (parts.isEmpty()) {
+				responseObserver.onError(Status.NOT_FOUND
+						.withDescription("No readings stored for sensor " + request.getSensorId() + " in range")
+						.asRuntimeException());
+				return;
+			}
+			SensorAggregateDto merged = SensorAggregationService.mergeAggregates(parts,
+					System.currentTimeMillis() - startTime);
+			responseObserver.onNext(ProtoConverter.toProtoAggregateResponse(merged));
+			responseObserver.onCompleted();
+		} catch (Exception e) {
+			logger.error("Error querying sensor aggregates", e);
+			responseObserver.onError(e);
+		}
+	}
 
-			@Override
-			public void onError(Throwable t) {
-				logger.error("Error in chat stream", t);
-				responseObserver.onError(t);
+	@Override
+	public void getIngestionStats(IngestionStatsRequest request,
+			StreamObserver<IngestionStatsResponse> responseObserver) {
+		try {
+			int topChatSenders = request.getTopChatSenders() == 0 ? DEFAULT_TOP_CHAT_SENDERS
+					: request.getTopChatSenders();
+			if (topChatSenders < 0) {
+				throw Status.INVALID_ARGUMENT.withDescription("top_chat_senders cannot be negative")
+						.asRuntimeException();
 			}
+			// Sketches are per node; peers are not asked
+			responseObserver.onNext(ProtoConverter.toProtoIngestionStatsResponse(ingestionStats.snapshot(
+					topChatSenders)));
+			responseObserver.onCompleted();
+		} catch (Exception e) {
+			logger.error("Error reading ingestion stats", e);
+			responseObserver.onError(e);
+		}
+	}
 
-			@Override
-			public void onCompleted() {
-				logger.info("Chat stream completed");
-				responseObserver.onCompleted();
+	private static Optional<SensorAggregateDto> peerAggregate(ListenableFuture<AggregateResponse> peerQuery) {
+		try {
+			return Optional.of(ProtoConverter.toSensorAggregateDto(peerQuery.get()));
+		} catch (ExecutionException e) {
+			Status status = Status.fromThrowable(e.getCause());
+			if (status.getCode() == Status.Code.NOT_FOUND || Context.current().isCancelled()) {
+				return Optional.empty();
 			}
-		};
+			throw status.asRuntimeException();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			peerQuery.cancel(true);
+			throw Status.CANCELLED.withDescription("Interrupted while querying peers").asRuntimeException();
+		}
 	}
 }
@@ -0,0 +1,156 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.service.TopicPatterns;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscription patterns (see {@link TopicPatterns}) stored in a trie with one
+ * level per segment; wildcards are stored as ordinary segments.
+ *
+ * <p>
+ * Matching a published topic follows, at each level, the literal segment and
+ * the {@code *} child and collects the {@code #} children on the way, so it
+ * costs a few map lookups per topic segment whatever the number of
+ * subscribers.
+ *
+ * <p>
+ * Subscribing and unsubscribing take no lock of their own. Every node counts
+ * the subscriptions at or below it. Unsubscribing decrements the counts along
+ * the path, and a node whose count drops to zero is retired with a
+ * compare-and-set and unlinked from its parent. A subscriber that finds a
+ * retired node unlinks it and creates a fresh one, so empty branches never
+ * accumulate and no subscription ends up in a retired node.
+ */
+final class TopicSubscriptionIndex<S> {
+
+	private final Node<S> root = new Node<>();
+
+	/**
+	 * Adds a subscription.
+	 *
+	 * @param pattern
+	 *            the subscription pattern
+	 * @param subscriber
+	 *            the subscriber; a subscriber should subscribe to each pattern
+	 *            at most once
+	 * @return an idempotent action that removes the subscription again
+	 * @throws IllegalArgumentException
+	 *             if the pattern is invalid
+	 */
+	Runnable subscribe(String pattern, S subscriber) {
+		List<String> segments = TopicPatterns.patternSegments(pattern);
+		List<Node<S>> path = new ArrayList<>(segments.size());
+		Node<S> node = root;
+		for (String segment : segments) {
+			node = acquireChild(node, segment);
+			path.add(node);
+		}
+		Node<S> target = node;
+		target.subscribers.add(subscriber);
+
+		AtomicBoolean subscribed = new AtomicBoolean(true);
+		return () -> {
+			if (subscribed.compareAndSet(true, false)) {
+				target.subscribers.remove(subscriber);
+				release(segments, path);
+			}
+		};
+	}
+
+	/**
+	 * Finds the subscribers with at least one pattern matching a topic.
+	 *
+	 * @param topic
+	 *            the published topic, without wildcards
+	 * @return the matching subscribers, each once
+	 * @throws IllegalArgumentException
+	 *             if the topic is invalid
+	 */
+	Set<S> match(String topic) {
+		List<String> segments = TopicPatterns.topicSegments(topic);
+		Set<S> matched = new HashSet<>();
+		collect(root, segments, 0, matched);
+		return matched;
+	}
+
+	/**
+	 * Checks whether no subscription is left; empty branches are removed
+	 * eagerly, so this is also true when nothing is retained.
+	 */
+	boolean isEmpty() {
+		return root.children.isEmpty();
+	}
+
+	private static <S> Node<S> acquireChild(Node<S> parent, String segment) {
+		while (true) {
+			Node<S> child = parent.children.computeIfAbsent(segment, ignored -> new Node<>());
+			if (child.acquire()) {
+				return child;
+			}
+			// Retired by an unsubscribe that has not unlinked it yet
+			parent.children.remove(segment, child);
+		}
+	}
+
+	private void release(List<String> segments, List<Node<S>> path) {
+		for (int depth = path.size() - 1; depth >= 0; depth--) {
+			Node<S> node = path.get(depth);
+			if (node.release()) {
+				Node<S> parent = depth == 0 ? root : path.get(depth - 1);
+				parent.children.remove(segments.get(depth), node);
+			}
+		}
+	}
+
+	private static <S> void collect(Node<S> node, List<String> segments, int depth, Set<S> matched) {
+		Node<S> anySuffix = node.children.get(TopicPatterns.ANY_SUFFIX);
+		if (anySuffix != null) {
+			matched.addAll(anySuffix.subscribers);
+		}
+		if (depth == segments.size()) {
+			matched.addAll(node.subscribers);
+			return;
+		}
+		Node<S> literal = node.children.get(segments.get(depth));
+		if (literal != null) {
+			collect(literal, segments, depth + 1, matched);
+		}
+		Node<S> anySegment = node.children.get(TopicPatterns.ANY_SEGMENT);
+		if (anySegment != null) {
+			collect(anySegment, segments, depth + 1, matched);
+		}
+	}
+
+	private static final class Node<S> {
+		private final ConcurrentHashMap<String, Node<S>> children = new ConcurrentHashMap<>();
+		private final Set<S> subscribers = ConcurrentHashMap.newKeySet();
+		// Subscriptions at or below this node, or -1 once retired
+		private final AtomicInteger references = new AtomicInteger();
+
+		boolean acquire() {
+			while (true) {
+				int current = references.get();
+				if (current < 0) {
+					return false;
+				}
+				if (references.compareAndSet(current, current + 1)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * @return true if this call retired the node
+		 */
+		boolean release() {
+			return references.decrementAndGet() == 0 && references.compareAndSet(0, -1);
+		}
+	}
+}
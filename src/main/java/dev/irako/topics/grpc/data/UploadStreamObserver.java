@@ -0,0 +1,342 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.AggregateResponse;
+import dev.irako.topics.grpc.model.ReadingColumns;
+import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorBucketAggregate;
+import dev.irako.topics.grpc.model.SensorReading;
+import dev.irako.topics.grpc.service.HyperLogLog;
+import dev.irako.topics.grpc.service.SensorAggregationService;
+import dev.irako.topics.grpc.service.StratifiedSampler;
+import dev.irako.topics.grpc.service.UnitNormalizer;
+import dev.irako.topics.grpc.service.ValueStatistics;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Handles one {@code UploadSensorData} stream with manual inbound flow control.
+ *
+ * <p>
+ * Readings are collected in chunks of {@value #CHUNK_READINGS}. Each full chunk
+ * is aggregated, recorded in the {@link SensorAggregateStore} and handed to the
+ * export on the upload executor, one chunk at a time per stream. The stream
+ * starts with credit for two chunks and gets credit for another chunk only
+ * after one was processed. A client that pushes faster than the server
+ * processes is therefore held back by HTTP/2 flow control, and an upload never
+ * holds more than two chunks in memory, however long it runs. The per-sensor
+ * state of its sampler is bounded as well (see {@link StratifiedSampler}).
+ *
+ * <p>
+ * Under overload (see {@link OverloadSampling}) only a sample of the readings,
+ * stratified by sensor, is collected into chunks; readings left out are
+ * credited back to the client right away. Count, minimum and maximum are
+ * still tracked over every reading, converted to its canonical unit as it
+ * arrives. Each kept reading is weighted by the readings of its own sensor it
+ * stands for (see {@link StratifiedSampler}), so a rare sensor kept whole
+ * counts once per reading while a busy one sampled at a low rate counts for
+ * the many readings left out. The average and the per-sensor bucket counts
+ * are estimated with these weights, and only the sample is exported.
+ *
+ * <p>
+ * The sensors of every reading, sampled or not, are also counted into the
+ * server's {@link IngestionStats} once per chunk of received readings.
+ *
+ * <p>
+ * Every reading is validated as it arrives, before the sampler decides on it:
+ * an upload with a blank sensor, location or unit, or one that mixes
+ * quantities, is failed with {@code INVALID_ARGUMENT} at the first such
+ * reading, without waiting for the client to half-close. A chunk that fails
+ * to aggregate fails the call the same way. Readings still arriving and
+ * chunks still queued are then dropped.
+ *
+ * <p>
+ * A cancelled upload drops the chunk being filled, ignores readings still
+ * arriving and closes its queued chunks without processing them, even after
+ * the client half-closed.
+ */
+final class UploadStreamObserver implements StreamObserver<SensorReading> {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(UploadStreamObserver.class);
+
+	static final int CHUNK_READINGS = 4096;
+
+	/** Readings left out of the sample before their credit is returned. */
+	static final int SKIPPED_CREDIT_BATCH = 256;
+
+	/** Distinct unit names whose conversion an upload keeps at hand. */
+	private static final int MAX_CACHED_UNITS = 16;
+
+	private final ServerCallStreamObserver<AggregateResponse> call;
+	private final Executor uploadExecutor;
+	private final SensorAggregateStore sensorStore;
+	private final SensorSegmentWriter segmentWriter;
+	private final IntSupplier backlog;
+	private final OverloadSampling sampling;
+	private final IngestionStats ingestionStats;
+	private final StreamCancellation cancellation;
+	private final long startTimeMs = System.currentTimeMillis();
+
+	// Owned by the transport callbacks, which gRPC never runs concurrently
+	private ReadingColumns chunk;
+	// Per reading of the chunk, the readings it stands for
+	private int[] chunkWeights;
+	private CompletableFuture<Void> processed = CompletableFuture.completedFuture(null);
+	private final StratifiedSampler sampler = new StratifiedSampler();
+	private final HyperLogLog recentSensors = new HyperLogLog();
+	private double samplingRate = 1.0;
+	private long received;
+	private int skippedSinceCredit;
+	// In canonical units, like the statistics of the chunks
+	private double minValue = Double.POSITIVE_INFINITY;
+	private double maxValue = Double.NEGATIVE_INFINITY;
+	private final Map<String, UnitNormalizer.Conversion> conversions = new HashMap<>();
+	// The canonical unit of the first reading, which every other reading must share
+	private String canonicalUnit;
+
+	// Owned by the chunk tasks; each task sees the results of the previous one
+	private final ValueStatistics statistics = new ValueStatistics();
+	// Sums of the sampled values and their count, each weighted by the readings it stands for
+	private double weightedSum;
+	private long weightedCount;
+	private String unit;
+
+	private volatile boolean halfClosed;
+	// Set once the call was failed; only the first failure is reported
+	private final AtomicBoolean failed = new AtomicBoolean();
+
+	/**
+	 * Creates the observer and requests the first readings. The caller must have
+	 * disabled automatic inbound flow control.
+	 *
+	 * @param segmentWriter
+	 *            receives every processed chunk for export, or null when export
+	 *            is disabled
+	 * @param backlog
+	 *            chunks waiting for the upload executor, across all uploads
+	 * @param ingestionStats
+	 *            counts the distinct sensors of the upload
+	 * @param cancellation
+	 *            the call's cancellation
+	 */
+	UploadStreamObserver(ServerCallStreamObserver<AggregateResponse> call, Executor uploadExecutor,
+			SensorAggregateStore sensorStore, SensorSegmentWriter segmentWriter, IntSupplier backlog,
+			OverloadSampling sampling, IngestionStats ingestionStats, StreamCancellation cancellation) {
+		this.call = call;
+		this.uploadExecutor = uploadExecutor;
+		this.sensorStore = sensorStore;
+		this.segmentWriter = segmentWriter;
+		this.backlog = backlog;
+		this.sampling = sampling;
+		this.ingestionStats = ingestionStats;
+		this.cancellation = cancellation;
+		// A call failed by the server gets no onError, so its chunk is dropped here
+		call.setOnCloseHandler(this::dropChunk);
+		call.request(2 * CHUNK_READINGS);
+	}
+
+	@Override
+	public void onNext(SensorReading reading) {
+		if (cancellation.isCancelled() || failed.get()) {
+			dropChunk();
+			return;
+		}
+		logger.debug("Received sensor reading: sensorId={}, value={}", reading.getSensorId(), reading.getValue());
+		UnitNormalizer.Conversion conversion;
+		try {
+			conversion = validated(reading);
+		} catch (IllegalArgumentException e) {
+			logger.warn("Rejecting sensor upload: {}", e.getMessage());
+			fail(e);
+			dropChunk();
+			return;
+		}
+		if (received++ % CHUNK_READINGS == 0) {
+			recordSensors();
+			samplingRate = StratifiedSampler.samplingRate(backlog.getAsInt(), sampling.backlogCapacity(),
+					sampling.minRate());
+		}
+		recentSensors.add(reading.getSensorId());
+		double value = conversion.apply(reading.getValue());
+		minValue = Math.min(minValue, value);
+		maxValue = Math.max(maxValue, value);
+		int weight = sampler.sample(reading.getSensorId(), samplingRate);
+		if (weight == 0) {
+			// Nothing is held for the reading, so the client may send another one
+			if (++skippedSinceCredit == SKIPPED_CREDIT_BATCH) {
+				call.request(skippedSinceCredit);
+				skippedSinceCredit = 0;
+			}
+			return;
+		}
+		if (chunk == null) {
+			// Off-heap columns keep large uploads out of the garbage-collected heap
+			chunk = new ReadingColumns(CHUNK_READINGS);
+			chunkWeights = new int[CHUNK_READINGS];
+		}
+		chunkWeights[chunk.size()] = weight;
+		ProtoConverter.appendSensorReading(chunk, reading);
+		if (chunk.size() == CHUNK_READINGS) {
+			submitChunk();
+		}
+	}
+
+	@Override
+	public void onError(Throwable t) {
+		logger.error("Error receiving sensor data", t);
+		dropChunk();
+		// Chunks still queued are closed without processing
+	}
+
+	@Override
+	public void onCompleted() {
+		halfClosed = true;
+		recordSensors();
+		if (chunk != null) {
+			submitChunk();
+		}
+		cancellation.workStarted();
+		processed = processed.thenRunAsync(this::respond, uploadExecutor);
+	}
+
+	private void dropChunk() {
+		if (chunk != null) {
+			chunk.close();
+			chunk = null;
+			chunkWeights = null;
+		}
+	}
+
+	/**
+	 * Fails the call at once, so the client stops sending an upload that can no
+	 * longer succeed. Runs on the transport or on the upload executor; only the
+	 * first failure reaches the client.
+	 */
+	private void fail(Exception e) {
+		if (failed.compareAndSet(false, true)) {
+			Status status = e instanceof IllegalArgumentException ? Status.INVALID_ARGUMENT : Status.INTERNAL;
+			call.onError(status.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+		}
+	}
+
+	/**
+	 * Checks a reading before the sampler decides on it, so whether an upload is
+	 * accepted does not depend on which of its readings the load lets through.
+	 *
+	 * @return the conversion of the reading's unit
+	 */
+	private UnitNormalizer.Conversion validated(SensorReading reading) {
+		if (reading.getSensorId().isBlank()) {
+			throw new IllegalArgumentException("sensorId cannot be null or blank");
+		}
+		if (reading.getLocation().isBlank()) {
+			throw new IllegalArgumentException("location cannot be null or blank");
+		}
+		String readingUnit = reading.getUnit();
+		UnitNormalizer.Conversion conversion = conversions.get(readingUnit);
+		if (conversion == null) {
+			conversion = UnitNormalizer.conversionOf(readingUnit);
+			// A client cycling through unit names cannot grow the cache
+			if (conversions.size() < MAX_CACHED_UNITS) {
+				conversions.put(readingUnit, conversion);
+			}
+		}
+		if (canonicalUnit == null) {
+			canonicalUnit = conversion.canonicalUnit();
+		}
+		UnitNormalizer.requireSameUnit(canonicalUnit, conversion.canonicalUnit());
+		return conversion;
+	}
+
+	private void recordSensors() {
+		ingestionStats.recordSensors(recentSensors);
+		recentSensors.clear();
+	}
+
+	private void submitChunk() {
+		ReadingColumns full = chunk;
+		int[] weights = chunkWeights;
+		chunk = null;
+		chunkWeights = null;
+		cancellation.workStarted();
+		processed = processed.thenRunAsync(() -> process(full, weights), uploadExecutor);
+	}
+
+	private void process(ReadingColumns readings, int[] weights) {
+		int kept = readings.size();
+		boolean exported = false;
+		try {
+			if (cancellation.isCancelled() || failed.get()) {
+				return;
+			}
+			String chunkUnit = UnitNormalizer.table(readings).commonUnit();
+			if (unit == null) {
+				unit = chunkUnit;
+			}
+			UnitNormalizer.requireSameUnit(unit, chunkUnit);
+			statistics.combine(SensorAggregationService.valueStatistics(readings));
+			List<SensorBucketAggregate> buckets = SensorAggregationService.aggregateColumnsBySensorAndBucket(
+					readings, sensorStore.bucketMillis(), weights);
+			// The buckets already hold each sensor's weighted count and mean
+			for (SensorBucketAggregate bucket : buckets) {
+				weightedSum += bucket.aggregate().averageValue() * bucket.aggregate().totalReadings();
+				weightedCount += bucket.aggregate().totalReadings();
+			}
+			sensorStore.record(buckets, System.currentTimeMillis());
+
+			// Written to disk in the background; the writer closes the columns
+			if (segmentWriter != null) {
+				exported = segmentWriter.submit(readings);
+				if (!exported) {
+					logger.warn("Sensor export is behind; {} readings not exported", readings.size());
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Error aggregating sensor data", e);
+			fail(e);
+		} finally {
+			if (!exported) {
+				readings.close();
+			}
+			cancellation.workFinished();
+		}
+		if (!halfClosed && !cancellation.isCancelled() && !failed.get()) {
+			call.request(kept);
+		}
+	}
+
+	private void respond() {
+		try {
+			if (cancellation.isCancelled() || failed.get()) {
+				return;
+			}
+			if (statistics.count() == 0) {
+				throw new IllegalArgumentException("readings cannot be null or empty");
+			}
+			logger.info("Received {} sensor readings, sampled {}", received, statistics.count());
+			SensorAggregateDto aggregate = statistics.count() == received
+					? SensorAggregationService.toAggregate(unit, statistics, startTimeMs, System.currentTimeMillis())
+					: SensorAggregationService.toSampledAggregate(unit, statistics.count(),
+							weightedSum / weightedCount, received, minValue, maxValue, startTimeMs,
+							System.currentTimeMillis());
+			call.onNext(ProtoConverter.toProtoAggregateResponse(aggregate));
+			call.onCompleted();
+
+			logger.info("Sent aggregate response: totalReadings={}, avg={}, samplingRate={}",
+					aggregate.totalReadings(), aggregate.averageValue(), aggregate.samplingRate());
+		} catch (Exception e) {
+			logger.error("Error aggregating sensor data", e);
+			fail(e);
+		} finally {
+			cancellation.workFinished();
+		}
+	}
+}
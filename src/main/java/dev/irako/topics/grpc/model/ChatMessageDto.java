@@ -1,12 +1,18 @@
 package dev.irako.topics.grpc.model;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * Domain DTO for chat messages. Immutable record representing a chat message in
  * the service layer.
  */
-public record ChatMessageDto(String userId, String username, String content, Instant timestamp, ChatMessageType type) {
+public record ChatMessageDto(String userId, String username, String content, Instant timestamp, ChatMessageType type,
+		String roomId, List<String> mentions) {
+
+	/** Room used when a message does not name one. */
+	public static final String DEFAULT_ROOM = "general";
+
 	public ChatMessageDto {
 		if (userId == null || userId.isBlank()) {
 			throw new IllegalArgumentException("userId cannot be null or blank");
@@ -23,5 +29,41 @@ public record ChatMessageDto(String userId, String username, String content, Ins
 		if (type == null) {
 			throw new IllegalArgumentException("type cannot be null");
 		}
+		if (roomId == null || roomId.isBlank()) {
+			throw new IllegalArgumentException("roomId cannot be null or blank");
+		}
+		if (mentions == null) {
+			throw new IllegalArgumentException("mentions cannot be null");
+		}
+		mentions = List.copyOf(mentions);
+	}
+
+	/**
+	 * Creates a message without mentions.
+	 */
+	public ChatMessageDto(String userId, String username, String content, Instant timestamp, ChatMessageType type,
+			String roomId) {
+		this(userId, username, content, timestamp, type, roomId, List.of());
+	}
+
+	/**
+	 * Creates a message in the {@link #DEFAULT_ROOM}.
+	 */
+	public ChatMessageDto(String userId, String username, String content, Instant timestamp, ChatMessageType type) {
+		this(userId, username, content, timestamp, type, DEFAULT_ROOM);
+	}
+
+	/**
+	 * Copy of this message with other content.
+	 */
+	public ChatMessageDto withContent(String newContent) {
+		return new ChatMessageDto(userId, username, newContent, timestamp, type, roomId, mentions);
+	}
+
+	/**
+	 * Copy of this message with other mentions.
+	 */
+	public ChatMessageDto withMentions(List<String> newMentions) {
+		return new ChatMessageDto(userId, username, content, timestamp, type, roomId, newMentions);
 	}
 }
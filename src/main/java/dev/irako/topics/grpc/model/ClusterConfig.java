@@ -0,0 +1,31 @@
+package dev.irako.topics.grpc.model;
+
+import java.util.List;
+
+/**
+ * Immutable cluster membership as seen by one server: the node itself and all
+ * members, including itself. A single-member cluster is a standalone server.
+ */
+public record ClusterConfig(ClusterNode self, List<ClusterNode> members) {
+	public ClusterConfig {
+		if (self == null) {
+			throw new IllegalArgumentException("self cannot be null");
+		}
+		if (members == null || !members.contains(self)) {
+			throw new IllegalArgumentException("members must contain self node " + self.nodeId());
+		}
+		members = List.copyOf(members);
+	}
+
+	/**
+	 * Creates the configuration of a server that owns every room and topic.
+	 *
+	 * @param port
+	 *            the port the server listens on
+	 * @return a single-member configuration
+	 */
+	public static ClusterConfig standalone(int port) {
+		ClusterNode self = new ClusterNode("standalone", "localhost", port);
+		return new ClusterConfig(self, List.of(self));
+	}
+}
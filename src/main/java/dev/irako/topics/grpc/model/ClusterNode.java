@@ -0,0 +1,19 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Domain DTO for a server node of the cluster. Immutable record identifying a
+ * node and where to reach it.
+ */
+public record ClusterNode(String nodeId, String host, int port) {
+	public ClusterNode {
+		if (nodeId == null || nodeId.isBlank()) {
+			throw new IllegalArgumentException("nodeId cannot be null or blank");
+		}
+		if (host == null || host.isBlank()) {
+			throw new IllegalArgumentException("host cannot be null or blank");
+		}
+		if (port <= 0 || port > 65535) {
+			throw new IllegalArgumentException("port must be between 1 and 65535: " + port);
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Domain DTO for one of the most frequent keys of a stream. Immutable record;
+ * the count may exceed the key's true count by at most {@code maxOvercount}.
+ */
+public record HeavyHitterDto(String key, long count, long maxOvercount) {
+	public HeavyHitterDto {
+		if (key == null || key.isBlank()) {
+			throw new IllegalArgumentException("key cannot be null or blank");
+		}
+		if (count <= 0) {
+			throw new IllegalArgumentException("count must be positive");
+		}
+		if (maxOvercount < 0 || maxOvercount >= count) {
+			throw new IllegalArgumentException("maxOvercount must be in [0, count)");
+		}
+	}
+}
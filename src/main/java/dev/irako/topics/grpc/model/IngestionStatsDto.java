@@ -0,0 +1,23 @@
+package dev.irako.topics.grpc.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Domain DTO for the approximate ingestion statistics of one server: distinct
+ * sensors that uploaded readings, overall and per time window, and the users
+ * that sent the most chat messages. Immutable record.
+ */
+public record IngestionStatsDto(long distinctSensors, long distinctSensorsCurrentWindow,
+		long distinctSensorsPreviousWindow, Instant windowStart, long chatMessages,
+		List<HeavyHitterDto> topChatSenders) {
+	public IngestionStatsDto {
+		if (windowStart == null) {
+			throw new IllegalArgumentException("windowStart cannot be null");
+		}
+		if (topChatSenders == null) {
+			throw new IllegalArgumentException("topChatSenders cannot be null");
+		}
+		topChatSenders = List.copyOf(topChatSenders);
+	}
+}
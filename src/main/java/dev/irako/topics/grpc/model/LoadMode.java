@@ -0,0 +1,16 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Enum representing how a load generator issues requests.
+ *
+ * <ul>
+ * <li>{@code CLOSED_LOOP}: a fixed number of workers, each sends its next
+ * request as soon as the previous one completes.</li>
+ * <li>{@code OPEN_LOOP}: requests arrive at a fixed rate regardless of how
+ * fast the server answers, so a slow server cannot hide its queueing delay
+ * (no coordinated omission).</li>
+ * </ul>
+ */
+public enum LoadMode {
+	CLOSED_LOOP, OPEN_LOOP
+}
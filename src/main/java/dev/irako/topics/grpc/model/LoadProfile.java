@@ -0,0 +1,74 @@
+package dev.irako.topics.grpc.model;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Immutable description of a load test run: which RPCs to call in which
+ * proportion, how requests are issued, how large the synthetic payloads are and
+ * how long the warmup and measurement phases last.
+ *
+ * @param mode
+ *            closed-loop (fixed concurrency) or open-loop (fixed arrival rate)
+ * @param mix
+ *            relative weight of each RPC; RPCs absent from the map are not
+ *            called
+ * @param concurrency
+ *            number of workers in closed-loop mode
+ * @param ratePerSecond
+ *            request arrival rate in open-loop mode
+ * @param payloadBytes
+ *            size of the synthetic text in messages and chat content
+ * @param uploadBatchSize
+ *            number of readings sent per sensor upload
+ * @param warmup
+ *            phase whose latencies are discarded
+ * @param measurement
+ *            phase whose latencies are reported
+ */
+public record LoadProfile(LoadMode mode, Map<RpcType, Integer> mix, int concurrency, double ratePerSecond,
+		int payloadBytes, int uploadBatchSize, Duration warmup, Duration measurement) {
+	public LoadProfile {
+		if (mode == null) {
+			throw new IllegalArgumentException("mode cannot be null");
+		}
+		if (mix == null || mix.isEmpty()) {
+			throw new IllegalArgumentException("mix cannot be null or empty");
+		}
+		if (mix.values().stream().anyMatch(weight -> weight == null || weight <= 0)) {
+			throw new IllegalArgumentException("mix weights must be positive: " + mix);
+		}
+		if (concurrency <= 0) {
+			throw new IllegalArgumentException("concurrency must be positive");
+		}
+		if (!(ratePerSecond > 0)) {
+			throw new IllegalArgumentException("ratePerSecond must be positive");
+		}
+		if (payloadBytes <= 0) {
+			throw new IllegalArgumentException("payloadBytes must be positive");
+		}
+		if (uploadBatchSize <= 0) {
+			throw new IllegalArgumentException("uploadBatchSize must be positive");
+		}
+		if (warmup == null || warmup.isNegative()) {
+			throw new IllegalArgumentException("warmup cannot be null or negative");
+		}
+		if (measurement == null || measurement.isNegative() || measurement.isZero()) {
+			throw new IllegalArgumentException("measurement must be a positive duration");
+		}
+		mix = Map.copyOf(mix);
+	}
+
+	/**
+	 * Default profile: mostly unary traffic with some uploads and chat, a few
+	 * subscriptions, 16 closed-loop workers, 10 s warmup and 30 s measurement.
+	 *
+	 * @return the default profile
+	 */
+	public static LoadProfile defaults() {
+		return new LoadProfile(LoadMode.CLOSED_LOOP,
+				Map.of(RpcType.SEND_MESSAGE, 70, RpcType.SUBSCRIBE_TO_NOTIFICATIONS, 2, RpcType.UPLOAD_SENSOR_DATA,
+						18, RpcType.CHAT, 10),
+				16, 200.0, 256, 50, Duration.ofSeconds(10), Duration.ofSeconds(30));
+	}
+}
@@ -0,0 +1,29 @@
+package dev.irako.topics.grpc.model;
+
+import java.util.List;
+
+/**
+ * Domain DTO for the result of a load test: the profile that was run and the
+ * latency summary of every RPC in the mix.
+ */
+public record LoadReport(LoadProfile profile, List<RpcLatencySummary> summaries) {
+	public LoadReport {
+		if (profile == null) {
+			throw new IllegalArgumentException("profile cannot be null");
+		}
+		if (summaries == null) {
+			throw new IllegalArgumentException("summaries cannot be null");
+		}
+		summaries = List.copyOf(summaries);
+	}
+
+	/**
+	 * Completed calls per second over the measurement phase, across all RPCs.
+	 *
+	 * @return the measured throughput
+	 */
+	public double throughputPerSecond() {
+		long completed = summaries.stream().mapToLong(RpcLatencySummary::count).sum();
+		return completed / (profile.measurement().toNanos() / 1_000_000_000.0);
+	}
+}
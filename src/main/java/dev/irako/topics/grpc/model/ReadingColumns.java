@@ -0,0 +1,327 @@
+package dev.irako.topics.grpc.model;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Append-only columnar buffer of sensor readings stored off-heap.
+ *
+ * <p>
+ * Each reading takes 28 bytes of native memory: its value and timestamp, plus
+ * dictionary codes for its sensor, unit and location. Only the distinct
+ * strings live on the heap, so buffers of hundreds of millions of readings add
+ * almost nothing for the garbage collector to trace. The columns double in
+ * size when full and are freed by {@link #close()}.
+ *
+ * <p>
+ * Strings are validated when they first enter a dictionary. Later readings with
+ * the same sensor, unit and location cost one hash lookup per string, so the
+ * readings of an upload are validated once per distinct string rather than
+ * once per reading.
+ *
+ * <p>
+ * Not thread-safe: one thread appends at a time, and readers must not run
+ * concurrently with appends.
+ */
+public final class ReadingColumns implements AutoCloseable {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	private final Dictionary sensorIds = new Dictionary();
+	private final Dictionary units = new Dictionary();
+	private final Dictionary locations = new Dictionary();
+
+	private Arena arena;
+	private MemorySegment values;
+	private MemorySegment timestamps;
+	private MemorySegment sensorCodes;
+	private MemorySegment unitCodes;
+	private MemorySegment locationCodes;
+	private int capacity;
+	private int size;
+
+	public ReadingColumns() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty buffer.
+	 *
+	 * @param initialCapacity
+	 *            number of readings to reserve memory for
+	 */
+	public ReadingColumns(int initialCapacity) {
+		if (initialCapacity <= 0 || initialCapacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("initialCapacity must be in [1, " + MAX_CAPACITY + "]");
+		}
+		allocate(initialCapacity);
+	}
+
+	/**
+	 * Appends one reading.
+	 *
+	 * @param reading
+	 *            the reading to append
+	 */
+	public void append(SensorReadingDto reading) {
+		if (reading == null) {
+			throw new IllegalArgumentException("reading cannot be null");
+		}
+		append(reading.sensorId(), reading.value(), reading.unit(), reading.timestamp().toEpochMilli(),
+				reading.location());
+	}
+
+	/**
+	 * Appends one reading without creating a DTO.
+	 *
+	 * @param sensorId
+	 *            the sensor ID
+	 * @param value
+	 *            the measured value
+	 * @param unit
+	 *            the unit of the value
+	 * @param timestampMs
+	 *            the reading time in epoch milliseconds
+	 * @param location
+	 *            the sensor location
+	 */
+	public void append(String sensorId, double value, String unit, long timestampMs, String location) {
+		int sensorCode = sensorIds.codeOf(sensorId);
+		int unitCode = units.codeOf(unit);
+		int locationCode = locations.codeOf(location);
+		if ((sensorCode | unitCode | locationCode) < 0) {
+			// Validate first, so an invalid reading leaves the dictionaries unchanged
+			requireNewText(sensorCode, sensorId, "sensorId");
+			requireNewText(unitCode, unit, "unit");
+			requireNewText(locationCode, location, "location");
+			sensorCode = sensorCode < 0 ? sensorIds.add(sensorId) : sensorCode;
+			unitCode = unitCode < 0 ? units.add(unit) : unitCode;
+			locationCode = locationCode < 0 ? locations.add(location) : locationCode;
+		}
+		if (arena == null) {
+			throw new IllegalStateException("ReadingColumns is closed");
+		}
+		if (size == capacity) {
+			grow();
+		}
+		values.setAtIndex(ValueLayout.JAVA_DOUBLE, size, value);
+		timestamps.setAtIndex(ValueLayout.JAVA_LONG, size, timestampMs);
+		sensorCodes.setAtIndex(ValueLayout.JAVA_INT, size, sensorCode);
+		unitCodes.setAtIndex(ValueLayout.JAVA_INT, size, unitCode);
+		locationCodes.setAtIndex(ValueLayout.JAVA_INT, size, locationCode);
+		size++;
+	}
+
+	/**
+	 * Checks a string that is not in its dictionary yet; strings already there
+	 * were checked when they were added.
+	 */
+	private static void requireNewText(int code, String value, String field) {
+		if (code < 0 && (value == null || value.isBlank())) {
+			throw new IllegalArgumentException(field + " cannot be null or blank");
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public double value(int index) {
+		return values.getAtIndex(ValueLayout.JAVA_DOUBLE, checkIndex(index));
+	}
+
+	public long timestampMs(int index) {
+		return timestamps.getAtIndex(ValueLayout.JAVA_LONG, checkIndex(index));
+	}
+
+	/**
+	 * Dictionary code of a reading's sensor; equal codes mean equal sensor IDs.
+	 */
+	public int sensorCode(int index) {
+		return sensorCodes.getAtIndex(ValueLayout.JAVA_INT, checkIndex(index));
+	}
+
+	/**
+	 * Dictionary code of a reading's unit; equal codes mean equal units.
+	 */
+	public int unitCode(int index) {
+		return unitCodes.getAtIndex(ValueLayout.JAVA_INT, checkIndex(index));
+	}
+
+	/**
+	 * Dictionary code of a reading's location; equal codes mean equal locations.
+	 */
+	public int locationCode(int index) {
+		return locationCodes.getAtIndex(ValueLayout.JAVA_INT, checkIndex(index));
+	}
+
+	public String sensorId(int index) {
+		return sensorIds.decode(sensorCode(index));
+	}
+
+	public String unit(int index) {
+		return units.decode(unitCode(index));
+	}
+
+	public String location(int index) {
+		return locations.decode(locationCode(index));
+	}
+
+	/**
+	 * Sensor ID for a dictionary code returned by {@link #sensorCode(int)}.
+	 */
+	public String sensorIdForCode(int code) {
+		return sensorIds.decode(code);
+	}
+
+	/**
+	 * Unit for a dictionary code returned by {@link #unitCode(int)}.
+	 */
+	public String unitForCode(int code) {
+		return units.decode(code);
+	}
+
+	/**
+	 * Location for a dictionary code returned by {@link #locationCode(int)}.
+	 */
+	public String locationForCode(int code) {
+		return locations.decode(code);
+	}
+
+	public int distinctSensorCount() {
+		return sensorIds.size();
+	}
+
+	/**
+	 * Number of distinct units; unit codes run from 0 to this count, exclusive.
+	 */
+	public int distinctUnitCount() {
+		return units.size();
+	}
+
+	/**
+	 * Materializes one reading as a DTO.
+	 *
+	 * @param index
+	 *            the reading index
+	 * @return the reading
+	 */
+	public SensorReadingDto reading(int index) {
+		return new SensorReadingDto(sensorId(index), value(index), unit(index),
+				Instant.ofEpochMilli(timestampMs(index)), location(index));
+	}
+
+	/**
+	 * Native memory reserved by the columns.
+	 *
+	 * @return the reserved size in bytes
+	 */
+	public long offHeapBytes() {
+		return arena == null ? 0 : (long) capacity * bytesPerReading();
+	}
+
+	@Override
+	public void close() {
+		if (arena != null) {
+			arena.close();
+			arena = null;
+		}
+	}
+
+	private int checkIndex(int index) {
+		if (arena == null) {
+			throw new IllegalStateException("ReadingColumns is closed");
+		}
+		return Objects.checkIndex(index, size);
+	}
+
+	private void grow() {
+		if (capacity == MAX_CAPACITY) {
+			throw new IllegalStateException("ReadingColumns cannot hold more than " + MAX_CAPACITY + " readings");
+		}
+		Arena previousArena = arena;
+		MemorySegment previousValues = values;
+		MemorySegment previousTimestamps = timestamps;
+		MemorySegment previousSensorCodes = sensorCodes;
+		MemorySegment previousUnitCodes = unitCodes;
+		MemorySegment previousLocationCodes = locationCodes;
+
+		allocate((int) Math.min((long) capacity * 2, MAX_CAPACITY));
+		copyColumn(previousValues, values, ValueLayout.JAVA_DOUBLE.byteSize());
+		copyColumn(previousTimestamps, timestamps, ValueLayout.JAVA_LONG.byteSize());
+		copyColumn(previousSensorCodes, sensorCodes, ValueLayout.JAVA_INT.byteSize());
+		copyColumn(previousUnitCodes, unitCodes, ValueLayout.JAVA_INT.byteSize());
+		copyColumn(previousLocationCodes, locationCodes, ValueLayout.JAVA_INT.byteSize());
+		previousArena.close();
+	}
+
+	private void copyColumn(MemorySegment from, MemorySegment to, long elementBytes) {
+		MemorySegment.copy(from, 0, to, 0, size * elementBytes);
+	}
+
+	private void allocate(int newCapacity) {
+		// Shared, because gRPC may deliver successive messages of one call on
+		// different threads
+		Arena newArena = Arena.ofShared();
+		values = newArena.allocate(newCapacity * ValueLayout.JAVA_DOUBLE.byteSize(),
+				ValueLayout.JAVA_DOUBLE.byteAlignment());
+		timestamps = newArena.allocate(newCapacity * ValueLayout.JAVA_LONG.byteSize(),
+				ValueLayout.JAVA_LONG.byteAlignment());
+		sensorCodes = newArena.allocate(newCapacity * ValueLayout.JAVA_INT.byteSize(),
+				ValueLayout.JAVA_INT.byteAlignment());
+		unitCodes = newArena.allocate(newCapacity * ValueLayout.JAVA_INT.byteSize(),
+				ValueLayout.JAVA_INT.byteAlignment());
+		locationCodes = newArena.allocate(newCapacity * ValueLayout.JAVA_INT.byteSize(),
+				ValueLayout.JAVA_INT.byteAlignment());
+		arena = newArena;
+		capacity = newCapacity;
+	}
+
+	private static long bytesPerReading() {
+		return ValueLayout.JAVA_DOUBLE.byteSize() + ValueLayout.JAVA_LONG.byteSize()
+				+ 3 * ValueLayout.JAVA_INT.byteSize();
+	}
+
+	/**
+	 * Assigns dense integer codes to distinct strings.
+	 */
+	private static final class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<>();
+		private final List<String> names = new ArrayList<>();
+
+		/**
+		 * @return the code of a string, or -1 if it was never added
+		 */
+		int codeOf(String name) {
+			Integer code = codes.get(name);
+			return code == null ? -1 : code;
+		}
+
+		int add(String name) {
+			int newCode = names.size();
+			codes.put(name, newCode);
+			names.add(name);
+			return newCode;
+		}
+
+		String decode(int code) {
+			return names.get(code);
+		}
+
+		int size() {
+			return names.size();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Domain DTO for the latency distribution of one RPC during a load test.
+ * Latencies are in microseconds.
+ */
+public record RpcLatencySummary(RpcType rpcType, long count, long errors, double p50Micros, double p90Micros,
+		double p99Micros, double p999Micros, double maxMicros) {
+	public RpcLatencySummary {
+		if (rpcType == null) {
+			throw new IllegalArgumentException("rpcType cannot be null");
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("count cannot be negative");
+		}
+		if (errors < 0) {
+			throw new IllegalArgumentException("errors cannot be negative");
+		}
+	}
+}
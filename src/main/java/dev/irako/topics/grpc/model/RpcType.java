@@ -0,0 +1,9 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Enum naming the RPCs of the streaming service, used to label traffic and
+ * latency measurements.
+ */
+public enum RpcType {
+	SEND_MESSAGE, SUBSCRIBE_TO_NOTIFICATIONS, UPLOAD_SENSOR_DATA, CHAT
+}
@@ -3,9 +3,14 @@ package dev.irako.topics.grpc.model;
 /**
  * Domain DTO for aggregated sensor data. Immutable record representing
  * aggregated statistics from multiple sensor readings.
+ *
+ * <p>
+ * {@code samplingRate} is the share of readings the average was computed from:
+ * 1.0 unless the server sampled readings under overload. Count, minimum and
+ * maximum always cover every reading.
  */
 public record SensorAggregateDto(int totalReadings, double averageValue, double minValue, double maxValue, String unit,
-		long processingTimeMs) {
+		long processingTimeMs, double samplingRate) {
 	public SensorAggregateDto {
 		if (totalReadings < 0) {
 			throw new IllegalArgumentException("totalReadings cannot be negative");
@@ -16,5 +21,16 @@ public record SensorAggregateDto(int totalReadings, double averageValue, double
 		if (processingTimeMs < 0) {
 			throw new IllegalArgumentException("processingTimeMs cannot be negative");
 		}
+		if (!(samplingRate > 0.0 && samplingRate <= 1.0)) {
+			throw new IllegalArgumentException("samplingRate must be in (0, 1]");
+		}
+	}
+
+	/**
+	 * Aggregate computed from every reading.
+	 */
+	public SensorAggregateDto(int totalReadings, double averageValue, double minValue, double maxValue, String unit,
+			long processingTimeMs) {
+		this(totalReadings, averageValue, minValue, maxValue, unit, processingTimeMs, 1.0);
 	}
 }
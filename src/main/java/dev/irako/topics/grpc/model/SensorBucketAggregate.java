@@ -0,0 +1,16 @@
+package dev.irako.topics.grpc.model;
+
+/**
+ * Domain DTO for the readings of one sensor that fall into one time bucket.
+ * Immutable record keyed by sensor and bucket start.
+ */
+public record SensorBucketAggregate(String sensorId, long bucketStartMs, SensorAggregateDto aggregate) {
+	public SensorBucketAggregate {
+		if (sensorId == null || sensorId.isBlank()) {
+			throw new IllegalArgumentException("sensorId cannot be null or blank");
+		}
+		if (aggregate == null) {
+			throw new IllegalArgumentException("aggregate cannot be null");
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package dev.irako.topics.grpc.service;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * The recent messages of a chat room, read through immutable snapshots that
+ * share their storage. Any number of readers can take and stream a snapshot
+ * without locking or copying it while messages keep being appended.
+ *
+ * <p>
+ * Messages live in an array that is only ever appended to, and a snapshot is
+ * a range of that array: appending fills the next slot and publishes a new
+ * snapshot, so slots a snapshot covers never change. When the array is full,
+ * the newest messages move to a new array with room for {@code limit} more, so
+ * the copy is amortized over {@code limit} appends; older snapshots keep the
+ * old array. A snapshot holds at most the newest {@code limit} messages.
+ *
+ * <p>
+ * One thread may append at a time, e.g. under the room's lock; snapshots can
+ * be taken and read from any thread.
+ *
+ * @param <T>
+ *            the message type; messages must be immutable
+ */
+public final class ChatHistory<T> {
+
+	private final int limit;
+	// Written only by the appending thread; readers reach slots through a snapshot
+	private Object[] slots;
+	private volatile Snapshot<T> latest;
+
+	/**
+	 * @param limit
+	 *            the most recent messages a snapshot holds
+	 */
+	public ChatHistory(int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("limit must be positive");
+		}
+		this.limit = limit;
+		this.slots = new Object[2 * limit];
+		this.latest = new Snapshot<>(slots, 0, 0, 0);
+	}
+
+	/**
+	 * Appends a message; snapshots taken before do not see it.
+	 *
+	 * @param message
+	 *            the message
+	 */
+	public void append(T message) {
+		if (message == null) {
+			throw new IllegalArgumentException("message cannot be null");
+		}
+		Snapshot<T> current = latest;
+		int start = current.offset;
+		int size = current.size;
+		if (start + size == slots.length) {
+			// Keeps the messages the next snapshot still shows
+			int kept = Math.min(size, limit - 1);
+			Object[] moved = new Object[2 * limit];
+			System.arraycopy(slots, start + size - kept, moved, 0, kept);
+			slots = moved;
+			start = 0;
+			size = kept;
+		}
+		slots[start + size] = message;
+		size++;
+		if (size > limit) {
+			start++;
+			size--;
+		}
+		latest = new Snapshot<>(slots, start, size, current.endSequence + 1);
+	}
+
+	/**
+	 * The current messages, oldest first. Taking a snapshot neither locks nor
+	 * copies.
+	 *
+	 * @return an immutable snapshot
+	 */
+	public Snapshot<T> snapshot() {
+		return latest;
+	}
+
+	/**
+	 * Immutable messages of a history at one point in time, oldest first. Views
+	 * derived from it, such as {@link #last(int)}, share its storage too.
+	 *
+	 * @param <T>
+	 *            the message type
+	 */
+	public static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+		private final Object[] slots;
+		private final int offset;
+		private final int size;
+		private final long endSequence;
+
+		private Snapshot(Object[] slots, int offset, int size, long endSequence) {
+			this.slots = slots;
+			this.offset = offset;
+			this.size = size;
+			this.endSequence = endSequence;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T get(int index) {
+			Objects.checkIndex(index, size);
+			return (T) slots[offset + index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * The number of messages ever appended up to this snapshot, which is
+		 * also the sequence number the next message gets.
+		 *
+		 * @return the sequence number after the newest message
+		 */
+		public long endSequence() {
+			return endSequence;
+		}
+
+		/**
+		 * The newest messages, oldest first.
+		 *
+		 * @param count
+		 *            how many messages at most
+		 * @return a view of at most {@code count} messages
+		 */
+		public List<T> last(int count) {
+			if (count < 0) {
+				throw new IllegalArgumentException("count cannot be negative");
+			}
+			return subList(size - Math.min(count, size), size);
+		}
+
+		/**
+		 * The messages appended since an earlier snapshot, oldest first. If
+		 * more than the limit were appended since, only the ones still held
+		 * are returned.
+		 *
+		 * @param sequence
+		 *            the {@link #endSequence()} of the earlier snapshot
+		 * @return a view of the newer messages
+		 */
+		public List<T> since(long sequence) {
+			long firstSequence = endSequence - size;
+			return subList(Math.clamp(sequence - firstSequence, 0, size), size);
+		}
+
+		/**
+		 * A view of the messages converted on access, for readers that need
+		 * them in another form only occasionally.
+		 *
+		 * @param converter
+		 *            converts one message
+		 * @return the converted view
+		 */
+		public <R> List<R> map(Function<? super T, ? extends R> converter) {
+			return new MappedList<>(this, converter);
+		}
+	}
+
+	private static final class MappedList<T, R> extends AbstractList<R> implements RandomAccess {
+		private final List<T> messages;
+		private final Function<? super T, ? extends R> converter;
+
+		private MappedList(List<T> messages, Function<? super T, ? extends R> converter) {
+			this.messages = messages;
+			this.converter = converter;
+		}
+
+		@Override
+		public R get(int index) {
+			return converter.apply(messages.get(index));
+		}
+
+		@Override
+		public int size() {
+			return messages.size();
+		}
+	}
+}
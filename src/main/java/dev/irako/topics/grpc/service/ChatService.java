@@ -4,7 +4,14 @@ import dev.irako.topics.grpc.model.ChatMessageDto;
 import dev.irako.topics.grpc.model.ChatMessageType;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 /**
@@ -13,10 +20,128 @@ import java.util.stream.Stream;
  */
 public final class ChatService {
 
+	/** Longest accepted chat message content, in characters. */
+	public static final int MAX_CONTENT_LENGTH = 4000;
+
+	/** Words masked by the default profanity filter. */
+	public static final Set<String> DEFAULT_BLOCKED_WORDS = Set.of("damn", "crap", "bloody");
+
+	private static final Pattern WORD = Pattern.compile("\\p{L}+");
+	private static final Pattern MENTION = Pattern.compile("(?<![\\w@])@([A-Za-z0-9_]{1,32})");
+	private static final Pattern BARE_LINK = Pattern.compile("(?<![\\w/.])www\\.[A-Za-z0-9.-]+\\.[A-Za-z]{2,}\\S*");
+
 	private ChatService() {
 		// Utility class
 	}
 
+	/**
+	 * The stages every chat message passes through before it reaches its room,
+	 * in order: validation, profanity filtering, link expansion and mention
+	 * extraction.
+	 *
+	 * @return the default stages
+	 */
+	public static List<ChatStage> defaultStages() {
+		return List.of(ChatService::validateMessage,
+				message -> Optional.of(filterProfanity(message, DEFAULT_BLOCKED_WORDS)),
+				message -> Optional.of(expandLinks(message)), message -> Optional.of(extractMentions(message)));
+	}
+
+	/**
+	 * Drops text messages that are blank or longer than
+	 * {@link #MAX_CONTENT_LENGTH}. System messages always pass.
+	 *
+	 * @param message
+	 *            the message to validate
+	 * @return the message, or empty if it is invalid
+	 */
+	public static Optional<ChatMessageDto> validateMessage(ChatMessageDto message) {
+		if (message == null) {
+			throw new IllegalArgumentException("message cannot be null");
+		}
+		if (message.type() != ChatMessageType.TEXT) {
+			return Optional.of(message);
+		}
+		boolean valid = !message.content().isBlank() && message.content().length() <= MAX_CONTENT_LENGTH;
+		return valid ? Optional.of(message) : Optional.empty();
+	}
+
+	/**
+	 * Masks blocked words with asterisks, keeping their length. Matching is
+	 * case-insensitive and on whole words only.
+	 *
+	 * @param message
+	 *            the message to filter
+	 * @param blockedWords
+	 *            the blocked words, in lower case
+	 * @return the message with blocked words masked
+	 */
+	public static ChatMessageDto filterProfanity(ChatMessageDto message, Set<String> blockedWords) {
+		if (message == null) {
+			throw new IllegalArgumentException("message cannot be null");
+		}
+		if (blockedWords == null) {
+			throw new IllegalArgumentException("blockedWords cannot be null");
+		}
+		String content = message.content();
+		Matcher words = WORD.matcher(content);
+		StringBuilder filtered = null;
+		int copiedUpTo = 0;
+		while (words.find()) {
+			if (blockedWords.contains(words.group().toLowerCase(Locale.ROOT))) {
+				if (filtered == null) {
+					filtered = new StringBuilder(content.length());
+				}
+				filtered.append(content, copiedUpTo, words.start()).append("*".repeat(words.end() - words.start()));
+				copiedUpTo = words.end();
+			}
+		}
+		if (filtered == null) {
+			return message;
+		}
+		return message.withContent(filtered.append(content, copiedUpTo, content.length()).toString());
+	}
+
+	/**
+	 * Turns bare {@code www.} links into full {@code https://} links so clients
+	 * can render them.
+	 *
+	 * @param message
+	 *            the message to process
+	 * @return the message with expanded links
+	 */
+	public static ChatMessageDto expandLinks(ChatMessageDto message) {
+		if (message == null) {
+			throw new IllegalArgumentException("message cannot be null");
+		}
+		Matcher links = BARE_LINK.matcher(message.content());
+		if (!links.find()) {
+			return message;
+		}
+		return message.withContent(links.replaceAll(link -> Matcher.quoteReplacement("https://" + link.group())));
+	}
+
+	/**
+	 * Collects the distinct usernames mentioned with {@code @name}, in order of
+	 * first appearance.
+	 *
+	 * @param message
+	 *            the message to process
+	 * @return the message with its mentions set
+	 */
+	public static ChatMessageDto extractMentions(ChatMessageDto message) {
+		if (message == null) {
+			throw new IllegalArgumentException("message cannot be null");
+		}
+		Matcher mentions = MENTION.matcher(message.content());
+		Set<String> usernames = new LinkedHashSet<>();
+		while (mentions.find()) {
+			usernames.add(mentions.group(1));
+		}
+		return usernames.isEmpty() && message.mentions().isEmpty() ? message
+				: message.withMentions(new ArrayList<>(usernames));
+	}
+
 	/**
 	 * Processes an incoming chat message and generates a response. In a real chat
 	 * system, this might broadcast to other users or apply transformations.
@@ -0,0 +1,23 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+
+import java.util.Optional;
+
+/**
+ * One step of chat message processing, such as validation or filtering. Stages
+ * are pure functions: they may run on any thread, but the messages of one room
+ * pass through a stage in order.
+ */
+@FunctionalInterface
+public interface ChatStage {
+
+	/**
+	 * Processes one message.
+	 *
+	 * @param message
+	 *            the message from the previous stage
+	 * @return the message for the next stage, or empty to drop it
+	 */
+	Optional<ChatMessageDto> apply(ChatMessageDto message);
+}
@@ -0,0 +1,80 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ClusterNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service deciding which cluster node owns a chat room or a notification topic.
+ * Pure functions with no side-effects or I/O.
+ *
+ * <p>
+ * Topics are owned by their root segment ({@code "alerts"} for
+ * {@code "alerts.building1.floor3"}), so a whole topic hierarchy lives on one
+ * node and hierarchical subscriptions never span nodes.
+ */
+public final class ClusterRoutingService {
+
+	private ClusterRoutingService() {
+		// Utility class
+	}
+
+	/**
+	 * Builds the routing key of a chat room.
+	 *
+	 * @param roomId
+	 *            the room ID
+	 * @return the ring key for the room
+	 */
+	public static String roomKey(String roomId) {
+		if (roomId == null || roomId.isBlank()) {
+			throw new IllegalArgumentException("roomId cannot be null or blank");
+		}
+		return "room:" + roomId;
+	}
+
+	/**
+	 * Builds the routing key of a notification topic from its root segment.
+	 *
+	 * @param topic
+	 *            the topic, possibly hierarchical with '.' separators
+	 * @return the ring key for the topic
+	 */
+	public static String topicKey(String topic) {
+		if (topic == null || topic.isBlank()) {
+			throw new IllegalArgumentException("topic cannot be null or blank");
+		}
+		int separator = topic.indexOf('.');
+		return "topic:" + (separator < 0 ? topic : topic.substring(0, separator));
+	}
+
+	/**
+	 * Groups topics by the node that owns them.
+	 *
+	 * @param ring
+	 *            the cluster ring
+	 * @param topics
+	 *            the topics to route
+	 * @return owner node to its topics, in first-seen order
+	 */
+	public static Map<ClusterNode, List<String>> partitionTopicsByOwner(ConsistentHashRing ring, List<String> topics) {
+		if (ring == null) {
+			throw new IllegalArgumentException("ring cannot be null");
+		}
+		if (topics == null) {
+			throw new IllegalArgumentException("topics cannot be null");
+		}
+
+		Map<ClusterNode, List<String>> topicsByOwner = new LinkedHashMap<>();
+		for (String topic : topics) {
+			ClusterNode owner = ring.ownerOf(topicKey(topic));
+			topicsByOwner.computeIfAbsent(owner, node -> new ArrayList<>()).add(topic);
+		}
+		topicsByOwner.replaceAll((node, ownedTopics) -> List.copyOf(ownedTopics));
+		return Collections.unmodifiableMap(topicsByOwner);
+	}
+}
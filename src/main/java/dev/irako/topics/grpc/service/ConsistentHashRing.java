@@ -0,0 +1,94 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ClusterNode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring mapping keys (rooms, topics) to cluster nodes.
+ *
+ * <p>
+ * Each node is placed on the ring many times ("virtual nodes") so keys spread
+ * evenly and adding or removing a node only moves about 1/N of the keys.
+ *
+ * <pre>
+ * ConsistentHashRing ring = new ConsistentHashRing(List.of(nodeA, nodeB, nodeC), 128);
+ * ClusterNode owner = ring.ownerOf("room:general");
+ * </pre>
+ */
+public final class ConsistentHashRing {
+
+
+	private final List<ClusterNode> nodes;
+	// Parallel arrays sorted by ring position; binary search keeps lookups allocation-free
+	private final long[] positions;
+	private final ClusterNode[] owners;
+
+	/**
+	 * Builds a ring over the given nodes.
+	 *
+	 * @param nodes
+	 *            the cluster members, with distinct node IDs
+	 * @param virtualNodesPerNode
+	 *            ring positions per node
+	 */
+	public ConsistentHashRing(List<ClusterNode> nodes, int virtualNodesPerNode) {
+		if (nodes == null || nodes.isEmpty()) {
+			throw new IllegalArgumentException("nodes cannot be null or empty");
+		}
+		if (virtualNodesPerNode <= 0) {
+			throw new IllegalArgumentException("virtualNodesPerNode must be positive");
+		}
+		if (nodes.stream().map(ClusterNode::nodeId).distinct().count() != nodes.size()) {
+			throw new IllegalArgumentException("node IDs must be distinct: " + nodes);
+		}
+
+		TreeMap<Long, ClusterNode> ring = new TreeMap<>();
+		for (ClusterNode node : nodes) {
+			for (int replica = 0; replica < virtualNodesPerNode; replica++) {
+				ring.put(Hashing.hash(node.nodeId() + "#" + replica), node);
+			}
+		}
+
+		this.nodes = List.copyOf(nodes);
+		this.positions = new long[ring.size()];
+		this.owners = new ClusterNode[ring.size()];
+		int index = 0;
+		for (Map.Entry<Long, ClusterNode> entry : ring.entrySet()) {
+			positions[index] = entry.getKey();
+			owners[index] = entry.getValue();
+			index++;
+		}
+	}
+
+	/**
+	 * Finds the node owning a key: the first ring position at or after the key's
+	 * hash, wrapping around at the end.
+	 *
+	 * @param key
+	 *            the routing key
+	 * @return the owning node
+	 */
+	public ClusterNode ownerOf(String key) {
+		if (key == null) {
+			throw new IllegalArgumentException("key cannot be null");
+		}
+		int index = Arrays.binarySearch(positions, Hashing.hash(key));
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return owners[index == positions.length ? 0 : index];
+	}
+
+	/**
+	 * Returns the cluster members.
+	 *
+	 * @return the nodes on the ring
+	 */
+	public List<ClusterNode> nodes() {
+		return nodes;
+	}
+}
@@ -0,0 +1,85 @@
+package dev.irako.topics.grpc.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service for planning a graceful drain: how open streams are split into
+ * batches that close one after another, and how long a client waits before it
+ * reconnects. Pure functions with no side-effects or I/O; randomness is passed
+ * in.
+ */
+public final class DrainPlanService {
+
+	private DrainPlanService() {
+		// Utility class
+	}
+
+	/**
+	 * Splits items into at most {@code batchCount} batches of near-equal size,
+	 * keeping their order.
+	 *
+	 * @param items
+	 *            the items to split
+	 * @param batchCount
+	 *            the maximum number of batches
+	 * @return the non-empty batches
+	 */
+	public static <T> List<List<T>> batches(List<T> items, int batchCount) {
+		if (items == null) {
+			throw new IllegalArgumentException("items cannot be null");
+		}
+		if (batchCount <= 0) {
+			throw new IllegalArgumentException("batchCount must be positive");
+		}
+		int batchSize = (items.size() + batchCount - 1) / batchCount;
+		List<List<T>> batches = new ArrayList<>();
+		for (int start = 0; start < items.size(); start += batchSize) {
+			batches.add(List.copyOf(items.subList(start, Math.min(start + batchSize, items.size()))));
+		}
+		return batches;
+	}
+
+	/**
+	 * Computes the pause between consecutive batches so that all of them close
+	 * within the drain window.
+	 *
+	 * @param window
+	 *            the drain window
+	 * @param batchCount
+	 *            the number of batches
+	 * @return the pause in nanoseconds, zero when there is at most one batch
+	 */
+	public static long pauseBetweenBatchesNanos(Duration window, int batchCount) {
+		if (window == null || window.isNegative()) {
+			throw new IllegalArgumentException("window cannot be null or negative");
+		}
+		if (batchCount < 0) {
+			throw new IllegalArgumentException("batchCount cannot be negative");
+		}
+		return batchCount <= 1 ? 0 : window.toNanos() / (batchCount - 1);
+	}
+
+	/**
+	 * Computes a jittered reconnect delay. Spreading reconnects over the jitter
+	 * range keeps clients of a drained node from hitting the next node at once.
+	 *
+	 * @param baseDelayMillis
+	 *            the minimum delay
+	 * @param maxJitterMillis
+	 *            the largest random delay added on top
+	 * @param uniform
+	 *            a uniformly distributed value in [0, 1)
+	 * @return the delay in milliseconds
+	 */
+	public static long reconnectDelayMillis(long baseDelayMillis, long maxJitterMillis, double uniform) {
+		if (baseDelayMillis < 0 || maxJitterMillis < 0) {
+			throw new IllegalArgumentException("delays cannot be negative");
+		}
+		if (uniform < 0.0 || uniform >= 1.0) {
+			throw new IllegalArgumentException("uniform must be in [0, 1): " + uniform);
+		}
+		return baseDelayMillis + (long) (uniform * maxJitterMillis);
+	}
+}
@@ -0,0 +1,128 @@
+package dev.irako.topics.grpc.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads back the points written by {@link GorillaEncoder}. Works on any
+ * {@link ByteBuffer}, including memory-mapped files, without copying.
+ *
+ * <pre>
+ * GorillaDecoder decoder = new GorillaDecoder(payload, count);
+ * while (decoder.next()) {
+ * 	use(decoder.timestampMs(), decoder.value());
+ * }
+ * </pre>
+ */
+public final class GorillaDecoder {
+
+	private final ByteBuffer payload;
+	private final int offset;
+	private final int count;
+	private long bitPosition;
+	private int decoded;
+
+	private long timestamp;
+	private long delta;
+	private long valueBits;
+	private int leadingZeros;
+	private int trailingZeros;
+
+	/**
+	 * Creates a decoder over encoded points.
+	 *
+	 * @param payload
+	 *            the encoded points, starting at the buffer's position
+	 * @param count
+	 *            the number of points encoded
+	 */
+	public GorillaDecoder(ByteBuffer payload, int count) {
+		if (payload == null) {
+			throw new IllegalArgumentException("payload cannot be null");
+		}
+		if (count < 0) {
+			throw new IllegalArgumentException("count cannot be negative");
+		}
+		this.payload = payload;
+		this.offset = payload.position();
+		this.count = count;
+	}
+
+	/**
+	 * Advances to the next point.
+	 *
+	 * @return false once all points were read
+	 */
+	public boolean next() {
+		if (decoded == count) {
+			return false;
+		}
+		if (decoded == 0) {
+			timestamp = readBits(64);
+			valueBits = readBits(64);
+		} else {
+			delta += readDeltaOfDelta();
+			timestamp += delta;
+			valueBits ^= readValueXor();
+		}
+		decoded++;
+		return true;
+	}
+
+	public long timestampMs() {
+		return timestamp;
+	}
+
+	public double value() {
+		return Double.longBitsToDouble(valueBits);
+	}
+
+	private long readDeltaOfDelta() {
+		if (readBits(1) == 0) {
+			return 0;
+		}
+		if (readBits(1) == 0) {
+			return readSigned(7);
+		}
+		if (readBits(1) == 0) {
+			return readSigned(9);
+		}
+		if (readBits(1) == 0) {
+			return readSigned(12);
+		}
+		return readBits(64);
+	}
+
+	private long readValueXor() {
+		if (readBits(1) == 0) {
+			return 0;
+		}
+		if (readBits(1) == 1) {
+			leadingZeros = (int) readBits(5);
+			int meaningfulBits = (int) readBits(6) + 1;
+			trailingZeros = 64 - leadingZeros - meaningfulBits;
+		}
+		return readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+	}
+
+	private long readSigned(int bits) {
+		return (readBits(bits) << (64 - bits)) >> (64 - bits);
+	}
+
+	/**
+	 * Reads {@code bits} bits, most significant first.
+	 */
+	private long readBits(int bits) {
+		long result = 0;
+		while (bits > 0) {
+			int byteIndex = offset + (int) (bitPosition >>> 3);
+			int available = 8 - (int) (bitPosition & 7);
+			int take = Math.min(available, bits);
+			int current = payload.get(byteIndex) & 0xFF;
+			int chunk = (current >>> (available - take)) & ((1 << take) - 1);
+			result = (result << take) | chunk;
+			bitPosition += take;
+			bits -= take;
+		}
+		return result;
+	}
+}
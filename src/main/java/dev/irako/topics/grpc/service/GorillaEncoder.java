@@ -0,0 +1,128 @@
+package dev.irako.topics.grpc.service;
+
+import java.util.Arrays;
+
+/**
+ * Compresses a series of (timestamp, value) points with the encoding of
+ * Facebook's Gorilla time-series database: timestamps as delta-of-deltas and
+ * values as the XOR with the previous value. Regular sampling intervals and
+ * slowly changing values shrink to a few bits per point.
+ *
+ * <p>
+ * Points need not be in timestamp order; out-of-order points just cost more
+ * bits. Decode with {@link GorillaDecoder}.
+ */
+public final class GorillaEncoder {
+
+	private byte[] buffer = new byte[64];
+	private long bitPosition;
+	private int count;
+
+	private long previousTimestamp;
+	private long previousDelta;
+	private long previousValueBits;
+	private int previousLeadingZeros = -1;
+	private int previousTrailingZeros;
+
+	/**
+	 * Appends one point.
+	 *
+	 * @param timestampMs
+	 *            the point's timestamp in epoch milliseconds
+	 * @param value
+	 *            the point's value
+	 */
+	public void add(long timestampMs, double value) {
+		long valueBits = Double.doubleToRawLongBits(value);
+		if (count == 0) {
+			writeBits(timestampMs, 64);
+			writeBits(valueBits, 64);
+		} else {
+			long delta = timestampMs - previousTimestamp;
+			writeDeltaOfDelta(delta - previousDelta);
+			writeValueXor(valueBits ^ previousValueBits);
+			previousDelta = delta;
+		}
+		previousTimestamp = timestampMs;
+		previousValueBits = valueBits;
+		count++;
+	}
+
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Returns the encoded points, padded with zero bits to whole bytes.
+	 *
+	 * @return a copy of the encoded bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, (int) ((bitPosition + 7) >>> 3));
+	}
+
+	private void writeDeltaOfDelta(long deltaOfDelta) {
+		if (deltaOfDelta == 0) {
+			writeBits(0b0, 1);
+		} else if (fitsSigned(deltaOfDelta, 7)) {
+			writeBits(0b10, 2);
+			writeBits(deltaOfDelta, 7);
+		} else if (fitsSigned(deltaOfDelta, 9)) {
+			writeBits(0b110, 3);
+			writeBits(deltaOfDelta, 9);
+		} else if (fitsSigned(deltaOfDelta, 12)) {
+			writeBits(0b1110, 4);
+			writeBits(deltaOfDelta, 12);
+		} else {
+			writeBits(0b1111, 4);
+			writeBits(deltaOfDelta, 64);
+		}
+	}
+
+	private void writeValueXor(long xor) {
+		if (xor == 0) {
+			writeBits(0b0, 1);
+			return;
+		}
+		writeBits(0b1, 1);
+		int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+		int trailingZeros = Long.numberOfTrailingZeros(xor);
+		if (previousLeadingZeros >= 0 && leadingZeros >= previousLeadingZeros
+				&& trailingZeros >= previousTrailingZeros) {
+			// The meaningful bits fit in the previous window
+			writeBits(0b0, 1);
+			writeBits(xor >>> previousTrailingZeros, 64 - previousLeadingZeros - previousTrailingZeros);
+			return;
+		}
+		int meaningfulBits = 64 - leadingZeros - trailingZeros;
+		writeBits(0b1, 1);
+		writeBits(leadingZeros, 5);
+		writeBits(meaningfulBits - 1, 6);
+		writeBits(xor >>> trailingZeros, meaningfulBits);
+		previousLeadingZeros = leadingZeros;
+		previousTrailingZeros = trailingZeros;
+	}
+
+	private static boolean fitsSigned(long value, int bits) {
+		long limit = 1L << (bits - 1);
+		return value >= -limit && value < limit;
+	}
+
+	/**
+	 * Writes the low {@code bits} bits of a value, most significant first.
+	 */
+	private void writeBits(long value, int bits) {
+		while (bits > 0) {
+			int byteIndex = (int) (bitPosition >>> 3);
+			if (byteIndex == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			int free = 8 - (int) (bitPosition & 7);
+			int take = Math.min(free, bits);
+			int chunk = (int) ((value >>> (bits - take)) & ((1 << take) - 1));
+			buffer[byteIndex] |= (byte) (chunk << (free - take));
+			bitPosition += take;
+			bits -= take;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package dev.irako.topics.grpc.service;
+
+/**
+ * The 64-bit string hash shared by the hash ring and the sketches: FNV-1a over
+ * the key's UTF-8 bytes, then the MurmurHash3 finalizer. FNV-1a spreads short
+ * keys poorly on its own; the finalizer makes every output bit depend on every
+ * input bit.
+ *
+ * <p>
+ * The bytes are encoded on the fly, so hashing allocates nothing, and the
+ * result equals hashing {@code key.getBytes(StandardCharsets.UTF_8)}; ring
+ * positions therefore do not depend on how the key is read.
+ */
+final class Hashing {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private Hashing() {
+		// Utility class
+	}
+
+	static long hash(String key) {
+		long hash = FNV_OFFSET_BASIS;
+		int length = key.length();
+		for (int index = 0; index < length; index++) {
+			char c = key.charAt(index);
+			if (c < 0x80) {
+				hash = fnv(hash, c);
+			} else if (c < 0x800) {
+				hash = fnv(hash, 0xc0 | c >>> 6);
+				hash = fnv(hash, 0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && index + 1 < length
+					&& Character.isLowSurrogate(key.charAt(index + 1))) {
+				int codePoint = Character.toCodePoint(c, key.charAt(++index));
+				hash = fnv(hash, 0xf0 | codePoint >>> 18);
+				hash = fnv(hash, 0x80 | codePoint >>> 12 & 0x3f);
+				hash = fnv(hash, 0x80 | codePoint >>> 6 & 0x3f);
+				hash = fnv(hash, 0x80 | codePoint & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				// Unpaired, which the UTF-8 encoder replaces with '?'
+				hash = fnv(hash, '?');
+			} else {
+				hash = fnv(hash, 0xe0 | c >>> 12);
+				hash = fnv(hash, 0x80 | c >>> 6 & 0x3f);
+				hash = fnv(hash, 0x80 | c & 0x3f);
+			}
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private static long fnv(long hash, int octet) {
+		return (hash ^ octet) * FNV_PRIME;
+	}
+}
@@ -0,0 +1,90 @@
+package dev.irako.topics.grpc.service;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimate of the number of distinct keys added, in a fixed
+ * {@value #REGISTERS} bytes whatever the number of keys. The standard error is
+ * about 1.04 / sqrt({@value #REGISTERS}), 1.6%.
+ *
+ * <p>
+ * Each key is hashed to 64 bits; the first {@value #PRECISION} bits pick a
+ * register, which keeps the longest run of leading zeros seen in the rest.
+ * Small counts use linear counting over the empty registers instead. Sketches
+ * merge by register-wise maximum, so merging is idempotent and the same key
+ * added to several sketches is counted once. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+	static final int PRECISION = 12;
+	static final int REGISTERS = 1 << PRECISION;
+
+	private static final double ALPHA = 0.7213 / (1.0 + 1.079 / REGISTERS);
+
+	private final byte[] registers = new byte[REGISTERS];
+
+	/**
+	 * Adds a key.
+	 *
+	 * @param key
+	 *            the key to count
+	 */
+	public void add(String key) {
+		long hash = Hashing.hash(key);
+		int register = (int) (hash >>> (Long.SIZE - PRECISION));
+		// The marker bit bounds the run when the remaining bits are all zero
+		byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+		if (rank > registers[register]) {
+			registers[register] = rank;
+		}
+	}
+
+	/**
+	 * Merges another sketch into this one, as if its keys had been added here.
+	 *
+	 * @param other
+	 *            the sketch to merge; left unchanged
+	 */
+	public void merge(HyperLogLog other) {
+		for (int register = 0; register < REGISTERS; register++) {
+			if (other.registers[register] > registers[register]) {
+				registers[register] = other.registers[register];
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct keys added
+	 */
+	public long estimate() {
+		double inverseSum = 0.0;
+		int empty = 0;
+		for (byte rank : registers) {
+			inverseSum += 1.0 / (1L << rank);
+			if (rank == 0) {
+				empty++;
+			}
+		}
+		double estimate = ALPHA * REGISTERS * REGISTERS / inverseSum;
+		if (estimate <= 2.5 * REGISTERS && empty > 0) {
+			estimate = REGISTERS * Math.log((double) REGISTERS / empty);
+		}
+		return Math.round(estimate);
+	}
+
+	public boolean isEmpty() {
+		for (byte rank : registers) {
+			if (rank != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Forgets every key added.
+	 */
+	public void clear() {
+		Arrays.fill(registers, (byte) 0);
+	}
+}
@@ -0,0 +1,164 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ChatMessageType;
+import dev.irako.topics.grpc.model.MessageDto;
+import dev.irako.topics.grpc.model.RpcType;
+import dev.irako.topics.grpc.model.SensorReadingDto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Service for planning load test traffic: which RPC to call next, when an
+ * open-loop request is due and what synthetic payload it carries. Pure
+ * functions with no side-effects or I/O; randomness and time are passed in.
+ */
+public final class LoadGenerationService {
+
+	private static final int LOAD_ROOM_COUNT = 64;
+	private static final String FILLER = "lorem ipsum dolor sit amet consectetur adipiscing elit ";
+
+	private LoadGenerationService() {
+		// Utility class
+	}
+
+	/**
+	 * Selects an RPC from a weighted mix.
+	 *
+	 * @param mix
+	 *            relative weight of each RPC
+	 * @param uniform
+	 *            a uniformly distributed value in [0, 1)
+	 * @return the selected RPC
+	 */
+	public static RpcType selectRpc(Map<RpcType, Integer> mix, double uniform) {
+		if (mix == null || mix.isEmpty()) {
+			throw new IllegalArgumentException("mix cannot be null or empty");
+		}
+		if (uniform < 0.0 || uniform >= 1.0) {
+			throw new IllegalArgumentException("uniform must be in [0, 1): " + uniform);
+		}
+
+		int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+		double target = uniform * totalWeight;
+		int cumulativeWeight = 0;
+		RpcType selected = null;
+		// Iterate in enum order so the same uniform value always maps to the same RPC
+		for (RpcType rpcType : RpcType.values()) {
+			int weight = mix.getOrDefault(rpcType, 0);
+			if (weight > 0) {
+				selected = rpcType;
+				cumulativeWeight += weight;
+				if (target < cumulativeWeight) {
+					return rpcType;
+				}
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Computes when the n-th open-loop request is due. Latency is measured from
+	 * this intended time rather than from the actual send, so requests that queue
+	 * behind a stalled server are charged for the wait.
+	 *
+	 * @param startNanos
+	 *            start of the run on the {@link System#nanoTime()} clock
+	 * @param index
+	 *            zero-based request index
+	 * @param ratePerSecond
+	 *            the arrival rate
+	 * @return the intended start time in nanoseconds
+	 */
+	public static long scheduledStartNanos(long startNanos, long index, double ratePerSecond) {
+		if (index < 0) {
+			throw new IllegalArgumentException("index cannot be negative");
+		}
+		if (!(ratePerSecond > 0)) {
+			throw new IllegalArgumentException("ratePerSecond must be positive");
+		}
+		return startNanos + (long) (index * (1_000_000_000.0 / ratePerSecond));
+	}
+
+	/**
+	 * Builds synthetic text of an exact length.
+	 *
+	 * @param sequence
+	 *            request sequence number, embedded so payloads differ
+	 * @param length
+	 *            the number of characters
+	 * @return text of the requested length
+	 */
+	public static String syntheticText(long sequence, int length) {
+		if (length <= 0) {
+			throw new IllegalArgumentException("length must be positive");
+		}
+		String prefix = "#" + sequence + " ";
+		String text = prefix + FILLER.repeat(length / FILLER.length() + 1);
+		return text.substring(0, length);
+	}
+
+	/**
+	 * Builds a synthetic unary message.
+	 *
+	 * @param sequence
+	 *            request sequence number
+	 * @param payloadBytes
+	 *            content length
+	 * @param now
+	 *            message timestamp
+	 * @return the message
+	 */
+	public static MessageDto syntheticMessage(long sequence, int payloadBytes, Instant now) {
+		return new MessageDto(userId(sequence), syntheticText(sequence, payloadBytes), now);
+	}
+
+	/**
+	 * Builds a batch of synthetic sensor readings spread over a few sensors.
+	 *
+	 * @param sequence
+	 *            request sequence number
+	 * @param count
+	 *            number of readings
+	 * @param now
+	 *            reading timestamp
+	 * @return the readings
+	 */
+	public static List<SensorReadingDto> syntheticReadings(long sequence, int count, Instant now) {
+		if (count <= 0) {
+			throw new IllegalArgumentException("count must be positive");
+		}
+		return IntStream.range(0, count).mapToObj(index -> {
+			String sensorId = "sensor-" + (index % 8);
+			double value = 20.0 + ((sequence + index) % 100) / 10.0;
+			return new SensorReadingDto(sensorId, value, "celsius", now, "room-" + (index % 8));
+		}).toList();
+	}
+
+	/**
+	 * Builds a short synthetic chat exchange. Exchanges are spread over a fixed
+	 * set of rooms so load reaches every node of a cluster.
+	 *
+	 * @param sequence
+	 *            request sequence number
+	 * @param payloadBytes
+	 *            content length of each message
+	 * @param now
+	 *            message timestamp
+	 * @return the chat messages
+	 */
+	public static List<ChatMessageDto> syntheticChat(long sequence, int payloadBytes, Instant now) {
+		String userId = userId(sequence);
+		String username = "load-" + (sequence % 1000);
+		String roomId = "load-room-" + (sequence % LOAD_ROOM_COUNT);
+		return IntStream.range(0, 3).mapToObj(index -> new ChatMessageDto(userId, username,
+				syntheticText(sequence + index, payloadBytes), now, ChatMessageType.TEXT, roomId)).toList();
+	}
+
+	private static String userId(long sequence) {
+		return "load-user-" + (sequence % 1000);
+	}
+}
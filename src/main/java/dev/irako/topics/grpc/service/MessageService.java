@@ -4,18 +4,26 @@ import dev.irako.topics.grpc.model.MessageDto;
 import dev.irako.topics.grpc.model.MessageResponseDto;
 
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Service for processing messages. Pure functions with no side-effects or I/O.
  */
 public final class MessageService {
 
+	/** Longest accepted message content, in characters. */
+	public static final int MAX_CONTENT_LENGTH = 10000;
+
+	public static final String STATUS_ACCEPTED = "ACCEPTED";
+	public static final String STATUS_REJECTED_TOO_LONG = "REJECTED_TOO_LONG";
+
 	private MessageService() {
 		// Utility class
 	}
 
 	/**
-	 * Processes a message and generates a response.
+	 * Processes a message and generates a response. The DTO was validated when
+	 * it was created, so only the length rule is checked here.
 	 *
 	 * @param message
 	 *            the message to process
@@ -26,9 +34,68 @@ public final class MessageService {
 		String messageId = UUID.randomUUID().toString();
 
 		// Simple validation: check message length
-		boolean success = message.content().length() <= 10000;
-		String status = success ? "ACCEPTED" : "REJECTED_TOO_LONG";
+		boolean success = isAccepted(message.content());
+
+		return new MessageResponseDto(success, messageId, statusFor(success));
+	}
+
+	/**
+	 * Checks the fields of a message request against all rules at once: those of
+	 * {@link MessageDto} and {@link #isAccepted(String)}. For callers that read
+	 * request fields directly instead of creating a DTO. Each rule runs once,
+	 * and the blank checks stop at the first non-whitespace character.
+	 *
+	 * @param userId
+	 *            the sender
+	 * @param content
+	 *            the message content
+	 * @return true if the message is accepted, false if its content is too long
+	 * @throws IllegalArgumentException
+	 *             if userId or content is null or blank
+	 */
+	public static boolean checkMessage(String userId, String content) {
+		if (userId == null || userId.isBlank()) {
+			throw new IllegalArgumentException("userId cannot be null or blank");
+		}
+		if (content == null || content.isBlank()) {
+			throw new IllegalArgumentException("content cannot be null or blank");
+		}
+		return content.length() <= MAX_CONTENT_LENGTH;
+	}
+
+	/**
+	 * Checks whether a message content is accepted.
+	 *
+	 * @param content
+	 *            the message content
+	 * @return true if the content is not too long
+	 */
+	public static boolean isAccepted(String content) {
+		return content.length() <= MAX_CONTENT_LENGTH;
+	}
 
-		return new MessageResponseDto(success, messageId, status);
+	/**
+	 * Status reported for an accepted or rejected message.
+	 *
+	 * @param accepted
+	 *            the result of {@link #isAccepted(String)}
+	 * @return the status
+	 */
+	public static String statusFor(boolean accepted) {
+		return accepted ? STATUS_ACCEPTED : STATUS_REJECTED_TOO_LONG;
+	}
+
+	/**
+	 * Generates a random (version 4) message ID without the lock of the shared
+	 * {@code SecureRandom} behind {@link UUID#randomUUID()}, for callers on
+	 * latency-critical threads. The IDs are unique but not unguessable.
+	 *
+	 * @return the message ID
+	 */
+	public static String fastMessageId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long mostSignificant = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSignificant = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+		return new UUID(mostSignificant, leastSignificant).toString();
 	}
 }
@@ -4,7 +4,9 @@ import dev.irako.topics.grpc.model.NotificationDto;
 import dev.irako.topics.grpc.model.NotificationPriority;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Stream;
 
@@ -48,15 +50,74 @@ public final class NotificationService {
 		});
 	}
 
+	/**
+	 * Creates the notification delivered to live subscribers when a client
+	 * publishes to a topic.
+	 *
+	 * @param topic
+	 *            the topic published to
+	 * @param title
+	 *            the notification title
+	 * @param content
+	 *            the notification content
+	 * @param priority
+	 *            the requested priority
+	 * @param timestamp
+	 *            the publication time
+	 * @return the notification DTO
+	 */
+	public static NotificationDto createPublishedNotification(String topic, String title, String content,
+			NotificationPriority priority, Instant timestamp) {
+		if (priority == null || priority == NotificationPriority.UNRECOGNIZED) {
+			throw new IllegalArgumentException("priority cannot be null or unrecognized");
+		}
+		return new NotificationDto(UUID.randomUUID().toString(), topic, title, content, timestamp, priority);
+	}
+
+	/**
+	 * Creates the digest that replaces several notifications of one topic for a
+	 * subscriber that could not keep up.
+	 *
+	 * @param topic
+	 *            the topic of the merged notifications
+	 * @param count
+	 *            the number of merged notifications
+	 * @param recentTitles
+	 *            the titles of the most recent merged notifications, oldest
+	 *            first
+	 * @param priority
+	 *            the highest priority among the merged notifications
+	 * @param timestamp
+	 *            the time of the latest merged notification
+	 * @return the digest notification
+	 */
+	public static NotificationDto createDigest(String topic, int count, List<String> recentTitles,
+			NotificationPriority priority, Instant timestamp) {
+		if (recentTitles == null || recentTitles.isEmpty()) {
+			throw new IllegalArgumentException("recentTitles cannot be null or empty");
+		}
+		if (count < recentTitles.size()) {
+			throw new IllegalArgumentException("count cannot be less than the number of titles");
+		}
+		StringBuilder content = new StringBuilder(String.join("\n", recentTitles));
+		if (count > recentTitles.size()) {
+			content.append("\n(and ").append(count - recentTitles.size()).append(" earlier)");
+		}
+		return new NotificationDto(UUID.randomUUID().toString(), topic, count + " notifications on " + topic,
+				content.toString(), timestamp, priority);
+	}
+
 	private static NotificationPriority determinePriority(String topic, int index) {
-		// Simple priority logic: urgent for first notification, high for alerts, etc.
-		if (topic.toLowerCase().contains("alert") || topic.toLowerCase().contains("urgent")) {
+		// Urgent for alert topics, high for the first notification, etc. Whole
+		// segments are compared, so "alerts.building1" is urgent but "dealerts" is not
+		List<String> segments = Arrays.asList(topic.toLowerCase(Locale.ROOT).split("\\."));
+		if (segments.contains("alert") || segments.contains("alerts") || segments.contains("urgent")) {
 			return NotificationPriority.URGENT;
 		}
 		if (index == 0) {
 			return NotificationPriority.HIGH;
 		}
-		if (topic.toLowerCase().contains("news")) {
+		if (segments.contains("news")) {
 			return NotificationPriority.MEDIUM;
 		}
 		return NotificationPriority.LOW;
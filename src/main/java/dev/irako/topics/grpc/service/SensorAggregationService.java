@@ -1,23 +1,40 @@
 package dev.irako.topics.grpc.service;
 
+import dev.irako.topics.grpc.model.ReadingColumns;
 import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorBucketAggregate;
 import dev.irako.topics.grpc.model.SensorReadingDto;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.DoubleStream;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
 
 /**
  * Service for aggregating sensor readings. Pure functions with no side-effects
  * or I/O.
+ *
+ * <p>
+ * Values are converted to the canonical unit of their quantity by
+ * {@link UnitNormalizer} before they are aggregated, and aggregates are
+ * labelled with that unit. Readings of different quantities cannot be
+ * aggregated together.
  */
 public final class SensorAggregationService {
 
+	/** Readings summarized by one leaf task; also the unit of the fixed split. */
+	static final int BLOCK_SIZE = 4096;
+
 	private SensorAggregationService() {
 		// Utility class
 	}
 
 	/**
-	 * Aggregates a list of sensor readings into statistics.
+	 * Aggregates a list of sensor readings into statistics on the calling thread.
 	 *
 	 * @param readings
 	 *            the sensor readings to aggregate
@@ -32,25 +49,455 @@ public final class SensorAggregationService {
 		if (readings == null || readings.isEmpty()) {
 			throw new IllegalArgumentException("readings cannot be null or empty");
 		}
+		UnitStatistics statistics = new StatisticsTask(listBlocks(readings), 0, readings.size()).compute();
+		return toAggregate(statistics.unit(), statistics.statistics(), processingStartTimeMs, processingEndTimeMs);
+	}
 
-		int totalReadings = readings.size();
+	/**
+	 * Aggregates readings held in an off-heap columnar buffer, reading the value
+	 * column directly without materializing DTOs.
+	 *
+	 * @param readings
+	 *            the sensor readings to aggregate
+	 * @param processingStartTimeMs
+	 *            the start time of processing in milliseconds
+	 * @param processingEndTimeMs
+	 *            the end time of processing in milliseconds
+	 * @return aggregated statistics, identical to aggregating the same readings
+	 *         as a list
+	 */
+	public static SensorAggregateDto aggregateColumns(ReadingColumns readings, long processingStartTimeMs,
+			long processingEndTimeMs) {
+		if (readings == null || readings.isEmpty()) {
+			throw new IllegalArgumentException("readings cannot be null or empty");
+		}
+		return toAggregate(UnitNormalizer.table(readings).commonUnit(), valueStatistics(readings),
+				processingStartTimeMs, processingEndTimeMs);
+	}
 
-		// Extract values for aggregation
-		DoubleStream values = readings.stream().mapToDouble(SensorReadingDto::value);
+	/**
+	 * Aggregates a list of sensor readings into statistics, splitting the work
+	 * over a fork-join pool. The result is identical to
+	 * {@link #aggregateReadings(List, long, long)} whatever the pool size.
+	 *
+	 * @param readings
+	 *            the sensor readings to aggregate
+	 * @param processingStartTimeMs
+	 *            the start time of processing in milliseconds
+	 * @param processingEndTimeMs
+	 *            the end time of processing in milliseconds
+	 * @param pool
+	 *            the pool to run on
+	 * @return aggregated statistics
+	 */
+	public static SensorAggregateDto aggregateReadingsParallel(List<SensorReadingDto> readings,
+			long processingStartTimeMs, long processingEndTimeMs, ForkJoinPool pool) {
+		if (readings == null || readings.isEmpty()) {
+			throw new IllegalArgumentException("readings cannot be null or empty");
+		}
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		UnitStatistics statistics = pool.invoke(new StatisticsTask(listBlocks(readings), 0, readings.size()));
+		return toAggregate(statistics.unit(), statistics.statistics(), processingStartTimeMs, processingEndTimeMs);
+	}
+
+	/**
+	 * Computes value statistics of readings in a single pass on the calling
+	 * thread.
+	 *
+	 * @param readings
+	 *            the sensor readings, all of one quantity
+	 * @return count, mean, variance, min and max of the values in their
+	 *         canonical unit
+	 */
+	public static ValueStatistics valueStatistics(List<SensorReadingDto> readings) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		return new StatisticsTask(listBlocks(readings), 0, readings.size()).compute().statistics();
+	}
 
-		double averageValue = values.average()
-				.orElseThrow(() -> new IllegalStateException("Cannot compute average of empty stream"));
+	/**
+	 * Computes value statistics of readings in a single pass over a fork-join
+	 * pool.
+	 *
+	 * <p>
+	 * The readings are split into fixed blocks of {@value #BLOCK_SIZE} that are
+	 * summarized independently and combined pairwise in a fixed tree. The tree
+	 * does not depend on the pool, so sequential and parallel runs combine the
+	 * same partial results in the same order and agree to the last bit.
+	 *
+	 * @param readings
+	 *            the sensor readings, all of one quantity
+	 * @param pool
+	 *            the pool to run on
+	 * @return count, mean, variance, min and max of the values in their
+	 *         canonical unit
+	 */
+	public static ValueStatistics valueStatistics(List<SensorReadingDto> readings, ForkJoinPool pool) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		return pool.invoke(new StatisticsTask(listBlocks(readings), 0, readings.size())).statistics();
+	}
 
-		// Recompute min/max (stream was consumed)
-		double minValue = readings.stream().mapToDouble(SensorReadingDto::value).min().orElseThrow();
+	/**
+	 * Computes value statistics of buffered readings in a single pass on the
+	 * calling thread.
+	 *
+	 * @param readings
+	 *            the sensor readings, all of one quantity
+	 * @return count, mean, variance, min and max of the values in their
+	 *         canonical unit
+	 */
+	public static ValueStatistics valueStatistics(ReadingColumns readings) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		UnitNormalizer.Table units = UnitNormalizer.table(readings);
+		// The buffer's unit dictionary is checked once, not per reading
+		String unit = readings.isEmpty() ? null : units.commonUnit();
+		return new StatisticsTask((from, to) -> {
+			ValueStatistics statistics = new ValueStatistics();
+			for (int index = from; index < to; index++) {
+				statistics.accept(units.normalize(readings.unitCode(index), readings.value(index)));
+			}
+			return new UnitStatistics(unit, statistics);
+		}, 0, readings.size()).compute().statistics();
+	}
 
-		double maxValue = readings.stream().mapToDouble(SensorReadingDto::value).max().orElseThrow();
+	/**
+	 * Builds the aggregate for statistics collected incrementally, for example
+	 * with {@link ValueStatistics#combine} over parts of an upload.
+	 *
+	 * @param unit
+	 *            the unit to label the aggregate with
+	 * @param statistics
+	 *            statistics of at least one reading
+	 * @param processingStartTimeMs
+	 *            the start time of processing in milliseconds
+	 * @param processingEndTimeMs
+	 *            the end time of processing in milliseconds
+	 * @return aggregated statistics
+	 */
+	public static SensorAggregateDto toAggregate(String unit, ValueStatistics statistics, long processingStartTimeMs,
+			long processingEndTimeMs) {
+		if (statistics == null || statistics.count() == 0) {
+			throw new IllegalArgumentException("statistics cannot be null or empty");
+		}
+		long processingTimeMs = processingEndTimeMs - processingStartTimeMs;
 
-		// All readings should have the same unit
-		String unit = readings.get(0).unit();
+		return new SensorAggregateDto(Math.toIntExact(statistics.count()), statistics.mean(), statistics.min(),
+				statistics.max(), unit, processingTimeMs);
+	}
 
+	/**
+	 * Builds the aggregate of an upload whose readings were sampled: count,
+	 * minimum and maximum are tracked over every reading, the average is
+	 * estimated from the sample.
+	 *
+	 * @param unit
+	 *            the unit to label the aggregate with
+	 * @param sampledReadings
+	 *            the number of readings in the sample, at least one
+	 * @param estimatedMean
+	 *            the mean of every reading estimated from the sample, with
+	 *            each sampled reading weighted by the readings it stands for
+	 * @param totalReadings
+	 *            the number of readings, sampled or not
+	 * @param minValue
+	 *            the minimum over every reading
+	 * @param maxValue
+	 *            the maximum over every reading
+	 * @param processingStartTimeMs
+	 *            the start time of processing in milliseconds
+	 * @param processingEndTimeMs
+	 *            the end time of processing in milliseconds
+	 * @return aggregated statistics with the share of readings sampled
+	 */
+	public static SensorAggregateDto toSampledAggregate(String unit, long sampledReadings, double estimatedMean,
+			long totalReadings, double minValue, double maxValue, long processingStartTimeMs,
+			long processingEndTimeMs) {
+		if (sampledReadings <= 0) {
+			throw new IllegalArgumentException("sampledReadings must be positive");
+		}
+		if (totalReadings < sampledReadings) {
+			throw new IllegalArgumentException("totalReadings cannot be less than the sample");
+		}
 		long processingTimeMs = processingEndTimeMs - processingStartTimeMs;
 
-		return new SensorAggregateDto(totalReadings, averageValue, minValue, maxValue, unit, processingTimeMs);
+		return new SensorAggregateDto(Math.toIntExact(totalReadings), estimatedMean, minValue, maxValue, unit,
+				processingTimeMs, (double) sampledReadings / totalReadings);
+	}
+
+	private record SensorBucket(int sensorCode, long bucketStartMs) {
+	}
+
+	private static final class BucketStatistics {
+		private final ValueStatistics statistics = new ValueStatistics();
+		private final String unit;
+		// Sums over the readings each kept reading stands for
+		private double weightedSum;
+		private long weight;
+
+		BucketStatistics(String unit) {
+			this.unit = unit;
+		}
+	}
+
+	/**
+	 * Statistics of a range of readings and the canonical unit they share, null
+	 * for an empty range. Combining checks that both ranges share the unit.
+	 */
+	private record UnitStatistics(String unit, ValueStatistics statistics) {
+
+		UnitStatistics combine(UnitStatistics other) {
+			statistics.combine(other.statistics);
+			if (unit == null) {
+				return new UnitStatistics(other.unit, statistics);
+			}
+			if (other.unit != null) {
+				UnitNormalizer.requireSameUnit(unit, other.unit);
+			}
+			return this;
+		}
+	}
+
+	/** Summarizes the readings of one block, from inclusive to exclusive. */
+	@FunctionalInterface
+	private interface BlockSummary {
+		UnitStatistics summarize(int from, int to);
+	}
+
+	/**
+	 * Summarizes blocks of a list, converting each value to its canonical unit
+	 * in the same pass. A block looks up a conversion only when the unit string
+	 * changes, which readings of one source rarely do, and checks the units of
+	 * its own readings; the blocks' units are checked as they are combined.
+	 */
+	private static BlockSummary listBlocks(List<SensorReadingDto> readings) {
+		List<SensorReadingDto> indexed = readings instanceof RandomAccess ? readings : new ArrayList<>(readings);
+		return (from, to) -> {
+			ValueStatistics statistics = new ValueStatistics();
+			String unit = null;
+			String previousUnit = null;
+			double scale = 1.0;
+			double offset = 0.0;
+			for (int index = from; index < to; index++) {
+				SensorReadingDto reading = indexed.get(index);
+				if (reading.unit() != previousUnit) {
+					previousUnit = reading.unit();
+					UnitNormalizer.Conversion conversion = UnitNormalizer.conversionOf(previousUnit);
+					if (unit == null) {
+						unit = conversion.canonicalUnit();
+					}
+					UnitNormalizer.requireSameUnit(unit, conversion.canonicalUnit());
+					scale = conversion.scale();
+					offset = conversion.offset();
+				}
+				statistics.accept(reading.value() * scale + offset);
+			}
+			return new UnitStatistics(unit, statistics);
+		};
+	}
+
+	/**
+	 * Summarizes a range of readings: one block directly, larger ranges by
+	 * splitting at a block boundary. Forks only when run inside a pool.
+	 */
+	private static final class StatisticsTask extends RecursiveTask<UnitStatistics> {
+
+		private final transient BlockSummary blocks;
+		private final int from;
+		private final int to;
+
+		StatisticsTask(BlockSummary blocks, int from, int to) {
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected UnitStatistics compute() {
+			if (to - from <= BLOCK_SIZE) {
+				return blocks.summarize(from, to);
+			}
+
+			int blocksInRange = (to - from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			int middle = from + (blocksInRange / 2) * BLOCK_SIZE;
+			StatisticsTask left = new StatisticsTask(blocks, from, middle);
+			StatisticsTask right = new StatisticsTask(blocks, middle, to);
+			UnitStatistics leftStatistics;
+			UnitStatistics rightStatistics;
+			if (inForkJoinPool()) {
+				left.fork();
+				rightStatistics = right.compute();
+				leftStatistics = left.join();
+			} else {
+				leftStatistics = left.compute();
+				rightStatistics = right.compute();
+			}
+			return leftStatistics.combine(rightStatistics);
+		}
+	}
+
+	/**
+	 * Aggregates readings separately per sensor and per time bucket of their
+	 * reading timestamp.
+	 *
+	 * @param readings
+	 *            the sensor readings to aggregate
+	 * @param bucketMillis
+	 *            the bucket width in milliseconds
+	 * @return one aggregate per sensor and bucket
+	 */
+	public static List<SensorBucketAggregate> aggregateBySensorAndBucket(List<SensorReadingDto> readings,
+			long bucketMillis) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		if (bucketMillis <= 0) {
+			throw new IllegalArgumentException("bucketMillis must be positive");
+		}
+
+		Map<String, Map<Long, List<SensorReadingDto>>> grouped = readings.stream()
+				.collect(Collectors.groupingBy(SensorReadingDto::sensorId, Collectors.groupingBy(
+						reading -> bucketStart(reading.timestamp().toEpochMilli(), bucketMillis))));
+
+		return grouped.entrySet().stream()
+				.flatMap(sensor -> sensor.getValue().entrySet().stream()
+						.map(bucket -> new SensorBucketAggregate(sensor.getKey(), bucket.getKey(),
+								aggregateReadings(bucket.getValue(), 0, 0))))
+				.toList();
+	}
+
+	/**
+	 * Aggregates buffered readings separately per sensor and per time bucket of
+	 * their reading timestamp, in one pass over the columns.
+	 *
+	 * @param readings
+	 *            the sensor readings to aggregate
+	 * @param bucketMillis
+	 *            the bucket width in milliseconds
+	 * @return one aggregate per sensor and bucket, in the canonical unit of the
+	 *         sensor's readings
+	 */
+	public static List<SensorBucketAggregate> aggregateColumnsBySensorAndBucket(ReadingColumns readings,
+			long bucketMillis) {
+		return aggregateColumnsBySensorAndBucket(readings, bucketMillis, null);
+	}
+
+	/**
+	 * Aggregates a sample of readings separately per sensor and per time bucket.
+	 * Each reading counts for the readings it stands for, so bucket counts and
+	 * averages estimate every reading of the sensor, and totals over sampled and
+	 * unsampled uploads stay comparable.
+	 *
+	 * @param readings
+	 *            the sampled sensor readings
+	 * @param bucketMillis
+	 *            the bucket width in milliseconds
+	 * @param weights
+	 *            per reading, the number of readings it stands for, at least
+	 *            one; null when every reading stands for itself only
+	 * @return one aggregate per sensor and bucket, carrying the share of the
+	 *         bucket's readings that were kept
+	 */
+	public static List<SensorBucketAggregate> aggregateColumnsBySensorAndBucket(ReadingColumns readings,
+			long bucketMillis, int[] weights) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		if (bucketMillis <= 0) {
+			throw new IllegalArgumentException("bucketMillis must be positive");
+		}
+		if (weights != null && weights.length < readings.size()) {
+			throw new IllegalArgumentException("weights must cover every reading");
+		}
+
+		UnitNormalizer.Table units = UnitNormalizer.table(readings);
+		Map<SensorBucket, BucketStatistics> buckets = new HashMap<>();
+		for (int index = 0; index < readings.size(); index++) {
+			SensorBucket key = new SensorBucket(readings.sensorCode(index),
+					bucketStart(readings.timestampMs(index), bucketMillis));
+			int unitCode = readings.unitCode(index);
+			BucketStatistics bucket = buckets.computeIfAbsent(key,
+					ignored -> new BucketStatistics(units.canonicalUnit(unitCode)));
+			UnitNormalizer.requireSameUnit(bucket.unit, units.canonicalUnit(unitCode));
+			double value = units.normalize(unitCode, readings.value(index));
+			int weight = weights == null ? 1 : weights[index];
+			if (weight <= 0) {
+				throw new IllegalArgumentException("weights must be positive");
+			}
+			bucket.statistics.accept(value);
+			bucket.weightedSum += weight * value;
+			bucket.weight += weight;
+		}
+
+		return buckets.entrySet().stream().map(bucket -> {
+			BucketStatistics bucketStatistics = bucket.getValue();
+			ValueStatistics statistics = bucketStatistics.statistics;
+			int count = Math.toIntExact(bucketStatistics.weight);
+			// Unweighted buckets keep the exact single-pass mean
+			double mean = count == statistics.count() ? statistics.mean() : bucketStatistics.weightedSum / count;
+			SensorAggregateDto aggregate = new SensorAggregateDto(count, mean, statistics.min(), statistics.max(),
+					bucketStatistics.unit, 0, (double) statistics.count() / count);
+			return new SensorBucketAggregate(readings.sensorIdForCode(bucket.getKey().sensorCode()),
+					bucket.getKey().bucketStartMs(), aggregate);
+		}).toList();
+	}
+
+	/**
+	 * Merges aggregates of disjoint reading sets into one, weighting each
+	 * average and sampling rate by its reading count.
+	 *
+	 * @param aggregates
+	 *            the aggregates to merge
+	 * @param processingTimeMs
+	 *            processing time to report for the merged aggregate
+	 * @return the merged aggregate, labelled with the first aggregate's unit
+	 */
+	public static SensorAggregateDto mergeAggregates(List<SensorAggregateDto> aggregates, long processingTimeMs) {
+		if (aggregates == null || aggregates.isEmpty()) {
+			throw new IllegalArgumentException("aggregates cannot be null or empty");
+		}
+
+		int totalReadings = 0;
+		double sampledReadings = 0.0;
+		double sum = 0.0;
+		double minValue = Double.POSITIVE_INFINITY;
+		double maxValue = Double.NEGATIVE_INFINITY;
+		for (SensorAggregateDto aggregate : aggregates) {
+			totalReadings += aggregate.totalReadings();
+			sampledReadings += aggregate.samplingRate() * aggregate.totalReadings();
+			sum += aggregate.averageValue() * aggregate.totalReadings();
+			minValue = Math.min(minValue, aggregate.minValue());
+			maxValue = Math.max(maxValue, aggregate.maxValue());
+		}
+		double averageValue = totalReadings == 0 ? 0.0 : sum / totalReadings;
+		double samplingRate = totalReadings == 0 ? 1.0 : Math.min(1.0, sampledReadings / totalReadings);
+
+		return new SensorAggregateDto(totalReadings, averageValue, minValue, maxValue, aggregates.get(0).unit(),
+				processingTimeMs, samplingRate);
+	}
+
+	/**
+	 * Computes the start of the time bucket containing a timestamp.
+	 *
+	 * @param timestampMs
+	 *            the timestamp in epoch milliseconds
+	 * @param bucketMillis
+	 *            the bucket width in milliseconds
+	 * @return the bucket start in epoch milliseconds
+	 */
+	public static long bucketStart(long timestampMs, long bucketMillis) {
+		if (bucketMillis <= 0) {
+			throw new IllegalArgumentException("bucketMillis must be positive");
+		}
+		return Math.floorDiv(timestampMs, bucketMillis) * bucketMillis;
 	}
 }
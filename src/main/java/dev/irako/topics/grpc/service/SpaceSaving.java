@@ -0,0 +1,101 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.HeavyHitterDto;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving summary of the most frequent keys of a stream, in a fixed
+ * number of counters whatever the number of distinct keys.
+ *
+ * <p>
+ * A key already counted is incremented. A new key takes over the counter with
+ * the lowest count and inherits that count as its possible overcount. Every key
+ * more frequent than {@code total / capacity} is guaranteed to hold a counter,
+ * and a counter never undercounts its key. Not thread-safe.
+ */
+public final class SpaceSaving {
+
+	private final int capacity;
+	private final Map<String, Counter> counters;
+	private long total;
+
+	/**
+	 * @param capacity
+	 *            the number of keys tracked at once
+	 */
+	public SpaceSaving(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.counters = new HashMap<>(capacity * 2);
+	}
+
+	/**
+	 * Counts one occurrence of a key.
+	 *
+	 * @param key
+	 *            the key
+	 */
+	public void add(String key) {
+		total++;
+		Counter counter = counters.get(key);
+		if (counter != null) {
+			counter.count++;
+			return;
+		}
+		if (counters.size() < capacity) {
+			counters.put(key, new Counter(key, 1, 0));
+			return;
+		}
+		// A linear scan, but only for keys not tracked yet; heavy hitters hit the map
+		Counter smallest = counters.values().stream().min(Comparator.comparingLong(Counter::count)).orElseThrow();
+		counters.remove(smallest.key);
+		counters.put(key, new Counter(key, smallest.count + 1, smallest.count));
+	}
+
+	/**
+	 * @param limit
+	 *            the maximum number of keys to return
+	 * @return the most frequent keys, most frequent first
+	 */
+	public List<HeavyHitterDto> top(int limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit cannot be negative");
+		}
+		return counters.values().stream()
+				.sorted(Comparator.comparingLong(Counter::count).reversed().thenComparing(Counter::key)).limit(limit)
+				.map(counter -> new HeavyHitterDto(counter.key, counter.count, counter.error)).toList();
+	}
+
+	/**
+	 * @return the number of occurrences counted
+	 */
+	public long total() {
+		return total;
+	}
+
+	private static final class Counter {
+		private final String key;
+		private long count;
+		private final long error;
+
+		Counter(String key, long count, long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+		long count() {
+			return count;
+		}
+
+		String key() {
+			return key;
+		}
+	}
+}
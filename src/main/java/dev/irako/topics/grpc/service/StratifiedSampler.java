@@ -0,0 +1,107 @@
+package dev.irako.topics.grpc.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Systematic sample of a reading stream, stratified by sensor: each sensor
+ * keeps its own share of the sampling rate, so every sensor stays represented
+ * in proportion to its readings, however rare it is. The first reading of a
+ * sensor is always kept. The rate may change between readings; each sensor
+ * then follows the new rate from its next reading on.
+ *
+ * <p>
+ * Each kept reading stands for itself and for the readings of its sensor left
+ * out since the sensor's previous kept reading. Weighting kept readings by
+ * that count estimates every sensor's readings from its own sample, whatever
+ * share of them was kept.
+ *
+ * <p>
+ * State is kept for at most {@value #MAX_SENSORS} sensors. Beyond that, the
+ * sensor seen least recently is forgotten: its next reading is kept like a
+ * first one, and the readings it left out since its last kept one are no
+ * longer counted.
+ *
+ * <p>
+ * Not thread-safe: one sampler belongs to one stream.
+ */
+public final class StratifiedSampler {
+
+	/** Sensors whose sampling state one sampler keeps at most. */
+	static final int MAX_SENSORS = 4096;
+
+	// In access order, so the sensor seen least recently is forgotten first
+	private final Map<String, Stratum> strata = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Stratum> eldest) {
+			return size() > MAX_SENSORS;
+		}
+	};
+
+	/**
+	 * Decides whether a reading joins the sample.
+	 *
+	 * @param sensorId
+	 *            the sensor the reading comes from
+	 * @param rate
+	 *            the share of readings to keep, in (0, 1]
+	 * @return 0 if the reading is left out, otherwise the number of readings
+	 *         it stands for: itself and the readings of its sensor left out
+	 *         since the previous kept one
+	 */
+	public int sample(String sensorId, double rate) {
+		if (!(rate > 0.0 && rate <= 1.0)) {
+			throw new IllegalArgumentException("rate must be in (0, 1]");
+		}
+		if (rate == 1.0) {
+			// A sensor sampled before still owes the readings it left out
+			Stratum stratum = strata.isEmpty() ? null : strata.remove(sensorId);
+			return stratum == null ? 1 : 1 + stratum.skipped;
+		}
+		Stratum stratum = strata.computeIfAbsent(sensorId, ignored -> new Stratum());
+		boolean kept = stratum.credit >= 1.0;
+		stratum.credit += rate;
+		if (!kept) {
+			stratum.skipped++;
+			return 0;
+		}
+		stratum.credit -= 1.0;
+		int weight = 1 + stratum.skipped;
+		stratum.skipped = 0;
+		return weight;
+	}
+
+	/**
+	 * Chooses the sampling rate for the current load: every reading while the
+	 * backlog is within capacity, and a share inversely proportional to the
+	 * excess beyond it, so the work that reaches the backlog stays near
+	 * capacity.
+	 *
+	 * @param backlog
+	 *            work waiting to be processed
+	 * @param capacity
+	 *            the backlog that still counts as keeping up
+	 * @param minRate
+	 *            the lowest rate to sample at, in (0, 1]
+	 * @return the sampling rate, between {@code minRate} and 1
+	 */
+	public static double samplingRate(int backlog, int capacity, double minRate) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		if (!(minRate > 0.0 && minRate <= 1.0)) {
+			throw new IllegalArgumentException("minRate must be in (0, 1]");
+		}
+		if (backlog <= capacity) {
+			return 1.0;
+		}
+		return Math.max(minRate, (double) capacity / backlog);
+	}
+
+	/** Sampling state of one sensor. */
+	private static final class Stratum {
+		// The fraction of a reading owed to the sample
+		private double credit = 1.0;
+		private int skipped;
+	}
+}
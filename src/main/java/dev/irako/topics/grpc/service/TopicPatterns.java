@@ -0,0 +1,119 @@
+package dev.irako.topics.grpc.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical notification topics. Pure functions with no side-effects or
+ * I/O.
+ *
+ * <p>
+ * Topics are '.'-separated segments such as {@code alerts.building1.door}.
+ * Subscriptions may use patterns: {@value #ANY_SEGMENT} matches exactly one
+ * segment and, as the last segment only, {@value #ANY_SUFFIX} matches zero or
+ * more segments. {@code alerts.*.door} matches {@code alerts.building1.door};
+ * {@code alerts.#} matches {@code alerts} and everything below it. The root
+ * segment must be literal, because it decides which cluster node owns the
+ * topic.
+ */
+public final class TopicPatterns {
+
+	public static final char SEPARATOR = '.';
+	public static final String ANY_SEGMENT = "*";
+	public static final String ANY_SUFFIX = "#";
+
+	private TopicPatterns() {
+		// Utility class
+	}
+
+	/**
+	 * Splits a topic that notifications are published to.
+	 *
+	 * @param topic
+	 *            the topic, without wildcards
+	 * @return the segments, root first
+	 * @throws IllegalArgumentException
+	 *             if the topic is blank, has an empty segment or a wildcard
+	 */
+	public static List<String> topicSegments(String topic) {
+		List<String> segments = split(topic, "topic");
+		for (String segment : segments) {
+			if (isWildcard(segment)) {
+				throw new IllegalArgumentException("topic cannot contain wildcards: " + topic);
+			}
+		}
+		return segments;
+	}
+
+	/**
+	 * Splits a subscription pattern.
+	 *
+	 * @param pattern
+	 *            the pattern, possibly with wildcards
+	 * @return the segments, root first
+	 * @throws IllegalArgumentException
+	 *             if the pattern is blank, has an empty segment, a wildcard root
+	 *             or {@value #ANY_SUFFIX} before its last segment
+	 */
+	public static List<String> patternSegments(String pattern) {
+		List<String> segments = split(pattern, "pattern");
+		if (isWildcard(segments.get(0))) {
+			throw new IllegalArgumentException("pattern root cannot be a wildcard: " + pattern);
+		}
+		int suffix = segments.indexOf(ANY_SUFFIX);
+		if (suffix >= 0 && suffix != segments.size() - 1) {
+			throw new IllegalArgumentException(ANY_SUFFIX + " must be the last segment: " + pattern);
+		}
+		return segments;
+	}
+
+	/**
+	 * Checks whether a topic matches a subscription pattern.
+	 *
+	 * @param pattern
+	 *            the subscription pattern
+	 * @param topic
+	 *            the published topic
+	 * @return true if the pattern matches the topic
+	 */
+	public static boolean matches(String pattern, String topic) {
+		List<String> patternSegments = patternSegments(pattern);
+		List<String> topicSegments = topicSegments(topic);
+		for (int index = 0; index < patternSegments.size(); index++) {
+			String segment = patternSegments.get(index);
+			if (segment.equals(ANY_SUFFIX)) {
+				return true;
+			}
+			if (index == topicSegments.size()
+					|| (!segment.equals(ANY_SEGMENT) && !segment.equals(topicSegments.get(index)))) {
+				return false;
+			}
+		}
+		return patternSegments.size() == topicSegments.size();
+	}
+
+	private static boolean isWildcard(String segment) {
+		return segment.equals(ANY_SEGMENT) || segment.equals(ANY_SUFFIX);
+	}
+
+	private static List<String> split(String value, String name) {
+		if (value == null || value.isBlank()) {
+			throw new IllegalArgumentException(name + " cannot be null or blank");
+		}
+		List<String> segments = new ArrayList<>(4);
+		int start = 0;
+		for (int end = value.indexOf(SEPARATOR); end >= 0; end = value.indexOf(SEPARATOR, start)) {
+			segments.add(segment(value, start, end, name));
+			start = end + 1;
+		}
+		segments.add(segment(value, start, value.length(), name));
+		return segments;
+	}
+
+	private static String segment(String value, int start, int end, String name) {
+		if (start == end) {
+			throw new IllegalArgumentException(name + " cannot have empty segments: " + value);
+		}
+		return value.substring(start, end);
+	}
+}
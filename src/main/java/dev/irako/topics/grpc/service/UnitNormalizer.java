@@ -0,0 +1,181 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ReadingColumns;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Converts sensor values to one canonical unit per quantity, so readings of the
+ * same quantity in different units can be aggregated together: temperatures to
+ * celsius, pressures to pascal, relative humidity to percent. Unit names are
+ * matched ignoring case and surrounding spaces. A unit not in the catalog is
+ * its own canonical unit.
+ *
+ * <p>
+ * Every conversion is affine, {@code value * scale + offset}, so a reading is
+ * converted without branching once its unit's coefficients are known. A
+ * {@link Table} holds the coefficients of every unit of a
+ * {@link ReadingColumns}, indexed by the buffer's unit codes, so the catalog is
+ * consulted once per distinct unit rather than once per reading.
+ */
+public final class UnitNormalizer {
+
+	public static final String CELSIUS = "celsius";
+	public static final String PASCAL = "pascal";
+	public static final String PERCENT = "percent";
+
+	private static final Map<String, Conversion> CATALOG = new HashMap<>();
+
+	static {
+		register(new Conversion(CELSIUS, 1.0, 0.0), "celsius", "c", "°c", "degc");
+		register(new Conversion(CELSIUS, 5.0 / 9.0, -160.0 / 9.0), "fahrenheit", "f", "°f", "degf");
+		register(new Conversion(CELSIUS, 1.0, -273.15), "kelvin", "k");
+		register(new Conversion(PASCAL, 1.0, 0.0), "pascal", "pa");
+		register(new Conversion(PASCAL, 100.0, 0.0), "hectopascal", "hpa", "millibar", "mbar");
+		register(new Conversion(PASCAL, 1000.0, 0.0), "kilopascal", "kpa");
+		register(new Conversion(PASCAL, 100_000.0, 0.0), "bar");
+		register(new Conversion(PASCAL, 101_325.0, 0.0), "atm");
+		register(new Conversion(PASCAL, 6894.757293168, 0.0), "psi");
+		register(new Conversion(PERCENT, 1.0, 0.0), "percent", "%");
+	}
+
+	private UnitNormalizer() {
+		// Utility class
+	}
+
+	private static void register(Conversion conversion, String... names) {
+		for (String name : names) {
+			CATALOG.put(name, conversion);
+		}
+	}
+
+	/**
+	 * Conversion of values in one unit to its canonical unit.
+	 *
+	 * @param canonicalUnit
+	 *            the unit converted values are in
+	 * @param scale
+	 *            the factor applied first
+	 * @param offset
+	 *            the term added after scaling
+	 */
+	public record Conversion(String canonicalUnit, double scale, double offset) {
+
+		public Conversion {
+			if (canonicalUnit == null || canonicalUnit.isBlank()) {
+				throw new IllegalArgumentException("canonicalUnit cannot be null or blank");
+			}
+		}
+
+		public double apply(double value) {
+			return value * scale + offset;
+		}
+	}
+
+	/**
+	 * Looks up the conversion of a unit.
+	 *
+	 * @param unit
+	 *            the unit name as sent by the sensor
+	 * @return the conversion to its canonical unit; the identity for units not
+	 *         in the catalog
+	 */
+	public static Conversion conversionOf(String unit) {
+		if (unit == null || unit.isBlank()) {
+			throw new IllegalArgumentException("unit cannot be null or blank");
+		}
+		Conversion conversion = CATALOG.get(unit);
+		if (conversion == null) {
+			conversion = CATALOG.get(unit.strip().toLowerCase(Locale.ROOT));
+		}
+		return conversion != null ? conversion : new Conversion(unit, 1.0, 0.0);
+	}
+
+	/**
+	 * Builds the conversion table of a reading buffer's units.
+	 *
+	 * @param readings
+	 *            the buffer
+	 * @return coefficients indexed by the buffer's unit codes
+	 */
+	public static Table table(ReadingColumns readings) {
+		if (readings == null) {
+			throw new IllegalArgumentException("readings cannot be null");
+		}
+		int unitCount = readings.distinctUnitCount();
+		double[] scales = new double[unitCount];
+		double[] offsets = new double[unitCount];
+		String[] canonicalUnits = new String[unitCount];
+		for (int code = 0; code < unitCount; code++) {
+			Conversion conversion = conversionOf(readings.unitForCode(code));
+			scales[code] = conversion.scale();
+			offsets[code] = conversion.offset();
+			canonicalUnits[code] = conversion.canonicalUnit();
+		}
+		return new Table(scales, offsets, canonicalUnits);
+	}
+
+	/**
+	 * Conversion coefficients of the units of one {@link ReadingColumns},
+	 * indexed by its unit codes. Immutable.
+	 */
+	public static final class Table {
+		private final double[] scales;
+		private final double[] offsets;
+		private final String[] canonicalUnits;
+
+		private Table(double[] scales, double[] offsets, String[] canonicalUnits) {
+			this.scales = scales;
+			this.offsets = offsets;
+			this.canonicalUnits = canonicalUnits;
+		}
+
+		/**
+		 * @param unitCode
+		 *            the reading's unit code
+		 * @param value
+		 *            the reading's value
+		 * @return the value in the canonical unit
+		 */
+		public double normalize(int unitCode, double value) {
+			return value * scales[unitCode] + offsets[unitCode];
+		}
+
+		public String canonicalUnit(int unitCode) {
+			return canonicalUnits[unitCode];
+		}
+
+		/**
+		 * The canonical unit shared by every unit of the buffer.
+		 *
+		 * @return the unit
+		 * @throws IllegalArgumentException
+		 *             if the buffer is empty or mixes quantities, such as
+		 *             temperatures and pressures
+		 */
+		public String commonUnit() {
+			if (canonicalUnits.length == 0) {
+				throw new IllegalArgumentException("readings cannot be empty");
+			}
+			for (String canonicalUnit : canonicalUnits) {
+				requireSameUnit(canonicalUnits[0], canonicalUnit);
+			}
+			return canonicalUnits[0];
+		}
+	}
+
+	/**
+	 * Checks that two canonical units are the same, so their values can be
+	 * aggregated together.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if they differ
+	 */
+	public static void requireSameUnit(String unit, String other) {
+		if (!unit.equals(other)) {
+			throw new IllegalArgumentException("readings mix units " + unit + " and " + other);
+		}
+	}
+}
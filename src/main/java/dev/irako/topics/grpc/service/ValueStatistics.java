@@ -0,0 +1,115 @@
+package dev.irako.topics.grpc.service;
+
+/**
+ * Mutable, combinable accumulator of count, sum, mean, variance, min and max
+ * over a sequence of values, computed in a single pass.
+ *
+ * <p>
+ * The sum uses Kahan compensation and the variance Welford's update, merged
+ * with Chan's formula, so partial results computed on separate threads can be
+ * combined without losing precision. Not thread-safe: each thread fills its own
+ * accumulator and the results are combined afterwards.
+ */
+public final class ValueStatistics {
+
+	private long count;
+	private double sum;
+	private double sumCompensation;
+	private double runningMean;
+	private double squaredDeviations;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Adds one value.
+	 *
+	 * @param value
+	 *            the value to add
+	 */
+	public void accept(double value) {
+		count++;
+		addToSum(value);
+		double delta = value - runningMean;
+		runningMean += delta / count;
+		squaredDeviations += delta * (value - runningMean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Merges another accumulator into this one, as if its values had been added
+	 * after this one's.
+	 *
+	 * @param other
+	 *            the accumulator to merge; left unchanged
+	 */
+	public void combine(ValueStatistics other) {
+		if (other.count == 0) {
+			return;
+		}
+		if (count == 0) {
+			copyFrom(other);
+			return;
+		}
+		long combinedCount = count + other.count;
+		double delta = other.runningMean - runningMean;
+		runningMean += delta * other.count / combinedCount;
+		squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / combinedCount);
+		addToSum(other.sum);
+		addToSum(-other.sumCompensation);
+		count = combinedCount;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return the compensated sum of all values
+	 */
+	public double sum() {
+		return sum - sumCompensation;
+	}
+
+	/**
+	 * @return the mean, or NaN if no value was added
+	 */
+	public double mean() {
+		return count == 0 ? Double.NaN : sum() / count;
+	}
+
+	/**
+	 * @return the population variance, or NaN if no value was added
+	 */
+	public double variance() {
+		return count == 0 ? Double.NaN : Math.max(0.0, squaredDeviations / count);
+	}
+
+	public double min() {
+		return min;
+	}
+
+	public double max() {
+		return max;
+	}
+
+	private void addToSum(double value) {
+		// Kahan summation: carry the low-order bits lost by each addition
+		double corrected = value - sumCompensation;
+		double newSum = sum + corrected;
+		sumCompensation = (newSum - sum) - corrected;
+		sum = newSum;
+	}
+
+	private void copyFrom(ValueStatistics other) {
+		count = other.count;
+		sum = other.sum;
+		sumCompensation = other.sumCompensation;
+		runningMean = other.runningMean;
+		squaredDeviations = other.squaredDeviations;
+		min = other.min;
+		max = other.max;
+	}
+}
@@ -0,0 +1,46 @@
+package dev.irako.topics.grpc.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallPolicyTest {
+
+	@Test
+	void serviceConfig_retriesEnabled_retriesIdempotentUnaryCallsOnUnavailable() {
+		Map<String, ?> config = CallSupport.serviceConfig(CallPolicy.defaults());
+
+		Map<?, ?> methodConfig = (Map<?, ?>) ((List<?>) config.get("methodConfig")).get(0);
+		Map<?, ?> retryPolicy = (Map<?, ?>) methodConfig.get("retryPolicy");
+		assertEquals(CallSupport.RETRYABLE_METHODS.size(), ((List<?>) methodConfig.get("name")).size());
+		assertEquals(3.0, retryPolicy.get("maxAttempts"));
+		assertEquals("0.1s", retryPolicy.get("initialBackoff"));
+		assertEquals("1s", retryPolicy.get("maxBackoff"));
+		assertEquals(List.of("UNAVAILABLE"), retryPolicy.get("retryableStatusCodes"));
+	}
+
+	@Test
+	void serviceConfig_singleAttempt_isEmpty() {
+		CallPolicy noRetries = new CallPolicy(Duration.ofSeconds(1), Duration.ofSeconds(1), 1, Duration.ofMillis(1),
+				Duration.ofMillis(1), null);
+
+		assertTrue(CallSupport.serviceConfig(noRetries).isEmpty());
+	}
+
+	@Test
+	void callPolicy_tooManyAttempts_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> new CallPolicy(Duration.ofSeconds(1),
+				Duration.ofSeconds(1), CallPolicy.MAX_ATTEMPTS_LIMIT + 1, Duration.ofMillis(1), Duration.ofMillis(1),
+				null));
+	}
+
+	@Test
+	void hedgingPolicy_maxDelayBelowMinDelay_throwsException() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new HedgingPolicy(95.0, Duration.ofSeconds(1), Duration.ofMillis(1)));
+	}
+}
@@ -0,0 +1,125 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatMemberSinkTest {
+
+	private final List<String> received = new ArrayList<>();
+	private final AtomicBoolean ready = new AtomicBoolean(true);
+	private final AtomicInteger overflows = new AtomicInteger();
+	private final Recorder recorder = new Recorder();
+	private final ChatMemberSink member = new ChatMemberSink(new StreamSink<>(recorder), ready::get, 3,
+			overflows::incrementAndGet);
+
+	@Test
+	void send_notReady_queuesUntilDrainedInOrder() {
+		assertTrue(member.send(message("1")));
+		ready.set(false);
+		assertTrue(member.send(message("2")));
+		assertTrue(member.send(message("3")));
+		assertEquals(List.of("1"), received);
+
+		ready.set(true);
+		member.drain();
+
+		assertEquals(List.of("1", "2", "3"), received);
+		assertEquals(0, member.pending());
+	}
+
+	@Test
+	void send_backlogFull_failsMemberWithResourceExhausted() {
+		ready.set(false);
+		for (int index = 0; index < 3; index++) {
+			assertTrue(member.send(message("m" + index)));
+		}
+
+		assertFalse(member.send(message("overflow")));
+
+		assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(recorder.error).getCode());
+		assertEquals(1, overflows.get());
+		assertEquals(0, member.pending());
+		assertFalse(member.send(message("late")));
+	}
+
+	@Test
+	void complete_backlogWaiting_completesAfterDrain() {
+		ready.set(false);
+		member.send(message("1"));
+		member.complete();
+		assertFalse(recorder.completed);
+
+		ready.set(true);
+		member.drain();
+
+		assertEquals(List.of("1"), received);
+		assertTrue(recorder.completed);
+	}
+
+	@Test
+	void publish_memberFellBehind_isRemovedFromRoom() {
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		List<String> others = new ArrayList<>();
+		chatRooms.join("room", member);
+		chatRooms.join("room", new ChatMemberSink(new StreamSink<>(new StreamObserver<>() {
+			@Override
+			public void onNext(ChatMessage message) {
+				others.add(message.getContent());
+			}
+
+			@Override
+			public void onError(Throwable t) {
+			}
+
+			@Override
+			public void onCompleted() {
+			}
+		}), () -> true, 3, () -> {
+		}));
+		ready.set(false);
+
+		for (int index = 0; index < 6; index++) {
+			chatRooms.publish("room", ProtoConverter.toChatMessageDto(message("m" + index)));
+		}
+
+		assertEquals(6, others.size());
+		assertEquals(1, overflows.get());
+		ready.set(true);
+		member.drain();
+		assertTrue(received.isEmpty());
+	}
+
+	private static ChatMessage message(String content) {
+		return ChatMessage.newBuilder().setUserId("user1").setUsername("Alice").setContent(content)
+				.setRoomId("room").build();
+	}
+
+	private final class Recorder implements StreamObserver<ChatMessage> {
+		private Throwable error;
+		private boolean completed;
+
+		@Override
+		public void onNext(ChatMessage message) {
+			received.add(message.getContent());
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+		}
+
+		@Override
+		public void onCompleted() {
+			completed = true;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ChatMessageType;
+import dev.irako.topics.grpc.service.ChatStage;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatPipelineTest {
+
+	@Test
+	void submit_manyRooms_keepsOrderPerRoom() throws Exception {
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		List<List<String>> received = new ArrayList<>();
+		for (int room = 0; room < 4; room++) {
+			List<String> contents = Collections.synchronizedList(new ArrayList<>());
+			chatRooms.join("room-" + room, member(contents));
+			received.add(contents);
+		}
+		ChatStage upperCase = message -> Optional.of(message.withContent(message.content().toUpperCase()));
+		CountDownLatch done = new CountDownLatch(400);
+
+		try (ChatPipeline pipeline = new ChatPipeline(chatRooms, List.of(upperCase, Optional::of), 3, 8)) {
+			for (int index = 0; index < 100; index++) {
+				for (int room = 0; room < 4; room++) {
+					pipeline.submit("room-" + room, text("m" + index), done::countDown);
+				}
+			}
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+		}
+
+		for (List<String> contents : received) {
+			assertEquals(100, contents.size());
+			for (int index = 0; index < 100; index++) {
+				assertEquals("M" + index, contents.get(index));
+			}
+		}
+	}
+
+	@Test
+	void submit_stageDropsOrFails_runsCallbackAndCountsDrop() throws Exception {
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		List<String> contents = Collections.synchronizedList(new ArrayList<>());
+		chatRooms.join("room", member(contents));
+		ChatStage dropSkip = message -> message.content().equals("skip") ? Optional.empty() : Optional.of(message);
+		ChatStage failBoom = message -> {
+			if (message.content().equals("boom")) {
+				throw new IllegalStateException("stage failure");
+			}
+			return Optional.of(message);
+		};
+		CountDownLatch done = new CountDownLatch(3);
+
+		try (ChatPipeline pipeline = new ChatPipeline(chatRooms, List.of(dropSkip, failBoom), 2, 4)) {
+			pipeline.submit("room", text("skip"), done::countDown);
+			pipeline.submit("room", text("boom"), done::countDown);
+			pipeline.submit("room", text("kept"), done::countDown);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			assertEquals(2, pipeline.droppedMessages());
+		}
+		assertEquals(List.of("kept"), contents);
+	}
+
+	@Test
+	void submit_streamCancelled_skipsStagesAndDropsMessage() throws Exception {
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		List<String> contents = Collections.synchronizedList(new ArrayList<>());
+		chatRooms.join("room", member(contents));
+		List<String> staged = Collections.synchronizedList(new ArrayList<>());
+		ChatStage recording = message -> {
+			staged.add(message.content());
+			return Optional.of(message);
+		};
+		CountDownLatch done = new CountDownLatch(2);
+
+		try (ChatPipeline pipeline = new ChatPipeline(chatRooms, List.of(recording), 1, 4)) {
+			pipeline.submit("room", text("cancelled"), done::countDown, () -> true);
+			pipeline.submit("room", text("kept"), done::countDown, () -> false);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+
+			assertEquals(1, pipeline.droppedMessages());
+		}
+		assertEquals(List.of("kept"), staged);
+		assertEquals(List.of("kept"), contents);
+	}
+
+	@Test
+	void submit_closedPipeline_throwsIllegalStateException() {
+		ChatPipeline pipeline = new ChatPipeline(new ChatRoomHub(), List.of(), 1, 1);
+		pipeline.close();
+
+		assertThrows(IllegalStateException.class, () -> pipeline.submit("room", text("late"), () -> {
+		}));
+	}
+
+	private static ChatMessageDto text(String content) {
+		return new ChatMessageDto("user1", "Alice", content, Instant.now(), ChatMessageType.TEXT);
+	}
+
+	private static ChatMemberSink member(List<String> contents) {
+		return new ChatMemberSink(new StreamSink<>(collecting(contents)), () -> true,
+				ChatMemberSink.DEFAULT_MAX_PENDING, () -> {
+				});
+	}
+
+	private static StreamObserver<ChatMessage> collecting(List<String> contents) {
+		return new StreamObserver<>() {
+			@Override
+			public void onNext(ChatMessage message) {
+				contents.add(message.getContent());
+			}
+
+			@Override
+			public void onError(Throwable t) {
+			}
+
+			@Override
+			public void onCompleted() {
+			}
+		};
+	}
+}
@@ -0,0 +1,93 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ChatMessageType;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatRoomHubTest {
+
+	private final ChatRoomHub chatRooms = new ChatRoomHub();
+
+	@Test
+	void join_afterLastMemberLeft_replaysHistory() {
+		ChatMemberSink first = member(new ArrayList<>());
+		chatRooms.join("room", first);
+		for (int index = 0; index < 3; index++) {
+			chatRooms.publish("room", message("m" + index));
+		}
+		chatRooms.leave("room", first);
+
+		List<String> replayed = new ArrayList<>();
+		chatRooms.join("room", member(replayed), 2);
+
+		assertEquals(List.of("m1", "m2"), replayed);
+	}
+
+	@Test
+	void evictEmpty_roomsEmptyLongEnough_dropsOnlyThose() {
+		ChatMemberSink member = member(new ArrayList<>());
+		chatRooms.join("empty", member);
+		chatRooms.publish("empty", message("m0"));
+		chatRooms.leave("empty", member);
+		chatRooms.join("occupied", member(new ArrayList<>()));
+		long idleNanos = TimeUnit.MINUTES.toNanos(1);
+
+		assertEquals(0, chatRooms.evictEmpty(System.nanoTime(), idleNanos));
+		assertEquals(1, chatRooms.evictEmpty(System.nanoTime() + idleNanos, idleNanos));
+
+		assertEquals(1, chatRooms.roomCount());
+		List<String> replayed = new ArrayList<>();
+		chatRooms.join("empty", member(replayed), 10);
+		assertTrue(replayed.isEmpty());
+	}
+
+	@Test
+	void leave_moreEmptyRoomsThanLimit_dropsFirstEmptied() {
+		for (int room = 0; room <= ChatRoomHub.MAX_EMPTY_ROOMS; room++) {
+			ChatMemberSink member = member(new ArrayList<>());
+			chatRooms.join("room-" + room, member);
+			chatRooms.publish("room-" + room, message("m" + room));
+			chatRooms.leave("room-" + room, member);
+		}
+
+		assertEquals(ChatRoomHub.MAX_EMPTY_ROOMS, chatRooms.roomCount());
+		List<String> first = new ArrayList<>();
+		chatRooms.join("room-0", member(first), 1);
+		List<String> second = new ArrayList<>();
+		chatRooms.join("room-1", member(second), 1);
+		assertTrue(first.isEmpty());
+		assertEquals(List.of("m1"), second);
+	}
+
+	private static ChatMemberSink member(List<String> contents) {
+		return new ChatMemberSink(new StreamSink<>(new StreamObserver<>() {
+			@Override
+			public void onNext(ChatMessage message) {
+				contents.add(message.getContent());
+			}
+
+			@Override
+			public void onError(Throwable t) {
+			}
+
+			@Override
+			public void onCompleted() {
+			}
+		}), () -> true, ChatMemberSink.DEFAULT_MAX_PENDING, () -> {
+		});
+	}
+
+	private static ChatMessageDto message(String content) {
+		return new ChatMessageDto("user1", "Alice", content, Instant.ofEpochMilli(1_000), ChatMessageType.TEXT,
+				"room");
+	}
+}
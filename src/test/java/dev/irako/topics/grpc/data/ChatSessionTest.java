@@ -0,0 +1,175 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.ChatMessageType;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionTest {
+
+	private final List<ChatMessageDto> received = new ArrayList<>();
+	private final Queue<Runnable> consumerTasks = new ArrayDeque<>();
+	private final RecordingCall call = new RecordingCall();
+
+	@Test
+	void send_streamNotReady_waitsForOnReady() {
+		ChatSession session = open(10);
+		call.ready = false;
+
+		assertTrue(session.send(message("first")));
+		assertTrue(session.send(message("second")));
+		assertTrue(call.sent.isEmpty());
+		assertEquals(2, session.queuedMessages());
+
+		call.ready = true;
+		call.onReady.run();
+
+		assertEquals(List.of("first", "second"), call.sent.stream().map(ChatMessage::getContent).toList());
+		assertEquals(0, session.queuedMessages());
+	}
+
+	@Test
+	void send_queueFull_refusesMessage() {
+		ChatSession session = open(1);
+		call.ready = false;
+
+		assertTrue(session.send(message("first")));
+		assertFalse(session.send(message("second")));
+	}
+
+	@Test
+	void complete_messagesQueued_halfClosesAfterLastOne() {
+		ChatSession session = open(10);
+		call.ready = false;
+		session.send(message("first"));
+
+		session.complete();
+		assertFalse(call.completed);
+		assertFalse(session.send(message("late")));
+
+		call.ready = true;
+		call.onReady.run();
+		assertEquals(1, call.sent.size());
+		assertTrue(call.completed);
+	}
+
+	@Test
+	void close_thenSendOrReady_neverWritesToCancelledCall() {
+		ChatSession session = open(10);
+		call.ready = false;
+		session.send(message("queued"));
+
+		session.close();
+		call.ready = true;
+		call.onReady.run();
+
+		assertTrue(call.cancelled);
+		assertFalse(session.send(message("late")));
+		session.complete();
+		assertTrue(call.sent.isEmpty());
+		assertFalse(call.completed);
+	}
+
+	@Test
+	void onNext_echoOfSentMessage_deliversInOrderAndRecordsRoundTrip() {
+		ChatSession session = open(10);
+		ChatMessageDto sent = message("hello");
+		session.send(sent);
+		ClientResponseObserver<ChatMessage, ChatMessage> observer = call.observer;
+
+		observer.onNext(ProtoConverter.toProtoChatMessage(sent));
+		observer.onNext(ProtoConverter.toProtoChatMessage(message("other")));
+		observer.onCompleted();
+		// One consumer task runs every message in order
+		assertEquals(1, consumerTasks.size());
+		assertEquals(0, call.requested - ChatSession.INBOUND_WINDOW);
+
+		consumerTasks.poll().run();
+
+		assertEquals(List.of("hello", "other"), received.stream().map(ChatMessageDto::content).toList());
+		assertEquals(2, call.requested - ChatSession.INBOUND_WINDOW);
+		assertTrue(session.done().isDone());
+		assertEquals(1, session.roundTripHistogram().getTotalCount());
+	}
+
+	private ChatSession open(int maxQueued) {
+		ChatSession session = new ChatSession(received::add, consumerTasks::add, maxQueued, 0);
+		call.observer = session.observer();
+		call.observer.beforeStart(call);
+		return session;
+	}
+
+	private static ChatMessageDto message(String content) {
+		return new ChatMessageDto("user1", "Alice", content, Instant.now(), ChatMessageType.TEXT);
+	}
+
+	private static final class RecordingCall extends ClientCallStreamObserver<ChatMessage> {
+		private final List<ChatMessage> sent = new ArrayList<>();
+		private ClientResponseObserver<ChatMessage, ChatMessage> observer;
+		private Runnable onReady;
+		private boolean ready = true;
+		private boolean completed;
+		private boolean cancelled;
+		private long requested;
+
+		@Override
+		public void disableAutoRequestWithInitial(int request) {
+			requested = request;
+		}
+
+		@Override
+		public void request(int count) {
+			requested += count;
+		}
+
+		@Override
+		public void cancel(String message, Throwable cause) {
+			cancelled = true;
+		}
+
+		@Override
+		public boolean isReady() {
+			return ready;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+			onReady = onReadyHandler;
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+
+		@Override
+		public void onNext(ChatMessage value) {
+			if (cancelled) {
+				throw new IllegalStateException("call was cancelled");
+			}
+			sent.add(value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+			completed = true;
+		}
+	}
+}
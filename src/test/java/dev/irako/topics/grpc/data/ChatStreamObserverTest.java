@@ -0,0 +1,160 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ChatMessage;
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.service.ChatStage;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatStreamObserverTest {
+
+	private static final int NOMINAL_PORT = 50099;
+
+	@Test
+	void onNext_manyStreamsFillOneLane_neverBlocksOtherCalls() throws Exception {
+		int streams = 20;
+		int perStream = ChatStreamObserver.MESSAGES_IN_FLIGHT;
+		ChatRoomHub chatRooms = new ChatRoomHub();
+		CountDownLatch release = new CountDownLatch(1);
+		ChatStage stalled = message -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return Optional.of(message);
+		};
+		// One lane with room for two messages, far fewer than the streams send
+		ChatPipeline pipeline = new ChatPipeline(chatRooms, List.of(stalled), 1, 2);
+		ClusterRouter router = new ClusterRouter(ClusterConfig.standalone(NOMINAL_PORT));
+		ExecutorService applicationExecutor = Executors.newSingleThreadExecutor();
+		try (pipeline) {
+			List<RecordingCall> calls = new ArrayList<>();
+			for (int stream = 0; stream < streams; stream++) {
+				RecordingCall call = new RecordingCall();
+				calls.add(call);
+				String room = "room-" + stream;
+				applicationExecutor.execute(() -> {
+					ChatStreamObserver observer = open(call, router, chatRooms, pipeline);
+					for (int index = 0; index < perStream; index++) {
+						observer.onNext(message(room, index));
+					}
+				});
+			}
+
+			// An unrelated call on the same executor still runs while the lane is full
+			assertEquals("other call", applicationExecutor.submit(() -> "other call").get(5, TimeUnit.SECONDS));
+			// No credit beyond the initial window while messages are held
+			for (RecordingCall call : calls) {
+				assertEquals(perStream, call.requested.get());
+			}
+
+			release.countDown();
+			for (RecordingCall call : calls) {
+				assertTrue(call.awaitResponses(perStream));
+			}
+			for (int stream = 0; stream < streams; stream++) {
+				List<String> contents = calls.get(stream).responses.stream().map(ChatMessage::getContent).toList();
+				assertEquals(perStream, contents.size());
+				for (int index = 0; index < perStream; index++) {
+					assertEquals("m" + index, contents.get(index));
+				}
+				// Every processed message credited back its slot once the lane took the held ones
+				assertEquals(2L * perStream, calls.get(stream).requested.get());
+			}
+		} finally {
+			applicationExecutor.shutdownNow();
+		}
+	}
+
+	private static ChatStreamObserver open(RecordingCall call, ClusterRouter router, ChatRoomHub chatRooms,
+			ChatPipeline pipeline) {
+		return new ChatStreamObserver(call, router, chatRooms, pipeline, new StreamRegistry(), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+	}
+
+	private static ChatMessage message(String room, int index) {
+		return ChatMessage.newBuilder().setUserId("user1").setUsername("Alice").setContent("m" + index)
+				.setTimestamp(index).setRoomId(room).build();
+	}
+
+	static final class RecordingCall extends ServerCallStreamObserver<ChatMessage> {
+		final List<ChatMessage> responses = Collections.synchronizedList(new ArrayList<>());
+		final AtomicLong requested = new AtomicLong();
+		volatile boolean ready = true;
+		volatile Runnable onReady = () -> {
+		};
+
+		boolean awaitResponses(int count) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (responses.size() < count) {
+				if (System.nanoTime() > deadline) {
+					return false;
+				}
+				Thread.sleep(5);
+			}
+			return true;
+		}
+
+		@Override
+		public void request(int count) {
+			requested.addAndGet(count);
+		}
+
+		@Override
+		public void onNext(ChatMessage value) {
+			responses.add(value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public void setOnCancelHandler(Runnable onCancelHandler) {
+		}
+
+		@Override
+		public void setCompression(String compression) {
+		}
+
+		@Override
+		public boolean isReady() {
+			return ready;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+			onReady = onReadyHandler;
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.*;
+import dev.irako.topics.grpc.service.ClusterRoutingService;
+import dev.irako.topics.grpc.service.ConsistentHashRing;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterIntegrationTest {
+
+	private static final ClusterNode NODE_A = new ClusterNode("a", "localhost", 50061);
+	private static final ClusterNode NODE_B = new ClusterNode("b", "localhost", 50062);
+	private static final ClusterNode NODE_C = new ClusterNode("c", "localhost", 50063);
+	private static final List<ClusterNode> MEMBERS = List.of(NODE_A, NODE_B, NODE_C);
+
+	private final ConsistentHashRing ring = new ConsistentHashRing(MEMBERS, ClusterRouter.VIRTUAL_NODES_PER_NODE);
+	private final List<Server> servers = new ArrayList<>();
+	private final List<ManagedChannel> channels = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		for (ClusterNode node : MEMBERS) {
+			servers.add(GrpcServerFactory.createAndStartServer(new ClusterConfig(node, MEMBERS),
+					CompressionPolicy.defaults()));
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		for (ManagedChannel channel : channels) {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+		for (Server server : servers) {
+			server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void chat_roomOwnedByOtherNode_isRelayedToOwner() throws Exception {
+		String roomId = roomOwnedBy(NODE_C);
+		List<ChatMessageDto> messages = List.of(
+				new ChatMessageDto("user1", "Alice", "Hello", Instant.now(), ChatMessageType.TEXT, roomId),
+				new ChatMessageDto("user1", "Alice", "World", Instant.now(), ChatMessageType.TEXT, roomId));
+
+		try (GrpcClient client = new GrpcClient(NODE_A.host(), NODE_A.port())) {
+			List<ChatMessageDto> responses = client.chat(messages);
+
+			assertEquals(2, responses.size());
+			assertEquals("Hello", responses.get(0).content());
+			assertEquals(roomId, responses.get(1).roomId());
+		}
+	}
+
+	@Test
+	void chat_membersOnDifferentNodes_seeEachOthersMessages() throws Exception {
+		String roomId = roomOwnedBy(NODE_C);
+		BlockingQueue<ChatMessage> aliceInbox = new LinkedBlockingQueue<>();
+		BlockingQueue<ChatMessage> bobInbox = new LinkedBlockingQueue<>();
+		StreamObserver<ChatMessage> alice = StreamingServiceGrpc.newStub(channelTo(NODE_A))
+				.chat(collectingObserver(aliceInbox));
+		StreamObserver<ChatMessage> bob = StreamingServiceGrpc.newStub(channelTo(NODE_B))
+				.chat(collectingObserver(bobInbox));
+
+		alice.onNext(chatMessage("alice", "Alice", "hi from A", roomId));
+		assertEquals("hi from A", aliceInbox.poll(5, TimeUnit.SECONDS).getContent());
+		bob.onNext(chatMessage("bob", "Bob", "hi from B", roomId));
+
+		assertEquals("hi from B", bobInbox.poll(5, TimeUnit.SECONDS).getContent());
+		assertEquals("hi from B", aliceInbox.poll(5, TimeUnit.SECONDS).getContent());
+		alice.onCompleted();
+		bob.onCompleted();
+	}
+
+	@Test
+	void publishNotification_topicOwnedByOtherNode_reachesLiveSubscriberOnThirdNode() throws Exception {
+		String topic = topicOwnedBy(NODE_C);
+		BlockingQueue<NotificationMessage> received = new LinkedBlockingQueue<>();
+		SubscribeRequest request = SubscribeRequest.newBuilder().setUserId("subscriber").addTopics(topic)
+				.setLive(true).build();
+		Context.CancellableContext subscription = Context.current().withCancellation();
+		subscription.run(() -> StreamingServiceGrpc.newStub(channelTo(NODE_B)).subscribeToNotifications(request,
+				collectingObserver(received)));
+
+		try {
+			PublishRequest publish = PublishRequest.newBuilder().setTopic(topic).setTitle("deploy")
+					.setContent("rolling out").setPriority(NotificationPriority.HIGH).build();
+			PublishResponse response = publishUntilDelivered(publish);
+
+			assertEquals(NODE_C.nodeId(), response.getOwnerNodeId());
+			assertEquals(1, response.getDeliveredCount());
+			assertTrue(awaitTitle(received, "deploy"));
+		} finally {
+			subscription.cancel(null);
+		}
+	}
+
+	@Test
+	void querySensorAggregates_uploadsOnDifferentNodes_mergesAllNodes() throws Exception {
+		Instant now = Instant.now();
+		try (GrpcClient clientA = new GrpcClient(NODE_A.host(), NODE_A.port());
+				GrpcClient clientB = new GrpcClient(NODE_B.host(), NODE_B.port());
+				GrpcClient clientC = new GrpcClient(NODE_C.host(), NODE_C.port())) {
+			clientA.uploadSensorData(List.of(new SensorReadingDto("cluster-sensor", 10.0, "celsius", now, "room1")));
+			clientB.uploadSensorData(List.of(new SensorReadingDto("cluster-sensor", 20.0, "celsius", now, "room1"),
+					new SensorReadingDto("cluster-sensor", 30.0, "celsius", now, "room1")));
+
+			SensorAggregateDto aggregate = clientC
+					.querySensorAggregates("cluster-sensor", now.minusSeconds(300), now).orElseThrow();
+
+			assertEquals(3, aggregate.totalReadings());
+			assertEquals(20.0, aggregate.averageValue(), 0.001);
+			assertEquals(10.0, aggregate.minValue(), 0.001);
+		}
+	}
+
+	private PublishResponse publishUntilDelivered(PublishRequest publish) throws InterruptedException {
+		// The relayed subscription registers on the owner asynchronously
+		StreamingServiceGrpc.StreamingServiceBlockingStub publisher = StreamingServiceGrpc
+				.newBlockingStub(channelTo(NODE_A));
+		for (int attempt = 0; attempt < 50; attempt++) {
+			PublishResponse response = publisher.publishNotification(publish);
+			if (response.getDeliveredCount() > 0) {
+				return response;
+			}
+			Thread.sleep(100);
+		}
+		fail("Notification was never delivered to the live subscriber");
+		return null;
+	}
+
+	private static boolean awaitTitle(BlockingQueue<NotificationMessage> received, String title)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (System.nanoTime() < deadline) {
+			NotificationMessage notification = received.poll(100, TimeUnit.MILLISECONDS);
+			if (notification != null && title.equals(notification.getTitle())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String roomOwnedBy(ClusterNode owner) {
+		return IntStream.range(0, 1000).mapToObj(i -> "room-" + i)
+				.filter(roomId -> ring.ownerOf(ClusterRoutingService.roomKey(roomId)).equals(owner)).findFirst()
+				.orElseThrow();
+	}
+
+	private String topicOwnedBy(ClusterNode owner) {
+		return IntStream.range(0, 1000).mapToObj(i -> "topic" + i)
+				.filter(topic -> ring.ownerOf(ClusterRoutingService.topicKey(topic)).equals(owner)).findFirst()
+				.orElseThrow();
+	}
+
+	private ManagedChannel channelTo(ClusterNode node) {
+		ManagedChannel channel = ManagedChannelBuilder.forAddress(node.host(), node.port()).usePlaintext().build();
+		channels.add(channel);
+		return channel;
+	}
+
+	private static ChatMessage chatMessage(String userId, String username, String content, String roomId) {
+		return ChatMessage.newBuilder().setUserId(userId).setUsername(username).setContent(content)
+				.setTimestamp(System.currentTimeMillis()).setType(MessageType.TEXT).setRoomId(roomId).build();
+	}
+
+	private static <T> StreamObserver<T> collectingObserver(BlockingQueue<T> inbox) {
+		return new StreamObserver<>() {
+			@Override
+			public void onNext(T value) {
+				inbox.add(value);
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				// Cancelled at the end of the test
+			}
+
+			@Override
+			public void onCompleted() {
+				// Nothing to do
+			}
+		};
+	}
+}
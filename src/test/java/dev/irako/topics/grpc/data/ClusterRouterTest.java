@@ -0,0 +1,34 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.ClusterConfig;
+import dev.irako.topics.grpc.model.ClusterNode;
+import io.grpc.inprocess.InProcessSocketAddress;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterRouterTest {
+
+	private static final ClusterNode NODE_A = new ClusterNode("a", "127.0.0.1", 50071);
+	private static final ClusterNode NODE_B = new ClusterNode("b", "127.0.0.2", 50072);
+
+	private final ClusterRouter router = new ClusterRouter(new ClusterConfig(NODE_A, List.of(NODE_A, NODE_B)));
+
+	@Test
+	void isPeerAddress_memberFromItsAddress_isTrusted() {
+		assertTrue(router.isPeerAddress("b", new InetSocketAddress("127.0.0.2", 40000)));
+		assertTrue(router.isPeerAddress("b", new InProcessSocketAddress("server")));
+	}
+
+	@Test
+	void isPeerAddress_clientClaimingToBeMember_isNotTrusted() {
+		// Another address, an unknown node, this node itself, or no address at all
+		assertFalse(router.isPeerAddress("b", new InetSocketAddress("127.0.0.3", 40000)));
+		assertFalse(router.isPeerAddress("z", new InetSocketAddress("127.0.0.2", 40000)));
+		assertFalse(router.isPeerAddress("a", new InetSocketAddress("127.0.0.1", 40000)));
+		assertFalse(router.isPeerAddress("b", null));
+	}
+}
@@ -0,0 +1,44 @@
+package dev.irako.topics.grpc.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPolicyTest {
+
+	@Test
+	void ruleFor_configuredMethod_returnsRule() {
+		CompressionPolicy policy = new CompressionPolicy(
+				Map.of("Chat", new CompressionPolicy.Rule(CompressionPolicy.DEFLATE, 128)));
+
+		assertEquals(CompressionPolicy.DEFLATE, policy.ruleFor("Chat").orElseThrow().encoding());
+		assertTrue(policy.ruleFor("SendMessage").isEmpty());
+		assertTrue(policy.ruleFor(null).isEmpty());
+	}
+
+	@Test
+	void shouldCompress_belowThreshold_returnsFalse() {
+		CompressionPolicy.Rule rule = new CompressionPolicy.Rule(CompressionPolicy.GZIP, 1024);
+
+		assertFalse(rule.shouldCompress(1023));
+		assertTrue(rule.shouldCompress(1024));
+	}
+
+	@Test
+	void disabled_anyMethod_hasNoRule() {
+		assertTrue(CompressionPolicy.disabled().ruleFor("Chat").isEmpty());
+	}
+
+	@Test
+	void rule_unsupportedEncoding_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> new CompressionPolicy.Rule("lz4", 0));
+	}
+
+	@Test
+	void rule_negativeThreshold_throwsException() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new CompressionPolicy.Rule(CompressionPolicy.GZIP, -1));
+	}
+}
@@ -0,0 +1,122 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.*;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrainIntegrationTest {
+
+	private static final int TEST_PORT = 50071;
+	private static final DrainPolicy QUICK_DRAIN = new DrainPolicy(Duration.ofMillis(200), 2, Duration.ofSeconds(2));
+
+	private ManagedServer server;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = GrpcServerFactory.createAndStartServer(TEST_PORT);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void shutdown_callsEnded_terminatesWithoutAwaitTermination() throws Exception {
+		try (GrpcClient client = new GrpcClient("localhost", TEST_PORT)) {
+			assertTrue(client.sendMessage(new MessageDto("user1", "Hello", Instant.now())).success());
+		}
+
+		server.shutdown();
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!server.isTerminated() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(server.isTerminated());
+	}
+
+	@Test
+	void followNotifications_serverDrainedAndRestarted_resumesWithoutRepeatingSamples() throws Exception {
+		BlockingQueue<NotificationDto> received = new LinkedBlockingQueue<>();
+		ReconnectPolicy quickReconnect = new ReconnectPolicy(Duration.ofMillis(50), Duration.ofMillis(100));
+
+		try (GrpcClient client = new GrpcClient("localhost", TEST_PORT);
+				LiveSubscription subscription = client.followNotifications("user1", List.of("news"), received::add,
+						quickReconnect)) {
+			List<String> contents = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				contents.add(received.poll(5, TimeUnit.SECONDS).content());
+			}
+
+			server.drain(QUICK_DRAIN);
+			server = GrpcServerFactory.createAndStartServer(TEST_PORT);
+
+			for (int i = 3; i < 10; i++) {
+				NotificationDto notification = received.poll(10, TimeUnit.SECONDS);
+				assertNotNull(notification, "Subscription did not resume after the drain");
+				contents.add(notification.content());
+			}
+
+			for (int i = 0; i < 10; i++) {
+				assertTrue(contents.get(i).contains("#" + (i + 1) + " "), contents.get(i));
+			}
+			assertTrue(subscription.reconnectCount() >= 1);
+		}
+	}
+
+	@Test
+	void drain_openChatStream_isClosedAsUnavailable() throws Exception {
+		ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", TEST_PORT).usePlaintext().build();
+		try {
+			BlockingQueue<ChatMessage> inbox = new LinkedBlockingQueue<>();
+			CompletableFuture<Throwable> closed = new CompletableFuture<>();
+			StreamObserver<ChatMessage> chat = StreamingServiceGrpc.newStub(channel)
+					.chat(new StreamObserver<ChatMessage>() {
+						@Override
+						public void onNext(ChatMessage message) {
+							inbox.add(message);
+						}
+
+						@Override
+						public void onError(Throwable t) {
+							closed.complete(t);
+						}
+
+						@Override
+						public void onCompleted() {
+							closed.complete(null);
+						}
+					});
+			chat.onNext(ChatMessage.newBuilder().setUserId("user1").setUsername("Alice").setContent("Hello")
+					.setTimestamp(System.currentTimeMillis()).setType(MessageType.TEXT).build());
+			assertNotNull(inbox.poll(5, TimeUnit.SECONDS));
+
+			server.drain(QUICK_DRAIN);
+
+			Throwable error = closed.get(5, TimeUnit.SECONDS);
+			assertNotNull(error);
+			assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(error).getCode());
+			assertTrue(server.isTerminated());
+		} finally {
+			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+}
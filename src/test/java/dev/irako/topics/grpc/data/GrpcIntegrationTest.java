@@ -1,20 +1,33 @@
 package dev.irako.topics.grpc.data;
 
 import dev.irako.topics.grpc.model.*;
-import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.HdrHistogram.Histogram;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class GrpcIntegrationTest {
 
-	private Server server;
+	private ManagedServer server;
 	private GrpcClient client;
 	private static final int TEST_PORT = 50052;
 
@@ -60,6 +73,56 @@ class GrpcIntegrationTest {
 		});
 	}
 
+	@Test
+	void streamNotifications_serverStreaming_handsOutNotificationsBeforeStreamEnds() {
+		long startNanos = System.nanoTime();
+		try (ResponseStream<NotificationDto> notifications = client.streamNotifications("user123", List.of("news"))) {
+			assertEquals("news", notifications.next().topic());
+			// The server paces its samples, so waiting for the whole stream would take seconds
+			assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+		}
+	}
+
+	@Test
+	void streamNotifications_cancelledBetweenSamples_stopsServerLoopAtOnce() throws Exception {
+		try (ResponseStream<NotificationDto> notifications = client.streamNotifications("user123", List.of("news"))) {
+			notifications.next();
+		}
+
+		// The server loop waits 500 ms between samples; a cancellation ends the wait
+		Histogram stopLatencies = new Histogram(2);
+		long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (stopLatencies.getTotalCount() == 0 && System.nanoTime() < deadlineNanos) {
+			stopLatencies.add(server.cancellationLatency());
+			Thread.sleep(10);
+		}
+		assertEquals(1, server.cancelledStreams());
+		assertEquals(1, stopLatencies.getTotalCount());
+		assertTrue(stopLatencies.getMaxValue() < TimeUnit.MILLISECONDS.toNanos(250));
+		assertEquals(0, server.openStreams());
+	}
+
+	@Test
+	void publishNotification_wildcardSubscription_deliversMatchingTopicsOnly() throws Exception {
+		BlockingQueue<NotificationDto> received = new LinkedBlockingQueue<>();
+		try (LiveSubscription subscription = client.followNotifications("user123", List.of("alerts.building1.*"),
+				received::add)) {
+			// The live registration races with this call; publish until it is in place
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (client.publishNotification("alerts.building1.door", "Door", "opened",
+					NotificationPriority.HIGH) == 0) {
+				assertTrue(System.nanoTime() < deadline, "Wildcard subscription never matched");
+				Thread.sleep(20);
+			}
+
+			assertEquals(0, client.publishNotification("alerts.building2.door", "Door", "opened",
+					NotificationPriority.HIGH));
+			StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+					() -> client.publishNotification("alerts.*", "Door", "opened", NotificationPriority.HIGH));
+			assertEquals(Status.Code.INVALID_ARGUMENT, error.getStatus().getCode());
+		}
+	}
+
 	@Test
 	void uploadSensorData_clientStreaming_returnsAggregate() throws Exception {
 		List<SensorReadingDto> readings = List.of(
@@ -76,6 +139,63 @@ class GrpcIntegrationTest {
 		assertEquals("celsius", aggregate.unit());
 	}
 
+	@Test
+	void querySensorAggregates_afterUpload_answersFromStoredBuckets() throws Exception {
+		Instant now = Instant.now();
+		client.uploadSensorData(List.of(new SensorReadingDto("query-sensor", 10.0, "celsius", now, "room1"),
+				new SensorReadingDto("query-sensor", 30.0, "celsius", now, "room1"),
+				new SensorReadingDto("other-sensor", 99.0, "celsius", now, "room2")));
+
+		SensorAggregateDto aggregate = client
+				.querySensorAggregates("query-sensor", now.minus(Duration.ofMinutes(5)), now).orElseThrow();
+
+		assertEquals(2, aggregate.totalReadings());
+		assertEquals(20.0, aggregate.averageValue(), 0.001);
+		assertEquals(30.0, aggregate.maxValue(), 0.001);
+		assertTrue(client.querySensorAggregates("missing-sensor", now.minus(Duration.ofMinutes(5)), now).isEmpty());
+	}
+
+	@Test
+	void ingestionStats_afterUploadAndChat_countsSensorsAndTopSenders() throws Exception {
+		Instant now = Instant.now();
+		List<SensorReadingDto> readings = new ArrayList<>();
+		for (int index = 0; index < 200; index++) {
+			readings.add(new SensorReadingDto("stats-sensor-" + index, index, "celsius", now, "room1"));
+		}
+		client.uploadSensorData(readings);
+		List<ChatMessageDto> messages = new ArrayList<>();
+		for (int index = 0; index < 300; index++) {
+			messages.add(new ChatMessageDto("stats-chatter", "Carol", "message " + index, now, ChatMessageType.TEXT));
+		}
+		client.chat(messages);
+
+		IngestionStatsDto stats = client.ingestionStats(IngestionStats.TOP_SENDER_CAPACITY);
+
+		// Other tests upload to the same server, and the estimate is within a few percent
+		assertTrue(stats.distinctSensors() >= 190, "distinct sensors: " + stats.distinctSensors());
+		assertTrue(stats.distinctSensorsCurrentWindow() + stats.distinctSensorsPreviousWindow() >= 190);
+		HeavyHitterDto chatter = stats.topChatSenders().stream()
+				.filter(sender -> sender.key().equals("stats-chatter")).findFirst().orElseThrow();
+		assertTrue(chatter.count() >= 300);
+	}
+
+	@Test
+	void uploadSensorData_severalChunks_aggregatesWholeUpload() throws Exception {
+		int count = 3 * UploadStreamObserver.CHUNK_READINGS + 5;
+		Instant now = Instant.now();
+		List<SensorReadingDto> readings = new ArrayList<>(count);
+		for (int index = 0; index < count; index++) {
+			readings.add(new SensorReadingDto("chunked-sensor", index, "celsius", now, "room1"));
+		}
+
+		SensorAggregateDto aggregate = client.uploadSensorData(readings);
+
+		assertEquals(count, aggregate.totalReadings());
+		assertEquals((count - 1) / 2.0, aggregate.averageValue(), 1e-9);
+		assertEquals(0.0, aggregate.minValue());
+		assertEquals(count - 1.0, aggregate.maxValue());
+	}
+
 	@Test
 	void chat_bidirectionalStreaming_echoesMessages() throws Exception {
 		List<ChatMessageDto> messages = List.of(
@@ -88,4 +208,264 @@ class GrpcIntegrationTest {
 		assertEquals("Hello", responses.get(0).content());
 		assertEquals("World", responses.get(1).content());
 	}
+
+	@Test
+	void openChat_concurrentSenders_receivesEveryEchoAndTimesRoundTrips() throws Exception {
+		int senders = 4;
+		int messagesPerSender = 250;
+		CountDownLatch echoed = new CountDownLatch(senders * messagesPerSender);
+		ExecutorService executor = Executors.newFixedThreadPool(senders + 1);
+		try (ChatSession session = client.openChat(message -> echoed.countDown(), executor)) {
+			long baseMs = System.currentTimeMillis();
+			List<Future<?>> sends = new ArrayList<>();
+			for (int sender = 0; sender < senders; sender++) {
+				int first = sender * messagesPerSender;
+				sends.add(executor.submit(() -> {
+					for (int index = first; index < first + messagesPerSender; index++) {
+						// Distinct timestamps, so every echo can be matched to its send
+						assertTrue(session.send(new ChatMessageDto("user1", "Alice", "message " + index,
+								Instant.ofEpochMilli(baseMs + index), ChatMessageType.TEXT)));
+					}
+				}));
+			}
+			for (Future<?> send : sends) {
+				send.get(10, TimeUnit.SECONDS);
+			}
+
+			assertTrue(echoed.await(10, TimeUnit.SECONDS));
+			session.complete();
+			session.done().get(10, TimeUnit.SECONDS);
+			assertEquals(senders * messagesPerSender, session.roundTripHistogram().getTotalCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void openChat_historyOnJoin_receivesRecentRoomMessagesBeforeOwnEcho() throws Exception {
+		String room = "history-room";
+		CountDownLatch echoed = new CountDownLatch(5);
+		try (ChatSession first = client.openChat(message -> echoed.countDown())) {
+			for (int index = 0; index < 5; index++) {
+				assertTrue(first.send(new ChatMessageDto("user1", "Alice", "message " + index,
+						Instant.ofEpochMilli(1_000 + index), ChatMessageType.TEXT, room)));
+			}
+			assertTrue(echoed.await(10, TimeUnit.SECONDS));
+
+			BlockingQueue<ChatMessageDto> received = new LinkedBlockingQueue<>();
+			try (ChatSession late = client.openChat(received::add, Runnable::run, 3)) {
+				late.send(new ChatMessageDto("user2", "Bob", "Bob joined the chat", Instant.ofEpochMilli(2_000),
+						ChatMessageType.JOIN, room));
+
+				List<String> contents = new ArrayList<>();
+				for (int index = 0; index < 4; index++) {
+					contents.add(received.poll(10, TimeUnit.SECONDS).content());
+				}
+				assertEquals(List.of("message 2", "message 3", "message 4", "Bob joined the chat"), contents);
+			}
+		}
+	}
+
+	@Test
+	void openChat_historyOnJoinAfterRoomEmptied_replaysEarlierMessages() throws Exception {
+		String room = "emptied-room";
+		CountDownLatch echoed = new CountDownLatch(3);
+		ChatSession first = client.openChat(message -> echoed.countDown());
+		for (int index = 0; index < 3; index++) {
+			assertTrue(first.send(new ChatMessageDto("user1", "Alice", "message " + index,
+					Instant.ofEpochMilli(1_000 + index), ChatMessageType.TEXT, room)));
+		}
+		assertTrue(echoed.await(10, TimeUnit.SECONDS));
+		// The room's only member leaves
+		first.complete();
+		first.done().get(10, TimeUnit.SECONDS);
+
+		BlockingQueue<ChatMessageDto> received = new LinkedBlockingQueue<>();
+		try (ChatSession rejoined = client.openChat(received::add, Runnable::run, 2)) {
+			rejoined.send(new ChatMessageDto("user1", "Alice", "Alice joined the chat", Instant.ofEpochMilli(2_000),
+					ChatMessageType.JOIN, room));
+
+			List<String> contents = new ArrayList<>();
+			for (int index = 0; index < 3; index++) {
+				contents.add(received.poll(10, TimeUnit.SECONDS).content());
+			}
+			assertEquals(List.of("message 1", "message 2", "Alice joined the chat"), contents);
+		}
+	}
+
+	@Test
+	void chat_messagesThroughPipeline_filtersAndAnnotatesContent() throws Exception {
+		List<ChatMessageDto> messages = List.of(
+				new ChatMessageDto("user1", "Alice", "   ", Instant.now(), ChatMessageType.TEXT),
+				new ChatMessageDto("user1", "Alice", "@bob damn, see www.example.com", Instant.now(),
+						ChatMessageType.TEXT));
+
+		List<ChatMessageDto> responses = client.chat(messages);
+
+		assertEquals(1, responses.size());
+		assertEquals("@bob ****, see https://www.example.com", responses.get(0).content());
+		assertEquals(List.of("bob"), responses.get(0).mentions());
+	}
+
+	@Test
+	void sendMessage_contentAboveGzipThreshold_returnsSuccessResponse() throws Exception {
+		MessageDto message = new MessageDto("user123", "Compressible content. ".repeat(200), Instant.now());
+
+		MessageResponseDto response = client.sendMessage(message);
+
+		assertTrue(response.success());
+		assertEquals("ACCEPTED", response.status());
+	}
+
+	@Test
+	void chat_largeMessagesWithDeflate_echoesContent() throws Exception {
+		String longContent = "The deploy notes mention the chat service rollout. ".repeat(50);
+		List<ChatMessageDto> messages = List.of(
+				new ChatMessageDto("user1", "Alice", longContent, Instant.now(), ChatMessageType.TEXT),
+				new ChatMessageDto("user1", "Alice", "short", Instant.now(), ChatMessageType.TEXT));
+
+		List<ChatMessageDto> responses = client.chat(messages);
+
+		assertEquals(2, responses.size());
+		assertEquals(longContent, responses.get(0).content());
+		assertEquals("short", responses.get(1).content());
+	}
+
+	@Test
+	void sendMessage_clientWithoutCompression_interoperatesWithCompressingServer() throws Exception {
+		try (GrpcClient plainClient = new GrpcClient("localhost", TEST_PORT, CompressionPolicy.disabled())) {
+			MessageDto message = new MessageDto("user123", "Plain content. ".repeat(200), Instant.now());
+
+			MessageResponseDto response = plainClient.sendMessage(message);
+
+			assertTrue(response.success());
+		}
+	}
+
+	@Test
+	void sendMessage_hedgingEnabled_returnsSuccessResponse() throws Exception {
+		CallPolicy hedged = CallPolicy.defaults()
+				.withHedging(new HedgingPolicy(95.0, Duration.ZERO, Duration.ofMillis(1)));
+		try (GrpcClient hedgingClient = new GrpcClient("localhost", TEST_PORT, CompressionPolicy.defaults(), hedged)) {
+			for (int i = 0; i < 20; i++) {
+				MessageResponseDto response = hedgingClient.sendMessage(new MessageDto("user123", "Hedged " + i,
+						Instant.now()));
+
+				assertTrue(response.success());
+			}
+		}
+	}
+
+	@Test
+	void sendMessage_deadlineExpires_failsWithDeadlineExceeded() {
+		CallPolicy tight = new CallPolicy(Duration.ofNanos(1), Duration.ofSeconds(30), 3, Duration.ofMillis(100),
+				Duration.ofSeconds(1), null);
+		try (GrpcClient impatientClient = new GrpcClient("localhost", TEST_PORT, CompressionPolicy.defaults(),
+				tight)) {
+			StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+					() -> impatientClient.sendMessage(new MessageDto("user123", "Too late", Instant.now())));
+
+			assertEquals(Status.Code.DEADLINE_EXCEEDED, error.getStatus().getCode());
+		}
+	}
+
+	@Test
+	void uploadSensorData_streamDeadlineExpires_failsWithDeadlineExceeded() {
+		CallPolicy tight = new CallPolicy(Duration.ofSeconds(5), Duration.ofNanos(1), 3, Duration.ofMillis(100),
+				Duration.ofSeconds(1), null);
+		try (GrpcClient impatientClient = new GrpcClient("localhost", TEST_PORT, CompressionPolicy.defaults(),
+				tight)) {
+			StatusRuntimeException error = assertThrows(StatusRuntimeException.class,
+					() -> impatientClient.uploadSensorData(List.of(new SensorReadingDto("sensor1", 20.0, "celsius",
+							Instant.now(), "room1"))));
+
+			assertEquals(Status.Code.DEADLINE_EXCEEDED, error.getStatus().getCode());
+		}
+	}
+
+	@Test
+	void sendMessage_directSendMessageServer_answersLikeDefaultPath() throws Exception {
+		int directPort = TEST_PORT + 1;
+		ManagedServer directServer = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(directPort),
+				CompressionPolicy.defaults(), null, new ServerTuning(true));
+		try (GrpcClient directClient = new GrpcClient("localhost", directPort)) {
+			MessageResponseDto accepted = directClient.sendMessage(new MessageDto("user123", "Hello", Instant.now()));
+			MessageResponseDto rejected = directClient
+					.sendMessage(new MessageDto("user123", "x".repeat(10001), Instant.now()));
+			List<ChatMessageDto> echoed = directClient.chat(List.of(new ChatMessageDto("user1", "Alice",
+					"Still on the application executor", Instant.now(), ChatMessageType.TEXT)));
+
+			assertTrue(accepted.success());
+			assertEquals("ACCEPTED", accepted.status());
+			assertFalse(rejected.success());
+			assertEquals("REJECTED_TOO_LONG", rejected.status());
+			assertEquals(1, echoed.size());
+		} finally {
+			directServer.shutdown();
+			assertTrue(directServer.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	void openChat_streamIdleLongerThanTimeout_isReapedWithUnavailable() throws Exception {
+		int reapingPort = TEST_PORT + 2;
+		ServerTuning tuning = ServerTuning.defaults()
+				.withKeepalive(KeepalivePolicy.defaults().withStreamIdleTimeout(Duration.ofMillis(200)));
+		ManagedServer reapingServer = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(reapingPort),
+				CompressionPolicy.defaults(), null, tuning);
+		try (GrpcClient reapingClient = new GrpcClient("localhost", reapingPort);
+				ChatSession session = reapingClient.openChat(message -> {
+				})) {
+			session.send(new ChatMessageDto("user1", "Alice", "Anyone here?", Instant.now(), ChatMessageType.TEXT));
+
+			ExecutionException ended = assertThrows(ExecutionException.class,
+					() -> session.done().get(5, TimeUnit.SECONDS));
+			assertEquals(Status.Code.UNAVAILABLE, Status.fromThrowable(ended.getCause()).getCode());
+			assertEquals(1, reapingServer.reapedStreams());
+			assertEquals(0, reapingServer.openStreams());
+		} finally {
+			reapingServer.shutdown();
+			assertTrue(reapingServer.awaitTermination(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	void followNotifications_quietLongerThanIdleTimeout_isNotReaped() throws Exception {
+		int reapingPort = TEST_PORT + 3;
+		ServerTuning tuning = ServerTuning.defaults()
+				.withKeepalive(KeepalivePolicy.defaults().withStreamIdleTimeout(Duration.ofMillis(200)));
+		ManagedServer reapingServer = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(reapingPort),
+				CompressionPolicy.defaults(), null, tuning);
+		try (GrpcClient reapingClient = new GrpcClient("localhost", reapingPort);
+				LiveSubscription subscription = reapingClient.followNotifications("user1", List.of("quiet.topic"),
+						notification -> {
+						})) {
+			// Sample notifications come every 500 ms, and nothing is published
+			Thread.sleep(1500);
+
+			assertEquals(0, reapingServer.reapedStreams());
+			assertEquals(0, subscription.reconnectCount());
+			assertEquals(1, reapingServer.openStreams());
+		} finally {
+			reapingServer.shutdown();
+			assertTrue(reapingServer.awaitTermination(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	void loadGenerator_openLoopMix_reportsLatencyPerRpc() {
+		LoadProfile profile = new LoadProfile(LoadMode.OPEN_LOOP,
+				Map.of(RpcType.SEND_MESSAGE, 3, RpcType.UPLOAD_SENSOR_DATA, 1, RpcType.CHAT, 1), 1, 200.0, 128, 10,
+				Duration.ofMillis(200), Duration.ofSeconds(1));
+
+		LoadReport report = new LoadGenerator(client, profile).run();
+
+		assertEquals(3, report.summaries().size());
+		report.summaries().forEach(summary -> {
+			assertTrue(summary.count() > 0, summary.rpcType() + " had no measured calls");
+			assertEquals(0, summary.errors());
+			assertTrue(summary.p99Micros() >= summary.p50Micros());
+		});
+		assertTrue(report.throughputPerSecond() > 0);
+	}
 }
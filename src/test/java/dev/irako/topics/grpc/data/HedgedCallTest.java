@@ -0,0 +1,69 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgedCallTest {
+
+	private static final long LONG_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+	@Test
+	void start_primaryAnswersFirst_neverSendsHedge() throws Exception {
+		AtomicInteger hedges = new AtomicInteger();
+
+		CompletableFuture<String> result = HedgedCall.start(observer -> answer(observer, "primary"),
+				observer -> hedges.incrementAndGet(), TimeUnit.MILLISECONDS.toNanos(50));
+
+		assertEquals("primary", result.get(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertEquals(0, hedges.get());
+	}
+
+	@Test
+	void start_primarySilent_hedgeWinsAndPrimaryIsCancelled() throws Exception {
+		AtomicReference<Context> primaryContext = new AtomicReference<>();
+
+		CompletableFuture<String> result = HedgedCall.start(observer -> primaryContext.set(Context.current()),
+				observer -> answer(observer, "hedge"), TimeUnit.MILLISECONDS.toNanos(10));
+
+		assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+		assertTrue(primaryContext.get().isCancelled());
+	}
+
+	@Test
+	void start_primaryUnavailable_sendsHedgeWithoutWaiting() throws Exception {
+		CompletableFuture<String> result = HedgedCall.start(
+				observer -> observer.onError(Status.UNAVAILABLE.asRuntimeException()),
+				observer -> answer(observer, "hedge"), LONG_DELAY_NANOS);
+
+		assertEquals("hedge", result.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void start_primaryRejected_failsWithoutHedge() {
+		AtomicInteger hedges = new AtomicInteger();
+
+		CompletableFuture<String> result = HedgedCall.start(
+				observer -> observer.onError(Status.INVALID_ARGUMENT.asRuntimeException()),
+				observer -> hedges.incrementAndGet(), LONG_DELAY_NANOS);
+
+		ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+		assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(error.getCause()).getCode());
+		assertEquals(0, hedges.get());
+	}
+
+	private static void answer(StreamObserver<String> observer, String response) {
+		observer.onNext(response);
+		observer.onCompleted();
+	}
+}
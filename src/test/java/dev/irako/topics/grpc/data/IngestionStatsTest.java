@@ -0,0 +1,57 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.IngestionStatsDto;
+import dev.irako.topics.grpc.service.HyperLogLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionStatsTest {
+
+	private long nowMs = 60_000;
+	private final IngestionStats stats = new IngestionStats(Duration.ofMinutes(1), () -> nowMs);
+
+	@Test
+	void snapshot_windowsRoll_keepsCurrentAndPreviousWindow() {
+		stats.recordSensors(sensors("sensor1", "sensor2"));
+		nowMs += 60_000;
+		stats.recordSensors(sensors("sensor2", "sensor3", "sensor4"));
+
+		IngestionStatsDto snapshot = stats.snapshot(10);
+		assertEquals(4, snapshot.distinctSensors());
+		assertEquals(3, snapshot.distinctSensorsCurrentWindow());
+		assertEquals(2, snapshot.distinctSensorsPreviousWindow());
+		assertEquals(Instant.ofEpochMilli(120_000), snapshot.windowStart());
+
+		// A window without uploads leaves nothing to report for it
+		nowMs += 120_000;
+		snapshot = stats.snapshot(10);
+		assertEquals(0, snapshot.distinctSensorsCurrentWindow());
+		assertEquals(0, snapshot.distinctSensorsPreviousWindow());
+		assertEquals(4, snapshot.distinctSensors());
+	}
+
+	@Test
+	void snapshot_chatSenders_listsMostFrequentFirst() {
+		stats.recordChatSender("bob");
+		stats.recordChatSender("alice");
+		stats.recordChatSender("alice");
+
+		IngestionStatsDto snapshot = stats.snapshot(1);
+
+		assertEquals(3, snapshot.chatMessages());
+		assertEquals(1, snapshot.topChatSenders().size());
+		assertEquals("alice", snapshot.topChatSenders().get(0).key());
+	}
+
+	private static HyperLogLog sensors(String... sensorIds) {
+		HyperLogLog sketch = new HyperLogLog();
+		for (String sensorId : sensorIds) {
+			sketch.add(sensorId);
+		}
+		return sketch;
+	}
+}
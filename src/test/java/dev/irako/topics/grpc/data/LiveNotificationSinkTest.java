@@ -0,0 +1,138 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.NotificationMessage;
+import dev.irako.topics.grpc.model.NotificationPriority;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveNotificationSinkTest {
+
+	private static final NotificationConflation CONFLATION = new NotificationConflation(
+			List.of(new NotificationConflation.Rule("prices.#", NotificationConflation.Mode.LATEST),
+					new NotificationConflation.Rule("alerts.#", NotificationConflation.Mode.DIGEST)),
+			Duration.ofSeconds(1), 3);
+
+	private final List<NotificationMessage> received = new ArrayList<>();
+	private final AtomicBoolean ready = new AtomicBoolean(true);
+	private final AtomicLong clockMs = new AtomicLong(10_000);
+	private final LiveNotificationSink sink = new LiveNotificationSink(new StreamSink<>(new Recorder()), ready::get,
+			CONFLATION, clockMs::get);
+
+	@Test
+	void send_streamReady_sendsImmediately() {
+		assertTrue(sink.send(notification("prices.acme", "1", NotificationPriority.LOW)));
+
+		assertEquals(1, received.size());
+		assertEquals(0, sink.pending());
+	}
+
+	@Test
+	void send_latestTopicNotReady_keepsOnlyLatestPerTopic() {
+		ready.set(false);
+		sink.send(notification("prices.acme", "1", NotificationPriority.LOW));
+		sink.send(notification("prices.other", "2", NotificationPriority.LOW));
+		sink.send(notification("prices.acme", "3", NotificationPriority.LOW));
+		assertTrue(received.isEmpty());
+
+		ready.set(true);
+		sink.drain();
+
+		assertEquals(List.of("2", "3"), received.stream().map(NotificationMessage::getTitle).toList());
+		assertEquals(1, sink.conflated());
+	}
+
+	@Test
+	void send_digestTopicNotReady_mergesWithinWindow() {
+		ready.set(false);
+		sink.send(notification("alerts.door", "Opened", NotificationPriority.LOW));
+		sink.send(notification("alerts.door", "Closed", NotificationPriority.URGENT));
+		clockMs.addAndGet(1000);
+		sink.send(notification("alerts.door", "Opened again", NotificationPriority.LOW));
+
+		ready.set(true);
+		sink.drain();
+
+		assertEquals(2, received.size());
+		NotificationMessage digest = received.get(0);
+		assertEquals("2 notifications on alerts.door", digest.getTitle());
+		assertEquals("Opened\nClosed", digest.getContent());
+		assertEquals(NotificationPriority.URGENT, digest.getPriority());
+		// Alone in its window, so delivered unchanged
+		assertEquals("Opened again", received.get(1).getTitle());
+	}
+
+	@Test
+	void send_backlogFull_dropsOldest() {
+		ready.set(false);
+		for (int index = 0; index < 5; index++) {
+			sink.send(notification("news", String.valueOf(index), NotificationPriority.LOW));
+		}
+		assertEquals(3, sink.pending());
+		assertEquals(2, sink.dropped());
+
+		ready.set(true);
+		sink.drain();
+
+		assertEquals(List.of("2", "3", "4"), received.stream().map(NotificationMessage::getTitle).toList());
+	}
+
+	@Test
+	void drain_streamNotReadyAgain_keepsRestWaiting() {
+		ready.set(false);
+		sink.send(notification("news", "1", NotificationPriority.LOW));
+		sink.send(notification("news", "2", NotificationPriority.LOW));
+		ready.set(true);
+		// Arrives while older notifications still wait, so it must queue behind them
+		sink.send(notification("news", "3", NotificationPriority.LOW));
+		assertTrue(received.isEmpty());
+
+		ready.set(false);
+		sink.drain();
+		assertEquals(3, sink.pending());
+
+		ready.set(true);
+		sink.drain();
+		assertEquals(List.of("1", "2", "3"), received.stream().map(NotificationMessage::getTitle).toList());
+	}
+
+	@Test
+	void modeFor_firstMatchingRuleWins_defaultsToQueue() {
+		assertEquals(NotificationConflation.Mode.LATEST, CONFLATION.modeFor("prices.acme.eur"));
+		assertEquals(NotificationConflation.Mode.DIGEST, CONFLATION.modeFor("alerts"));
+		assertEquals(NotificationConflation.Mode.QUEUE, CONFLATION.modeFor("news"));
+	}
+
+	@Test
+	void rule_invalidPattern_throwsException() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new NotificationConflation.Rule("*.prices", NotificationConflation.Mode.LATEST));
+	}
+
+	private static NotificationMessage notification(String topic, String title, NotificationPriority priority) {
+		return NotificationMessage.newBuilder().setNotificationId(title).setTopic(topic).setTitle(title)
+				.setContent("").setTimestamp(1000).setPriority(priority).build();
+	}
+
+	private final class Recorder implements StreamObserver<NotificationMessage> {
+		@Override
+		public void onNext(NotificationMessage value) {
+			received.add(value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+	}
+}
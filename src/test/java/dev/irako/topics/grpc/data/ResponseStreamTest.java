@@ -0,0 +1,109 @@
+package dev.irako.topics.grpc.data;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseStreamTest {
+
+	@Test
+	void next_eachResponseTaken_requestsOneMore() {
+		RecordingCall call = new RecordingCall();
+		ResponseStream<String> stream = new ResponseStream<>(2);
+		ClientResponseObserver<String, Integer> observer = stream.observer(String::valueOf);
+		observer.beforeStart(call);
+		assertEquals(2, call.requested);
+
+		observer.onNext(1);
+		observer.onNext(2);
+		assertEquals(2, call.requested);
+
+		assertEquals("1", stream.next());
+		assertEquals(3, call.requested);
+		observer.onNext(3);
+		observer.onCompleted();
+
+		assertEquals("2", stream.next());
+		assertEquals("3", stream.next());
+		assertFalse(stream.hasNext());
+	}
+
+	@Test
+	void hasNext_callFailed_throwsStatusAfterResponses() {
+		RecordingCall call = new RecordingCall();
+		ResponseStream<String> stream = new ResponseStream<>(4);
+		ClientResponseObserver<String, Integer> observer = stream.observer(String::valueOf);
+		observer.beforeStart(call);
+		observer.onNext(1);
+		observer.onError(Status.UNAVAILABLE.asRuntimeException());
+
+		assertEquals("1", stream.next());
+		StatusRuntimeException error = assertThrows(StatusRuntimeException.class, stream::hasNext);
+		assertEquals(Status.Code.UNAVAILABLE, error.getStatus().getCode());
+	}
+
+	@Test
+	void close_beforeEnd_cancelsCall() {
+		RecordingCall call = new RecordingCall();
+		ResponseStream<String> stream = new ResponseStream<>(4);
+		ClientResponseObserver<String, Integer> observer = stream.observer(String::valueOf);
+		observer.beforeStart(call);
+
+		stream.close();
+
+		assertTrue(call.cancelled);
+	}
+
+	private static final class RecordingCall extends ClientCallStreamObserver<String> {
+		private long requested;
+		private boolean cancelled;
+
+		@Override
+		public void disableAutoRequestWithInitial(int request) {
+			requested = request;
+		}
+
+		@Override
+		public void request(int count) {
+			requested += count;
+		}
+
+		@Override
+		public void cancel(String message, Throwable cause) {
+			cancelled = true;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+
+		@Override
+		public void onNext(String value) {
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+	}
+}
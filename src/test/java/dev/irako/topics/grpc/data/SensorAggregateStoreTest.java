@@ -0,0 +1,103 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorBucketAggregate;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorAggregateStoreTest {
+
+	private static final Duration MINUTE = Duration.ofMinutes(1);
+
+	@Test
+	void query_rangeOverSeveralBuckets_mergesOverlappingBuckets() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 10, 100, Duration.ofHours(1));
+		store.record(List.of(bucket("sensor1", 0, 2, 10.0), bucket("sensor1", 1, 2, 20.0),
+				bucket("sensor1", 2, 4, 40.0)), 0);
+
+		SensorAggregateDto firstTwo = store.query("sensor1", 0, minutes(1) + 30_000).orElseThrow();
+
+		assertEquals(4, firstTwo.totalReadings());
+		assertEquals(15.0, firstTwo.averageValue(), 0.001);
+		assertEquals(8, store.query("sensor1", 0, minutes(5)).orElseThrow().totalReadings());
+		assertTrue(store.query("sensor1", minutes(3), minutes(5)).isEmpty());
+		assertTrue(store.query("unknown", 0, minutes(5)).isEmpty());
+	}
+
+	@Test
+	void record_sameBucketTwice_accumulates() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 10, 100, Duration.ofHours(1));
+		store.record(List.of(bucket("sensor1", 0, 1, 10.0)), 0);
+		store.record(List.of(bucket("sensor1", 0, 1, 30.0)), 0);
+
+		SensorAggregateDto aggregate = store.query("sensor1", 0, 0).orElseThrow();
+
+		assertEquals(2, aggregate.totalReadings());
+		assertEquals(20.0, aggregate.averageValue(), 0.001);
+		assertEquals(30.0, aggregate.maxValue(), 0.001);
+	}
+
+	@Test
+	void record_pastRingSize_overwritesOldestBucketAndDropsStaleOnes() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 3, 100, Duration.ofHours(1));
+		store.record(List.of(bucket("sensor1", 0, 1, 10.0), bucket("sensor1", 3, 1, 40.0)), 0);
+		store.record(List.of(bucket("sensor1", 0, 1, 10.0)), 0);
+
+		assertTrue(store.query("sensor1", 0, minutes(2)).isEmpty());
+		assertEquals(1, store.query("sensor1", 0, minutes(3)).orElseThrow().totalReadings());
+	}
+
+	@Test
+	void evictIdle_sensorsPastTimeout_areRemoved() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 10, 100, Duration.ofMinutes(5));
+		store.record(List.of(bucket("old", 0, 1, 1.0)), 0);
+		store.record(List.of(bucket("fresh", 0, 1, 1.0)), minutes(4));
+
+		assertEquals(1, store.evictIdle(minutes(6)));
+		assertTrue(store.query("old", 0, minutes(1)).isEmpty());
+		assertTrue(store.query("fresh", 0, minutes(1)).isPresent());
+	}
+
+	@Test
+	void record_sensorCapReached_evictsLeastRecentlyUpdated() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 10, 2, Duration.ofHours(1));
+		store.record(List.of(bucket("a", 0, 1, 1.0)), 1);
+		store.record(List.of(bucket("b", 0, 1, 1.0)), 2);
+		store.record(List.of(bucket("c", 0, 1, 1.0)), 3);
+
+		assertEquals(2, store.sensorCount());
+		assertTrue(store.query("a", 0, minutes(1)).isEmpty());
+		assertTrue(store.query("c", 0, minutes(1)).isPresent());
+	}
+
+	@Test
+	void record_sensorCapReached_evictsBatchSoNextSensorsFindRoom() {
+		SensorAggregateStore store = new SensorAggregateStore(MINUTE, 10, 32, Duration.ofHours(1));
+		for (int sensor = 0; sensor < 32; sensor++) {
+			store.record(List.of(bucket("sensor" + sensor, 0, 1, 1.0)), sensor);
+		}
+
+		store.record(List.of(bucket("new0", 0, 1, 1.0)), 100);
+		// One sensor for the new one and two spare
+		assertEquals(30, store.sensorCount());
+		assertTrue(store.query("sensor2", 0, minutes(1)).isEmpty());
+		assertTrue(store.query("sensor3", 0, minutes(1)).isPresent());
+
+		store.record(List.of(bucket("new1", 0, 1, 1.0), bucket("new2", 0, 1, 1.0)), 101);
+		assertEquals(32, store.sensorCount());
+		assertTrue(store.query("sensor3", 0, minutes(1)).isPresent());
+	}
+
+	private static SensorBucketAggregate bucket(String sensorId, int minute, int count, double value) {
+		return new SensorBucketAggregate(sensorId, minutes(minute),
+				new SensorAggregateDto(count, value, value, value, "celsius", 0));
+	}
+
+	private static long minutes(int minutes) {
+		return MINUTE.toMillis() * minutes;
+	}
+}
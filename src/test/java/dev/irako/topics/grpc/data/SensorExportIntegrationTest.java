@@ -0,0 +1,137 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorExportIntegrationTest {
+
+	private static final int TEST_PORT = 50081;
+	private static final long HOUR_MS = Duration.ofHours(1).toMillis();
+
+	@TempDir
+	Path exportDirectory;
+
+	@Test
+	void writer_readingsAcrossPartitions_areReadBackPerRange() throws Exception {
+		long start = 10 * HOUR_MS;
+		try (ReadingColumns readings = new ReadingColumns()) {
+			for (int i = 0; i < 120; i++) {
+				readings.append("sensor" + (i % 3), i * 0.5, "celsius", start + i * 60_000L, "room" + (i % 2));
+			}
+			writeAll(readings);
+		}
+
+		assertEquals(2, SensorSegmentReader.segments(exportDirectory).size());
+		try (ReadingColumns all = new ReadingColumns()) {
+			assertEquals(120, SensorSegmentReader.scan(exportDirectory, Duration.ofHours(1), 0, Long.MAX_VALUE, all));
+			double sum = 0;
+			for (int i = 0; i < all.size(); i++) {
+				sum += all.value(i);
+				assertEquals("room" + (all.timestampMs(i) - start) / 60_000 % 2, all.location(i));
+			}
+			assertEquals(0.5 * 119 * 120 / 2, sum, 1e-9);
+		}
+		try (ReadingColumns secondHour = new ReadingColumns(); ReadingColumns firstSegment = new ReadingColumns()) {
+			assertEquals(60, SensorSegmentReader.scan(exportDirectory, Duration.ofHours(1), start + HOUR_MS,
+					start + 2 * HOUR_MS, secondHour));
+			assertEquals(60,
+					SensorSegmentReader.read(exportDirectory.resolve(SegmentFormat.fileName(start)), firstSegment));
+		}
+	}
+
+	@Test
+	void reader_truncatedTail_returnsCompleteBlocks() throws Exception {
+		try (ReadingColumns readings = new ReadingColumns()) {
+			readings.append("sensor1", 1.0, "celsius", 1_000, "room1");
+			readings.append("sensor2", 2.0, "celsius", 2_000, "room1");
+			writeAll(readings);
+		}
+		Path segment = SensorSegmentReader.segments(exportDirectory).get(0);
+		Files.write(segment, new byte[] { 0x53, 0x45, 0x47, 0x31, 0, 0 }, StandardOpenOption.APPEND);
+
+		try (ReadingColumns target = new ReadingColumns()) {
+			assertEquals(2, SensorSegmentReader.read(segment, target));
+		}
+	}
+
+	@Test
+	void writer_reopenedAfterTornBlock_truncatesTailAndKeepsNewBlocks() throws Exception {
+		try (ReadingColumns readings = new ReadingColumns()) {
+			readings.append("sensor1", 1.0, "celsius", 1_000, "room1");
+			readings.append("sensor2", 2.0, "celsius", 2_000, "room1");
+			writeAll(readings);
+		}
+		Path segment = SensorSegmentReader.segments(exportDirectory).get(0);
+		long complete = Files.size(segment);
+		try (ReadingColumns readings = new ReadingColumns()) {
+			readings.append("sensor3", 3.0, "celsius", 3_000, "room1");
+			writeAll(readings);
+		}
+		// A crash in the middle of the second run's block
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(complete + (Files.size(segment) - complete) / 2);
+		}
+
+		try (ReadingColumns readings = new ReadingColumns()) {
+			readings.append("sensor4", 4.0, "celsius", 4_000, "room1");
+			writeAll(readings);
+		}
+
+		try (ReadingColumns target = new ReadingColumns()) {
+			assertEquals(3, SensorSegmentReader.read(segment, target));
+			assertEquals(Set.of("sensor1", "sensor2"), Set.of(target.sensorId(0), target.sensorId(1)));
+			assertEquals("sensor4", target.sensorId(2));
+		}
+	}
+
+	@Test
+	void uploadSensorData_exportEnabled_writesReadingsToSegments() throws Exception {
+		SensorExportPolicy policy = new SensorExportPolicy(exportDirectory, Duration.ofHours(1),
+				Duration.ofMillis(50), 4096, 16);
+		ManagedServer server = GrpcServerFactory.createAndStartServer(ClusterConfig.standalone(TEST_PORT),
+				CompressionPolicy.defaults(), policy);
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		try (GrpcClient client = new GrpcClient("localhost", TEST_PORT)) {
+			client.uploadSensorData(List.of(new SensorReadingDto("sensor1", 20.0, "celsius", now, "room1"),
+					new SensorReadingDto("sensor2", 25.0, "fahrenheit", now.plusMillis(5), "room2")));
+		} finally {
+			server.shutdown();
+			assertTrue(server.awaitTermination(5, TimeUnit.SECONDS));
+		}
+
+		try (ReadingColumns exported = new ReadingColumns()) {
+			assertEquals(2, SensorSegmentReader.scan(exportDirectory, Duration.ofHours(1), now.toEpochMilli(),
+					now.toEpochMilli() + 5, exported));
+			List<SensorReadingDto> readings = List.of(exported.reading(0), exported.reading(1));
+			assertTrue(readings.contains(new SensorReadingDto("sensor2", 25.0, "fahrenheit", now.plusMillis(5),
+					"room2")), readings.toString());
+		}
+	}
+
+	/**
+	 * Writes readings through a writer that takes ownership of them.
+	 */
+	private void writeAll(ReadingColumns readings) throws IOException, InterruptedException {
+		SensorExportPolicy policy = new SensorExportPolicy(exportDirectory, Duration.ofHours(1), Duration.ZERO, 4096,
+				4);
+		SensorSegmentWriter writer = new SensorSegmentWriter(policy);
+		assertTrue(writer.submit(readings));
+		writer.close();
+		assertTrue(writer.awaitTermination(5, TimeUnit.SECONDS));
+	}
+}
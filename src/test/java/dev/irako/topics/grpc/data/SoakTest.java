@@ -0,0 +1,301 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.*;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Soak test: thousands of concurrent streams against an in-process server for
+ * minutes, including slow consumers and cancelled streams. It checks that no
+ * chat message is lost or duplicated, that uploads are counted exactly, that
+ * the heap stays bounded and that every stream is released, and logs the
+ * throughput and latency of each scenario.
+ *
+ * <p>
+ * Excluded from {@code test}; run it with
+ *
+ * <pre>
+ * ./gradlew soakTest -Psoak.seconds=300 -Psoak.streams=5000
+ * </pre>
+ */
+@Tag("soak")
+class SoakTest {
+
+	private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SoakTest.class);
+
+	private static final Duration DURATION = Duration.ofSeconds(Long.getLong("soak.seconds", 120));
+	private static final int STREAMS = Integer.getInteger("soak.streams", 2000);
+	private static final long MAX_HEAP_BYTES = Long.getLong("soak.maxHeapMb", 768) << 20;
+	private static final long MAX_RETAINED_BYTES = 64L << 20;
+
+	private static final int CHAT_MESSAGES = 50;
+	private static final int UPLOAD_READINGS = 200;
+	private static final long SLOW_CONSUMER_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+	private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(1);
+	private static final int REPORTED_FAILURES = 20;
+	private static final int NOMINAL_PORT = 50099;
+
+	/** What one stream slot does, over and over, until the soak ends. */
+	private enum Scenario {
+		CHAT, SLOW_CHAT, CANCELLED_CHAT, CANCELLED_SUBSCRIPTION, UPLOAD, UNARY
+	}
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Map<Scenario, Recorder> latencies = new EnumMap<>(Scenario.class);
+	private final Map<Scenario, LongAdder> operations = new EnumMap<>(Scenario.class);
+	private final Histogram chatRoundTrips = new Histogram(3);
+	private final LongAdder chatMessages = new LongAdder();
+	private final LongAdder failureCount = new LongAdder();
+	private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+	private final AtomicLong peakHeapBytes = new AtomicLong();
+
+	private ManagedServer server;
+	private GrpcClient client;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		String name = InProcessServerBuilder.generateName();
+		// The in-process server listens on no port; the config only names this node
+		server = GrpcServerFactory.createServer(InProcessServerBuilder.forName(name),
+				ClusterConfig.standalone(NOMINAL_PORT), CompressionPolicy.defaults(), null, ServerTuning.defaults());
+		server.start();
+		client = new GrpcClient(() -> InProcessChannelBuilder.forName(name), CompressionPolicy.defaults(),
+				CallPolicy.defaults());
+		for (Scenario scenario : Scenario.values()) {
+			latencies.put(scenario, new Recorder(3));
+			operations.put(scenario, new LongAdder());
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		client.close();
+		server.shutdown();
+		server.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void concurrentStreams_forMinutes_keepInvariants() throws Exception {
+		long baselineHeapBytes = heapAfterGc();
+		ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+		heapSampler.scheduleAtFixedRate(() -> peakHeapBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(),
+				Math::max), 0, 200, TimeUnit.MILLISECONDS);
+
+		long startNanos = System.nanoTime();
+		long endNanos = startNanos + DURATION.toNanos();
+		// Closed in reverse: the slots finish before the slow consumers' executor shuts down
+		try (ExecutorService slowConsumers = Executors.newVirtualThreadPerTaskExecutor();
+				ExecutorService slots = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int slot = 0; slot < STREAMS; slot++) {
+				int slotId = slot;
+				Scenario scenario = Scenario.values()[slot % Scenario.values().length];
+				slots.execute(() -> runSlot(slotId, scenario, endNanos, slowConsumers));
+			}
+		}
+		double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+		heapSampler.shutdownNow();
+
+		report(elapsedSeconds, baselineHeapBytes);
+		assertEquals(0, failureCount.sum(), () -> failureCount.sum() + " failures, first: " + failures);
+		assertTrue(awaitNoOpenStreams(Duration.ofSeconds(10)), () -> server.openStreams() + " streams leaked");
+		assertTrue(peakHeapBytes.get() < MAX_HEAP_BYTES, () -> "peak heap " + (peakHeapBytes.get() >> 20) + " MB");
+		long retainedBytes = heapAfterGc() - baselineHeapBytes;
+		assertTrue(retainedBytes < MAX_RETAINED_BYTES, () -> "retained heap " + (retainedBytes >> 20) + " MB");
+	}
+
+	private void runSlot(int slot, Scenario scenario, long endNanos, ExecutorService slowConsumers) {
+		for (int iteration = 0; System.nanoTime() < endNanos; iteration++) {
+			long opStartNanos = System.nanoTime();
+			try {
+				switch (scenario) {
+					case CHAT -> chat(slot, iteration, Runnable::run, false);
+					case SLOW_CHAT -> chat(slot, iteration, slowConsumers, true);
+					case CANCELLED_CHAT -> cancelledChat(slot, iteration);
+					case CANCELLED_SUBSCRIPTION -> cancelledSubscription(slot);
+					case UPLOAD -> upload(slot);
+					case UNARY -> unary(slot, iteration);
+				}
+			} catch (Exception e) {
+				fail(scenario, slot, e.toString());
+				if (e instanceof InterruptedException) {
+					return;
+				}
+			}
+			latencies.get(scenario).recordValue(System.nanoTime() - opStartNanos);
+			operations.get(scenario).increment();
+		}
+	}
+
+	/**
+	 * Sends numbered messages to a room of its own and expects each back exactly
+	 * once, in order.
+	 */
+	private void chat(int slot, int iteration, Executor executor, boolean slow) throws Exception {
+		String room = "soak-room-" + slot;
+		Queue<String> received = new ConcurrentLinkedQueue<>();
+		try (ChatSession session = client.openChat(message -> {
+			received.add(message.content());
+			if (slow) {
+				LockSupport.parkNanos(SLOW_CONSUMER_NANOS);
+			}
+		}, executor)) {
+			sendNumbered(session, slot, iteration, room);
+			session.complete();
+			session.done().get(STREAM_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+			synchronized (chatRoundTrips) {
+				chatRoundTrips.add(session.roundTripHistogram());
+			}
+		}
+		chatMessages.add(received.size());
+		if (!List.copyOf(received).equals(expectedContents(CHAT_MESSAGES))) {
+			fail(slow ? Scenario.SLOW_CHAT : Scenario.CHAT, slot, "received " + received);
+		}
+	}
+
+	/**
+	 * Leaves a chat half way through its echoes; what arrived must still be an
+	 * unbroken prefix.
+	 */
+	private void cancelledChat(int slot, int iteration) throws Exception {
+		String room = "soak-cancelled-room-" + slot + "-" + iteration;
+		Queue<String> received = new ConcurrentLinkedQueue<>();
+		try (ChatSession session = client.openChat(message -> received.add(message.content()))) {
+			sendNumbered(session, slot, iteration, room);
+			long deadlineNanos = System.nanoTime() + STREAM_TIMEOUT.toNanos();
+			while (received.size() < CHAT_MESSAGES / 2 && System.nanoTime() < deadlineNanos) {
+				Thread.sleep(1);
+			}
+		}
+		List<String> prefix = List.copyOf(received);
+		if (prefix.size() < CHAT_MESSAGES / 2
+				|| !prefix.equals(expectedContents(CHAT_MESSAGES).subList(0, prefix.size()))) {
+			fail(Scenario.CANCELLED_CHAT, slot, "received " + prefix);
+		}
+		chatMessages.add(prefix.size());
+	}
+
+	private void sendNumbered(ChatSession session, int slot, int iteration, String room) {
+		long baseMs = System.currentTimeMillis();
+		for (int seq = 0; seq < CHAT_MESSAGES; seq++) {
+			// Distinct timestamps, so every echo is timed
+			ChatMessageDto message = new ChatMessageDto("soak-" + slot, "Soak " + slot, content(seq),
+					Instant.ofEpochMilli(baseMs + seq), ChatMessageType.TEXT, room);
+			if (!session.send(message)) {
+				fail(Scenario.CHAT, slot, "send refused at " + seq + " in iteration " + iteration);
+			}
+		}
+	}
+
+	/** Takes the first notification of a subscription and cancels it. */
+	private void cancelledSubscription(int slot) {
+		try (ResponseStream<NotificationDto> notifications = client.streamNotifications("soak-" + slot,
+				List.of("news"))) {
+			if (!"news".equals(notifications.next().topic())) {
+				fail(Scenario.CANCELLED_SUBSCRIPTION, slot, "unexpected topic");
+			}
+		}
+	}
+
+	private void upload(int slot) throws InterruptedException {
+		Instant now = Instant.now();
+		List<SensorReadingDto> readings = new ArrayList<>(UPLOAD_READINGS);
+		for (int i = 0; i < UPLOAD_READINGS; i++) {
+			readings.add(new SensorReadingDto("soak-sensor-" + slot, i, "celsius", now.plusMillis(i), "soak"));
+		}
+		SensorAggregateDto aggregate = client.uploadSensorData(readings);
+		if (aggregate.totalReadings() != UPLOAD_READINGS || aggregate.minValue() != 0
+				|| aggregate.maxValue() != UPLOAD_READINGS - 1) {
+			fail(Scenario.UPLOAD, slot, "aggregate " + aggregate);
+		}
+	}
+
+	private void unary(int slot, int iteration) {
+		if (!client.sendMessage(new MessageDto("soak-" + slot, "Ping " + iteration, Instant.now())).success()) {
+			fail(Scenario.UNARY, slot, "not accepted");
+		}
+	}
+
+	private static String content(int seq) {
+		return "Soak message " + seq;
+	}
+
+	private static List<String> expectedContents(int count) {
+		List<String> contents = new ArrayList<>(count);
+		for (int seq = 0; seq < count; seq++) {
+			contents.add(content(seq));
+		}
+		return contents;
+	}
+
+	private void fail(Scenario scenario, int slot, String detail) {
+		failureCount.increment();
+		if (failures.size() < REPORTED_FAILURES) {
+			failures.add(scenario + " slot " + slot + ": " + detail);
+		}
+	}
+
+	private boolean awaitNoOpenStreams(Duration timeout) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + timeout.toNanos();
+		while (server.openStreams() > 0 && System.nanoTime() < deadlineNanos) {
+			Thread.sleep(50);
+		}
+		return server.openStreams() == 0;
+	}
+
+	private long heapAfterGc() throws InterruptedException {
+		System.gc();
+		Thread.sleep(200);
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private void report(double elapsedSeconds, long baselineHeapBytes) {
+		logger.info("Soak: {} streams for {} s, peak heap {} MB (baseline {} MB), {} failures", STREAMS,
+				String.format("%.1f", elapsedSeconds), peakHeapBytes.get() >> 20, baselineHeapBytes >> 20,
+				failureCount.sum());
+		for (Scenario scenario : Scenario.values()) {
+			Histogram histogram = latencies.get(scenario).getIntervalHistogram();
+			long count = operations.get(scenario).sum();
+			logger.info("{}: {} ops, {} ops/s, p50 {} ms, p99 {} ms, max {} ms", scenario, count,
+					String.format("%.0f", count / elapsedSeconds), millis(histogram.getValueAtPercentile(50)),
+					millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+		}
+		logger.info("Chat: {} messages/s, round trip p50 {} ms, p99 {} ms",
+				String.format("%.0f", chatMessages.sum() / elapsedSeconds),
+				millis(chatRoundTrips.getValueAtPercentile(50)), millis(chatRoundTrips.getValueAtPercentile(99)));
+		Histogram stopLatencies = server.cancellationLatency();
+		logger.info("Cancellations: {} streams, stopped after p50 {} ms, p99 {} ms, max {} ms",
+				server.cancelledStreams(), millis(stopLatencies.getValueAtPercentile(50)),
+				millis(stopLatencies.getValueAtPercentile(99)), millis(stopLatencies.getMaxValue()));
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.2f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,86 @@
+package dev.irako.topics.grpc.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamCancellationTest {
+
+	@Test
+	void cancel_calledTwice_runsActionsOnceAndCountsOnce() {
+		CancellationStats stats = new CancellationStats();
+		StreamCancellation cancellation = new StreamCancellation(stats);
+		List<String> ran = new ArrayList<>();
+		cancellation.onCancel(() -> ran.add("unsubscribe"));
+
+		cancellation.cancel();
+		cancellation.cancel();
+
+		assertTrue(cancellation.isCancelled());
+		assertEquals(List.of("unsubscribe"), ran);
+		assertEquals(1, stats.cancelledCount());
+		assertEquals(1, stats.stopLatencyHistogram().getTotalCount());
+	}
+
+	@Test
+	void onCancel_afterCancellation_runsAtOnce() {
+		StreamCancellation cancellation = new StreamCancellation(new CancellationStats());
+		cancellation.cancel();
+		List<String> ran = new ArrayList<>();
+
+		cancellation.onCancel(() -> ran.add("leave"));
+
+		assertEquals(List.of("leave"), ran);
+	}
+
+	@Test
+	void cancel_workInProgress_recordsStopOnceWorkFinishes() {
+		CancellationStats stats = new CancellationStats();
+		StreamCancellation cancellation = new StreamCancellation(stats);
+		cancellation.workStarted();
+		cancellation.workStarted();
+
+		cancellation.cancel();
+		cancellation.workFinished();
+		assertEquals(0, stats.stopLatencyHistogram().getTotalCount());
+		cancellation.workFinished();
+
+		assertEquals(1, stats.stopLatencyHistogram().getTotalCount());
+	}
+
+	@Test
+	void await_cancelledWhileWaiting_returnsTrueEarly() throws Exception {
+		StreamCancellation cancellation = new StreamCancellation(new CancellationStats());
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			cancellation.cancel();
+		});
+		long startNanos = System.nanoTime();
+		canceller.start();
+
+		assertTrue(cancellation.await(10, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+		canceller.join();
+	}
+
+	@Test
+	void workFinished_notCancelled_recordsNothing() {
+		CancellationStats stats = new CancellationStats();
+		StreamCancellation cancellation = new StreamCancellation(stats);
+		cancellation.workStarted();
+
+		cancellation.workFinished();
+
+		assertFalse(cancellation.isCancelled());
+		assertEquals(0, stats.cancelledCount());
+		assertEquals(0, stats.stopLatencyHistogram().getTotalCount());
+	}
+}
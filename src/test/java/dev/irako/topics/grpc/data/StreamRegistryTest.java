@@ -0,0 +1,59 @@
+package dev.irako.topics.grpc.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamRegistryTest {
+
+	@Test
+	void reapIdle_streamIdleLongerThanTimeout_drainsAndUnregistersOnlyIt() {
+		StreamRegistry streams = new StreamRegistry();
+		RecordingStream idle = new RecordingStream(0);
+		RecordingStream active = new RecordingStream(900);
+		streams.register(idle);
+		streams.register(active);
+
+		assertEquals(1, streams.reapIdle(1000, 500));
+
+		assertEquals(List.of(StreamRegistry.IDLE), idle.reasons);
+		assertTrue(active.reasons.isEmpty());
+		assertEquals(List.of(active), streams.snapshot());
+		assertEquals(1, streams.reapedCount());
+	}
+
+	@Test
+	void reapIdle_reapedStreamIsGone_isNotReapedAgain() {
+		StreamRegistry streams = new StreamRegistry();
+		RecordingStream idle = new RecordingStream(0);
+		streams.register(idle);
+
+		streams.reapIdle(1000, 500);
+		assertEquals(0, streams.reapIdle(2000, 500));
+
+		assertEquals(1, idle.reasons.size());
+		assertEquals(0, streams.openCount());
+	}
+
+	private static final class RecordingStream implements StreamRegistry.DrainableStream {
+		private final long lastActiveNanos;
+		private final List<String> reasons = new ArrayList<>();
+
+		RecordingStream(long lastActiveNanos) {
+			this.lastActiveNanos = lastActiveNanos;
+		}
+
+		@Override
+		public void drain(String reason) {
+			reasons.add(reason);
+		}
+
+		@Override
+		public long lastActiveNanos() {
+			return lastActiveNanos;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package dev.irako.topics.grpc.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicSubscriptionIndexTest {
+
+	@Test
+	void match_wildcardAndLiteralPatterns_returnsEachSubscriberOnce() {
+		TopicSubscriptionIndex<String> index = new TopicSubscriptionIndex<>();
+		index.subscribe("alerts.building1.door", "exact");
+		index.subscribe("alerts.building1.*", "oneSegment");
+		index.subscribe("alerts.#", "suffix");
+		index.subscribe("alerts.building1.*", "both");
+		index.subscribe("alerts.*.door", "both");
+		index.subscribe("news.#", "other");
+
+		assertEquals(Set.of("exact", "oneSegment", "suffix", "both"), index.match("alerts.building1.door"));
+		assertEquals(Set.of("suffix", "both"), index.match("alerts.building2.door"));
+		assertEquals(Set.of("suffix"), index.match("alerts"));
+		assertEquals(Set.of(), index.match("updates"));
+	}
+
+	@Test
+	void subscribe_unsubscribeAll_removesEmptyBranches() {
+		TopicSubscriptionIndex<String> index = new TopicSubscriptionIndex<>();
+		Runnable first = index.subscribe("alerts.building1.*", "a");
+		Runnable second = index.subscribe("alerts.building1.door", "b");
+
+		first.run();
+		first.run();
+		assertEquals(Set.of("b"), index.match("alerts.building1.door"));
+		second.run();
+
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	void subscribe_invalidPattern_throwsException() {
+		TopicSubscriptionIndex<String> index = new TopicSubscriptionIndex<>();
+
+		assertThrows(IllegalArgumentException.class, () -> index.subscribe("#", "a"));
+		assertThrows(IllegalArgumentException.class, () -> index.match("alerts.*"));
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	void subscribe_concurrentChurn_keepsStableSubscriptionsAndPrunesTheRest() throws Exception {
+		TopicSubscriptionIndex<String> index = new TopicSubscriptionIndex<>();
+		Runnable stable = index.subscribe("alerts.building1.*", "stable");
+		List<String> patterns = List.of("alerts.building1.door", "alerts.building1.*", "alerts.#", "alerts.*.door",
+				"alerts.building2.window");
+		AtomicBoolean lost = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int worker = 0; worker < 4; worker++) {
+				String subscriber = "churn-" + worker;
+				workers.add(executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int round = 0; round < 20_000; round++) {
+						Runnable unsubscribe = index.subscribe(patterns.get(random.nextInt(patterns.size())),
+								subscriber);
+						if (!index.match("alerts.building1.door").contains("stable")) {
+							lost.set(true);
+						}
+						unsubscribe.run();
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertFalse(lost.get());
+		assertEquals(Set.of("stable"), index.match("alerts.building1.door"));
+		stable.run();
+		assertTrue(index.isEmpty());
+	}
+}
@@ -0,0 +1,346 @@
+package dev.irako.topics.grpc.data;
+
+import dev.irako.topics.grpc.model.AggregateResponse;
+import dev.irako.topics.grpc.model.SensorReading;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStreamObserverTest {
+
+	private static final int CHUNK = UploadStreamObserver.CHUNK_READINGS;
+
+	@Test
+	void onNext_processingBehind_grantsNoCreditBeyondTwoChunks() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		UploadStreamObserver observer = open(call, uploadTasks, OverloadSampling.disabled());
+		assertEquals(2 * CHUNK, call.requested);
+
+		// The client uses all its credit while nothing was processed yet
+		for (int index = 0; index < 2 * CHUNK; index++) {
+			observer.onNext(reading(index));
+		}
+		assertEquals(2 * CHUNK, call.requested);
+		// Chunks of one stream are processed one after another
+		assertEquals(1, uploadTasks.size());
+
+		uploadTasks.poll().run();
+		assertEquals(3 * CHUNK, call.requested);
+		assertEquals(1, uploadTasks.size());
+	}
+
+	@Test
+	void onCompleted_afterProcessing_respondsWithWholeAggregate() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		UploadStreamObserver observer = open(call, uploadTasks, OverloadSampling.disabled());
+		int count = CHUNK + 10;
+		for (int index = 0; index < count; index++) {
+			observer.onNext(reading(index));
+		}
+		observer.onCompleted();
+
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		assertTrue(call.completed);
+		assertEquals(1, call.responses.size());
+		assertEquals(count, call.responses.get(0).getTotalReadings());
+		assertEquals(count - 1.0, call.responses.get(0).getMaxValue());
+		// No credit after the client half-closed
+		assertEquals(2 * CHUNK, call.requested);
+	}
+
+	@Test
+	void onCompleted_noReadings_failsCall() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		UploadStreamObserver observer = open(call, uploadTasks, OverloadSampling.disabled());
+
+		observer.onCompleted();
+		uploadTasks.poll().run();
+
+		assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(call.error).getCode());
+		assertTrue(call.responses.isEmpty());
+	}
+
+	@Test
+	void onNext_readingMixesQuantities_failsCallWithoutWaitingForHalfClose() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		UploadStreamObserver observer = open(call, uploadTasks, OverloadSampling.disabled());
+
+		// The client sends whenever it has credit, and would go on for eight chunks
+		int sent = 0;
+		while (call.error == null && sent < call.requested && sent < 8 * CHUNK) {
+			observer.onNext(reading("sensor1", sent, sent < CHUNK ? "celsius" : "pascal"));
+			sent++;
+			while (!uploadTasks.isEmpty()) {
+				uploadTasks.poll().run();
+			}
+		}
+
+		assertEquals(CHUNK + 1, sent);
+		assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(call.error).getCode());
+		// Readings still on their way are dropped
+		observer.onNext(reading(sent));
+		observer.onCompleted();
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+		assertTrue(call.responses.isEmpty());
+		assertFalse(call.completed);
+	}
+
+	@Test
+	void onNext_invalidReadingLeftOutOfSample_stillFailsCall() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		// One reading in ten is kept, so the second one is left out
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, new SensorAggregateStore(),
+				null, () -> 10, new OverloadSampling(1, 0.1), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+
+		observer.onNext(reading(0));
+		observer.onNext(SensorReading.newBuilder().setSensorId("sensor1").setValue(1.0).setUnit("celsius")
+				.setTimestamp(System.currentTimeMillis()).build());
+
+		assertEquals(Status.Code.INVALID_ARGUMENT, Status.fromThrowable(call.error).getCode());
+		assertTrue(Status.fromThrowable(call.error).getDescription().contains("location"));
+	}
+
+	@Test
+	void onCompleted_backlogBeyondCapacity_samplesButKeepsCountMinMaxExact() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		// A backlog four times the capacity keeps one reading in four
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, new SensorAggregateStore(),
+				null, () -> 4, new OverloadSampling(1, 0.1), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+		int count = 4 * CHUNK;
+		for (int index = 0; index < count; index++) {
+			observer.onNext(reading(index));
+		}
+		observer.onCompleted();
+
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		AggregateResponse response = call.responses.get(0);
+		assertEquals(count, response.getTotalReadings());
+		assertEquals(0.0, response.getMinValue());
+		assertEquals(count - 1.0, response.getMaxValue());
+		assertEquals(0.25, response.getSamplingRate(), 1e-9);
+		assertEquals((count - 1) / 2.0, response.getAverageValue(), 2.0);
+		// Readings left out of the sample were credited back as they arrived
+		assertEquals(2 * CHUNK + 3 * CHUNK, call.requested);
+	}
+
+	@Test
+	void onCompleted_sampledFahrenheitReadings_reportsMinMaxInCelsius() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, new SensorAggregateStore(),
+				null, () -> 4, new OverloadSampling(1, 0.1), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+		int count = 4 * CHUNK;
+		for (int index = 0; index < count; index++) {
+			// 32 °F to 212 °F, alternating with celsius readings of the same span
+			double value = index % 2 == 0 ? 32.0 + 180.0 * index / count : 100.0 * index / count;
+			observer.onNext(reading("sensor" + index % 2, value, index % 2 == 0 ? "fahrenheit" : "celsius"));
+		}
+		observer.onNext(reading("sensor0", 212.0, "°F"));
+		observer.onCompleted();
+
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		AggregateResponse response = call.responses.get(0);
+		assertEquals(count + 1, response.getTotalReadings());
+		assertEquals("celsius", response.getUnit());
+		assertEquals(0.0, response.getMinValue(), 1e-9);
+		assertEquals(100.0, response.getMaxValue(), 1e-9);
+		assertEquals(50.0, response.getAverageValue(), 2.0);
+	}
+
+	@Test
+	void onCompleted_backlogGrowsMidUpload_weightsSampleByInverseRate() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		int[] backlog = { 2 };
+		// Half the readings are kept at first, then one in twenty
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, new SensorAggregateStore(),
+				null, () -> backlog[0], new OverloadSampling(1, 0.05), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+		for (int index = 0; index < CHUNK; index++) {
+			observer.onNext(reading("sensor1", 100.0, "celsius"));
+		}
+		backlog[0] = 20;
+		int lowRateReadings = 20 * CHUNK;
+		for (int index = 0; index < lowRateReadings; index++) {
+			observer.onNext(reading("sensor1", 0.0, "celsius"));
+		}
+		observer.onCompleted();
+
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		AggregateResponse response = call.responses.get(0);
+		int count = CHUNK + lowRateReadings;
+		assertEquals(count, response.getTotalReadings());
+		// An unweighted sample, half of it from the first phase, would average 33
+		assertEquals(100.0 * CHUNK / count, response.getAverageValue(), 0.5);
+		assertEquals(0.0, response.getMinValue());
+		assertEquals(100.0, response.getMaxValue());
+	}
+
+	@Test
+	void onCompleted_busySensorAmongRareOnes_weightsEachSensorByItsOwnSample() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		SensorAggregateStore sensorStore = new SensorAggregateStore();
+		// A backlog ten times the capacity keeps one reading in ten
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, sensorStore, null,
+				() -> 10, new OverloadSampling(1, 0.1), new IngestionStats(),
+				new StreamCancellation(new CancellationStats()));
+		int busyReadings = 4000;
+		int rareSensors = 96;
+		for (int index = 0; index < busyReadings; index++) {
+			observer.onNext(reading("busy", 0.0, "celsius"));
+		}
+		for (int index = 0; index < rareSensors; index++) {
+			observer.onNext(reading("rare" + index, 100.0, "celsius"));
+		}
+		observer.onCompleted();
+
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		AggregateResponse response = call.responses.get(0);
+		int count = busyReadings + rareSensors;
+		assertEquals(count, response.getTotalReadings());
+		// One weight per chunk would count every rare reading ten times over and average 19
+		assertEquals(100.0 * rareSensors / count, response.getAverageValue(), 0.1);
+		long now = System.currentTimeMillis();
+		assertEquals(busyReadings, sensorStore.query("busy", now - 60_000, now).orElseThrow().totalReadings(), 10);
+		assertEquals(1, sensorStore.query("rare7", now - 60_000, now).orElseThrow().totalReadings());
+	}
+
+	@Test
+	void onCompleted_cancelledWhileChunksQueued_dropsChunksAndRecordsStop() {
+		RecordingCall call = new RecordingCall();
+		Queue<Runnable> uploadTasks = new ArrayDeque<>();
+		SensorAggregateStore sensorStore = new SensorAggregateStore();
+		CancellationStats stats = new CancellationStats();
+		StreamCancellation cancellation = new StreamCancellation(stats);
+		UploadStreamObserver observer = new UploadStreamObserver(call, uploadTasks::add, sensorStore, null, () -> 0,
+				OverloadSampling.disabled(), new IngestionStats(), cancellation);
+		for (int index = 0; index < CHUNK + 10; index++) {
+			observer.onNext(reading(index));
+		}
+		observer.onCompleted();
+
+		// The client goes away after half-closing, so no onError follows
+		cancellation.cancel();
+		assertEquals(0, stats.stopLatencyHistogram().getTotalCount());
+		while (!uploadTasks.isEmpty()) {
+			uploadTasks.poll().run();
+		}
+
+		assertTrue(call.responses.isEmpty());
+		assertFalse(call.completed);
+		long now = System.currentTimeMillis();
+		assertTrue(sensorStore.query("sensor1", now - 60_000, now).isEmpty());
+		assertEquals(1, stats.cancelledCount());
+		assertEquals(1, stats.stopLatencyHistogram().getTotalCount());
+	}
+
+	private static UploadStreamObserver open(RecordingCall call, Queue<Runnable> uploadTasks,
+			OverloadSampling sampling) {
+		return new UploadStreamObserver(call, uploadTasks::add, new SensorAggregateStore(), null, () -> 0, sampling,
+				new IngestionStats(), new StreamCancellation(new CancellationStats()));
+	}
+
+	private static SensorReading reading(int index) {
+		return reading("sensor1", index, "celsius");
+	}
+
+	private static SensorReading reading(String sensorId, double value, String unit) {
+		return SensorReading.newBuilder().setSensorId(sensorId).setValue(value).setUnit(unit)
+				.setTimestamp(System.currentTimeMillis()).setLocation("room1").build();
+	}
+
+	private static final class RecordingCall extends ServerCallStreamObserver<AggregateResponse> {
+		private final List<AggregateResponse> responses = new ArrayList<>();
+		private long requested;
+		private boolean completed;
+		private Throwable error;
+
+		@Override
+		public void request(int count) {
+			requested += count;
+		}
+
+		@Override
+		public void onNext(AggregateResponse value) {
+			responses.add(value);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+		}
+
+		@Override
+		public void onCompleted() {
+			completed = true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public void setOnCancelHandler(Runnable onCancelHandler) {
+		}
+
+		@Override
+		public void setOnCloseHandler(Runnable onCloseHandler) {
+		}
+
+		@Override
+		public void setCompression(String compression) {
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setOnReadyHandler(Runnable onReadyHandler) {
+		}
+
+		@Override
+		public void disableAutoInboundFlowControl() {
+		}
+
+		@Override
+		public void setMessageCompression(boolean enable) {
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package dev.irako.topics.grpc.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadingColumnsTest {
+
+	@Test
+	void append_pastInitialCapacity_growsAndKeepsReadings() {
+		try (ReadingColumns columns = new ReadingColumns(2)) {
+			for (int i = 0; i < 10; i++) {
+				columns.append("sensor" + (i % 3), i * 1.5, "celsius", 1_000L + i, "room" + (i % 2));
+			}
+
+			assertEquals(10, columns.size());
+			assertEquals(13.5, columns.value(9));
+			assertEquals(1_009L, columns.timestampMs(9));
+			assertEquals("sensor0", columns.sensorId(9));
+			assertEquals("room1", columns.location(9));
+			assertEquals(3, columns.distinctSensorCount());
+			assertEquals(16L * 28, columns.offHeapBytes());
+		}
+	}
+
+	@Test
+	void sensorCode_sameSensor_sharesDictionaryCode() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("a", 1.0, "celsius", 0, "room1");
+			columns.append("b", 2.0, "celsius", 0, "room1");
+			columns.append("a", 3.0, "celsius", 0, "room1");
+
+			assertEquals(columns.sensorCode(0), columns.sensorCode(2));
+			assertNotEquals(columns.sensorCode(0), columns.sensorCode(1));
+			assertEquals("b", columns.sensorIdForCode(columns.sensorCode(1)));
+		}
+	}
+
+	@Test
+	void reading_appendedDto_roundTrips() {
+		SensorReadingDto reading = new SensorReadingDto("sensor1", 21.5, "celsius", Instant.ofEpochMilli(42), "room1");
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append(reading);
+
+			assertEquals(reading, columns.reading(0));
+		}
+	}
+
+	@Test
+	void value_indexOutOfRangeOrClosed_throwsException() {
+		ReadingColumns columns = new ReadingColumns();
+		columns.append("sensor1", 1.0, "celsius", 0, "room1");
+
+		assertThrows(IndexOutOfBoundsException.class, () -> columns.value(1));
+		columns.close();
+		assertThrows(IllegalStateException.class, () -> columns.value(0));
+		assertThrows(IllegalStateException.class, () -> columns.append("sensor1", 1.0, "celsius", 0, "room1"));
+	}
+
+	@Test
+	void append_blankSensorId_throwsException() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			assertThrows(IllegalArgumentException.class, () -> columns.append(" ", 1.0, "celsius", 0, "room1"));
+		}
+	}
+
+	@Test
+	void append_invalidLocationForNewSensor_leavesDictionariesUnchanged() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("sensor1", 1.0, "celsius", 0, "room1");
+
+			assertThrows(IllegalArgumentException.class, () -> columns.append("sensor2", 2.0, "celsius", 0, null));
+			assertThrows(IllegalArgumentException.class, () -> columns.append("sensor1", 2.0, "", 0, "room1"));
+
+			assertEquals(1, columns.size());
+			assertEquals(1, columns.distinctSensorCount());
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatHistoryTest {
+
+	@Test
+	void append_moreThanLimit_keepsNewestInOrder() {
+		ChatHistory<Integer> history = new ChatHistory<>(4);
+		IntStream.range(0, 11).forEach(history::append);
+
+		ChatHistory.Snapshot<Integer> snapshot = history.snapshot();
+
+		assertEquals(List.of(7, 8, 9, 10), snapshot);
+		assertEquals(11, snapshot.endSequence());
+	}
+
+	@Test
+	void snapshot_manyAppendsAfterwards_staysUnchanged() {
+		ChatHistory<Integer> history = new ChatHistory<>(4);
+		IntStream.range(0, 3).forEach(history::append);
+		ChatHistory.Snapshot<Integer> early = history.snapshot();
+
+		// Enough appends to move the messages to new arrays several times
+		IntStream.range(3, 50).forEach(history::append);
+
+		assertEquals(List.of(0, 1, 2), early);
+		assertEquals(List.of(46, 47, 48, 49), history.snapshot());
+	}
+
+	@Test
+	void last_countAboveSize_returnsWholeSnapshot() {
+		ChatHistory<String> history = new ChatHistory<>(10);
+		List.of("a", "b", "c").forEach(history::append);
+
+		assertEquals(List.of("b", "c"), history.snapshot().last(2));
+		assertEquals(List.of("a", "b", "c"), history.snapshot().last(50));
+		assertEquals(List.of(), history.snapshot().last(0));
+		assertThrows(IllegalArgumentException.class, () -> history.snapshot().last(-1));
+	}
+
+	@Test
+	void since_earlierSnapshot_returnsOnlyNewerMessages() {
+		ChatHistory<Integer> history = new ChatHistory<>(4);
+		IntStream.range(0, 3).forEach(history::append);
+		long replayedEnd = history.snapshot().endSequence();
+		IntStream.range(3, 5).forEach(history::append);
+
+		// Replaying a snapshot, then what came since, gives every message once
+		assertEquals(List.of(3, 4), history.snapshot().since(replayedEnd));
+		assertEquals(List.of(), history.snapshot().since(history.snapshot().endSequence()));
+
+		IntStream.range(5, 20).forEach(history::append);
+		assertEquals(List.of(16, 17, 18, 19), history.snapshot().since(replayedEnd));
+	}
+
+	@Test
+	void map_convertsOnAccess() {
+		ChatHistory<Integer> history = new ChatHistory<>(4);
+		IntStream.range(0, 3).forEach(history::append);
+
+		assertEquals(List.of("0", "1", "2"), history.snapshot().map(String::valueOf));
+	}
+
+	@Test
+	void constructor_nonPositiveLimit_throws() {
+		assertThrows(IllegalArgumentException.class, () -> new ChatHistory<>(0));
+		assertThrows(IllegalArgumentException.class, () -> new ChatHistory<Integer>(4).append(null));
+	}
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,4 +72,60 @@ class ChatServiceTest {
 			ChatService.createJoinMessage(null, "Alice");
 		});
 	}
+
+	@Test
+	void validateMessage_blankOrTooLongText_returnsEmpty() {
+		ChatMessageDto blank = new ChatMessageDto("user1", "Alice", "  ", Instant.now(), ChatMessageType.TEXT);
+		ChatMessageDto tooLong = new ChatMessageDto("user1", "Alice", "x".repeat(ChatService.MAX_CONTENT_LENGTH + 1),
+				Instant.now(), ChatMessageType.TEXT);
+		ChatMessageDto join = new ChatMessageDto("user1", "Alice", " ", Instant.now(), ChatMessageType.JOIN);
+
+		assertTrue(ChatService.validateMessage(blank).isEmpty());
+		assertTrue(ChatService.validateMessage(tooLong).isEmpty());
+		assertTrue(ChatService.validateMessage(join).isPresent());
+	}
+
+	@Test
+	void filterProfanity_blockedWords_masksWholeWordsOnly() {
+		ChatMessageDto message = new ChatMessageDto("user1", "Alice", "Damn, the crapshoot went CRAP", Instant.now(),
+				ChatMessageType.TEXT);
+
+		ChatMessageDto filtered = ChatService.filterProfanity(message, Set.of("damn", "crap"));
+
+		assertEquals("****, the crapshoot went ****", filtered.content());
+	}
+
+	@Test
+	void expandLinks_bareLink_prefixesHttps() {
+		ChatMessageDto message = new ChatMessageDto("user1", "Alice",
+				"See www.example.com/docs and https://www.example.org", Instant.now(), ChatMessageType.TEXT);
+
+		ChatMessageDto expanded = ChatService.expandLinks(message);
+
+		assertEquals("See https://www.example.com/docs and https://www.example.org", expanded.content());
+	}
+
+	@Test
+	void extractMentions_repeatedMentions_collectsDistinctInOrder() {
+		ChatMessageDto message = new ChatMessageDto("user1", "Alice", "@bob ping @carol, @bob again; mail a@b.io",
+				Instant.now(), ChatMessageType.TEXT);
+
+		ChatMessageDto processed = ChatService.extractMentions(message);
+
+		assertEquals(List.of("bob", "carol"), processed.mentions());
+	}
+
+	@Test
+	void defaultStages_textMessage_appliesAllStagesInOrder() {
+		ChatMessageDto message = new ChatMessageDto("user1", "Alice", "@dave damn, read www.example.com",
+				Instant.now(), ChatMessageType.TEXT);
+
+		ChatMessageDto processed = message;
+		for (ChatStage stage : ChatService.defaultStages()) {
+			processed = stage.apply(processed).orElseThrow();
+		}
+
+		assertEquals("@dave ****, read https://www.example.com", processed.content());
+		assertEquals(List.of("dave"), processed.mentions());
+	}
 }
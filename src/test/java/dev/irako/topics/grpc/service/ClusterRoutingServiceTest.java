@@ -0,0 +1,36 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ClusterNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterRoutingServiceTest {
+
+	@Test
+	void topicKey_hierarchicalTopic_usesRootSegment() {
+		assertEquals("topic:alerts", ClusterRoutingService.topicKey("alerts.building1.floor3"));
+		assertEquals("topic:alerts", ClusterRoutingService.topicKey("alerts"));
+	}
+
+	@Test
+	void roomKey_blankRoom_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> ClusterRoutingService.roomKey(" "));
+	}
+
+	@Test
+	void partitionTopicsByOwner_sameRoot_keepsTopicsTogether() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of(new ClusterNode("a", "localhost", 50061),
+				new ClusterNode("b", "localhost", 50062), new ClusterNode("c", "localhost", 50063)), 64);
+
+		Map<ClusterNode, List<String>> topicsByOwner = ClusterRoutingService.partitionTopicsByOwner(ring,
+				List.of("alerts.building1", "alerts.building2", "news"));
+
+		ClusterNode alertsOwner = ring.ownerOf(ClusterRoutingService.topicKey("alerts"));
+		assertTrue(topicsByOwner.get(alertsOwner).containsAll(List.of("alerts.building1", "alerts.building2")));
+		assertEquals(3, topicsByOwner.values().stream().mapToInt(List::size).sum());
+	}
+}
@@ -0,0 +1,63 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ClusterNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+	private static final ClusterNode NODE_A = new ClusterNode("a", "localhost", 50061);
+	private static final ClusterNode NODE_B = new ClusterNode("b", "localhost", 50062);
+	private static final ClusterNode NODE_C = new ClusterNode("c", "localhost", 50063);
+
+	@Test
+	void ownerOf_sameKey_returnsSameNodeAcrossRings() {
+		ConsistentHashRing first = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C), 64);
+		ConsistentHashRing second = new ConsistentHashRing(List.of(NODE_C, NODE_A, NODE_B), 64);
+
+		IntStream.range(0, 100).mapToObj(i -> "room:" + i)
+				.forEach(key -> assertEquals(first.ownerOf(key), second.ownerOf(key)));
+	}
+
+	@Test
+	void ownerOf_manyKeys_spreadsKeysOverAllNodes() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C), 128);
+
+		Map<ClusterNode, Integer> keysPerNode = new HashMap<>();
+		IntStream.range(0, 30_000).forEach(i -> keysPerNode.merge(ring.ownerOf("room:" + i), 1, Integer::sum));
+
+		assertEquals(3, keysPerNode.size());
+		keysPerNode.values().forEach(count -> assertTrue(count > 7_000, "unbalanced ring: " + keysPerNode));
+	}
+
+	@Test
+	void ownerOf_nodeAdded_movesKeysOnlyToNewNode() {
+		ConsistentHashRing before = new ConsistentHashRing(List.of(NODE_A, NODE_B), 128);
+		ConsistentHashRing after = new ConsistentHashRing(List.of(NODE_A, NODE_B, NODE_C), 128);
+
+		IntStream.range(0, 10_000).mapToObj(i -> "topic:" + i).forEach(key -> {
+			ClusterNode newOwner = after.ownerOf(key);
+			if (!newOwner.equals(before.ownerOf(key))) {
+				assertEquals(NODE_C, newOwner);
+			}
+		});
+	}
+
+	@Test
+	void constructor_duplicateNodeIds_throwsException() {
+		ClusterNode duplicate = new ClusterNode("a", "otherhost", 50064);
+
+		assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(NODE_A, duplicate), 16));
+	}
+
+	@Test
+	void constructor_emptyNodes_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 16));
+	}
+}
@@ -0,0 +1,43 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DrainPlanServiceTest {
+
+	@Test
+	void batches_unevenSplit_keepsOrderAndSpreadsRemainder() {
+		List<List<Integer>> batches = DrainPlanService.batches(List.of(1, 2, 3, 4, 5, 6, 7), 3);
+
+		assertEquals(List.of(List.of(1, 2, 3), List.of(4, 5, 6), List.of(7)), batches);
+	}
+
+	@Test
+	void batches_fewerItemsThanBatches_returnsOneBatchPerItem() {
+		assertEquals(2, DrainPlanService.batches(List.of("a", "b"), 10).size());
+		assertTrue(DrainPlanService.batches(List.of(), 10).isEmpty());
+	}
+
+	@Test
+	void batches_nonPositiveBatchCount_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> DrainPlanService.batches(List.of(1), 0));
+	}
+
+	@Test
+	void pauseBetweenBatchesNanos_lastBatchClosesAtEndOfWindow() {
+		assertEquals(Duration.ofSeconds(3).toNanos(),
+				DrainPlanService.pauseBetweenBatchesNanos(Duration.ofSeconds(9), 4));
+		assertEquals(0, DrainPlanService.pauseBetweenBatchesNanos(Duration.ofSeconds(9), 1));
+	}
+
+	@Test
+	void reconnectDelayMillis_uniformValue_addsShareOfJitter() {
+		assertEquals(100, DrainPlanService.reconnectDelayMillis(100, 2000, 0.0));
+		assertEquals(1100, DrainPlanService.reconnectDelayMillis(100, 2000, 0.5));
+		assertThrows(IllegalArgumentException.class, () -> DrainPlanService.reconnectDelayMillis(100, 2000, 1.0));
+	}
+}
@@ -0,0 +1,79 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaCodecTest {
+
+	@Test
+	void encode_regularIntervalsAndSlowValues_roundTripsCompactly() {
+		long[] timestamps = new long[1000];
+		double[] values = new double[1000];
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = 1_700_000_000_000L + i * 1000L;
+			values[i] = 20.0 + (i / 100) * 0.5;
+		}
+
+		byte[] encoded = encode(timestamps, values);
+
+		assertRoundTrip(encoded, timestamps, values);
+		// Raw points take 16 bytes each
+		assertTrue(encoded.length < timestamps.length, "Encoded size " + encoded.length);
+	}
+
+	@Test
+	void encode_outOfOrderAndIrregularTimestamps_roundTrips() {
+		long[] timestamps = { 5_000, 1_000, 1_001, 900_000, 899_999, Long.MAX_VALUE / 2, 0, -42 };
+		double[] values = { 1.0, 2.0, 2.0, -3.5, 1e300, 7.25, 0.0, 4.0 };
+
+		assertRoundTrip(encode(timestamps, values), timestamps, values);
+	}
+
+	@Test
+	void encode_specialValues_roundTripsBitExact() {
+		long[] timestamps = { 1, 2, 3, 4, 5, 6, 7, 8 };
+		double[] values = { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0, 0.0,
+				Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE };
+
+		assertRoundTrip(encode(timestamps, values), timestamps, values);
+	}
+
+	@Test
+	void decode_payloadAtBufferOffset_readsFromPosition() {
+		byte[] encoded = encode(new long[] { 10, 20 }, new double[] { 1.5, 2.5 });
+		ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 3);
+		buffer.position(3);
+		buffer.put(encoded).position(3);
+
+		GorillaDecoder decoder = new GorillaDecoder(buffer, 2);
+
+		assertTrue(decoder.next());
+		assertEquals(10, decoder.timestampMs());
+		assertTrue(decoder.next());
+		assertEquals(2.5, decoder.value());
+		assertFalse(decoder.next());
+	}
+
+	private static byte[] encode(long[] timestamps, double[] values) {
+		GorillaEncoder encoder = new GorillaEncoder();
+		for (int i = 0; i < timestamps.length; i++) {
+			encoder.add(timestamps[i], values[i]);
+		}
+		assertEquals(timestamps.length, encoder.count());
+		return encoder.toByteArray();
+	}
+
+	private static void assertRoundTrip(byte[] encoded, long[] timestamps, double[] values) {
+		GorillaDecoder decoder = new GorillaDecoder(ByteBuffer.wrap(encoded), timestamps.length);
+		for (int i = 0; i < timestamps.length; i++) {
+			assertTrue(decoder.next());
+			assertEquals(timestamps[i], decoder.timestampMs(), "timestamp " + i);
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.value()),
+					"value " + i);
+		}
+		assertFalse(decoder.next());
+	}
+}
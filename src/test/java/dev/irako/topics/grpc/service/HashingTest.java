@@ -0,0 +1,37 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashingTest {
+
+	@Test
+	void hash_anyCharacters_equalsHashOfUtf8Bytes() {
+		// ASCII, two- and three-byte characters, a surrogate pair and an unpaired surrogate
+		for (String key : new String[] { "", "room-42", "Zürich", "温度", "sensor-🌡", "bad\uD800key" }) {
+			assertEquals(utf8Hash(key), Hashing.hash(key), key);
+		}
+	}
+
+	@Test
+	void hash_similarKeys_differInManyBits() {
+		assertTrue(Long.bitCount(Hashing.hash("a#1") ^ Hashing.hash("a#2")) > 16);
+	}
+
+	private static long utf8Hash(String key) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,49 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+	@Test
+	void estimate_manyDistinctKeys_staysWithinFewPercent() {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int index = 0; index < 100_000; index++) {
+			sketch.add("sensor-" + index);
+			// Repeats do not count again
+			sketch.add("sensor-" + (index / 2));
+		}
+
+		assertEquals(100_000, sketch.estimate(), 100_000 * 0.05);
+	}
+
+	@Test
+	void estimate_fewKeys_isNearlyExact() {
+		HyperLogLog sketch = new HyperLogLog();
+		assertTrue(sketch.isEmpty());
+		for (int index = 0; index < 100; index++) {
+			sketch.add("sensor-" + index);
+		}
+
+		assertEquals(100, sketch.estimate(), 2);
+		assertFalse(sketch.isEmpty());
+	}
+
+	@Test
+	void merge_overlappingSketches_countsSharedKeysOnce() {
+		HyperLogLog first = new HyperLogLog();
+		HyperLogLog second = new HyperLogLog();
+		for (int index = 0; index < 10_000; index++) {
+			first.add("sensor-" + index);
+			second.add("sensor-" + (index + 5_000));
+		}
+
+		first.merge(second);
+		first.merge(second);
+
+		assertEquals(15_000, first.estimate(), 15_000 * 0.05);
+		second.clear();
+		assertEquals(0, second.estimate());
+	}
+}
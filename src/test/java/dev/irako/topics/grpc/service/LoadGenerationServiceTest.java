@@ -0,0 +1,60 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ChatMessageDto;
+import dev.irako.topics.grpc.model.RpcType;
+import dev.irako.topics.grpc.model.SensorReadingDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGenerationServiceTest {
+
+	@Test
+	void selectRpc_weightedMix_splitsUniformRangeByWeight() {
+		Map<RpcType, Integer> mix = Map.of(RpcType.SEND_MESSAGE, 3, RpcType.CHAT, 1);
+
+		assertEquals(RpcType.SEND_MESSAGE, LoadGenerationService.selectRpc(mix, 0.0));
+		assertEquals(RpcType.SEND_MESSAGE, LoadGenerationService.selectRpc(mix, 0.74));
+		assertEquals(RpcType.CHAT, LoadGenerationService.selectRpc(mix, 0.75));
+		assertEquals(RpcType.CHAT, LoadGenerationService.selectRpc(mix, 0.999));
+	}
+
+	@Test
+	void selectRpc_uniformOutOfRange_throwsException() {
+		assertThrows(IllegalArgumentException.class,
+				() -> LoadGenerationService.selectRpc(Map.of(RpcType.CHAT, 1), 1.0));
+	}
+
+	@Test
+	void scheduledStartNanos_fixedRate_spacesRequestsEvenly() {
+		assertEquals(1_000L, LoadGenerationService.scheduledStartNanos(1_000L, 0, 100.0));
+		assertEquals(1_000L + 10_000_000L, LoadGenerationService.scheduledStartNanos(1_000L, 1, 100.0));
+		assertEquals(1_000L + 1_000_000_000L, LoadGenerationService.scheduledStartNanos(1_000L, 100, 100.0));
+	}
+
+	@Test
+	void syntheticText_requestedLength_returnsExactLength() {
+		assertEquals(1, LoadGenerationService.syntheticText(42, 1).length());
+		assertEquals(4096, LoadGenerationService.syntheticText(42, 4096).length());
+	}
+
+	@Test
+	void syntheticReadings_requestedCount_returnsValidReadings() {
+		List<SensorReadingDto> readings = LoadGenerationService.syntheticReadings(7, 20, Instant.now());
+
+		assertEquals(20, readings.size());
+		readings.forEach(reading -> assertEquals("celsius", reading.unit()));
+	}
+
+	@Test
+	void syntheticChat_payloadSize_appliesToEveryMessage() {
+		List<ChatMessageDto> messages = LoadGenerationService.syntheticChat(7, 64, Instant.now());
+
+		assertFalse(messages.isEmpty());
+		messages.forEach(message -> assertEquals(64, message.content().length()));
+	}
+}
@@ -5,6 +5,7 @@ import dev.irako.topics.grpc.model.MessageResponseDto;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,4 +32,25 @@ class MessageServiceTest {
 		assertFalse(response.success());
 		assertEquals("REJECTED_TOO_LONG", response.status());
 	}
+
+	@Test
+	void fastMessageId_generated_isDistinctVersion4Uuid() {
+		UUID first = UUID.fromString(MessageService.fastMessageId());
+		UUID second = UUID.fromString(MessageService.fastMessageId());
+
+		assertNotEquals(first, second);
+		assertEquals(4, first.version());
+		assertEquals(2, first.variant());
+	}
+
+	@Test
+	void checkMessage_requestFields_matchesDtoAndLengthRules() {
+		assertTrue(MessageService.checkMessage("user123", "Hello"));
+		assertFalse(MessageService.checkMessage("user123", "x".repeat(MessageService.MAX_CONTENT_LENGTH + 1)));
+		assertThrows(IllegalArgumentException.class, () -> MessageService.checkMessage(" ", "Hello"));
+		assertThrows(IllegalArgumentException.class, () -> MessageService.checkMessage("user123", null));
+		// Blank content is invalid even when it is also too long
+		assertThrows(IllegalArgumentException.class,
+				() -> MessageService.checkMessage("user123", " ".repeat(MessageService.MAX_CONTENT_LENGTH + 1)));
+	}
 }
@@ -4,6 +4,7 @@ import dev.irako.topics.grpc.model.NotificationDto;
 import dev.irako.topics.grpc.model.NotificationPriority;
 import org.junit.jupiter.api.Test;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -52,6 +53,17 @@ class NotificationServiceTest {
 		assertEquals(NotificationPriority.URGENT, notifications.get(0).priority());
 	}
 
+	@Test
+	void generateNotifications_hierarchicalTopics_comparesWholeSegments() {
+		List<NotificationDto> alerts = NotificationService.generateNotifications("user123",
+				List.of("alerts.building1"), 1).collect(Collectors.toList());
+		List<NotificationDto> dealerts = NotificationService.generateNotifications("user123", List.of("dealerts"), 2)
+				.collect(Collectors.toList());
+
+		assertEquals(NotificationPriority.URGENT, alerts.get(0).priority());
+		assertEquals(NotificationPriority.LOW, dealerts.get(1).priority());
+	}
+
 	@Test
 	void generateNotifications_nullUserId_throwsException() {
 		assertThrows(IllegalArgumentException.class, () -> {
@@ -72,4 +84,21 @@ class NotificationServiceTest {
 			NotificationService.generateNotifications("user123", List.of("news"), -1).collect(Collectors.toList());
 		});
 	}
+
+	@Test
+	void createDigest_moreNotificationsThanTitles_countsTheRest() {
+		NotificationDto digest = NotificationService.createDigest("alerts.door", 7, List.of("Opened", "Closed"),
+				NotificationPriority.URGENT, Instant.ofEpochMilli(1000));
+
+		assertEquals("alerts.door", digest.topic());
+		assertEquals("7 notifications on alerts.door", digest.title());
+		assertEquals("Opened\nClosed\n(and 5 earlier)", digest.content());
+		assertEquals(NotificationPriority.URGENT, digest.priority());
+	}
+
+	@Test
+	void createDigest_noTitles_throwsException() {
+		assertThrows(IllegalArgumentException.class, () -> NotificationService.createDigest("alerts.door", 2,
+				List.of(), NotificationPriority.LOW, Instant.now()));
+	}
 }
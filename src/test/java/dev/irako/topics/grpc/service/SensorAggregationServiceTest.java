@@ -1,11 +1,16 @@
 package dev.irako.topics.grpc.service;
 
+import dev.irako.topics.grpc.model.ReadingColumns;
 import dev.irako.topics.grpc.model.SensorAggregateDto;
+import dev.irako.topics.grpc.model.SensorBucketAggregate;
 import dev.irako.topics.grpc.model.SensorReadingDto;
 import org.junit.jupiter.api.Test;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,6 +50,36 @@ class SensorAggregationServiceTest {
 		assertEquals(25.5, aggregate.maxValue(), 0.001);
 	}
 
+	@Test
+	void aggregateReadings_mixedTemperatureUnits_averagesInCelsius() {
+		Instant now = Instant.now();
+		List<SensorReadingDto> readings = List.of(new SensorReadingDto("sensor1", 20.0, "celsius", now, "room1"),
+				new SensorReadingDto("sensor2", 212.0, "Fahrenheit", now, "room2"),
+				new SensorReadingDto("sensor3", 273.15, "kelvin", now, "room3"));
+
+		SensorAggregateDto aggregate = SensorAggregationService.aggregateReadings(readings, 0, 0);
+
+		assertEquals(40.0, aggregate.averageValue(), 1e-9);
+		assertEquals(0.0, aggregate.minValue(), 1e-9);
+		assertEquals(100.0, aggregate.maxValue(), 1e-9);
+		assertEquals("celsius", aggregate.unit());
+	}
+
+	@Test
+	void aggregateColumns_mixedQuantities_throwsException() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("sensor1", 20.0, "celsius", 0, "room1");
+			columns.append("sensor2", 1.0, "bar", 0, "room1");
+
+			assertThrows(IllegalArgumentException.class, () -> SensorAggregationService.aggregateColumns(columns, 0,
+					0));
+			// Per sensor, each quantity is aggregated on its own
+			assertEquals(List.of("celsius", "pascal"), SensorAggregationService
+					.aggregateColumnsBySensorAndBucket(columns, 60_000).stream()
+					.map(bucket -> bucket.aggregate().unit()).sorted().toList());
+		}
+	}
+
 	@Test
 	void aggregateReadings_emptyList_throwsException() {
 		long now = System.currentTimeMillis();
@@ -60,4 +95,150 @@ class SensorAggregationServiceTest {
 			SensorAggregationService.aggregateReadings(null, now, now);
 		});
 	}
+
+	@Test
+	void aggregateBySensorAndBucket_mixedSensorsAndMinutes_groupsBySensorAndBucket() {
+		Instant minute = Instant.ofEpochMilli(120_000);
+		List<SensorReadingDto> readings = List.of(new SensorReadingDto("sensor1", 10.0, "celsius", minute, "room1"),
+				new SensorReadingDto("sensor1", 20.0, "celsius", minute.plusSeconds(59), "room1"),
+				new SensorReadingDto("sensor1", 40.0, "celsius", minute.plusSeconds(60), "room1"),
+				new SensorReadingDto("sensor2", 5.0, "celsius", minute, "room2"));
+
+		List<SensorBucketAggregate> buckets = SensorAggregationService.aggregateBySensorAndBucket(readings, 60_000);
+
+		assertEquals(3, buckets.size());
+		SensorBucketAggregate first = buckets.stream()
+				.filter(bucket -> bucket.sensorId().equals("sensor1") && bucket.bucketStartMs() == 120_000)
+				.findFirst().orElseThrow();
+		assertEquals(2, first.aggregate().totalReadings());
+		assertEquals(15.0, first.aggregate().averageValue(), 0.001);
+	}
+
+	@Test
+	void mergeAggregates_differentCounts_weightsAverageByCount() {
+		SensorAggregateDto merged = SensorAggregationService.mergeAggregates(
+				List.of(new SensorAggregateDto(3, 10.0, 5.0, 15.0, "celsius", 0),
+						new SensorAggregateDto(1, 30.0, 30.0, 30.0, "celsius", 0)),
+				7);
+
+		assertEquals(4, merged.totalReadings());
+		assertEquals(15.0, merged.averageValue(), 0.001);
+		assertEquals(5.0, merged.minValue(), 0.001);
+		assertEquals(30.0, merged.maxValue(), 0.001);
+		assertEquals(7, merged.processingTimeMs());
+	}
+
+	@Test
+	void bucketStart_negativeTimestamp_floorsToBucket() {
+		assertEquals(-60_000, SensorAggregationService.bucketStart(-1, 60_000));
+		assertEquals(60_000, SensorAggregationService.bucketStart(119_999, 60_000));
+	}
+
+	@Test
+	void aggregateReadingsParallel_anyPoolSize_matchesSequentialExactly() {
+		Random random = new Random(42);
+		Instant now = Instant.now();
+		List<SensorReadingDto> readings = IntStream.range(0, 100_000)
+				.mapToObj(i -> new SensorReadingDto("sensor" + (i % 10), 1e6 + random.nextGaussian(), "celsius", now,
+						"room1"))
+				.toList();
+
+		SensorAggregateDto sequential = SensorAggregationService.aggregateReadings(readings, 0, 0);
+		for (int parallelism : new int[]{1, 3, 8}) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				SensorAggregateDto parallel = SensorAggregationService.aggregateReadingsParallel(readings, 0, 0, pool);
+				assertEquals(sequential, parallel);
+				assertEquals(SensorAggregationService.valueStatistics(readings).variance(),
+						SensorAggregationService.valueStatistics(readings, pool).variance());
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	void valueStatistics_largeOffset_keepsMeanAndVariancePrecise() {
+		Instant now = Instant.now();
+		// Values 1e9 + {0, 1, 2, 3} repeated: naive sums of squares lose the variance
+		List<SensorReadingDto> readings = IntStream.range(0, 40_000)
+				.mapToObj(i -> new SensorReadingDto("sensor1", 1e9 + (i % 4), "celsius", now, "room1")).toList();
+
+		ValueStatistics statistics = SensorAggregationService.valueStatistics(readings);
+
+		assertEquals(40_000, statistics.count());
+		assertEquals(1e9 + 1.5, statistics.mean(), 1e-6);
+		assertEquals(1.25, statistics.variance(), 1e-6);
+	}
+
+	@Test
+	void aggregateColumns_sameReadings_matchesListAggregation() {
+		Random random = new Random(7);
+		Instant now = Instant.ofEpochMilli(1_000_000);
+		List<SensorReadingDto> readings = IntStream.range(0, 20_000).mapToObj(
+				i -> new SensorReadingDto("sensor" + (i % 5), random.nextGaussian(), "celsius", now, "room1"))
+				.toList();
+
+		try (ReadingColumns columns = new ReadingColumns()) {
+			readings.forEach(columns::append);
+
+			assertEquals(SensorAggregationService.aggregateReadings(readings, 0, 0),
+					SensorAggregationService.aggregateColumns(columns, 0, 0));
+		}
+	}
+
+	@Test
+	void aggregateColumnsBySensorAndBucket_mixedSensorsAndMinutes_groupsBySensorAndBucket() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("sensor1", 10.0, "celsius", 120_000, "room1");
+			columns.append("sensor1", 20.0, "celsius", 179_000, "room1");
+			columns.append("sensor1", 40.0, "celsius", 180_000, "room1");
+			columns.append("sensor2", 5.0, "pascal", 120_000, "room2");
+
+			List<SensorBucketAggregate> buckets = SensorAggregationService
+					.aggregateColumnsBySensorAndBucket(columns, 60_000);
+
+			assertEquals(3, buckets.size());
+			SensorBucketAggregate first = buckets.stream()
+					.filter(bucket -> bucket.sensorId().equals("sensor1") && bucket.bucketStartMs() == 120_000)
+					.findFirst().orElseThrow();
+			assertEquals(2, first.aggregate().totalReadings());
+			assertEquals(15.0, first.aggregate().averageValue(), 0.001);
+			assertEquals("pascal", buckets.stream().filter(bucket -> bucket.sensorId().equals("sensor2"))
+					.findFirst().orElseThrow().aggregate().unit());
+		}
+	}
+
+	@Test
+	void aggregateColumnsBySensorAndBucket_sampled_scalesCountsAndMergesRate() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("sensor1", 10.0, "celsius", 120_000, "room1");
+			columns.append("sensor1", 20.0, "celsius", 130_000, "room1");
+
+			SensorAggregateDto sampled = SensorAggregationService
+					.aggregateColumnsBySensorAndBucket(columns, 60_000, new int[] { 2, 6 }).get(0).aggregate();
+			SensorAggregateDto merged = SensorAggregationService.mergeAggregates(
+					List.of(sampled, new SensorAggregateDto(8, 15.0, 15.0, 15.0, "celsius", 0)), 0);
+
+			assertEquals(8, sampled.totalReadings());
+			assertEquals(17.5, sampled.averageValue(), 1e-9);
+			assertEquals(0.25, sampled.samplingRate());
+			assertEquals(16, merged.totalReadings());
+			assertEquals(0.625, merged.samplingRate(), 1e-9);
+		}
+	}
+
+	@Test
+	void toSampledAggregate_sampleOfReadings_reportsTotalAndRate() {
+		SensorAggregateDto aggregate = SensorAggregationService.toSampledAggregate("celsius", 2, 20.0, 8, 1.0, 50.0,
+				0, 5);
+
+		assertEquals(8, aggregate.totalReadings());
+		assertEquals(20.0, aggregate.averageValue());
+		assertEquals(1.0, aggregate.minValue());
+		assertEquals(50.0, aggregate.maxValue());
+		assertEquals(0.25, aggregate.samplingRate());
+		assertThrows(IllegalArgumentException.class,
+				() -> SensorAggregationService.toSampledAggregate("celsius", 2, 20.0, 1, 1.0, 50.0, 0, 5));
+	}
 }
@@ -0,0 +1,45 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.HeavyHitterDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+	@Test
+	void top_heavyHittersAmongManyRareKeys_findsThemInOrder() {
+		SpaceSaving summary = new SpaceSaving(16);
+		for (int index = 0; index < 10_000; index++) {
+			summary.add("rare-" + index);
+			if (index % 2 == 0) {
+				summary.add("alice");
+			}
+			if (index % 5 == 0) {
+				summary.add("bob");
+			}
+		}
+
+		List<HeavyHitterDto> top = summary.top(2);
+
+		assertEquals(List.of("alice", "bob"), top.stream().map(HeavyHitterDto::key).toList());
+		// Never undercounts, and overcounts by at most the recorded error
+		HeavyHitterDto alice = top.get(0);
+		assertTrue(alice.count() >= 5_000);
+		assertTrue(alice.count() - alice.maxOvercount() <= 5_000);
+		assertEquals(17_000, summary.total());
+	}
+
+	@Test
+	void top_fewerKeysThanCapacity_countsExactly() {
+		SpaceSaving summary = new SpaceSaving(4);
+		summary.add("alice");
+		summary.add("bob");
+		summary.add("alice");
+
+		assertEquals(List.of(new HeavyHitterDto("alice", 2, 0), new HeavyHitterDto("bob", 1, 0)), summary.top(10));
+		assertThrows(IllegalArgumentException.class, () -> new SpaceSaving(0));
+	}
+}
@@ -0,0 +1,72 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StratifiedSamplerTest {
+
+	@Test
+	void sample_rareAndFrequentSensors_keepsEachInProportion() {
+		StratifiedSampler sampler = new StratifiedSampler();
+		int frequentKept = 0;
+		int rareKept = 0;
+		for (int index = 0; index < 1000; index++) {
+			if (sampler.sample("frequent", 0.1) > 0) {
+				frequentKept++;
+			}
+			if (index % 100 == 0 && sampler.sample("rare", 0.1) > 0) {
+				rareKept++;
+			}
+		}
+
+		assertEquals(100, frequentKept);
+		// The first reading of a sensor is always kept
+		assertEquals(1, rareKept);
+	}
+
+	@Test
+	void sample_fullRate_keepsEveryReading() {
+		StratifiedSampler sampler = new StratifiedSampler();
+
+		for (int index = 0; index < 10; index++) {
+			assertEquals(1, sampler.sample("sensor1", 1.0));
+		}
+		assertThrows(IllegalArgumentException.class, () -> sampler.sample("sensor1", 0.0));
+	}
+
+	@Test
+	void sample_rateChanges_weightsAddUpToEveryReadingOfTheSensor() {
+		StratifiedSampler sampler = new StratifiedSampler();
+		int weights = 0;
+		for (int index = 0; index < 1000; index++) {
+			weights += sampler.sample("sensor1", index < 500 ? 0.25 : 0.1);
+		}
+		// The readings left out after the last kept one are owed to the next
+		weights += sampler.sample("sensor1", 1.0);
+
+		assertEquals(1001, weights);
+	}
+
+	@Test
+	void sample_moreSensorsThanTracked_forgetsLeastRecentlySeen() {
+		StratifiedSampler sampler = new StratifiedSampler();
+		sampler.sample("sensor1", 0.5);
+		assertEquals(0, sampler.sample("sensor1", 0.5));
+
+		for (int index = 0; index < StratifiedSampler.MAX_SENSORS; index++) {
+			sampler.sample("other" + index, 0.5);
+		}
+
+		// Kept like a first reading, without the reading left out before
+		assertEquals(1, sampler.sample("sensor1", 0.5));
+	}
+
+	@Test
+	void samplingRate_backlogBeyondCapacity_dropsInProportionDownToMinimum() {
+		assertEquals(1.0, StratifiedSampler.samplingRate(8, 8, 0.1));
+		assertEquals(0.5, StratifiedSampler.samplingRate(16, 8, 0.1));
+		assertEquals(0.1, StratifiedSampler.samplingRate(1000, 8, 0.1));
+		assertThrows(IllegalArgumentException.class, () -> StratifiedSampler.samplingRate(1, 0, 0.1));
+	}
+}
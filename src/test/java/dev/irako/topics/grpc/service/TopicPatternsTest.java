@@ -0,0 +1,47 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicPatternsTest {
+
+	@Test
+	void matches_singleSegmentWildcard_matchesExactlyOneSegment() {
+		assertTrue(TopicPatterns.matches("alerts.building1.*", "alerts.building1.door"));
+		assertTrue(TopicPatterns.matches("alerts.*.door", "alerts.building2.door"));
+		assertFalse(TopicPatterns.matches("alerts.building1.*", "alerts.building1"));
+		assertFalse(TopicPatterns.matches("alerts.building1.*", "alerts.building1.door.front"));
+	}
+
+	@Test
+	void matches_suffixWildcard_matchesZeroOrMoreSegments() {
+		assertTrue(TopicPatterns.matches("alerts.#", "alerts"));
+		assertTrue(TopicPatterns.matches("alerts.#", "alerts.building1.door"));
+		assertFalse(TopicPatterns.matches("alerts.#", "news.alerts"));
+	}
+
+	@Test
+	void matches_literalPattern_requiresEqualTopic() {
+		assertTrue(TopicPatterns.matches("news", "news"));
+		assertFalse(TopicPatterns.matches("news", "news.sports"));
+	}
+
+	@Test
+	void patternSegments_invalidPattern_throwsException() {
+		assertEquals(List.of("alerts", "*", "door"), TopicPatterns.patternSegments("alerts.*.door"));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.patternSegments("*.door"));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.patternSegments("alerts.#.door"));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.patternSegments("alerts..door"));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.patternSegments("alerts."));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.patternSegments(" "));
+	}
+
+	@Test
+	void topicSegments_wildcardTopic_throwsException() {
+		assertEquals(List.of("alerts", "building1"), TopicPatterns.topicSegments("alerts.building1"));
+		assertThrows(IllegalArgumentException.class, () -> TopicPatterns.topicSegments("alerts.*"));
+	}
+}
@@ -0,0 +1,42 @@
+package dev.irako.topics.grpc.service;
+
+import dev.irako.topics.grpc.model.ReadingColumns;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitNormalizerTest {
+
+	@Test
+	void conversionOf_knownUnits_convertsToCanonicalUnit() {
+		assertEquals(100.0, UnitNormalizer.conversionOf("fahrenheit").apply(212.0), 1e-9);
+		assertEquals(-273.15, UnitNormalizer.conversionOf(" K ").apply(0.0), 1e-9);
+		assertEquals(101_325.0, UnitNormalizer.conversionOf("hPa").apply(1013.25), 1e-6);
+		assertEquals(UnitNormalizer.PASCAL, UnitNormalizer.conversionOf("psi").canonicalUnit());
+	}
+
+	@Test
+	void conversionOf_unknownUnit_isItsOwnCanonicalUnit() {
+		UnitNormalizer.Conversion conversion = UnitNormalizer.conversionOf("lux");
+
+		assertEquals("lux", conversion.canonicalUnit());
+		assertEquals(42.0, conversion.apply(42.0));
+		assertThrows(IllegalArgumentException.class, () -> UnitNormalizer.conversionOf(" "));
+	}
+
+	@Test
+	void table_columnsWithSeveralUnits_normalizesByUnitCode() {
+		try (ReadingColumns columns = new ReadingColumns()) {
+			columns.append("sensor1", 20.0, "celsius", 0, "room1");
+			columns.append("sensor1", 68.0, "fahrenheit", 0, "room1");
+
+			UnitNormalizer.Table table = UnitNormalizer.table(columns);
+
+			assertEquals(20.0, table.normalize(columns.unitCode(1), columns.value(1)), 1e-9);
+			assertEquals(UnitNormalizer.CELSIUS, table.commonUnit());
+
+			columns.append("sensor2", 50.0, "percent", 0, "room1");
+			assertThrows(IllegalArgumentException.class, () -> UnitNormalizer.table(columns).commonUnit());
+		}
+	}
+}
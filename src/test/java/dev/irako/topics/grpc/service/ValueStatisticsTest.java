@@ -0,0 +1,52 @@
+package dev.irako.topics.grpc.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueStatisticsTest {
+
+	@Test
+	void accept_severalValues_computesAllStatistics() {
+		ValueStatistics statistics = of(2.0, 4.0, 4.0, 4.0, 5.0, 5.0, 7.0, 9.0);
+
+		assertEquals(8, statistics.count());
+		assertEquals(40.0, statistics.sum(), 1e-12);
+		assertEquals(5.0, statistics.mean(), 1e-12);
+		assertEquals(4.0, statistics.variance(), 1e-12);
+		assertEquals(2.0, statistics.min());
+		assertEquals(9.0, statistics.max());
+	}
+
+	@Test
+	void combine_twoPartials_equalsSingleAccumulator() {
+		ValueStatistics left = of(2.0, 4.0, 4.0);
+		left.combine(of(4.0, 5.0, 5.0, 7.0, 9.0));
+
+		assertEquals(8, left.count());
+		assertEquals(5.0, left.mean(), 1e-12);
+		assertEquals(4.0, left.variance(), 1e-12);
+		assertEquals(2.0, left.min());
+		assertEquals(9.0, left.max());
+	}
+
+	@Test
+	void combine_emptySides_leavesStatisticsUnchanged() {
+		ValueStatistics empty = new ValueStatistics();
+		empty.combine(of(1.0, 3.0));
+		ValueStatistics filled = of(1.0, 3.0);
+		filled.combine(new ValueStatistics());
+
+		assertEquals(2.0, empty.mean(), 1e-12);
+		assertEquals(2.0, filled.mean(), 1e-12);
+		assertTrue(Double.isNaN(new ValueStatistics().mean()));
+	}
+
+	private static ValueStatistics of(double... values) {
+		ValueStatistics statistics = new ValueStatistics();
+		for (double value : values) {
+			statistics.accept(value);
+		}
+		return statistics;
+	}
+}